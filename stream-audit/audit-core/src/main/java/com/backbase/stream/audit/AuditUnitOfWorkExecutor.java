@@ -16,7 +16,7 @@ public class AuditUnitOfWorkExecutor extends UnitOfWorkExecutor<AuditMessagesTas
         UnitOfWorkRepository<AuditMessagesTask, String> repository,
         StreamTaskExecutor<AuditMessagesTask> streamTaskExecutor,
         StreamWorkerConfiguration streamWorkerConfiguration) {
-        super(repository, streamTaskExecutor, streamWorkerConfiguration);
+        super(repository, streamTaskExecutor, streamWorkerConfiguration, "audit");
     }
 
     public UnitOfWork<AuditMessagesTask> prepareUnitOfWork(List<AuditMessage> items) {
@@ -7,7 +7,6 @@ import com.backbase.stream.audit.AuditTaskExecutor;
 import com.backbase.stream.audit.AuditUnitOfWorkExecutor;
 import com.backbase.stream.audit.repository.AuditMessageTaskRepository;
 import com.backbase.stream.webclient.DbsWebClientConfiguration;
-import com.backbase.stream.worker.model.UnitOfWork;
 import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import java.text.DateFormat;
@@ -17,10 +16,7 @@ import org.springframework.boot.context.properties.EnableConfigurationProperties
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Import;
-import org.springframework.context.event.ContextRefreshedEvent;
-import org.springframework.context.event.EventListener;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.core.publisher.Flux;
 
 @Configuration
 @EnableConfigurationProperties(AuditConfigurationProperties.class)
@@ -30,8 +26,6 @@ import reactor.core.publisher.Flux;
 @Slf4j
 public class AuditConfiguration {
 
-    private Flux<UnitOfWork<AuditMessagesTask>> scheduler;
-
     @Bean
     public AuditServiceApi auditMessagesApi(WebClient dbsWebClient,
                                              ObjectMapper mapper,
@@ -51,10 +45,8 @@ public class AuditConfiguration {
     public AuditUnitOfWorkExecutor auditUnitOfWorkExecutor(AuditTaskExecutor auditTaskExecutor,
                                                            AuditMessageTaskRepository repository,
                                                            AuditConfigurationProperties auditConfigurationProperties) {
-        AuditUnitOfWorkExecutor auditUnitOfWorkExecutor = new AuditUnitOfWorkExecutor(repository, auditTaskExecutor,
-            auditConfigurationProperties);
-        scheduler = auditUnitOfWorkExecutor.getScheduler();
-        return auditUnitOfWorkExecutor;
+        // Started and stopped with the application context
+        return new AuditUnitOfWorkExecutor(repository, auditTaskExecutor, auditConfigurationProperties);
     }
 
     @Bean
@@ -63,12 +55,6 @@ public class AuditConfiguration {
         return new LegalEntityInMemoryUnitOfWorkRepository();
     }
 
-    @EventListener
-    public void onApplicationEvent(ContextRefreshedEvent event) {
-        log.info("Starting Unit Of Work Scheduler");
-        scheduler.subscribe();
-    }
-
 
     public static class LegalEntityInMemoryUnitOfWorkRepository extends
         InMemoryReactiveUnitOfWorkRepository<AuditMessagesTask> implements AuditMessageTaskRepository {
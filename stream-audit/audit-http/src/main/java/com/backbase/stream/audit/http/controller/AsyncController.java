@@ -7,6 +7,8 @@ import com.backbase.stream.audit.configuration.AuditConfiguration;
 import com.backbase.stream.audit.http.api.AsyncApi;
 import com.backbase.stream.audit.http.mapper.AuditMessageMapper;
 import com.backbase.stream.audit.http.model.AuditMessagesPostRequestBody;
+import com.backbase.stream.audit.http.model.DeadLetterReplayResponse;
+import com.backbase.stream.audit.http.model.DeadLetterResponse;
 import com.backbase.stream.audit.http.model.UnitOfWorkResponse;
 import com.backbase.stream.worker.model.UnitOfWork;
 import java.util.List;
@@ -14,9 +16,11 @@ import java.util.stream.Collectors;
 import javax.validation.Valid;
 import org.mapstruct.factory.Mappers;
 import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @RestController
@@ -41,10 +45,43 @@ public class AsyncController implements AsyncApi {
             .map(ResponseEntity::ok);
     }
 
+    @Override
+    public Mono<ResponseEntity<Flux<DeadLetterResponse>>> asyncGetAuditMessagesDeadLetters(String errorType,
+        Integer limit, ServerWebExchange exchange) {
+        Flux<DeadLetterResponse> deadLetters = auditUnitOfWorkExecutor
+            .getDeadLetters(errorType, limit != null ? limit : 100)
+            .map(auditMessageMapper::toHttp);
+        return Mono.just(ResponseEntity.ok(deadLetters));
+    }
+
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> asyncGetAuditMessagesDeadLetterReplay(
+        ServerWebExchange exchange) {
+        return auditUnitOfWorkExecutor.getDeadLetterReplay()
+            .map(auditMessageMapper::toHttp)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Replays run in the background, a request to replay while a replay is running gets the running one back.
+     */
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> asyncReplayAuditMessagesDeadLetters(String errorType,
+        Integer limit, Integer rate, ServerWebExchange exchange) {
+        return auditUnitOfWorkExecutor
+            .startDeadLetterReplay(errorType, limit != null ? limit : 1000, rate != null ? rate : 0)
+            .map(replay -> ResponseEntity.accepted().body(auditMessageMapper.toHttp(replay)))
+            .switchIfEmpty(auditUnitOfWorkExecutor.getDeadLetterReplay()
+                .map(running -> ResponseEntity.status(HttpStatus.CONFLICT).body(auditMessageMapper.toHttp(running))));
+    }
+
     private UnitOfWork<AuditMessagesTask> getUnitOfWork(AuditMessagesPostRequestBody request) {
         List<AuditMessage> auditMessages = request.getAuditMessages().stream()
             .map(auditMessageMapper::toPresentation)
             .collect(Collectors.toList());
-        return auditUnitOfWorkExecutor.prepareUnitOfWork(auditMessages);
+        UnitOfWork<AuditMessagesTask> unitOfWork = auditUnitOfWorkExecutor.prepareUnitOfWork(auditMessages);
+        unitOfWork.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        return unitOfWork;
     }
 }
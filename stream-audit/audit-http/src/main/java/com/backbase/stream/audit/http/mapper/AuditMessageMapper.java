@@ -2,7 +2,11 @@ package com.backbase.stream.audit.http.mapper;
 
 import com.backbase.dbs.audit.api.service.v2.model.AuditMessage;
 import com.backbase.stream.audit.AuditMessagesTask;
+import com.backbase.stream.audit.http.model.DeadLetterReplayResponse;
+import com.backbase.stream.audit.http.model.DeadLetterResponse;
 import com.backbase.stream.audit.http.model.UnitOfWorkResponse;
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.deadletter.DeadLetterReplay;
 import com.backbase.stream.worker.model.UnitOfWork;
 import org.mapstruct.Mapper;
 
@@ -13,4 +17,8 @@ public interface AuditMessageMapper {
 
     UnitOfWorkResponse toHttp(UnitOfWork<AuditMessagesTask> unitOfWork);
 
+    DeadLetterResponse toHttp(DeadLetter<AuditMessagesTask> deadLetter);
+
+    DeadLetterReplayResponse toHttp(DeadLetterReplay deadLetterReplay);
+
 }
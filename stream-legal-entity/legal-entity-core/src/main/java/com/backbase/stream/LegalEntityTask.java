@@ -28,6 +28,24 @@ public class LegalEntityTask extends StreamTask {
         return this;
     }
 
+    /**
+     * Replaces the legal entity aggregate with its identifiers, dropping subsidiaries, users and products.
+     */
+    @Override
+    public void compact() {
+        super.compact();
+        if (legalEntity != null) {
+            LegalEntity compacted = new LegalEntity();
+            compacted.setExternalId(legalEntity.getExternalId());
+            compacted.setInternalId(legalEntity.getInternalId());
+            compacted.setName(legalEntity.getName());
+            compacted.setLegalEntityType(legalEntity.getLegalEntityType());
+            compacted.setParentExternalId(legalEntity.getParentExternalId());
+            compacted.setParentInternalId(legalEntity.getParentInternalId());
+            this.legalEntity = compacted;
+        }
+    }
+
     @Override
     public String getName() {
         return legalEntity.getExternalId();
@@ -23,6 +23,21 @@ public class UpdatedServiceAgreementTask extends StreamTask {
         return serviceAgreement.getExternalId();
     }
 
+    /**
+     * Replaces the service agreement with its identifiers, dropping product groups and user actions.
+     */
+    @Override
+    public void compact() {
+        super.compact();
+        if (serviceAgreement != null) {
+            UpdatedServiceAgreement compacted = new UpdatedServiceAgreement();
+            compacted.setExternalId(serviceAgreement.getExternalId());
+            compacted.setInternalId(serviceAgreement.getInternalId());
+            compacted.setName(serviceAgreement.getName());
+            this.serviceAgreement = compacted;
+        }
+    }
+
     public UpdatedServiceAgreement getData() {
         return serviceAgreement;
     }
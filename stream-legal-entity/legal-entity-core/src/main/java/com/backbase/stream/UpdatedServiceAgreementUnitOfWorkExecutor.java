@@ -11,6 +11,6 @@ public class UpdatedServiceAgreementUnitOfWorkExecutor extends UnitOfWorkExecuto
         UnitOfWorkRepository<UpdatedServiceAgreementTask, String> repository,
         StreamTaskExecutor<UpdatedServiceAgreementTask> streamTaskExecutor,
         StreamWorkerConfiguration streamWorkerConfiguration) {
-        super(repository, streamTaskExecutor, streamWorkerConfiguration);
+        super(repository, streamTaskExecutor, streamWorkerConfiguration, "service-agreement");
     }
 }
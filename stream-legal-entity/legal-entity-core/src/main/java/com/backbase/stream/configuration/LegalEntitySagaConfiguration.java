@@ -12,8 +12,16 @@ import com.backbase.stream.service.AccessGroupService;
 import com.backbase.stream.service.LegalEntityService;
 import com.backbase.stream.service.UserProfileService;
 import com.backbase.stream.service.UserService;
+import com.backbase.stream.worker.deadletter.DeadLetterStore;
 import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournal;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournals;
+import com.backbase.stream.worker.repository.r2dbc.R2dbcDeadLetterStore;
+import com.backbase.stream.worker.repository.r2dbc.R2dbcUnitOfWorkRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -56,18 +64,68 @@ public class LegalEntitySagaConfiguration {
         return new LegalEntityInMemoryUnitOfWorkRepository();
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "journal")
+    public LegalEntityUnitOfWorkRepository legalEntityJournaledUnitOfWorkRepository(
+        UnitOfWorkJournals unitOfWorkJournals) {
+        return new LegalEntityInMemoryUnitOfWorkRepository(
+            unitOfWorkJournals.open(LegalEntityTask.class, "legal-entity"));
+    }
+
+    /**
+     * Persistence in a database through R2DBC. Applications persisting in a database add the optional
+     * stream-worker-r2dbc dependency and an R2DBC driver; the beans live in a configuration of their own, so this
+     * configuration loads without R2DBC on the class path.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(ConnectionFactory.class)
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "r2dbc")
+    static class R2dbcPersistenceConfiguration {
+
+        @Bean
+        public LegalEntityUnitOfWorkRepository legalEntityR2dbcUnitOfWorkRepository(
+            ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            return new LegalEntityR2dbcUnitOfWorkRepository(connectionFactory, objectMapper);
+        }
+
+        @Bean
+        public DeadLetterStore<LegalEntityTask> legalEntityR2dbcDeadLetterStore(ConnectionFactory connectionFactory,
+            ObjectMapper objectMapper) {
+            return new R2dbcDeadLetterStore<>(connectionFactory, objectMapper, LegalEntityTask.class, "legal-entity");
+        }
+    }
+
     @Bean
     public LegalEntityUnitOfWorkExecutor legalEntityUnitOfWorkExecutor(
         LegalEntityUnitOfWorkRepository legalEntityUnitOfWorkRepository,
         LegalEntitySaga legalEntitySaga,
-        LegalEntitySagaConfigurationProperties configProperties) {
+        LegalEntitySagaConfigurationProperties configProperties,
+        ObjectProvider<DeadLetterStore<LegalEntityTask>> legalEntityDeadLetterStore) {
 
-        return new LegalEntityUnitOfWorkExecutor(legalEntityUnitOfWorkRepository, legalEntitySaga, configProperties);
+        LegalEntityUnitOfWorkExecutor executor =
+            new LegalEntityUnitOfWorkExecutor(legalEntityUnitOfWorkRepository, legalEntitySaga, configProperties);
+        // Dead letters are kept in memory unless persisted next to the units of work
+        legalEntityDeadLetterStore.ifAvailable(executor::setDeadLetterStore);
+        return executor;
     }
 
     public static class LegalEntityInMemoryUnitOfWorkRepository extends
         InMemoryReactiveUnitOfWorkRepository<LegalEntityTask> implements LegalEntityUnitOfWorkRepository {
 
+        public LegalEntityInMemoryUnitOfWorkRepository() {
+        }
+
+        public LegalEntityInMemoryUnitOfWorkRepository(UnitOfWorkJournal<LegalEntityTask> journal) {
+            super(journal);
+        }
+    }
+
+    public static class LegalEntityR2dbcUnitOfWorkRepository extends
+        R2dbcUnitOfWorkRepository<LegalEntityTask> implements LegalEntityUnitOfWorkRepository {
+
+        public LegalEntityR2dbcUnitOfWorkRepository(ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            super(connectionFactory, objectMapper, LegalEntityTask.class, "legal-entity");
+        }
     }
 
 }
@@ -6,7 +6,16 @@ import com.backbase.stream.UpdatedServiceAgreementUnitOfWorkExecutor;
 import com.backbase.stream.legalentity.repository.UpdatedServiceAgreementUnitOfWorkRepository;
 import com.backbase.stream.product.service.ArrangementService;
 import com.backbase.stream.service.AccessGroupService;
+import com.backbase.stream.worker.deadletter.DeadLetterStore;
 import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournal;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournals;
+import com.backbase.stream.worker.repository.r2dbc.R2dbcDeadLetterStore;
+import com.backbase.stream.worker.repository.r2dbc.R2dbcUnitOfWorkRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.spi.ConnectionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -32,19 +41,72 @@ public class UpdatedServiceAgreementSagaConfiguration {
         return new UpdatedServiceAgreementInMemoryUnitOfWorkRepository();
     }
 
+    @Bean
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "journal")
+    public UpdatedServiceAgreementUnitOfWorkRepository updatedServiceAgreementJournaledUnitOfWorkRepository(
+        UnitOfWorkJournals unitOfWorkJournals) {
+        return new UpdatedServiceAgreementInMemoryUnitOfWorkRepository(
+            unitOfWorkJournals.open(UpdatedServiceAgreementTask.class, "service-agreement"));
+    }
+
+    /**
+     * Persistence in a database through R2DBC. Applications persisting in a database add the optional
+     * stream-worker-r2dbc dependency and an R2DBC driver; the beans live in a configuration of their own, so this
+     * configuration loads without R2DBC on the class path.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(ConnectionFactory.class)
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "r2dbc")
+    static class R2dbcPersistenceConfiguration {
+
+        @Bean
+        public UpdatedServiceAgreementUnitOfWorkRepository updatedServiceAgreementR2dbcUnitOfWorkRepository(
+            ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            return new UpdatedServiceAgreementR2dbcUnitOfWorkRepository(connectionFactory, objectMapper);
+        }
+
+        @Bean
+        public DeadLetterStore<UpdatedServiceAgreementTask> updatedServiceAgreementR2dbcDeadLetterStore(
+            ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            return new R2dbcDeadLetterStore<>(connectionFactory, objectMapper, UpdatedServiceAgreementTask.class,
+                "service-agreement");
+        }
+    }
+
     @Bean
     public UpdatedServiceAgreementUnitOfWorkExecutor updatedServiceAgreementUnitOfWorkExecutor(
         UpdatedServiceAgreementUnitOfWorkRepository updatedServiceAgreementUnitOfWorkRepository,
         UpdatedServiceAgreementSaga updatedServiceAgreementSaga,
-        UpdatedServiceAgreementSagaConfigurationProperties configProperties) {
+        UpdatedServiceAgreementSagaConfigurationProperties configProperties,
+        ObjectProvider<DeadLetterStore<UpdatedServiceAgreementTask>> updatedServiceAgreementDeadLetterStore) {
 
-        return new UpdatedServiceAgreementUnitOfWorkExecutor(updatedServiceAgreementUnitOfWorkRepository,
-            updatedServiceAgreementSaga, configProperties);
+        UpdatedServiceAgreementUnitOfWorkExecutor executor = new UpdatedServiceAgreementUnitOfWorkExecutor(
+            updatedServiceAgreementUnitOfWorkRepository, updatedServiceAgreementSaga, configProperties);
+        // Dead letters are kept in memory unless persisted next to the units of work
+        updatedServiceAgreementDeadLetterStore.ifAvailable(executor::setDeadLetterStore);
+        return executor;
     }
 
     public static class UpdatedServiceAgreementInMemoryUnitOfWorkRepository extends
         InMemoryReactiveUnitOfWorkRepository<UpdatedServiceAgreementTask> implements
         UpdatedServiceAgreementUnitOfWorkRepository {
 
+        public UpdatedServiceAgreementInMemoryUnitOfWorkRepository() {
+        }
+
+        public UpdatedServiceAgreementInMemoryUnitOfWorkRepository(
+            UnitOfWorkJournal<UpdatedServiceAgreementTask> journal) {
+            super(journal);
+        }
+    }
+
+    public static class UpdatedServiceAgreementR2dbcUnitOfWorkRepository extends
+        R2dbcUnitOfWorkRepository<UpdatedServiceAgreementTask> implements
+        UpdatedServiceAgreementUnitOfWorkRepository {
+
+        public UpdatedServiceAgreementR2dbcUnitOfWorkRepository(ConnectionFactory connectionFactory,
+            ObjectMapper objectMapper) {
+            super(connectionFactory, objectMapper, UpdatedServiceAgreementTask.class, "service-agreement");
+        }
     }
 }
@@ -2,8 +2,12 @@ package com.backbase.stream.mapper;
 
 import com.backbase.stream.LegalEntityTask;
 import com.backbase.stream.UpdatedServiceAgreementTask;
+import com.backbase.stream.legalentity.model.DeadLetterReplayResponse;
+import com.backbase.stream.legalentity.model.DeadLetterResponse;
 import com.backbase.stream.legalentity.model.LegalEntityResponse;
 import com.backbase.stream.legalentity.model.UpdatedServiceAgreementResponse;
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.deadletter.DeadLetterReplay;
 import com.backbase.stream.worker.model.UnitOfWork;
 import org.mapstruct.Mapper;
 
@@ -14,4 +18,8 @@ public interface UnitOfWorkMapper {
 
     UpdatedServiceAgreementResponse convertToUpdatedServiceAgreementResponse(
         UnitOfWork<UpdatedServiceAgreementTask> unitOfWork);
+
+    DeadLetterResponse convertToDeadLetterResponse(DeadLetter<?> deadLetter);
+
+    DeadLetterReplayResponse convertToDeadLetterReplayResponse(DeadLetterReplay deadLetterReplay);
 }
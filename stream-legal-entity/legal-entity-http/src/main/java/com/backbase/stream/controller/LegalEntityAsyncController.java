@@ -5,18 +5,24 @@ import com.backbase.stream.LegalEntityUnitOfWorkExecutor;
 import com.backbase.stream.UpdatedServiceAgreementTask;
 import com.backbase.stream.UpdatedServiceAgreementUnitOfWorkExecutor;
 import com.backbase.stream.legalentity.api.AsyncApi;
+import com.backbase.stream.legalentity.model.DeadLetterReplayResponse;
+import com.backbase.stream.legalentity.model.DeadLetterResponse;
 import com.backbase.stream.legalentity.model.LegalEntity;
 import com.backbase.stream.legalentity.model.LegalEntityResponse;
 import com.backbase.stream.legalentity.model.UpdatedServiceAgreement;
 import com.backbase.stream.legalentity.model.UpdatedServiceAgreementResponse;
 import com.backbase.stream.mapper.UnitOfWorkMapper;
+import com.backbase.stream.worker.UnitOfWorkExecutor;
 import com.backbase.stream.worker.model.UnitOfWork;
 import java.time.Duration;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.mapstruct.factory.Mappers;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ServerWebExchange;
@@ -61,25 +67,110 @@ public class LegalEntityAsyncController implements AsyncApi {
         Flux<UpdatedServiceAgreement> updatedServiceAgreement,
         ServerWebExchange exchange) {
         Flux<UpdatedServiceAgreementResponse> map = updatedServiceAgreement.bufferTimeout(10, Duration.ofMillis(100))
-            .map(this::createServiceAgreementUnitOfWork)
+            .flatMapIterable(this::createServiceAgreementUnitsOfWork)
             .flatMap(updatedServiceAgreementUnitOfWorkExecutor::register)
             .map(unitOfWorkMapper::convertToUpdatedServiceAgreementResponse);
         return Mono.just(ResponseEntity.ok(map));
     }
 
+    @Override
+    public Mono<ResponseEntity<Flux<DeadLetterResponse>>> getLegalEntityDeadLetters(String errorType, Integer limit,
+        ServerWebExchange exchange) {
+        Flux<DeadLetterResponse> deadLetters = legalEntityUnitOfWorkExecutor
+            .getDeadLetters(errorType, limitOrDefault(limit, 100))
+            .map(unitOfWorkMapper::convertToDeadLetterResponse);
+        return Mono.just(ResponseEntity.ok(deadLetters));
+    }
+
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> getLegalEntityDeadLetterReplay(
+        ServerWebExchange exchange) {
+        return getDeadLetterReplay(legalEntityUnitOfWorkExecutor);
+    }
+
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> replayLegalEntityDeadLetters(String errorType,
+        Integer limit, Integer rate, ServerWebExchange exchange) {
+        log.info("Replaying Legal Entity dead letters with error type: {}", errorType);
+        return startDeadLetterReplay(legalEntityUnitOfWorkExecutor, errorType, limit, rate);
+    }
+
+    @Override
+    public Mono<ResponseEntity<Flux<DeadLetterResponse>>> getServiceAgreementDeadLetters(String errorType,
+        Integer limit, ServerWebExchange exchange) {
+        Flux<DeadLetterResponse> deadLetters = updatedServiceAgreementUnitOfWorkExecutor
+            .getDeadLetters(errorType, limitOrDefault(limit, 100))
+            .map(unitOfWorkMapper::convertToDeadLetterResponse);
+        return Mono.just(ResponseEntity.ok(deadLetters));
+    }
+
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> getServiceAgreementDeadLetterReplay(
+        ServerWebExchange exchange) {
+        return getDeadLetterReplay(updatedServiceAgreementUnitOfWorkExecutor);
+    }
+
+    @Override
+    public Mono<ResponseEntity<DeadLetterReplayResponse>> replayServiceAgreementDeadLetters(
+        String errorType, Integer limit, Integer rate, ServerWebExchange exchange) {
+        log.info("Replaying Service Agreement dead letters with error type: {}", errorType);
+        return startDeadLetterReplay(updatedServiceAgreementUnitOfWorkExecutor, errorType, limit, rate);
+    }
+
+    private Mono<ResponseEntity<DeadLetterReplayResponse>> getDeadLetterReplay(UnitOfWorkExecutor<?> executor) {
+        return executor.getDeadLetterReplay()
+            .map(unitOfWorkMapper::convertToDeadLetterReplayResponse)
+            .map(ResponseEntity::ok)
+            .defaultIfEmpty(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Replays run in the background, a request to replay while a replay is running gets the running one back.
+     */
+    private Mono<ResponseEntity<DeadLetterReplayResponse>> startDeadLetterReplay(UnitOfWorkExecutor<?> executor,
+        String errorType, Integer limit, Integer rate) {
+        return executor.startDeadLetterReplay(errorType, limitOrDefault(limit, 1000), rate != null ? rate : 0)
+            .map(replay -> ResponseEntity.accepted().body(unitOfWorkMapper.convertToDeadLetterReplayResponse(replay)))
+            .switchIfEmpty(executor.getDeadLetterReplay()
+                .map(running -> ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(unitOfWorkMapper.convertToDeadLetterReplayResponse(running))));
+    }
+
+    private static int limitOrDefault(Integer limit, int defaultLimit) {
+        return limit != null ? limit : defaultLimit;
+    }
+
     private UnitOfWork<LegalEntityTask> createUnitOfWork(List<LegalEntity> legalEntities) {
         List<LegalEntityTask> tasks = legalEntities.stream()
             .map(LegalEntityTask::new)
             .collect(Collectors.toList());
-        return UnitOfWork.from("http-" + System.currentTimeMillis(), tasks);
+        UnitOfWork<LegalEntityTask> unitOfWork = UnitOfWork.from("http-" + System.currentTimeMillis(), tasks);
+        unitOfWork.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        return unitOfWork;
     }
 
-    private UnitOfWork<UpdatedServiceAgreementTask> createServiceAgreementUnitOfWork(
+    /**
+     * Creates a unit of work per service agreement, partitioned by service agreement, so updates of the same service
+     * agreement are applied in order.
+     */
+    private List<UnitOfWork<UpdatedServiceAgreementTask>> createServiceAgreementUnitsOfWork(
         List<UpdatedServiceAgreement> serviceAgreements) {
-        List<UpdatedServiceAgreementTask> tasks = serviceAgreements.stream()
-            .map(UpdatedServiceAgreementTask::new)
+        long now = System.currentTimeMillis();
+        Map<String, List<UpdatedServiceAgreement>> perServiceAgreement = serviceAgreements.stream()
+            .collect(Collectors.groupingBy(UpdatedServiceAgreement::getExternalId, LinkedHashMap::new,
+                Collectors.toList()));
+        return perServiceAgreement.entrySet().stream()
+            .map(entry -> {
+                List<UpdatedServiceAgreementTask> tasks = entry.getValue().stream()
+                    .map(UpdatedServiceAgreementTask::new)
+                    .collect(Collectors.toList());
+                UnitOfWork<UpdatedServiceAgreementTask> unitOfWork =
+                    UnitOfWork.from("http-" + now + "-" + entry.getKey(), tasks);
+                unitOfWork.setPriority(UnitOfWork.Priority.INTERACTIVE);
+                unitOfWork.setPartitionKey(entry.getKey());
+                return unitOfWork;
+            })
             .collect(Collectors.toList());
-        return UnitOfWork.from("http-" + System.currentTimeMillis(), tasks);
     }
 
 }
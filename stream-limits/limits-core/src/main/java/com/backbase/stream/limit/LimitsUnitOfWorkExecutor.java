@@ -12,7 +12,16 @@ import reactor.core.publisher.Flux;
 public class LimitsUnitOfWorkExecutor extends UnitOfWorkExecutor<LimitsTask> {
 
     public LimitsUnitOfWorkExecutor(UnitOfWorkRepository<LimitsTask, String> repository, StreamTaskExecutor<LimitsTask> streamTaskExecutor, StreamWorkerConfiguration streamWorkerConfiguration) {
-        super(repository, streamTaskExecutor, streamWorkerConfiguration);
+        super(repository, streamTaskExecutor, streamWorkerConfiguration, "limits");
+    }
+
+    /**
+     * Limits are only executed directly. Callers retry failed limits by sending them again, so the scheduler must not
+     * pick up failed units of work and create their limits a second time.
+     */
+    @Override
+    public boolean isAutoStartup() {
+        return false;
     }
 
     public Flux<UnitOfWork<LimitsTask>> prepareUnitOfWork(List<CreateLimitRequestBody> items) {
@@ -0,0 +1,165 @@
+package com.backbase.stream.worker.repository.r2dbc;
+
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.deadletter.DeadLetterStore;
+import com.backbase.stream.worker.model.StreamTask;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.OffsetDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.Map;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Dead letter store keeping dead letters in a relational database through R2DBC, next to the units of work of a
+ * {@link R2dbcUnitOfWorkRepository}. Dead letters of all executors live in the same table, separated by unit type.
+ * Dead letters are stored as JSON, with their error type and failure time in columns of their own to filter and order
+ * them by.
+ *
+ * <p>The table is created by {@link R2dbcUnitOfWorkRepository#SCHEMA_LOCATION} as well.</p>
+ *
+ * @param <T> Stream Task type
+ */
+@SuppressWarnings("NullableProblems")
+public class R2dbcDeadLetterStore<T extends StreamTask> implements DeadLetterStore<T> {
+
+    private static final String SELECT = "SELECT dead_letter FROM unit_of_work_dead_letter "
+        + "WHERE unit_type = :unitType";
+
+    private static final String UPDATE = "UPDATE unit_of_work_dead_letter SET error_type = :errorType, "
+        + "failed_at = :failedAt, dead_letter = :deadLetter WHERE unit_type = :unitType AND id = :id";
+
+    private static final String INSERT = "INSERT INTO unit_of_work_dead_letter (unit_type, id, error_type, failed_at, "
+        + "dead_letter) VALUES (:unitType, :id, :errorType, :failedAt, :deadLetter)";
+
+    private static final String DELETE = "DELETE FROM unit_of_work_dead_letter WHERE unit_type = :unitType "
+        + "AND id = :id";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final JavaType deadLetterType;
+    private final String unitType;
+
+    /**
+     * Create a dead letter store for a single type of units of work.
+     *
+     * @param connectionFactory R2DBC connection factory
+     * @param objectMapper      Object Mapper used to store dead letters as JSON
+     * @param taskType          Stream Task type, must be deserializable by the object mapper
+     * @param unitType          Name separating the dead letters of this store from others in the same table, the unit
+     *                          type of the matching unit of work repository
+     */
+    public R2dbcDeadLetterStore(ConnectionFactory connectionFactory, ObjectMapper objectMapper, Class<T> taskType,
+        String unitType) {
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.objectMapper = objectMapper.copy()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.deadLetterType = this.objectMapper.getTypeFactory().constructParametricType(DeadLetter.class, taskType);
+        this.unitType = unitType;
+    }
+
+    /**
+     * Updates the dead letter of the unit of work, inserting it when there is none yet.
+     */
+    @Override
+    public Mono<DeadLetter<T>> save(DeadLetter<T> deadLetter) {
+        Mono<DeadLetter<T>> saved = Mono.fromCallable(() -> writeDeadLetter(deadLetter))
+            .flatMap(json -> bindDeadLetter(databaseClient.sql(UPDATE), deadLetter, json)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rowsUpdated -> rowsUpdated > 0
+                    ? Mono.just(rowsUpdated)
+                    : bindDeadLetter(databaseClient.sql(INSERT), deadLetter, json)
+                        .fetch()
+                        .rowsUpdated()))
+            .thenReturn(deadLetter);
+        return transactionalOperator.transactional(saved);
+    }
+
+    @Override
+    public Mono<DeadLetter<T>> findById(String unitOfWorkId) {
+        return databaseClient.sql(SELECT + " AND id = :id")
+            .bind("unitType", unitType)
+            .bind("id", unitOfWorkId)
+            .map(row -> readDeadLetter(row.get("dead_letter", String.class)))
+            .one();
+    }
+
+    @Override
+    public Flux<DeadLetter<T>> findAll(String errorType, int maxResults) {
+        DatabaseClient.GenericExecuteSpec select = databaseClient.sql(SELECT
+                + (errorType != null ? " AND error_type = :errorType" : "")
+                + " ORDER BY failed_at, id LIMIT :limit")
+            .bind("unitType", unitType)
+            .bind("limit", maxResults);
+        if (errorType != null) {
+            select = select.bind("errorType", errorType);
+        }
+        return select
+            .map(row -> readDeadLetter(row.get("dead_letter", String.class)))
+            .all();
+    }
+
+    @Override
+    public Mono<Void> deleteById(String unitOfWorkId) {
+        return databaseClient.sql(DELETE)
+            .bind("unitType", unitType)
+            .bind("id", unitOfWorkId)
+            .fetch()
+            .rowsUpdated()
+            .then();
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countByErrorType() {
+        return databaseClient.sql("SELECT error_type, COUNT(*) AS dead_letters FROM unit_of_work_dead_letter "
+                + "WHERE unit_type = :unitType GROUP BY error_type")
+            .bind("unitType", unitType)
+            .map(row -> new SimpleImmutableEntry<>(row.get("error_type", String.class),
+                row.get("dead_letters", Long.class)))
+            .all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    private DatabaseClient.GenericExecuteSpec bindDeadLetter(DatabaseClient.GenericExecuteSpec statement,
+        DeadLetter<T> deadLetter, String json) {
+        DatabaseClient.GenericExecuteSpec bound = statement
+            .bind("unitType", unitType)
+            .bind("id", deadLetter.getUnitOfWorkId())
+            .bind("errorType", deadLetter.getErrorType())
+            .bind("deadLetter", json);
+        return deadLetter.getFailedAt() != null
+            ? bound.bind("failedAt", deadLetter.getFailedAt())
+            : bound.bindNull("failedAt", OffsetDateTime.class);
+    }
+
+    private String writeDeadLetter(DeadLetter<T> deadLetter) {
+        try {
+            return objectMapper.writeValueAsString(deadLetter);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write dead letter of unit type: " + unitType, e);
+        }
+    }
+
+    private DeadLetter<T> readDeadLetter(String deadLetter) {
+        try {
+            return objectMapper.readValue(deadLetter, deadLetterType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read dead letter of unit type: " + unitType, e);
+        }
+    }
+
+}
@@ -0,0 +1,665 @@
+package com.backbase.stream.worker.repository.r2dbc;
+
+import com.backbase.stream.worker.exception.LockLostException;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.repository.UnitOfWorkRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Row;
+import io.r2dbc.spi.Statement;
+import java.time.OffsetDateTime;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.r2dbc.connection.R2dbcTransactionManager;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Unit Of Work Repository storing units of work in a relational database through R2DBC, so multiple workers can share
+ * a single queue. Units of work of all executors live in the same table, separated by unit type. Stream tasks are
+ * stored as JSON.
+ *
+ * <p>Due units of work are claimed with {@code SELECT ... FOR UPDATE SKIP LOCKED}, so concurrent workers neither block
+ * on nor claim the same rows. For databases without SKIP LOCKED support, such as H2, it can be disabled to fall back to
+ * plain row locks. Units of work held back by an earlier unfinished unit of work with the same partition key are not
+ * claimed.</p>
+ *
+ * <p>Locks record the node holding them. Nodes renew their locks by heartbeat, locks which are not renewed expire and
+ * are released by any other node sharing the table. Units of work read before are only updated while they still have
+ * the version they were read with and are not locked by another node, so a node which lost its lock cannot overwrite
+ * the progress of the node which took over.</p>
+ *
+ * <p>The table is created by {@code classpath:db/stream-worker/unit-of-work.sql}, for example by adding it to
+ * {@code spring.sql.init.schema-locations}.</p>
+ *
+ * @param <T> Stream Task type
+ */
+@Slf4j
+@SuppressWarnings("NullableProblems")
+public class R2dbcUnitOfWorkRepository<T extends StreamTask> implements UnitOfWorkRepository<T, String> {
+
+    public static final String SCHEMA_LOCATION = "classpath:db/stream-worker/unit-of-work.sql";
+
+    private static final String FINISHED_STATES = Arrays.stream(UnitOfWork.State.values())
+        .filter(UnitOfWork.State::isFinished)
+        .map(state -> "'" + state.name() + "'")
+        .collect(Collectors.joining(", ", "(", ")"));
+
+    private static final String SELECT = "SELECT * FROM unit_of_work WHERE unit_type = :unitType";
+
+    private static final String SELECT_DUE = SELECT
+        + " AND next_attempt_at < :now AND state NOT IN " + FINISHED_STATES
+        + " ORDER BY next_attempt_at";
+
+    private static final String PARTITION_HEAD = " AND (partition_key IS NULL OR NOT EXISTS (SELECT 1 "
+        + "FROM unit_of_work earlier WHERE earlier.unit_type = unit_of_work.unit_type "
+        + "AND earlier.partition_key = unit_of_work.partition_key AND earlier.state NOT IN " + FINISHED_STATES
+        + " AND (earlier.registered_at < unit_of_work.registered_at "
+        + "OR earlier.registered_at = unit_of_work.registered_at AND earlier.id < unit_of_work.id)))";
+
+    private static final String CLAIMABLE = " AND locked_at IS NULL AND next_attempt_at <= :now AND state NOT IN "
+        + FINISHED_STATES + PARTITION_HEAD + " ORDER BY next_attempt_at LIMIT :limit FOR UPDATE";
+
+    private static final String SELECT_PARTITION_HEADS = "SELECT id FROM unit_of_work WHERE unit_type = :unitType "
+        + "AND partition_key IS NOT NULL AND state NOT IN " + FINISHED_STATES + PARTITION_HEAD;
+
+    private static final String SELECT_CLAIMABLE = SELECT + CLAIMABLE;
+
+    private static final String SELECT_CLAIMABLE_LANE = SELECT + " AND priority = :priority" + CLAIMABLE;
+
+    private static final String SELECT_EXHAUSTED = SELECT + " AND state = 'FAILED_RETRIES_EXHAUSTED' "
+        + "AND locked_at IS NULL ORDER BY finished_at LIMIT :limit FOR UPDATE";
+
+    // Interrupted rollbacks are claimed for rollback again, everything else is executed again
+    private static final String RELEASED_STATE = "state = CASE WHEN state = 'ROLLBACK_IN_PROGRESS' "
+        + "THEN 'FAILED_RETRIES_EXHAUSTED' ELSE 'ACCEPTED' END";
+
+    // Rows claimed by a concurrent transaction while waiting for the row lock are not updated
+    private static final String LOCK_CLAIMED = "UPDATE unit_of_work SET locked_at = $1, locked_by = $2, state = $3, "
+        + "version = $4 WHERE unit_type = $5 AND id = $6 AND version = $7 AND locked_at IS NULL";
+
+    private static final String HELD_LOCKS = " WHERE unit_type = :unitType AND locked_by = :lockedBy "
+        + "AND id IN (:ids) AND locked_at IS NOT NULL AND state NOT IN " + FINISHED_STATES;
+
+    private static final String RENEW_LOCKS = "UPDATE unit_of_work SET locked_at = :now" + HELD_LOCKS;
+
+    private static final String SELECT_HELD_LOCKS = "SELECT id FROM unit_of_work" + HELD_LOCKS;
+
+    private static final String RELEASE_LOCKS = "UPDATE unit_of_work SET locked_at = NULL, locked_by = NULL, "
+        + RELEASED_STATE + ", next_attempt_at = COALESCE(next_attempt_at, :now), version = version + 1 "
+        + "WHERE unit_type = :unitType AND locked_by = :lockedBy AND id IN (:ids) AND locked_at IS NOT NULL "
+        + "AND state NOT IN " + FINISHED_STATES;
+
+    private static final String RELEASE_EXPIRED_LOCKS = "UPDATE unit_of_work SET locked_at = NULL, "
+        + "locked_by = NULL, " + RELEASED_STATE + ", next_attempt_at = COALESCE(next_attempt_at, :lockedBefore), "
+        + "version = version + 1 WHERE unit_type = :unitType AND locked_at < :lockedBefore "
+        + "AND state NOT IN " + FINISHED_STATES;
+
+    // Update and insert share the order of their bind markers
+    private static final String UPDATE = "UPDATE unit_of_work SET state = $1, registered_at = $2, locked_at = $3, "
+        + "next_attempt_at = $4, started_at = $5, finished_at = $6, retries = $7, version = $8, stream_tasks = $9, "
+        + "priority = $10, partition_key = $11, locked_by = $12 WHERE unit_type = $13 AND id = $14";
+
+    // Claims and releases move the version on, renewals do not. Locked units of work are only saved by their holder.
+    private static final String UPDATE_FENCED = UPDATE + " AND version = $15 "
+        + "AND (locked_by IS NULL OR $12 IS NULL OR locked_by = $12)";
+
+    private static final String INSERT = "INSERT INTO unit_of_work (state, registered_at, locked_at, "
+        + "next_attempt_at, started_at, finished_at, retries, version, stream_tasks, priority, partition_key, "
+        + "locked_by, unit_type, id) VALUES ($1, $2, $3, $4, $5, $6, $7, $8, $9, $10, $11, $12, $13, $14)";
+
+    private static final String COUNT = "SELECT COUNT(*) FROM unit_of_work WHERE unit_type = :unitType";
+
+    private static final String DELETE = "DELETE FROM unit_of_work WHERE unit_type = :unitType";
+
+    private static final String DELETE_FINISHED_BEFORE = DELETE
+        + " AND state IN " + FINISHED_STATES + " AND finished_at < :finishedBefore";
+
+    private static final String DELETE_FINISHED_EXCEEDING = DELETE + " AND id IN (SELECT id FROM unit_of_work "
+        + "WHERE unit_type = :unitType AND state IN " + FINISHED_STATES
+        + " ORDER BY finished_at DESC NULLS LAST OFFSET :maxFinished ROWS)";
+
+    private final DatabaseClient databaseClient;
+    private final TransactionalOperator transactionalOperator;
+    private final ObjectMapper objectMapper;
+    private final JavaType streamTasksType;
+    private final String unitType;
+
+    private boolean skipLocked = true;
+    private int batchSize = 100;
+
+    /**
+     * Create a repository for a single type of units of work.
+     *
+     * @param connectionFactory R2DBC connection factory
+     * @param objectMapper      Object Mapper used to store stream tasks as JSON
+     * @param taskType          Stream Task type, must be deserializable by the object mapper
+     * @param unitType          Name separating the units of work of this repository from others in the same table
+     */
+    public R2dbcUnitOfWorkRepository(ConnectionFactory connectionFactory, ObjectMapper objectMapper,
+        Class<T> taskType, String unitType) {
+        this.databaseClient = DatabaseClient.create(connectionFactory);
+        this.transactionalOperator = TransactionalOperator.create(new R2dbcTransactionManager(connectionFactory));
+        this.objectMapper = objectMapper.copy()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.streamTasksType = this.objectMapper.getTypeFactory().constructCollectionType(List.class, taskType);
+        this.unitType = unitType;
+    }
+
+    /**
+     * Use {@code SKIP LOCKED} when claiming due units of work. Enabled by default.
+     *
+     * @param skipLocked false for databases not supporting {@code SKIP LOCKED}
+     */
+    public void setSkipLocked(boolean skipLocked) {
+        this.skipLocked = skipLocked;
+    }
+
+    /**
+     * Maximum number of units of work written in a single batch when saving a stream of units of work.
+     *
+     * @param batchSize batch size
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAllByRegisteredAtBefore(OffsetDateTime currentDateTime) {
+        return databaseClient.sql(SELECT + " AND registered_at < :now")
+            .bind("unitType", unitType)
+            .bind("now", currentDateTime)
+            .map(this::toUnitOfWork)
+            .all();
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAllByNextAttemptAtBefore(OffsetDateTime currentDateTime) {
+        return databaseClient.sql(SELECT_DUE)
+            .bind("unitType", unitType)
+            .bind("now", currentDateTime)
+            .map(this::toUnitOfWork)
+            .all();
+    }
+
+    /**
+     * Locks due units of work in a single transaction. Rows locked by a concurrent claim are skipped rather than waited
+     * for, so workers sharing the table each claim different units of work.
+     */
+    @Override
+    public Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork) {
+        return claim(databaseClient.sql(skipLocked ? SELECT_CLAIMABLE + " SKIP LOCKED" : SELECT_CLAIMABLE)
+            .bind("unitType", unitType)
+            .bind("now", now)
+            .bind("limit", maxUnitsOfWork), now, null, UnitOfWork.State.IN_PROGRESS);
+    }
+
+    /**
+     * Locks due units of work of a single priority lane, like {@link #claimDue(OffsetDateTime, int)}.
+     */
+    @Override
+    public Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork, UnitOfWork.Priority priority,
+        String lockedBy) {
+        return claim(databaseClient.sql(skipLocked ? SELECT_CLAIMABLE_LANE + " SKIP LOCKED" : SELECT_CLAIMABLE_LANE)
+            .bind("unitType", unitType)
+            .bind("priority", priority.name())
+            .bind("now", now)
+            .bind("limit", maxUnitsOfWork), now, lockedBy, UnitOfWork.State.IN_PROGRESS);
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> claimExhausted(OffsetDateTime now, int maxUnitsOfWork, String lockedBy) {
+        return claim(databaseClient.sql(skipLocked ? SELECT_EXHAUSTED + " SKIP LOCKED" : SELECT_EXHAUSTED)
+            .bind("unitType", unitType)
+            .bind("limit", maxUnitsOfWork), now, lockedBy, UnitOfWork.State.ROLLBACK_IN_PROGRESS);
+    }
+
+    private Flux<UnitOfWork<T>> claim(DatabaseClient.GenericExecuteSpec selectClaimable, OffsetDateTime now,
+        String lockedBy, UnitOfWork.State state) {
+        Flux<UnitOfWork<T>> claimed = selectClaimable
+            .map(this::toUnitOfWork)
+            .all()
+            .collectList()
+            .flatMapMany(unitsOfWork -> {
+                if (unitsOfWork.isEmpty()) {
+                    return Flux.empty();
+                }
+                unitsOfWork.forEach(unitOfWork -> {
+                    unitOfWork.setLockedAt(now);
+                    unitOfWork.setLockedBy(lockedBy);
+                    unitOfWork.setState(state);
+                    unitOfWork.setVersion(unitOfWork.getVersion() + 1);
+                });
+                return executeBatch(LOCK_CLAIMED, unitsOfWork, this::bindLock)
+                    .collectList()
+                    .flatMapMany(rowsUpdated -> Flux.range(0, unitsOfWork.size())
+                        .filter(i -> rowsUpdated.get(i) == 1)
+                        .map(unitsOfWork::get));
+            });
+        return transactionalOperator.transactional(claimed);
+    }
+
+    /**
+     * Renews the held locks with a single update, then reads which of them are held in the same transaction.
+     */
+    @Override
+    public Mono<Set<String>> renewLocks(String lockedBy, Collection<String> unitOfWorkIds, OffsetDateTime now) {
+        if (unitOfWorkIds.isEmpty()) {
+            return Mono.just(Collections.emptySet());
+        }
+        Mono<Set<String>> lost = databaseClient.sql(RENEW_LOCKS)
+            .bind("now", now)
+            .bind("unitType", unitType)
+            .bind("lockedBy", lockedBy)
+            .bind("ids", unitOfWorkIds)
+            .fetch()
+            .rowsUpdated()
+            .then(databaseClient.sql(SELECT_HELD_LOCKS)
+                .bind("unitType", unitType)
+                .bind("lockedBy", lockedBy)
+                .bind("ids", unitOfWorkIds)
+                .map(row -> row.get("id", String.class))
+                .all()
+                .<Set<String>>collect(() -> new LinkedHashSet<>(unitOfWorkIds), Set::remove));
+        return transactionalOperator.transactional(lost);
+    }
+
+    @Override
+    public Mono<Long> releaseLocks(String lockedBy, Collection<String> unitOfWorkIds) {
+        if (unitOfWorkIds.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return databaseClient.sql(RELEASE_LOCKS)
+            .bind("now", OffsetDateTime.now())
+            .bind("unitType", unitType)
+            .bind("lockedBy", lockedBy)
+            .bind("ids", unitOfWorkIds)
+            .fetch()
+            .rowsUpdated()
+            .map(Integer::longValue);
+    }
+
+    /**
+     * Releases expired locks with a single update, without loading any unit of work.
+     */
+    @Override
+    public Mono<Long> releaseExpiredLocks(OffsetDateTime lockedBefore) {
+        return databaseClient.sql(RELEASE_EXPIRED_LOCKS)
+            .bind("lockedBefore", lockedBefore)
+            .bind("unitType", unitType)
+            .fetch()
+            .rowsUpdated()
+            .map(Integer::longValue);
+    }
+
+    @Override
+    public <S extends UnitOfWork<T>> Mono<S> save(S entity) {
+        return saveAll(Collections.singletonList(entity)).next();
+    }
+
+    /**
+     * Saves all units of work in at most three batches. Units of work read from the repository before are updated
+     * fenced by the version they were read with, failing all of them with a {@link LockLostException} when any of them
+     * changed in the mean time. New units of work are updated when they exist and inserted otherwise. Units of work
+     * move on to their next version once the transaction committed, so a failed save can be retried as it was.
+     */
+    @Override
+    public <S extends UnitOfWork<T>> Flux<S> saveAll(Iterable<S> entities) {
+        List<S> unitsOfWork = new ArrayList<>();
+        entities.forEach(unitsOfWork::add);
+        if (unitsOfWork.isEmpty()) {
+            return Flux.empty();
+        }
+        List<S> readUnitsOfWork = new ArrayList<>();
+        List<S> newUnitsOfWork = new ArrayList<>();
+        unitsOfWork.forEach(unitOfWork -> {
+            if (unitOfWork.getUnitOfOWorkId() == null) {
+                unitOfWork.setUnitOfOWorkId(UUID.randomUUID().toString());
+            }
+            (unitOfWork.getVersion() == 0 ? newUnitsOfWork : readUnitsOfWork).add(unitOfWork);
+        });
+        Mono<Void> saved = updateFenced(readUnitsOfWork)
+            .then(upsert(newUnitsOfWork));
+        // Completion of the transactional publisher follows the commit
+        return transactionalOperator.transactional(saved)
+            .then(Mono.fromRunnable(() -> unitsOfWork.forEach(unitOfWork ->
+                unitOfWork.setVersion(unitOfWork.getVersion() + 1))))
+            .thenMany(Flux.fromIterable(unitsOfWork));
+    }
+
+    private <S extends UnitOfWork<T>> Mono<Void> updateFenced(List<S> unitsOfWork) {
+        if (unitsOfWork.isEmpty()) {
+            return Mono.empty();
+        }
+        return executeBatch(UPDATE_FENCED, unitsOfWork, this::bindFencedUnitOfWork)
+            .collectList()
+            .flatMap(rowsUpdated -> {
+                List<String> lost = new ArrayList<>();
+                for (int i = 0; i < unitsOfWork.size(); i++) {
+                    if (rowsUpdated.get(i) == 0) {
+                        lost.add(unitsOfWork.get(i).getUnitOfOWorkId());
+                    }
+                }
+                return lost.isEmpty() ? Mono.empty() : Mono.error(new LockLostException(lost));
+            });
+    }
+
+    private <S extends UnitOfWork<T>> Mono<Void> upsert(List<S> unitsOfWork) {
+        if (unitsOfWork.isEmpty()) {
+            return Mono.empty();
+        }
+        return executeBatch(UPDATE, unitsOfWork, this::bindUnitOfWork)
+            .collectList()
+            .flatMap(rowsUpdated -> {
+                List<S> insertedUnitsOfWork = new ArrayList<>();
+                for (int i = 0; i < unitsOfWork.size(); i++) {
+                    if (rowsUpdated.get(i) == 0) {
+                        insertedUnitsOfWork.add(unitsOfWork.get(i));
+                    }
+                }
+                return insertedUnitsOfWork.isEmpty()
+                    ? Mono.empty()
+                    : executeBatch(INSERT, insertedUnitsOfWork, this::bindUnitOfWork).then();
+            });
+    }
+
+    @Override
+    public <S extends UnitOfWork<T>> Flux<S> saveAll(Publisher<S> entityStream) {
+        return Flux.from(entityStream)
+            .buffer(batchSize)
+            .concatMap(unitsOfWork -> saveAll((Iterable<S>) unitsOfWork));
+    }
+
+    @Override
+    public Mono<UnitOfWork<T>> findById(String unitOfWorkId) {
+        return databaseClient.sql(SELECT + " AND id = :id")
+            .bind("unitType", unitType)
+            .bind("id", unitOfWorkId)
+            .map(this::toUnitOfWork)
+            .one();
+    }
+
+    @Override
+    public Mono<UnitOfWork<T>> findById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(String unitOfWorkId) {
+        return databaseClient.sql(COUNT + " AND id = :id")
+            .bind("unitType", unitType)
+            .bind("id", unitOfWorkId)
+            .map(row -> row.get(0, Long.class))
+            .one()
+            .map(count -> count > 0);
+    }
+
+    @Override
+    public Mono<Boolean> existsById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::existsById);
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAll() {
+        return databaseClient.sql(SELECT)
+            .bind("unitType", unitType)
+            .map(this::toUnitOfWork)
+            .all();
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAll(Sort sort) {
+        return findAll();
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAllById(Iterable<String> ids) {
+        return Flux.fromIterable(ids).concatMap(this::findById);
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> findAllById(Publisher<String> idStream) {
+        return Flux.from(idStream).concatMap(this::findById);
+    }
+
+    @Override
+    public Mono<Long> count() {
+        return databaseClient.sql(COUNT)
+            .bind("unitType", unitType)
+            .map(row -> row.get(0, Long.class))
+            .one();
+    }
+
+    @Override
+    public Mono<Map<UnitOfWork.State, Long>> countByState() {
+        return databaseClient.sql("SELECT state, COUNT(*) AS units FROM unit_of_work WHERE unit_type = :unitType "
+                + "GROUP BY state")
+            .bind("unitType", unitType)
+            .map(row -> new SimpleImmutableEntry<>(UnitOfWork.State.valueOf(row.get("state", String.class)),
+                row.get("units", Long.class)))
+            .all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    @Override
+    public Mono<Set<String>> findPartitionHeads() {
+        return databaseClient.sql(SELECT_PARTITION_HEADS)
+            .bind("unitType", unitType)
+            .map(row -> row.get("id", String.class))
+            .all()
+            .collect(HashSet::new, Set::add);
+    }
+
+    @Override
+    public Mono<Map<UnitOfWork.Priority, Long>> countWaitingByPriority() {
+        return databaseClient.sql("SELECT priority, COUNT(*) AS units FROM unit_of_work WHERE unit_type = :unitType "
+                + "AND locked_at IS NULL AND next_attempt_at IS NOT NULL AND state NOT IN " + FINISHED_STATES
+                + " GROUP BY priority")
+            .bind("unitType", unitType)
+            .map(row -> new SimpleImmutableEntry<>(UnitOfWork.Priority.valueOf(row.get("priority", String.class)),
+                row.get("units", Long.class)))
+            .all()
+            .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+
+    /**
+     * Evicts finished units of work with at most two deletes, without loading any of them.
+     */
+    @Override
+    public Mono<Long> deleteFinished(OffsetDateTime finishedBefore, int maxFinished) {
+        Mono<Integer> byAge = finishedBefore == null
+            ? Mono.just(0)
+            : databaseClient.sql(DELETE_FINISHED_BEFORE)
+                .bind("unitType", unitType)
+                .bind("finishedBefore", finishedBefore)
+                .fetch()
+                .rowsUpdated();
+        Mono<Integer> byCount = maxFinished < 0
+            ? Mono.just(0)
+            : databaseClient.sql(DELETE_FINISHED_EXCEEDING)
+                .bind("unitType", unitType)
+                .bind("maxFinished", maxFinished)
+                .fetch()
+                .rowsUpdated();
+        return byAge.flatMap(aged -> byCount.map(exceeding -> (long) aged + exceeding));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String unitOfWorkId) {
+        return databaseClient.sql(DELETE + " AND id = :id")
+            .bind("unitType", unitType)
+            .bind("id", unitOfWorkId)
+            .fetch()
+            .rowsUpdated()
+            .then();
+    }
+
+    @Override
+    public Mono<Void> deleteById(Publisher<String> id) {
+        return Mono.from(id).flatMap(this::deleteById);
+    }
+
+    @Override
+    public Mono<Void> delete(UnitOfWork<T> entity) {
+        return deleteById(entity.getUnitOfOWorkId());
+    }
+
+    @Override
+    public Mono<Void> deleteAllById(Iterable<? extends String> ids) {
+        return Flux.fromIterable(ids).concatMap(this::deleteById).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Iterable<? extends UnitOfWork<T>> entities) {
+        return Flux.fromIterable(entities).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll(Publisher<? extends UnitOfWork<T>> entityStream) {
+        return Flux.from(entityStream).concatMap(this::delete).then();
+    }
+
+    @Override
+    public Mono<Void> deleteAll() {
+        return databaseClient.sql(DELETE)
+            .bind("unitType", unitType)
+            .fetch()
+            .rowsUpdated()
+            .then();
+    }
+
+    /**
+     * Executes a statement once for every item as a single batch.
+     *
+     * @return number of updated rows per item
+     */
+    private <E> Flux<Integer> executeBatch(String sql, List<E> items, BiConsumer<Statement, E> binder) {
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement(sql);
+            for (int i = 0; i < items.size(); i++) {
+                if (i > 0) {
+                    statement.add();
+                }
+                binder.accept(statement, items.get(i));
+            }
+            return Flux.from(statement.execute()).concatMap(Result::getRowsUpdated);
+        });
+    }
+
+    private void bindLock(Statement statement, UnitOfWork<T> unitOfWork) {
+        statement.bind(0, unitOfWork.getLockedAt());
+        bind(statement, 1, unitOfWork.getLockedBy());
+        statement.bind(2, unitOfWork.getState().name());
+        statement.bind(3, unitOfWork.getVersion());
+        statement.bind(4, unitType);
+        statement.bind(5, unitOfWork.getUnitOfOWorkId());
+        statement.bind(6, unitOfWork.getVersion() - 1);
+    }
+
+    /**
+     * Binds a unit of work with its next version, which the unit of work takes once the save committed.
+     */
+    private void bindUnitOfWork(Statement statement, UnitOfWork<T> unitOfWork) {
+        statement.bind(0, unitOfWork.getState().name());
+        bind(statement, 1, unitOfWork.getRegisteredAt());
+        bind(statement, 2, unitOfWork.getLockedAt());
+        bind(statement, 3, unitOfWork.getNextAttemptAt());
+        bind(statement, 4, unitOfWork.getStartedAt());
+        bind(statement, 5, unitOfWork.getFinishedAt());
+        statement.bind(6, unitOfWork.getRetries());
+        statement.bind(7, unitOfWork.getVersion() + 1);
+        statement.bind(8, writeStreamTasks(unitOfWork.getStreamTasks()));
+        statement.bind(9, UnitOfWork.priorityOf(unitOfWork).name());
+        bind(statement, 10, unitOfWork.getPartitionKey());
+        bind(statement, 11, unitOfWork.getLockedBy());
+        statement.bind(12, unitType);
+        statement.bind(13, unitOfWork.getUnitOfOWorkId());
+    }
+
+    /**
+     * Binds the next version of a unit of work, fenced by the version it was read with.
+     */
+    private void bindFencedUnitOfWork(Statement statement, UnitOfWork<T> unitOfWork) {
+        bindUnitOfWork(statement, unitOfWork);
+        statement.bind(14, unitOfWork.getVersion());
+    }
+
+    private static void bind(Statement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index, String.class);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+
+    private static void bind(Statement statement, int index, OffsetDateTime value) {
+        if (value == null) {
+            statement.bindNull(index, OffsetDateTime.class);
+        } else {
+            statement.bind(index, value);
+        }
+    }
+
+    private UnitOfWork<T> toUnitOfWork(Row row) {
+        UnitOfWork<T> unitOfWork = new UnitOfWork<>();
+        unitOfWork.setUnitOfOWorkId(row.get("id", String.class));
+        unitOfWork.setState(UnitOfWork.State.valueOf(row.get("state", String.class)));
+        unitOfWork.setPriority(UnitOfWork.Priority.valueOf(row.get("priority", String.class)));
+        unitOfWork.setPartitionKey(row.get("partition_key", String.class));
+        unitOfWork.setRegisteredAt(row.get("registered_at", OffsetDateTime.class));
+        unitOfWork.setLockedAt(row.get("locked_at", OffsetDateTime.class));
+        unitOfWork.setLockedBy(row.get("locked_by", String.class));
+        unitOfWork.setNextAttemptAt(row.get("next_attempt_at", OffsetDateTime.class));
+        unitOfWork.setStartedAt(row.get("started_at", OffsetDateTime.class));
+        unitOfWork.setFinishedAt(row.get("finished_at", OffsetDateTime.class));
+        unitOfWork.setRetries(row.get("retries", Integer.class));
+        unitOfWork.setVersion(row.get("version", Long.class));
+        unitOfWork.setStreamTasks(readStreamTasks(row.get("stream_tasks", String.class)));
+        return unitOfWork;
+    }
+
+    private String writeStreamTasks(List<T> streamTasks) {
+        try {
+            return objectMapper.writeValueAsString(streamTasks);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to write stream tasks of unit type: " + unitType, e);
+        }
+    }
+
+    private List<T> readStreamTasks(String streamTasks) {
+        if (streamTasks == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return objectMapper.readValue(streamTasks, streamTasksType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to read stream tasks of unit type: " + unitType, e);
+        }
+    }
+
+}
@@ -0,0 +1,45 @@
+CREATE TABLE IF NOT EXISTS unit_of_work
+(
+    unit_type       VARCHAR(64)              NOT NULL,
+    id              VARCHAR(255)             NOT NULL,
+    state           VARCHAR(32)              NOT NULL,
+    registered_at   TIMESTAMP WITH TIME ZONE,
+    locked_at       TIMESTAMP WITH TIME ZONE,
+    next_attempt_at TIMESTAMP WITH TIME ZONE,
+    started_at      TIMESTAMP WITH TIME ZONE,
+    finished_at     TIMESTAMP WITH TIME ZONE,
+    retries         INT                      NOT NULL DEFAULT 0,
+    version         BIGINT                   NOT NULL DEFAULT 0,
+    stream_tasks    VARCHAR,
+    priority        VARCHAR(16)              NOT NULL DEFAULT 'NORMAL',
+    partition_key   VARCHAR(255),
+    locked_by       VARCHAR(255),
+    PRIMARY KEY (unit_type, id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_due ON unit_of_work (unit_type, next_attempt_at, state);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_state ON unit_of_work (unit_type, state);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_finished ON unit_of_work (unit_type, state, finished_at);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_lane ON unit_of_work (unit_type, priority, next_attempt_at);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_partition ON unit_of_work (unit_type, partition_key, registered_at);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_locked ON unit_of_work (unit_type, locked_at);
+
+CREATE TABLE IF NOT EXISTS unit_of_work_dead_letter
+(
+    unit_type   VARCHAR(64)              NOT NULL,
+    id          VARCHAR(255)             NOT NULL,
+    error_type  VARCHAR(255)             NOT NULL,
+    failed_at   TIMESTAMP WITH TIME ZONE,
+    dead_letter VARCHAR,
+    PRIMARY KEY (unit_type, id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_dead_letter_failed ON unit_of_work_dead_letter (unit_type, failed_at);
+
+CREATE INDEX IF NOT EXISTS idx_unit_of_work_dead_letter_error ON unit_of_work_dead_letter
+    (unit_type, error_type, failed_at);
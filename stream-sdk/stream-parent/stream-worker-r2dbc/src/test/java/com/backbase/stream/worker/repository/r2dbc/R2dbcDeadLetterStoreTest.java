@@ -0,0 +1,87 @@
+package com.backbase.stream.worker.repository.r2dbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+class R2dbcDeadLetterStoreTest {
+
+    private R2dbcDeadLetterStore<TestTask> store;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = H2ConnectionFactory.inMemory(UUID.randomUUID().toString());
+        new ResourceDatabasePopulator(new ClassPathResource("db/stream-worker/unit-of-work.sql"))
+            .populate(connectionFactory)
+            .block();
+        store = new R2dbcDeadLetterStore<>(connectionFactory, new ObjectMapper(), TestTask.class, "test");
+    }
+
+    @Test
+    void storesDeadLettersWithTheirUnitOfWork() {
+        OffsetDateTime now = OffsetDateTime.now();
+        store.save(deadLetter("unit", "400", now)).block();
+        store.save(deadLetter("unit", "503", now)).block();
+
+        DeadLetter<TestTask> stored = store.findById("unit").block();
+        assertNotNull(stored);
+        assertEquals("503", stored.getErrorType());
+        assertEquals("payload-unit", stored.getUnitOfWork().getStreamTasks().get(0).getPayload());
+        assertEquals(StreamTask.State.FAILED, stored.getUnitOfWork().getStreamTasks().get(0).getState());
+
+        store.deleteById("unit").block();
+        assertNull(store.findById("unit").block());
+    }
+
+    @Test
+    void findsDeadLettersByErrorTypeOldestFirst() {
+        OffsetDateTime now = OffsetDateTime.now();
+        store.save(deadLetter("newer", "400", now)).block();
+        store.save(deadLetter("older", "400", now.minusMinutes(1))).block();
+        store.save(deadLetter("timeout", "TimeoutException", now.minusMinutes(2))).block();
+
+        List<String> badRequests = store.findAll("400", 10)
+            .map(DeadLetter::getUnitOfWorkId)
+            .collect(Collectors.toList())
+            .block();
+        Map<String, Long> counts = store.countByErrorType().block();
+
+        assertEquals(Arrays.asList("older", "newer"), badRequests);
+        assertEquals(3, store.findAll(null, 10).count().block().longValue());
+        assertEquals(1, store.findAll(null, 1).count().block().longValue());
+        assertEquals(2, counts.get("400").longValue());
+        assertEquals(1, counts.get("TimeoutException").longValue());
+    }
+
+    private static DeadLetter<TestTask> deadLetter(String id, String errorType, OffsetDateTime failedAt) {
+        TestTask task = new TestTask();
+        task.setId(id + "-task");
+        task.setPayload("payload-" + id);
+        task.setState(StreamTask.State.FAILED);
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, task);
+        unitOfWork.setState(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED);
+        unitOfWork.setFinishedAt(failedAt);
+        DeadLetter<TestTask> deadLetter = DeadLetter.from(unitOfWork, null);
+        deadLetter.setErrorType(errorType);
+        return deadLetter;
+    }
+
+}
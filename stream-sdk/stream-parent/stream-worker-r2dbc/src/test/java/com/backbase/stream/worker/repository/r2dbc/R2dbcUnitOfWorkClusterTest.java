@@ -0,0 +1,171 @@
+package com.backbase.stream.worker.repository.r2dbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.StreamTaskExecutor;
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.UnitOfWorkExecutor;
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Multiple nodes sharing a single table, each node being an executor with its own repository in the same JVM.
+ */
+class R2dbcUnitOfWorkClusterTest {
+
+    private ConnectionFactory connectionFactory;
+
+    private final Map<String, Integer> executions = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = H2ConnectionFactory.inMemory(UUID.randomUUID().toString());
+        new ResourceDatabasePopulator(new ClassPathResource("db/stream-worker/unit-of-work.sql"))
+            .populate(connectionFactory)
+            .block();
+    }
+
+    @Test
+    void executesEveryUnitOfWorkOnceAcrossNodes() {
+        List<MeterRegistry> meterRegistries = new ArrayList<>();
+        List<TestUnitOfWorkExecutor> nodes = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+            meterRegistries.add(meterRegistry);
+            nodes.add(node("node-" + i, null, meterRegistry));
+        }
+
+        Flux.range(0, 30)
+            .map(i -> UnitOfWork.from("unit-" + i, task("task-" + i)))
+            .concatMap(nodes.get(0)::register)
+            .blockLast();
+
+        List<UnitOfWork<TestTask>> executed = Flux.fromIterable(nodes)
+            .flatMap(UnitOfWorkExecutor::getScheduler)
+            .take(30)
+            .collectList()
+            .block(Duration.ofSeconds(30));
+
+        assertEquals(30, executed.size());
+        assertEquals(30, executions.size());
+        assertTrue(executions.values().stream().allMatch(times -> times == 1));
+        double completed = meterRegistries.stream()
+            .mapToDouble(meterRegistry -> meterRegistry.get("stream.unit-of-work.node.completed").counter().count())
+            .sum();
+        assertEquals(30, completed, 0);
+        UnitOfWork<TestTask> stored = nodes.get(2).retrieve("unit-29").block();
+        assertNotNull(stored);
+        assertEquals(UnitOfWork.State.COMPLETED, stored.getState());
+        assertNull(stored.getLockedBy());
+    }
+
+    @Test
+    void reclaimsUnitsOfWorkOfDeadNode() {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        TestUnitOfWorkExecutor node = node("alive", Duration.ofSeconds(30), meterRegistry);
+        OffsetDateTime now = OffsetDateTime.now();
+        R2dbcUnitOfWorkRepository<TestTask> repository = repository();
+        repository.save(locked("orphan", "dead", now.minusMinutes(1))).block();
+        repository.save(locked("executing", "busy", now)).block();
+
+        assertEquals(1, node.heartbeat().block().longValue());
+
+        UnitOfWork<TestTask> executing = repository.findById("executing").block();
+        assertNotNull(executing);
+        assertEquals("busy", executing.getLockedBy());
+
+        UnitOfWork<TestTask> reclaimed = node.getScheduler()
+            .next()
+            .block(Duration.ofSeconds(10));
+        assertNotNull(reclaimed);
+        assertEquals("orphan", reclaimed.getUnitOfOWorkId());
+        assertEquals(UnitOfWork.State.COMPLETED, reclaimed.getState());
+        assertEquals(Collections.singleton("orphan-task"), executions.keySet());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.node.leases.reclaimed").counter().count(), 0);
+    }
+
+    private TestUnitOfWorkExecutor node(String nodeName, Duration leaseDuration, MeterRegistry meterRegistry) {
+        TestConfiguration configuration = new TestConfiguration();
+        configuration.setNodeName(nodeName);
+        configuration.setLeaseDuration(leaseDuration);
+        configuration.setClaimBatchSize(2);
+        configuration.setWorkerUnitExecutors(2);
+        configuration.setSchedulerIntervalDuration(Duration.ofMillis(100));
+        configuration.setSchedulerMaxIntervalDuration(Duration.ofMillis(100));
+        return new TestUnitOfWorkExecutor(repository(), new CountingTaskExecutor(), configuration, meterRegistry);
+    }
+
+    private R2dbcUnitOfWorkRepository<TestTask> repository() {
+        R2dbcUnitOfWorkRepository<TestTask> repository =
+            new R2dbcUnitOfWorkRepository<>(connectionFactory, new ObjectMapper(), TestTask.class, "test");
+        // H2 does not support SKIP LOCKED
+        repository.setSkipLocked(false);
+        return repository;
+    }
+
+    private static UnitOfWork<TestTask> locked(String id, String lockedBy, OffsetDateTime lockedAt) {
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, task(id + "-task"));
+        unitOfWork.setState(UnitOfWork.State.IN_PROGRESS);
+        unitOfWork.setNextAttemptAt(lockedAt);
+        unitOfWork.setLockedAt(lockedAt);
+        unitOfWork.setLockedBy(lockedBy);
+        return unitOfWork;
+    }
+
+    private static TestTask task(String id) {
+        TestTask task = new TestTask();
+        task.setId(id);
+        task.setPayload("payload");
+        return task;
+    }
+
+    static class TestConfiguration extends StreamWorkerConfiguration {
+
+    }
+
+    static class TestUnitOfWorkExecutor extends UnitOfWorkExecutor<TestTask> {
+
+        TestUnitOfWorkExecutor(R2dbcUnitOfWorkRepository<TestTask> repository,
+            StreamTaskExecutor<TestTask> streamTaskExecutor, StreamWorkerConfiguration streamWorkerConfiguration,
+            MeterRegistry meterRegistry) {
+            super(repository, streamTaskExecutor, streamWorkerConfiguration, "cluster", meterRegistry);
+        }
+    }
+
+    class CountingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            executions.merge(streamTask.getId(), 1, Integer::sum);
+            return Mono.just(streamTask).delayElement(Duration.ofMillis(10));
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+    }
+
+}
@@ -0,0 +1,241 @@
+package com.backbase.stream.worker.repository.r2dbc;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.exception.LockLostException;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.r2dbc.h2.H2ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactory;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.r2dbc.connection.init.ResourceDatabasePopulator;
+
+class R2dbcUnitOfWorkRepositoryTest {
+
+    private R2dbcUnitOfWorkRepository<TestTask> repository;
+
+    @BeforeEach
+    void setUp() {
+        ConnectionFactory connectionFactory = H2ConnectionFactory.inMemory(UUID.randomUUID().toString());
+        new ResourceDatabasePopulator(new ClassPathResource("db/stream-worker/unit-of-work.sql"))
+            .populate(connectionFactory)
+            .block();
+        repository = new R2dbcUnitOfWorkRepository<>(connectionFactory, new ObjectMapper(), TestTask.class, "test");
+        // H2 does not support SKIP LOCKED
+        repository.setSkipLocked(false);
+    }
+
+    @Test
+    void saveInsertsAndUpdatesUnitsOfWork() {
+        UnitOfWork<TestTask> unitOfWork = save("unit", UnitOfWork.State.ACCEPTED, OffsetDateTime.now());
+        assertEquals(1, unitOfWork.getVersion());
+
+        unitOfWork.getStreamTasks().get(0).setPayload("changed");
+        unitOfWork.setState(UnitOfWork.State.COMPLETED);
+        repository.save(unitOfWork).block();
+
+        UnitOfWork<TestTask> stored = repository.findById("unit").block();
+        assertNotNull(stored);
+        assertEquals(UnitOfWork.State.COMPLETED, stored.getState());
+        assertEquals(2, stored.getVersion());
+        assertEquals("changed", stored.getStreamTasks().get(0).getPayload());
+        assertEquals(1, repository.count().block().longValue());
+    }
+
+    @Test
+    void claimDueLocksUnitsOfWorkInOrderOnlyOnce() {
+        OffsetDateTime now = OffsetDateTime.now();
+        List<UnitOfWork<TestTask>> unitsOfWork = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            unitsOfWork.add(unitOfWork("unit-" + i, UnitOfWork.State.ACCEPTED, now.minusSeconds(10 - i)));
+        }
+        unitsOfWork.add(unitOfWork("finished", UnitOfWork.State.COMPLETED, now.minusMinutes(1)));
+        unitsOfWork.add(unitOfWork("later", UnitOfWork.State.ACCEPTED, now.plusMinutes(1)));
+        repository.saveAll(unitsOfWork).blockLast();
+
+        List<String> first = claimedIds(now, 3);
+        List<String> second = claimedIds(now, 3);
+
+        assertEquals(3, first.size());
+        assertEquals(2, second.size());
+        assertEquals("unit-0", first.get(0));
+        Set<String> claimed = new HashSet<>(first);
+        claimed.addAll(second);
+        assertEquals(5, claimed.size());
+        assertTrue(claimedIds(now, 3).isEmpty());
+
+        UnitOfWork<TestTask> locked = repository.findById("unit-0").block();
+        assertNotNull(locked);
+        assertEquals(UnitOfWork.State.IN_PROGRESS, locked.getState());
+        assertNotNull(locked.getLockedAt());
+    }
+
+    @Test
+    void claimDueOfLaneOnlyClaimsUnitsOfThatLane() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> bulk = unitOfWork("bulk", UnitOfWork.State.ACCEPTED, now.minusSeconds(10));
+        bulk.setPriority(UnitOfWork.Priority.BULK);
+        UnitOfWork<TestTask> interactive = unitOfWork("interactive", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+        interactive.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        repository.saveAll(Arrays.asList(bulk, interactive)).blockLast();
+
+        assertEquals(1, repository.countWaitingByPriority().block().get(UnitOfWork.Priority.INTERACTIVE));
+
+        List<UnitOfWork<TestTask>> claimed = repository.claimDue(now, 5, UnitOfWork.Priority.INTERACTIVE, "node")
+            .collectList()
+            .block();
+
+        assertEquals(1, claimed.size());
+        assertEquals("interactive", claimed.get(0).getUnitOfOWorkId());
+        assertEquals(UnitOfWork.Priority.INTERACTIVE, claimed.get(0).getPriority());
+        assertNull(repository.countWaitingByPriority().block().get(UnitOfWork.Priority.INTERACTIVE));
+        assertEquals(UnitOfWork.Priority.BULK, repository.findById("bulk").block().getPriority());
+    }
+
+    @Test
+    void claimDueHoldsBackUnitsOfWorkBehindEarlierUnitOfTheirPartition() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> retrying = unitOfWork("retrying", UnitOfWork.State.FAILED, now.plusMinutes(1));
+        retrying.setPartitionKey("arrangement");
+        retrying.setRegisteredAt(now.minusMinutes(2));
+        UnitOfWork<TestTask> later = unitOfWork("later", UnitOfWork.State.ACCEPTED, now.minusSeconds(2));
+        later.setPartitionKey("arrangement");
+        later.setRegisteredAt(now.minusMinutes(1));
+        repository.saveAll(Arrays.asList(retrying, later,
+            unitOfWork("other", UnitOfWork.State.ACCEPTED, now.minusSeconds(1)))).blockLast();
+
+        assertEquals(Collections.singletonList("other"), claimedIds(now, 5));
+        assertEquals(Collections.singleton("retrying"), repository.findPartitionHeads().block());
+
+        retrying.setState(UnitOfWork.State.COMPLETED);
+        retrying.setNextAttemptAt(null);
+        repository.save(retrying).block();
+
+        assertEquals(Collections.singletonList("later"), claimedIds(now, 5));
+        assertEquals("arrangement", repository.findById("later").block().getPartitionKey());
+    }
+
+    @Test
+    void claimExhaustedLocksUnitsOfWorkForRollbackOnlyOnce() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> exhausted = unitOfWork("exhausted", UnitOfWork.State.FAILED_RETRIES_EXHAUSTED, null);
+        exhausted.setFinishedAt(now.minusMinutes(1));
+        repository.saveAll(Arrays.asList(exhausted,
+            unitOfWork("completed", UnitOfWork.State.COMPLETED, null))).blockLast();
+
+        List<UnitOfWork<TestTask>> claimed = repository.claimExhausted(now, 5, "node").collectList().block();
+
+        assertEquals(1, claimed.size());
+        assertEquals(UnitOfWork.State.ROLLBACK_IN_PROGRESS, claimed.get(0).getState());
+        assertTrue(repository.claimExhausted(now, 5, "node").collectList().block().isEmpty());
+
+        assertEquals(1, repository.releaseLocks("node", Collections.singletonList("exhausted")).block().longValue());
+        UnitOfWork<TestTask> released = repository.findById("exhausted").block();
+        assertEquals(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED, released.getState());
+        assertNull(released.getLockedBy());
+    }
+
+    @Test
+    void saveFailsForUnitsOfWorkChangedSinceTheyWereRead() {
+        save("unit", UnitOfWork.State.ACCEPTED, OffsetDateTime.now().minusSeconds(1));
+        UnitOfWork<TestTask> stale = repository.findById("unit").block();
+        assertEquals(Collections.singletonList("unit"), claimedIds(OffsetDateTime.now(), 1));
+
+        stale.setState(UnitOfWork.State.COMPLETED);
+        LockLostException lockLost = assertThrows(LockLostException.class, () -> repository.save(stale).block());
+
+        assertEquals(Collections.singletonList("unit"), lockLost.getUnitOfWorkIds());
+        assertEquals(UnitOfWork.State.IN_PROGRESS, repository.findById("unit").block().getState());
+    }
+
+    @Test
+    void failedSavesKeepTheVersionSoTheyCanBeRetried() {
+        UnitOfWork<TestTask> unitOfWork = save("unit", UnitOfWork.State.ACCEPTED, OffsetDateTime.now());
+        unitOfWork.setLockedAt(OffsetDateTime.now());
+        unitOfWork.setLockedBy("owner");
+        repository.save(unitOfWork).block();
+        UnitOfWork<TestTask> copy = repository.findById("unit").block();
+        long version = copy.getVersion();
+
+        copy.setLockedBy("intruder");
+        assertThrows(LockLostException.class, () -> repository.save(copy).block());
+        assertEquals(version, copy.getVersion());
+
+        copy.setLockedBy("owner");
+        copy.setState(UnitOfWork.State.COMPLETED);
+        repository.save(copy).block();
+        assertEquals(version + 1, copy.getVersion());
+        assertEquals(version + 1, repository.findById("unit").block().getVersion());
+    }
+
+    @Test
+    void saveFailsForUnitsOfWorkLockedByAnotherNode() {
+        UnitOfWork<TestTask> unitOfWork = save("unit", UnitOfWork.State.ACCEPTED, OffsetDateTime.now());
+        unitOfWork.setLockedAt(OffsetDateTime.now());
+        unitOfWork.setLockedBy("owner");
+        repository.save(unitOfWork).block();
+
+        UnitOfWork<TestTask> copy = repository.findById("unit").block();
+        copy.setLockedBy("intruder");
+
+        assertThrows(LockLostException.class, () -> repository.save(copy).block());
+        unitOfWork.setState(UnitOfWork.State.COMPLETED);
+        unitOfWork.setLockedAt(null);
+        unitOfWork.setLockedBy(null);
+        repository.save(unitOfWork).block();
+        assertEquals(UnitOfWork.State.COMPLETED, repository.findById("unit").block().getState());
+    }
+
+    @Test
+    void renewLocksReturnsLocksNoLongerHeld() {
+        OffsetDateTime now = OffsetDateTime.now();
+        repository.saveAll(Arrays.asList(unitOfWork("held", UnitOfWork.State.ACCEPTED, now.minusSeconds(2)),
+            unitOfWork("released", UnitOfWork.State.ACCEPTED, now.minusSeconds(1)))).blockLast();
+        assertEquals(2, repository.claimDue(now, 5, UnitOfWork.Priority.NORMAL, "node").count().block().longValue());
+        repository.releaseLocks("node", Collections.singletonList("released")).block();
+
+        Set<String> lost = repository.renewLocks("node", Arrays.asList("held", "released"), now.plusSeconds(1))
+            .block();
+
+        assertEquals(Collections.singleton("released"), lost);
+        assertEquals(now.plusSeconds(1).toInstant(), repository.findById("held").block().getLockedAt().toInstant());
+    }
+
+    private List<String> claimedIds(OffsetDateTime now, int maxUnitsOfWork) {
+        return repository.claimDue(now, maxUnitsOfWork)
+            .map(UnitOfWork::getUnitOfOWorkId)
+            .collect(Collectors.toList())
+            .block();
+    }
+
+    private UnitOfWork<TestTask> save(String id, UnitOfWork.State state, OffsetDateTime nextAttemptAt) {
+        return repository.save(unitOfWork(id, state, nextAttemptAt)).block();
+    }
+
+    private static UnitOfWork<TestTask> unitOfWork(String id, UnitOfWork.State state, OffsetDateTime nextAttemptAt) {
+        TestTask task = new TestTask();
+        task.setId(id);
+        task.setPayload("payload");
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, Collections.singletonList(task));
+        unitOfWork.setState(state);
+        unitOfWork.setRegisteredAt(OffsetDateTime.now());
+        unitOfWork.setNextAttemptAt(nextAttemptAt);
+        return unitOfWork;
+    }
+}
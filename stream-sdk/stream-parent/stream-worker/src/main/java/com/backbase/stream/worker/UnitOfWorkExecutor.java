@@ -2,41 +2,323 @@ package com.backbase.stream.worker;
 
 
 import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration.TaskOrdering;
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.deadletter.DeadLetterReplay;
+import com.backbase.stream.worker.deadletter.DeadLetterStore;
+import com.backbase.stream.worker.deadletter.InMemoryDeadLetterStore;
+import com.backbase.stream.worker.exception.LockLostException;
 import com.backbase.stream.worker.exception.StreamTaskException;
+import com.backbase.stream.worker.metrics.UnitOfWorkMetrics;
 import com.backbase.stream.worker.model.StreamTask;
 import com.backbase.stream.worker.model.TaskHistory;
 import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.priority.PriorityLanes;
+import com.backbase.stream.worker.ratelimit.TokenBucketRateLimiter;
 import com.backbase.stream.worker.repository.UnitOfWorkRepository;
+import com.backbase.stream.worker.retry.BackoffRetryPolicy;
+import com.backbase.stream.worker.retry.RetryPolicy;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.cloud.sleuth.annotation.ContinueSpan;
 import org.springframework.cloud.sleuth.annotation.NewSpan;
 import org.springframework.cloud.sleuth.annotation.SpanTag;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
 import reactor.core.scheduler.Scheduler;
 import reactor.core.scheduler.Schedulers;
+import reactor.util.retry.Retry;
 
+/**
+ * Executes units of work of a single type. As a {@link SmartLifecycle}, the scheduler starts with the application
+ * context. Stopping drains the units of work being executed before the schedulers are disposed. Executors which are
+ * never started, as they only execute units of work directly, create their schedulers on their first execution and
+ * dispose them when the application context is closed.
+ *
+ * @param <T> Stream Task type
+ */
 @Slf4j
-public abstract class UnitOfWorkExecutor<T extends StreamTask> {
+public abstract class UnitOfWorkExecutor<T extends StreamTask> implements SmartLifecycle, DisposableBean {
+
+    private static final Duration DRAIN_POLL_INTERVAL = Duration.ofMillis(50);
+
+    /**
+     * Number of dead letters read from the dead letter store at once while replaying.
+     */
+    private static final int REPLAY_PAGE_SIZE = 100;
 
     private final UnitOfWorkRepository<T, String> repository;
     private final StreamTaskExecutor<T> streamTaskExecutor;
-    private final Scheduler workUnitExecutor;
-    private final Scheduler taskExecutor;
+    private volatile Scheduler workUnitExecutor;
+    private volatile Scheduler taskExecutor;
+    private final TokenBucketRateLimiter taskRateLimiter;
+    private final PriorityLanes priorityLanes;
+    private volatile RetryPolicy retryPolicy;
+    private volatile DeadLetterStore<T> deadLetterStore = new InMemoryDeadLetterStore<>();
+    private final UnitOfWorkMetrics metrics;
+
+    /**
+     * Name of this node, recorded on the units of work it locks.
+     */
+    private final String nodeName;
+
+    /**
+     * Units of work locked by this node, of which the locks are renewed by heartbeat while leases are configured.
+     */
+    private final Map<String, LockedUnitOfWork> lockedUnitsOfWork = new ConcurrentHashMap<>();
+
+    /**
+     * Completion of the last direct execution per partition key, which the next direct execution of the key awaits.
+     */
+    private final Map<String, Mono<Void>> partitionTails = new ConcurrentHashMap<>();
 
     protected final StreamWorkerConfiguration streamWorkerConfiguration;
 
+    /**
+     * Signalled on registration of new work, so an idle scheduler starts draining without waiting for the next poll.
+     */
+    private final Sinks.Many<Long> wakeUps = Sinks.many().multicast().directBestEffort();
+    private final AtomicReference<Duration> pollInterval;
+
     private Flux<UnitOfWork<T>> scheduler;
 
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    /**
+     * Set while stopping, so the scheduler does not claim new units of work.
+     */
+    private volatile boolean stopping;
+
+    private volatile Disposable schedulerSubscription = Disposables.disposed();
+
+    /**
+     * Evicts finished units of work in the background, when a finished retention or maximum is configured.
+     */
+    private volatile Disposable retentionSweeper = Disposables.disposed();
+
+    /**
+     * Renews the locks of this node and releases expired locks of dead nodes, when a lease duration is configured.
+     */
+    private volatile Disposable heartbeat = Disposables.disposed();
+
+    /**
+     * Rolls back units of work which failed without retries left, when rollback is enabled.
+     */
+    private volatile Disposable rollbackSweeper = Disposables.disposed();
+
+    /**
+     * Gives up on units of work locked for longer than the stale lock timeout, when one is configured.
+     */
+    private volatile Disposable staleLockReaper = Disposables.disposed();
+
+    /**
+     * Replay of dead letters started last, of which a single one runs at a time.
+     */
+    private final AtomicReference<DeadLetterReplay> deadLetterReplay = new AtomicReference<>();
+
+    private volatile Disposable deadLetterReplaySubscription = Disposables.disposed();
+
     public UnitOfWorkExecutor(UnitOfWorkRepository<T, String> repository, StreamTaskExecutor<T> streamTaskExecutor,
         StreamWorkerConfiguration streamWorkerConfiguration) {
+        this(repository, streamTaskExecutor, streamWorkerConfiguration, "unit-of-work");
+    }
+
+    /**
+     * Create an executor publishing its metrics to the global meter registry, which Spring Boot exposes through its
+     * own registries.
+     *
+     * @param executorName name tagging the metrics of this executor
+     */
+    public UnitOfWorkExecutor(UnitOfWorkRepository<T, String> repository, StreamTaskExecutor<T> streamTaskExecutor,
+        StreamWorkerConfiguration streamWorkerConfiguration, String executorName) {
+        this(repository, streamTaskExecutor, streamWorkerConfiguration, executorName, Metrics.globalRegistry);
+    }
+
+    public UnitOfWorkExecutor(UnitOfWorkRepository<T, String> repository, StreamTaskExecutor<T> streamTaskExecutor,
+        StreamWorkerConfiguration streamWorkerConfiguration, String executorName, MeterRegistry meterRegistry) {
         this.repository = repository;
         this.streamTaskExecutor = streamTaskExecutor;
-        this.workUnitExecutor = Schedulers.newParallel("unit-of-work", streamWorkerConfiguration.getWorkerUnitExecutors());
-        this.taskExecutor = Schedulers.newParallel("TaskScheduler", streamWorkerConfiguration.getTaskExecutors());
+        this.taskRateLimiter = TokenBucketRateLimiter.from(streamWorkerConfiguration);
+        this.retryPolicy = BackoffRetryPolicy.from(streamWorkerConfiguration);
+        this.priorityLanes = PriorityLanes.from(streamWorkerConfiguration);
+        this.nodeName = streamWorkerConfiguration.getNodeName() != null
+            ? streamWorkerConfiguration.getNodeName()
+            : ManagementFactory.getRuntimeMXBean().getName();
+        this.metrics = new UnitOfWorkMetrics(meterRegistry, executorName, nodeName, repository, taskRateLimiter,
+            priorityLanes);
         this.streamWorkerConfiguration = streamWorkerConfiguration;
+        this.pollInterval = new AtomicReference<>(streamWorkerConfiguration.getSchedulerIntervalDuration());
+    }
+
+    /**
+     * Create the schedulers and start the background work, unless they are running already. Called on start and on
+     * the first execution of an executor which is not started, never while constructing an executor.
+     */
+    private void startBackgroundWork() {
+        if (isBackgroundWorkRunning()) {
+            return;
+        }
+        synchronized (this) {
+            if (isBackgroundWorkRunning()) {
+                return;
+            }
+            // A scheduler created before publishes on disposed schedulers
+            this.scheduler = null;
+            this.workUnitExecutor = Schedulers.newParallel("unit-of-work",
+                streamWorkerConfiguration.getWorkerUnitExecutors());
+            this.taskExecutor = Schedulers.newParallel("TaskScheduler", streamWorkerConfiguration.getTaskExecutors());
+            this.retentionSweeper = hasRetention() ? startRetentionSweeper() : Disposables.disposed();
+            this.heartbeat = streamWorkerConfiguration.getLeaseDuration() != null
+                ? startHeartbeat()
+                : Disposables.disposed();
+            this.rollbackSweeper = streamWorkerConfiguration.isRollbackExhausted()
+                ? startRollbackSweeper()
+                : Disposables.disposed();
+            this.staleLockReaper = streamWorkerConfiguration.getStaleLockTimeout() != null
+                ? startStaleLockReaper()
+                : Disposables.disposed();
+        }
+    }
+
+    private boolean isBackgroundWorkRunning() {
+        Scheduler current = workUnitExecutor;
+        return current != null && !current.isDisposed();
+    }
+
+    /**
+     * Start the scheduler. An executor which was stopped before starts with new schedulers.
+     */
+    @Override
+    public void start() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        startBackgroundWork();
+        stopping = false;
+        log.info("Starting Unit Of Work Scheduler of node {}", nodeName);
+        schedulerSubscription = getScheduler().subscribe();
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return streamWorkerConfiguration.isAutoStartup();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running.get();
+    }
+
+    @Override
+    public void stop() {
+        shutdown().block();
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        shutdown()
+            .doFinally(signal -> callback.run())
+            .subscribe();
+    }
+
+    /**
+     * Stop claiming new units of work, wait up to the shutdown timeout for the units of work being executed to finish,
+     * then release the locks of units of work which are still executing and dispose the schedulers. Released units of
+     * work are accepted again, so they are executed by this node after a restart or by another node.
+     *
+     * @return completes when shut down
+     */
+    public Mono<Void> shutdown() {
+        return Mono.defer(() -> {
+            stopping = true;
+            log.info("Stopping Unit Of Work Scheduler of node {}, draining {} Units Of Work", nodeName,
+                lockedUnitsOfWork.size());
+            return awaitLockedUnitsOfWork(streamWorkerConfiguration.getShutdownTimeout())
+                .then(Mono.defer(this::releaseInterruptedUnitsOfWork))
+                .onErrorResume(throwable -> {
+                    log.warn("Failed to release interrupted Units Of Work: {}", throwable.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.fromRunnable(this::disposeBackgroundWork));
+        });
+    }
+
+    private Mono<Void> awaitLockedUnitsOfWork(Duration timeout) {
+        return Flux.interval(Duration.ZERO, DRAIN_POLL_INTERVAL)
+            .filter(tick -> lockedUnitsOfWork.isEmpty())
+            .next()
+            .then()
+            .timeout(timeout != null ? timeout : Duration.ZERO, Mono.empty());
+    }
+
+    private Mono<Void> releaseInterruptedUnitsOfWork() {
+        List<String> interrupted = new ArrayList<>(lockedUnitsOfWork.keySet());
+        schedulerSubscription.dispose();
+        rollbackSweeper.dispose();
+        if (interrupted.isEmpty()) {
+            return Mono.empty();
+        }
+        log.warn("Node {} interrupted {} Units Of Work on shutdown", nodeName, interrupted.size());
+        return repository.releaseLocks(nodeName, interrupted)
+            .doOnNext(released -> log.info("Node {} released {} interrupted Units Of Work", nodeName, released))
+            .then();
+    }
+
+    /**
+     * Dispose the schedulers and background work of an executor which was not stopped, such as an executor which only
+     * executes units of work directly.
+     */
+    @Override
+    public void destroy() {
+        disposeBackgroundWork();
+    }
+
+    private synchronized void disposeBackgroundWork() {
+        running.set(false);
+        if (!isBackgroundWorkRunning()) {
+            return;
+        }
+        schedulerSubscription.dispose();
+        retentionSweeper.dispose();
+        heartbeat.dispose();
+        rollbackSweeper.dispose();
+        staleLockReaper.dispose();
+        deadLetterReplaySubscription.dispose();
+        DeadLetterReplay replay = deadLetterReplay.get();
+        if (replay != null) {
+            replay.stop();
+        }
+        workUnitExecutor.dispose();
+        taskExecutor.dispose();
+        log.info("Stopped Unit Of Work Scheduler of node {}", nodeName);
     }
 
     public Mono<UnitOfWork<T>> register(UnitOfWork<T> unitOfWork) {
@@ -44,48 +326,612 @@ public abstract class UnitOfWorkExecutor<T extends StreamTask> {
         unitOfWork.setRegisteredAt(OffsetDateTime.now());
         unitOfWork.setNextAttemptAt(OffsetDateTime.now());
         unitOfWork.setState(UnitOfWork.State.ACCEPTED);
+        return repository.save(unitOfWork)
+            .doOnSuccess(registered -> wakeUp());
+    }
+
+    /**
+     * Wake up the scheduler to look for work immediately. A wake-up while the scheduler is draining already is
+     * remembered, so work registered during the drain is picked up right after it.
+     */
+    public void wakeUp() {
+        // Failing to emit means nobody listens yet, or a concurrent wake-up is emitted already
+        wakeUps.tryEmitNext(System.nanoTime());
+    }
+
+    /**
+     * Evict finished units of work which finished longer than the finished retention ago, or which exceed the maximum
+     * number of finished units of work.
+     *
+     * @return number of evicted units of work
+     */
+    public Mono<Long> evictFinishedUnitsOfWork() {
+        if (!hasRetention()) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            Duration retention = streamWorkerConfiguration.getFinishedRetention();
+            OffsetDateTime finishedBefore = retention != null ? OffsetDateTime.now().minus(retention) : null;
+            return repository.deleteFinished(finishedBefore, streamWorkerConfiguration.getMaxFinishedUnitsOfWork())
+                .doOnNext(evicted -> {
+                    metrics.recordSweep(evicted, Duration.ofNanos(System.nanoTime() - start));
+                    if (evicted > 0) {
+                        log.info("Evicted {} finished Units Of Work", evicted);
+                    }
+                });
+        });
+    }
+
+    private boolean hasRetention() {
+        return streamWorkerConfiguration.getFinishedRetention() != null
+            || streamWorkerConfiguration.getMaxFinishedUnitsOfWork() >= 0;
+    }
+
+    private Disposable startRetentionSweeper() {
+        Duration sweepInterval = streamWorkerConfiguration.getRetentionSweepInterval();
+        log.info("Evicting finished Units Of Work every {}", sweepInterval);
+        return Flux.interval(sweepInterval, sweepInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> evictFinishedUnitsOfWork()
+                .onErrorResume(throwable -> {
+                    log.warn("Failed to evict finished Units Of Work: {}", throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    /**
+     * Renew the locks of the units of work this node is executing, then release the locks of other nodes which have
+     * not been renewed within the lease duration. Units of work of which the lock is released are claimed again by the
+     * next drain of any node. Execution of units of work of which this node lost the lock is cancelled, as another node
+     * may be executing them already.
+     *
+     * @return number of released locks
+     */
+    public Mono<Long> heartbeat() {
+        Duration leaseDuration = streamWorkerConfiguration.getLeaseDuration();
+        if (leaseDuration == null) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            List<String> held = new ArrayList<>(lockedUnitsOfWork.keySet());
+            Mono<Set<String>> lost = held.isEmpty()
+                ? Mono.just(Collections.emptySet())
+                : repository.renewLocks(nodeName, held, now);
+            return lost.flatMap(lostLocks -> repository.releaseExpiredLocks(now.minus(leaseDuration))
+                .doOnNext(released -> {
+                    metrics.recordHeartbeat(held.size(), held.size() - lostLocks.size(), released);
+                    long cancelled = cancelLost(lostLocks);
+                    if (cancelled > 0) {
+                        log.warn("Node {} lost the lock of {} Units Of Work and cancelled their execution", nodeName,
+                            cancelled);
+                    }
+                    if (released > 0) {
+                        log.warn("Node {} released {} expired Units Of Work locks", nodeName, released);
+                        wakeUp();
+                    }
+                }));
+        });
+    }
+
+    /**
+     * Cancel the execution of units of work of which the lock was lost. Units of work completing already released
+     * their lock themselves and are left alone.
+     */
+    private long cancelLost(Set<String> lostLocks) {
+        long cancelled = 0;
+        for (String unitOfWorkId : lostLocks) {
+            LockedUnitOfWork locked = lockedUnitsOfWork.get(unitOfWorkId);
+            if (locked != null && !locked.completing && lockedUnitsOfWork.remove(unitOfWorkId, locked)) {
+                locked.reaped.tryEmitEmpty();
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    private Disposable startHeartbeat() {
+        Duration leaseDuration = streamWorkerConfiguration.getLeaseDuration();
+        Duration heartbeatInterval = streamWorkerConfiguration.getHeartbeatInterval() != null
+            ? streamWorkerConfiguration.getHeartbeatInterval()
+            : leaseDuration.dividedBy(3);
+        log.info("Node {} renews locks every {} with a lease of {}", nodeName, heartbeatInterval, leaseDuration);
+        return Flux.interval(heartbeatInterval, heartbeatInterval)
+            .onBackpressureDrop()
+            .concatMap(tick -> heartbeat()
+                .onErrorResume(throwable -> {
+                    log.warn("Node {} failed to send heartbeat: {}", nodeName, throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    /**
+     * Give up on the units of work this node locked longer than the stale lock timeout ago. Their execution is
+     * cancelled and their locks are released, so they are claimed again by the next drain of any node. Without leases,
+     * locks of other nodes taken longer than the stale lock timeout ago are released as well, since they are never
+     * renewed and would otherwise be held forever by a node which died or hangs.
+     *
+     * @return number of released locks
+     */
+    public Mono<Long> reapStaleLocks() {
+        Duration staleLockTimeout = streamWorkerConfiguration.getStaleLockTimeout();
+        if (staleLockTimeout == null) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            long lockedBefore = System.nanoTime() - staleLockTimeout.toNanos();
+            List<String> stale = new ArrayList<>();
+            lockedUnitsOfWork.forEach((unitOfWorkId, locked) -> {
+                if (locked.lockedAt - lockedBefore < 0 && lockedUnitsOfWork.remove(unitOfWorkId, locked)) {
+                    locked.reaped.tryEmitEmpty();
+                    stale.add(unitOfWorkId);
+                }
+            });
+            if (!stale.isEmpty()) {
+                log.warn("Node {} gave up on {} Units Of Work locked longer than {}", nodeName, stale.size(),
+                    staleLockTimeout);
+            }
+            Mono<Long> releasedStale = stale.isEmpty()
+                ? Mono.just(0L)
+                : repository.releaseLocks(nodeName, stale);
+            Mono<Long> releasedExpired = streamWorkerConfiguration.getLeaseDuration() == null
+                ? repository.releaseExpiredLocks(OffsetDateTime.now().minus(staleLockTimeout))
+                : Mono.just(0L);
+            return releasedStale.zipWith(releasedExpired, Long::sum)
+                .doOnNext(released -> {
+                    metrics.recordReaped(released);
+                    if (released > 0) {
+                        log.warn("Node {} released {} stale Units Of Work locks", nodeName, released);
+                        wakeUp();
+                    }
+                });
+        });
+    }
+
+    private Disposable startStaleLockReaper() {
+        Duration interval = streamWorkerConfiguration.getStaleLockTimeout().dividedBy(2);
+        log.info("Node {} releases locks held longer than {} every {}", nodeName,
+            streamWorkerConfiguration.getStaleLockTimeout(), interval);
+        return Flux.interval(interval, interval)
+            .onBackpressureDrop()
+            .concatMap(tick -> reapStaleLocks()
+                .onErrorResume(throwable -> {
+                    log.warn("Node {} failed to release stale locks: {}", nodeName, throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    private LockedUnitOfWork lock(String unitOfWorkId) {
+        return lockedUnitsOfWork.computeIfAbsent(unitOfWorkId, id -> new LockedUnitOfWork());
+    }
+
+    /**
+     * Roll back units of work which failed without retries left, until none are left. Units of work are rolled back
+     * concurrently, bounded by the rollback concurrency. The started stream tasks of a unit of work are rolled back one
+     * at a time in reverse order, each retried with backoff up to the rollback retries. A unit of work of which any
+     * stream task could not be rolled back ends up rollback failed, its other stream tasks are still rolled back.
+     *
+     * @return number of rolled back units of work
+     */
+    public Mono<Long> rollBackExhaustedUnitsOfWork() {
+        int concurrency = Math.max(1, streamWorkerConfiguration.getRollbackConcurrency());
+        AtomicBoolean moreWork = new AtomicBoolean();
+        return Flux.defer(() -> {
+            moreWork.set(false);
+            if (stopping) {
+                return Flux.empty();
+            }
+            return repository.claimExhausted(OffsetDateTime.now(), concurrency, nodeName)
+                .doOnNext(unitOfWork -> lock(unitOfWork.getUnitOfOWorkId()))
+                .collectList()
+                .flatMapMany(claimed -> {
+                    moreWork.set(claimed.size() == concurrency);
+                    return Flux.fromIterable(claimed)
+                        .flatMap(this::rollBackLockedUnitOfWork, concurrency);
+                });
+        })
+            .repeat(moreWork::get)
+            .count();
+    }
+
+    private Disposable startRollbackSweeper() {
+        Duration interval = streamWorkerConfiguration.getSchedulerIntervalDuration();
+        log.info("Rolling back Units Of Work without retries left every {}", interval);
+        return Flux.interval(interval, interval)
+            .onBackpressureDrop()
+            .concatMap(tick -> rollBackExhaustedUnitsOfWork()
+                .onErrorResume(throwable -> {
+                    log.warn("Failed to roll back Units Of Work: {}", throwable.getMessage());
+                    return Mono.empty();
+                }))
+            .subscribe();
+    }
+
+    private Mono<UnitOfWork<T>> rollBackLockedUnitOfWork(UnitOfWork<T> unitOfWork) {
+        log.info("Rolling back Unit Of Work: {}", unitOfWork.getUnitOfOWorkId());
+        OffsetDateTime lockedAt = unitOfWork.getLockedAt();
+        List<T> startedTasks = unitOfWork.getStreamTasks().stream()
+            .filter(streamTask -> streamTask.getAttempts() > 0)
+            .collect(Collectors.toList());
+        Collections.reverse(startedTasks);
+        AtomicBoolean failed = new AtomicBoolean();
+        LockedUnitOfWork locked = lock(unitOfWork.getUnitOfOWorkId());
+        return Flux.fromIterable(startedTasks)
+            .concatMap(streamTask -> rollBackTask(unitOfWork, streamTask, failed))
+            .then(Mono.defer(() -> {
+                locked.completing = true;
+                return completeRollback(unitOfWork, failed.get(), lockedAt);
+            }))
+            .onErrorResume(throwable -> {
+                log.error("Failed to roll back Unit Of Work: {}", unitOfWork.getUnitOfOWorkId(), throwable);
+                return Mono.empty();
+            })
+            .takeUntilOther(locked.reaped.asMono())
+            .doFinally(signal -> lockedUnitsOfWork.remove(unitOfWork.getUnitOfOWorkId(), locked));
+    }
+
+    private Mono<T> rollBackTask(UnitOfWork<T> unitOfWork, T streamTask, AtomicBoolean failed) {
+        log.info("Rolling back Task: {} from Unit Of Work: {}", streamTask.getId(), unitOfWork.getUnitOfOWorkId());
+        Duration retryDuration = streamWorkerConfiguration.getRollbackRetryDuration();
+        return taskRateLimiter.acquire()
+            .then(Mono.defer(() -> withTaskTimeout(streamTaskExecutor.rollBack(streamTask)))
+                .retryWhen(Retry.backoff(Math.max(0, streamWorkerConfiguration.getRollbackMaxRetries()),
+                        retryDuration != null ? retryDuration : Duration.ZERO)
+                    .filter(throwable -> retryPolicy.isRetryable(throwable))))
+            .onErrorResume(throwable -> {
+                Throwable failure = Exceptions.isRetryExhausted(throwable) ? throwable.getCause() : throwable;
+                log.error("Failed to roll back Task: {} from Unit Of Work: {}", streamTask.getId(),
+                    unitOfWork.getUnitOfOWorkId(), failure);
+                streamTask.error("stream-task", "rollback", "failed", streamTask.getId(), null, failure,
+                    failure.getMessage(), "Failed to roll back task");
+                failed.set(true);
+                return Mono.just(streamTask);
+            });
+    }
+
+    private Mono<UnitOfWork<T>> completeRollback(UnitOfWork<T> unitOfWork, boolean failed, OffsetDateTime lockedAt) {
+        log.info("Completing rollback of Unit Of Work: {}", unitOfWork.getUnitOfOWorkId());
+        unitOfWork.setLockedAt(null);
+        unitOfWork.setLockedBy(null);
+        unitOfWork.setFinishedAt(OffsetDateTime.now());
+        unitOfWork.setState(failed ? UnitOfWork.State.ROLLBACK_FAILED : UnitOfWork.State.ROLLBACK_COMPLETED);
+        metrics.recordRolledBack(unitOfWork, lockedAt);
+        if (streamWorkerConfiguration.isCompactFinishedUnitsOfWork()) {
+            unitOfWork.getStreamTasks().forEach(StreamTask::compact);
+            metrics.recordCompacted();
+        }
         return repository.save(unitOfWork);
     }
 
+    /**
+     * Retrieve a unit of work, from the dead letter store when it was moved there.
+     */
     public Mono<UnitOfWork<T>> retrieve(String unitOfWorkId) {
-        return repository.findById(unitOfWorkId);
+        return repository.findById(unitOfWorkId)
+            .switchIfEmpty(Mono.defer(() -> deadLetterStore.findById(unitOfWorkId)
+                .map(DeadLetter::getUnitOfWork)));
+    }
+
+    /**
+     * Find dead letters, oldest failure first.
+     *
+     * @param errorType      error type of the dead letters, null for all dead letters
+     * @param maxDeadLetters maximum number of dead letters
+     * @return dead letters
+     */
+    public Flux<DeadLetter<T>> getDeadLetters(String errorType, int maxDeadLetters) {
+        return deadLetterStore.findAll(errorType, maxDeadLetters);
+    }
+
+    /**
+     * Register dead letters as units of work again, oldest failure first, so they are executed again after the cause
+     * of their failure has been fixed. Dead letters are registered at most at the given rate and replayed units of work
+     * are queued in the bulk lane, so replaying thousands of dead letters does not crowd out other work. Failed stream
+     * tasks start over without attempts, stream tasks which completed before are not executed again. A dead letter is
+     * removed once its unit of work is registered.
+     *
+     * @param errorType      error type of the dead letters to replay, null for all dead letters
+     * @param maxDeadLetters maximum number of dead letters to replay
+     * @param ratePerSecond  maximum number of dead letters registered per second, 0 for the configured replay rate
+     * @return the registered units of work
+     */
+    public Flux<UnitOfWork<T>> replayDeadLetters(String errorType, int maxDeadLetters, int ratePerSecond) {
+        int rate = ratePerSecond > 0 ? ratePerSecond : streamWorkerConfiguration.getDeadLetterReplayRate();
+        TokenBucketRateLimiter replayRateLimiter = new TokenBucketRateLimiter(rate > 0
+            ? Duration.ofNanos(TimeUnit.SECONDS.toNanos(1) / rate)
+            : Duration.ZERO, 1);
+        AtomicInteger remaining = new AtomicInteger(maxDeadLetters);
+        AtomicBoolean morePages = new AtomicBoolean();
+        // Replayed dead letters are removed, so every page starts at the oldest dead letter left
+        return Flux.defer(() -> {
+            int pageSize = Math.min(REPLAY_PAGE_SIZE, remaining.get());
+            morePages.set(false);
+            if (pageSize <= 0) {
+                return Flux.empty();
+            }
+            return deadLetterStore.findAll(errorType, pageSize)
+                .collectList()
+                .flatMapMany(page -> {
+                    remaining.addAndGet(-page.size());
+                    morePages.set(page.size() == pageSize);
+                    return Flux.fromIterable(page)
+                        .concatMap(deadLetter -> replayRateLimiter.acquire()
+                            .then(Mono.defer(() -> replay(deadLetter))));
+                });
+        })
+            .repeat(morePages::get);
+    }
+
+    /**
+     * Start replaying dead letters in the background as {@link #replayDeadLetters(String, int, int)} does, detached
+     * from the caller, so a replay of thousands of dead letters does not depend on a request staying open. A single
+     * replay runs at a time, the replay started last is available from {@link #getDeadLetterReplay()}.
+     *
+     * @param errorType      error type of the dead letters to replay, null for all dead letters
+     * @param maxDeadLetters maximum number of dead letters to replay
+     * @param ratePerSecond  maximum number of dead letters registered per second, 0 for the configured replay rate
+     * @return the started replay, empty while another replay is running
+     */
+    public Mono<DeadLetterReplay> startDeadLetterReplay(String errorType, int maxDeadLetters, int ratePerSecond) {
+        return Mono.fromCallable(() -> {
+            int rate = ratePerSecond > 0 ? ratePerSecond : streamWorkerConfiguration.getDeadLetterReplayRate();
+            DeadLetterReplay replay = new DeadLetterReplay(errorType, maxDeadLetters, rate);
+            if (deadLetterReplay.updateAndGet(current -> current != null && current.isRunning() ? current : replay)
+                != replay) {
+                log.info("Not replaying dead letters, a replay is running already: {}", deadLetterReplay.get());
+                return null;
+            }
+            log.info("Starting to replay at most {} dead letters with error type: {}", maxDeadLetters, errorType);
+            deadLetterReplaySubscription = replayDeadLetters(errorType, maxDeadLetters, rate)
+                .subscribe(
+                    registered -> replay.recordReplayed(),
+                    throwable -> {
+                        log.error("Replaying dead letters failed after {} dead letters", replay.getReplayed(),
+                            throwable);
+                        replay.fail(throwable);
+                    },
+                    () -> {
+                        log.info("Replayed {} dead letters", replay.getReplayed());
+                        replay.complete();
+                    });
+            return replay;
+        });
+    }
+
+    /**
+     * @return the replay of dead letters started last, empty when none was started
+     */
+    public Mono<DeadLetterReplay> getDeadLetterReplay() {
+        return Mono.justOrEmpty(deadLetterReplay.get());
+    }
+
+    private Mono<UnitOfWork<T>> replay(DeadLetter<T> deadLetter) {
+        UnitOfWork<T> unitOfWork = deadLetter.getUnitOfWork();
+        log.info("Replaying dead letter of Unit Of Work: {} which failed with {}", unitOfWork.getUnitOfOWorkId(),
+            deadLetter.getErrorType());
+        unitOfWork.getStreamTasks().stream()
+            .filter(streamTask -> !streamTask.isCompleted())
+            .forEach(streamTask -> {
+                streamTask.setState(StreamTask.State.ACCEPTED);
+                streamTask.setAttempts(0);
+                streamTask.setRetryable(true);
+            });
+        unitOfWork.setRetries(0);
+        unitOfWork.setLockedAt(null);
+        unitOfWork.setLockedBy(null);
+        unitOfWork.setFinishedAt(null);
+        unitOfWork.setPriority(UnitOfWork.Priority.BULK);
+        // The unit of work was deleted when it was moved to the dead letters, it is registered as a new one
+        unitOfWork.setVersion(0);
+        return register(unitOfWork)
+            .flatMap(registered -> deadLetterStore.deleteById(registered.getUnitOfOWorkId())
+                .thenReturn(registered))
+            .doOnNext(registered -> metrics.recordReplayed(deadLetter.getErrorType()));
     }
 
     public Flux<UnitOfWork<T>> getScheduler() {
+        startBackgroundWork();
         if (this.scheduler == null) {
-            this.scheduler = Flux.interval(streamWorkerConfiguration.getSchedulerIntervalDuration())
+            AtomicLong triggers = new AtomicLong();
+            this.scheduler = Flux.merge(polls(), wakeUps.asFlux())
                 .name("unitofwork-executor")
                 .publishOn(workUnitExecutor)
-                .doOnNext(aLong -> {
-                    log.info("Starting to look for work for the {} time", aLong);
+                // Triggers arriving while draining collapse into a single drain afterwards.
+                .onBackpressureLatest()
+                .doOnNext(trigger -> {
+                    log.debug("Starting to look for work for the {} time", triggers.incrementAndGet());
                 })
-                .flatMap(i -> selectUnitOfWork())
-                .flatMap(this::executeUnitOfWork);
+                .flatMap(i -> drainUnitsOfWork(), 1, 1);
         }
         return this.scheduler;
     }
 
-    @SuppressWarnings("ComparatorMethodParameterNotUsed")
+    /**
+     * Polls at the scheduler interval while work is found, backing off up to the maximum interval while it is not.
+     */
+    private Flux<Long> polls() {
+        return Mono.defer(() -> Mono.delay(pollInterval.get()))
+            .repeat();
+    }
+
+    private void adaptPollInterval(boolean foundWork) {
+        Duration minInterval = streamWorkerConfiguration.getSchedulerIntervalDuration();
+        Duration maxInterval = streamWorkerConfiguration.getSchedulerMaxIntervalDuration();
+        Duration interval = pollInterval.updateAndGet(current -> {
+            if (foundWork || maxInterval == null || maxInterval.compareTo(minInterval) <= 0) {
+                return minInterval;
+            }
+            Duration backedOff = current.multipliedBy(2);
+            return backedOff.compareTo(maxInterval) > 0 ? maxInterval : backedOff;
+        });
+        log.trace("Polling for work every {}", interval);
+    }
+
+    /**
+     * Claims and executes batches of due units of work until no priority lane fills its share of a batch anymore.
+     *
+     * @return executed units of work
+     */
+    private Flux<UnitOfWork<T>> drainUnitsOfWork() {
+        // Every partition gets the chance to execute a unit of work per batch
+        int claimBatchSize = Math.max(Math.max(1, streamWorkerConfiguration.getClaimBatchSize()),
+            streamWorkerConfiguration.getPartitions());
+        AtomicBoolean moreWork = new AtomicBoolean();
+        AtomicBoolean foundWork = new AtomicBoolean();
+        return Flux.defer(() -> {
+            moreWork.set(false);
+            if (stopping) {
+                return Flux.empty();
+            }
+            return claimUnitsOfWork(claimBatchSize, EnumSet.allOf(UnitOfWork.Priority.class), new ArrayList<>(),
+                moreWork)
+                .flatMapMany(unitsOfWork -> {
+                    foundWork.compareAndSet(false, !unitsOfWork.isEmpty());
+                    return dispatchUnitsOfWork(unitsOfWork);
+                });
+        })
+            .repeat(moreWork::get)
+            .doOnComplete(() -> adaptPollInterval(foundWork.get()))
+            .concatWith(metrics.refreshQueueDepth().then(Mono.empty()));
+    }
+
+    /**
+     * Claim due units of work, so they are executed only once even when multiple workers share the repository. The
+     * slots of the batch are allotted to the priority lanes by their weights, higher priority lanes are claimed first.
+     * Slots of lanes running out of due work are allotted again to the lanes which still have due work.
+     *
+     * @param slots    number of units of work to claim
+     * @param lanes    priority lanes which may have due work
+     * @param claimed  units of work claimed so far
+     * @param moreWork set when a lane filled all its slots, so it may have more due work
+     * @return all claimed units of work
+     */
+    private Mono<List<UnitOfWork<T>>> claimUnitsOfWork(int slots, Set<UnitOfWork.Priority> lanes,
+        List<UnitOfWork<T>> claimed, AtomicBoolean moreWork) {
+        Map<UnitOfWork.Priority, Integer> allotted = priorityLanes.allot(slots, lanes);
+        if (allotted.isEmpty()) {
+            return Mono.just(claimed);
+        }
+        Set<UnitOfWork.Priority> lanesWithWork = EnumSet.copyOf(lanes);
+        AtomicInteger claimedNow = new AtomicInteger();
+        return Flux.fromIterable(allotted.entrySet())
+            .concatMap(laneSlots -> claimUnitsOfWork(laneSlots.getKey(), laneSlots.getValue())
+                .collectList()
+                .doOnNext(laneClaimed -> {
+                    claimed.addAll(laneClaimed);
+                    claimedNow.addAndGet(laneClaimed.size());
+                    if (laneClaimed.size() < laneSlots.getValue()) {
+                        lanesWithWork.remove(laneSlots.getKey());
+                    } else {
+                        moreWork.set(true);
+                    }
+                }))
+            .then(Mono.defer(() -> {
+                int slotsLeft = slots - claimedNow.get();
+                return slotsLeft > 0 && !lanesWithWork.isEmpty() && lanesWithWork.size() < lanes.size()
+                    ? claimUnitsOfWork(slotsLeft, lanesWithWork, claimed, moreWork)
+                    : Mono.just(claimed);
+            }));
+    }
+
+    private Flux<UnitOfWork<T>> claimUnitsOfWork(UnitOfWork.Priority priority, int maxUnitsOfWork) {
+        return repository.claimDue(OffsetDateTime.now(), maxUnitsOfWork, priority, nodeName)
+            .doOnNext(unitOfWork -> {
+                log.info("Locked Unit Of Work: {} from {} lane", unitOfWork.getUnitOfOWorkId(), priority);
+                lock(unitOfWork.getUnitOfOWorkId());
+                priorityLanes.started(priority);
+                metrics.recordLocked(unitOfWork);
+            });
+    }
+
+    /**
+     * Executes claimed units of work concurrently, bounded by the worker unit executors. When partitions are
+     * configured, units of work are executed one at a time per partition instead, with partitions executing in
+     * parallel.
+     */
+    private Flux<UnitOfWork<T>> dispatchUnitsOfWork(List<UnitOfWork<T>> unitsOfWork) {
+        int partitions = streamWorkerConfiguration.getPartitions();
+        if (partitions <= 0) {
+            return Flux.fromIterable(unitsOfWork)
+                .flatMap(this::dispatchUnitOfWork, Math.max(1, streamWorkerConfiguration.getWorkerUnitExecutors()));
+        }
+        return Flux.fromIterable(unitsOfWork)
+            .groupBy(unitOfWork -> partitionOf(unitOfWork, partitions))
+            .flatMap(partition -> partition.concatMap(this::dispatchUnitOfWork), partitions);
+    }
+
+    /**
+     * Partition a unit of work is executed in, derived from its partition key or else from its id.
+     *
+     * @param unitOfWork unit of work
+     * @param partitions number of partitions
+     * @return partition between 0 and the number of partitions
+     */
+    public static int partitionOf(UnitOfWork<?> unitOfWork, int partitions) {
+        String key = unitOfWork.getPartitionKey() != null
+            ? unitOfWork.getPartitionKey()
+            : unitOfWork.getUnitOfOWorkId();
+        return key != null ? Math.floorMod(key.hashCode(), partitions) : 0;
+    }
+
+    private Mono<UnitOfWork<T>> dispatchUnitOfWork(UnitOfWork<T> unitOfWork) {
+        return executeLockedUnitOfWork(unitOfWork)
+            .onErrorResume(throwable -> {
+                // Keep the scheduler alive, a single failing unit of work must not stop processing of others
+                if (throwable instanceof LockLostException) {
+                    log.warn("Node {} lost the lock of Unit Of Work: {} while executing it", nodeName,
+                        unitOfWork.getUnitOfOWorkId());
+                } else {
+                    log.error("Failed to execute Unit Of Work: {}", unitOfWork.getUnitOfOWorkId(), throwable);
+                }
+                return Mono.empty();
+            })
+            .doFinally(signal -> priorityLanes.finished(UnitOfWork.priorityOf(unitOfWork)));
+    }
+
     public Mono<UnitOfWork<T>> selectUnitOfWork() {
+        return selectUnitsOfWork(1).next();
+    }
+
+    /**
+     * Select due units of work which are not locked, in order of their next attempt.
+     *
+     * @param maxUnitsOfWork maximum number of units of work to select
+     * @return due units of work
+     */
+    public Flux<UnitOfWork<T>> selectUnitsOfWork(int maxUnitsOfWork) {
         return repository.findAllByNextAttemptAtBefore(OffsetDateTime.now())
             .filter(UnitOfWork::isUnLocked)
-//            .sort((o1, o2) -> new Random().nextInt(1))
-            .next()
+            .take(maxUnitsOfWork)
             .doOnNext(unitOfWork -> log.info("Selected Unit Of Work: {}", unitOfWork.getUnitOfOWorkId()));
     }
 
-    private Mono<UnitOfWork<T>> complete(UnitOfWork<T> unitOfWork) {
+    private Mono<UnitOfWork<T>> complete(UnitOfWork<T> unitOfWork, Collection<Throwable> failures,
+        OffsetDateTime lockedAt) {
         log.info("Completing Unit Of Work: {}", unitOfWork.getUnitOfOWorkId());
+        Duration previousDelay = unitOfWork.getRetries() > 0
+            && unitOfWork.getFinishedAt() != null && unitOfWork.getNextAttemptAt() != null
+            ? Duration.between(unitOfWork.getFinishedAt(), unitOfWork.getNextAttemptAt())
+            : null;
+        OffsetDateTime now = OffsetDateTime.now();
         unitOfWork.setLockedAt(null);
-        unitOfWork.setFinishedAt(OffsetDateTime.now());
+        unitOfWork.setLockedBy(null);
+        unitOfWork.setFinishedAt(now);
 
         boolean failed = unitOfWork.getStreamTasks().stream().anyMatch(StreamTask::isFailed);
+        boolean retryable = unitOfWork.getStreamTasks().stream()
+            .anyMatch(streamTask -> streamTask.isFailed() && streamTask.isRetryable() && hasAttemptsLeft(streamTask));
 
         if (failed) {
             int retries = unitOfWork.getRetries();
-            if (retries < streamWorkerConfiguration.getMaxRetries()) {
-                unitOfWork.setNextAttemptAt(
-                    OffsetDateTime.now().plusSeconds(streamWorkerConfiguration.getRetryDuration().getSeconds()));
+            if (retryable && retries < streamWorkerConfiguration.getMaxRetries()) {
+                Duration delay = retryPolicy.nextDelay(retries + 1, previousDelay, failures);
+                log.info("Retrying Unit Of Work: {} in {}", unitOfWork.getUnitOfOWorkId(), delay);
+                unitOfWork.setNextAttemptAt(now.plus(delay));
                 unitOfWork.setRetries(retries + 1);
                 unitOfWork.setState(UnitOfWork.State.FAILED);
                 unitOfWork.setLockedAt(null);
@@ -99,16 +945,141 @@ public abstract class UnitOfWorkExecutor<T extends StreamTask> {
             unitOfWork.setState(UnitOfWork.State.COMPLETED);
         }
 
+        metrics.recordCompleted(unitOfWork, lockedAt);
+        boolean exhausted = unitOfWork.getState() == UnitOfWork.State.FAILED_RETRIES_EXHAUSTED;
+        boolean rollBack = exhausted && streamWorkerConfiguration.isRollbackExhausted();
+        boolean deadLetter = exhausted && !rollBack && streamWorkerConfiguration.isDeadLetterExhausted();
+        if (UnitOfWork.isFinished(unitOfWork) && !rollBack && !deadLetter
+            && streamWorkerConfiguration.isCompactFinishedUnitsOfWork()) {
+            // Payloads are not needed anymore without another attempt, a rollback or a replay
+            unitOfWork.getStreamTasks().forEach(StreamTask::compact);
+            metrics.recordCompacted();
+        }
+        if (deadLetter) {
+            Throwable lastFailure = null;
+            for (Throwable failure : failures) {
+                lastFailure = failure;
+            }
+            return moveToDeadLetters(unitOfWork, lastFailure);
+        }
         return repository.save(unitOfWork);
     }
 
+    /**
+     * Move a unit of work which failed without retries left into the dead letter store. The dead letter is stored
+     * before the unit of work is deleted, so a failure in between leaves it in both rather than in neither. A unit of
+     * work which could not be stored as dead letter stays in the repository.
+     */
+    private Mono<UnitOfWork<T>> moveToDeadLetters(UnitOfWork<T> unitOfWork, Throwable lastFailure) {
+        DeadLetter<T> deadLetter = DeadLetter.from(unitOfWork, lastFailure);
+        log.warn("Moving Unit Of Work: {} which failed with {} to the dead letters", unitOfWork.getUnitOfOWorkId(),
+            deadLetter.getErrorType());
+        return deadLetterStore.save(deadLetter)
+            .then(repository.delete(unitOfWork))
+            .doOnSuccess(deleted -> metrics.recordDeadLettered(deadLetter.getErrorType()))
+            .thenReturn(unitOfWork)
+            .onErrorResume(throwable -> {
+                log.error("Failed to move Unit Of Work: {} to the dead letters", unitOfWork.getUnitOfOWorkId(),
+                    throwable);
+                return repository.save(unitOfWork);
+            });
+    }
+
 
+    /**
+     * Executes a unit of work right away, without registering it for the scheduler. Units of work sharing a partition
+     * key are executed one at a time, in the order in which their executions are subscribed to, so callers keep the
+     * order of a key while executing units of work of different keys concurrently.
+     */
     @NewSpan
     public Mono<UnitOfWork<T>> executeUnitOfWork(UnitOfWork<T> unitOfWork) {
+        String partitionKey = unitOfWork.getPartitionKey();
+        if (partitionKey == null) {
+            return executeUnlockedUnitOfWork(unitOfWork);
+        }
+        return Mono.defer(() -> {
+            Sinks.Empty<Void> done = Sinks.empty();
+            Mono<Void> tail = done.asMono();
+            AtomicReference<Mono<Void>> previous = new AtomicReference<>(Mono.empty());
+            partitionTails.compute(partitionKey, (key, current) -> {
+                if (current != null) {
+                    previous.set(current);
+                }
+                return tail;
+            });
+            return previous.get()
+                .then(executeUnlockedUnitOfWork(unitOfWork))
+                // A cancelled waiter hands over its turn only once the execution ahead of it is done as well
+                .doFinally(signal -> previous.get().subscribe(null, null, () -> {
+                    partitionTails.remove(partitionKey, tail);
+                    done.tryEmitEmpty();
+                }));
+        });
+    }
+
+    private Mono<UnitOfWork<T>> executeUnlockedUnitOfWork(UnitOfWork<T> unitOfWork) {
         return Mono.just(unitOfWork)
             .flatMap(this::setLocked)
-            .flatMap(this::executeTasks)
-            .flatMap(this::complete);
+            .flatMap(locked -> {
+                UnitOfWork.Priority priority = UnitOfWork.priorityOf(locked);
+                priorityLanes.started(priority);
+                return executeLockedUnitOfWork(locked)
+                    .doFinally(signal -> priorityLanes.finished(priority));
+            });
+    }
+
+    /**
+     * Executes the pending tasks of a locked unit of work and completes it. The unit of work is completed even when
+     * tasks fail or time out, after which the first failure is signalled to the caller. The lock is renewed by
+     * heartbeat until the unit of work is completed. Execution is cancelled when the stale lock reaper gives up on it
+     * or the heartbeat finds its lock lost, after which a {@link LockLostException} is signalled to the caller.
+     */
+    private Mono<UnitOfWork<T>> executeLockedUnitOfWork(UnitOfWork<T> unitOfWork) {
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        // Heartbeats move the lock time, executions are timed from the original lock
+        OffsetDateTime lockedAt = unitOfWork.getLockedAt();
+        LockedUnitOfWork locked = lock(unitOfWork.getUnitOfOWorkId());
+        Duration unitOfWorkTimeout = streamWorkerConfiguration.getUnitOfWorkTimeout();
+        Mono<UnitOfWork<T>> executed = executeTasks(unitOfWork, failures);
+        if (unitOfWorkTimeout != null) {
+            executed = executed.timeout(unitOfWorkTimeout,
+                Mono.fromCallable(() -> timedOut(unitOfWork, unitOfWorkTimeout, failures)));
+        }
+        return executed
+            .flatMap(actual -> {
+                locked.completing = true;
+                return complete(actual, failures, lockedAt);
+            })
+            .flatMap(completed -> failures.isEmpty()
+                ? Mono.just(completed)
+                : Mono.error(failures.peek()))
+            .takeUntilOther(locked.reaped.asMono())
+            // Only a reaped execution completes without its unit of work, which callers must not take as success
+            .switchIfEmpty(Mono.error(() -> new LockLostException(
+                Collections.singletonList(unitOfWork.getUnitOfOWorkId()))))
+            .doFinally(signal -> lockedUnitsOfWork.remove(unitOfWork.getUnitOfOWorkId(), locked));
+    }
+
+    /**
+     * Fail the stream tasks of a unit of work which did not complete or fail before its execution timed out, so they
+     * are retried like any other failure.
+     */
+    private UnitOfWork<T> timedOut(UnitOfWork<T> unitOfWork, Duration timeout, Queue<Throwable> failures) {
+        log.warn("Unit Of Work: {} timed out after {}", unitOfWork.getUnitOfOWorkId(), timeout);
+        metrics.recordTimeout("unit-of-work");
+        TimeoutException timeoutException = new TimeoutException("Unit of work timed out after " + timeout);
+        unitOfWork.getStreamTasks().stream()
+            .filter(streamTask -> !streamTask.isCompleted() && !streamTask.isFailed())
+            .forEach(streamTask -> {
+                streamTask.error("stream-task", "execute", "timeout", streamTask.getId(), null, timeoutException,
+                    null, "Unit of work timed out after %s", timeout);
+                streamTask.setState(StreamTask.State.FAILED);
+                if (streamTask.getFinishedAt() == null && streamTask.getAttempts() > 0) {
+                    streamTask.setFinishedAt(OffsetDateTime.now());
+                }
+            });
+        failures.add(timeoutException);
+        return unitOfWork;
     }
 
     @ContinueSpan(log = "Locking Unit Of Work")
@@ -116,26 +1087,83 @@ public abstract class UnitOfWorkExecutor<T extends StreamTask> {
         @SpanTag(value = "unit-of-work", expression = "${unitOfWork.unitOfOWorkId}") UnitOfWork<T> unitOfWork) {
         log.info("Locking Unit Of Work: {}", unitOfWork.getUnitOfOWorkId());
         unitOfWork.setLockedAt(OffsetDateTime.now());
+        unitOfWork.setLockedBy(nodeName);
         unitOfWork.setState(UnitOfWork.State.IN_PROGRESS);
         return repository.save(unitOfWork);
     }
 
 
+    /**
+     * Executes the pending stream tasks of a unit of work. Tasks which completed in an earlier attempt, which failed
+     * without being retryable or which have no attempts left are skipped. Failing tasks are marked failed without
+     * failing the other tasks. Concurrency and ordering of the tasks follow the task concurrency, prefetch and ordering
+     * of the stream worker configuration.
+     */
     public Mono<UnitOfWork<T>> executeTasks(UnitOfWork<T> unitOfWork) {
-        return Flux.fromIterable(unitOfWork.getStreamTasks())
-            .publishOn(taskExecutor)
+        return executeTasks(unitOfWork, new ConcurrentLinkedQueue<>());
+    }
+
+    private Mono<UnitOfWork<T>> executeTasks(UnitOfWork<T> unitOfWork, Queue<Throwable> failures) {
+        startBackgroundWork();
+        int concurrency = Math.max(1, streamWorkerConfiguration.getTaskConcurrency());
+        Function<T, Mono<T>> runTask = streamTask -> taskRateLimiter.acquire()
+            .then(Mono.fromCallable(() -> startTask(unitOfWork, streamTask)))
+            .flatMap(started -> executeTask(unitOfWork, started, started.getId(), failures))
+            .map(executed -> endTask(unitOfWork, executed));
+
+        Flux<T> streamTasks = Flux.fromIterable(unitOfWork.getStreamTasks())
+            .filter(streamTask -> isPending(unitOfWork, streamTask))
+            .publishOn(taskExecutor, Math.max(1, streamWorkerConfiguration.getTaskPrefetch()))
             .name("task-executor")
-            .tag("stream-unit-of-work-id", unitOfWork.getUnitOfOWorkId())
-            .map(streamTask -> startTask(unitOfWork, streamTask))
-            .flatMap(streamTask -> executeTask(unitOfWork, streamTask, streamTask.getId()))
-            .map(streamTask -> endTask(unitOfWork, streamTask))
+            .tag("stream-unit-of-work-id", unitOfWork.getUnitOfOWorkId());
+
+        Flux<T> executedTasks = streamWorkerConfiguration.getTaskOrdering() == TaskOrdering.SEQUENTIAL
+            ? streamTasks.concatMap(runTask)
+            : streamTasks.flatMap(runTask, concurrency);
+        return executedTasks
             .collectList()
             .zipWith(Mono.just(unitOfWork), (tasks, actual) -> actual);
     }
 
 
-    private Mono<T> executeTask(UnitOfWork<T> unitOfWork, T streamTask, @SpanTag("stream-task") String streamTaskId) {
-        return streamTaskExecutor.executeTask(streamTask)
+    private boolean isPending(UnitOfWork<T> unitOfWork, T streamTask) {
+        if (streamTask.isCompleted()) {
+            log.debug("Skipping completed Task: {} from Unit Of Work: {}", streamTask.getId(),
+                unitOfWork.getUnitOfOWorkId());
+            return false;
+        }
+        if (!streamTask.isRetryable()) {
+            log.debug("Skipping non-retryable Task: {} from Unit Of Work: {}", streamTask.getId(),
+                unitOfWork.getUnitOfOWorkId());
+            return false;
+        }
+        if (!hasAttemptsLeft(streamTask)) {
+            log.debug("Skipping Task: {} from Unit Of Work: {} without attempts left", streamTask.getId(),
+                unitOfWork.getUnitOfOWorkId());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean hasAttemptsLeft(StreamTask streamTask) {
+        int maxTaskAttempts = streamWorkerConfiguration.getMaxTaskAttempts();
+        return maxTaskAttempts < 0 || streamTask.getAttempts() < maxTaskAttempts;
+    }
+
+    private Mono<T> executeTask(UnitOfWork<T> unitOfWork, T streamTask, @SpanTag("stream-task") String streamTaskId,
+        Queue<Throwable> failures) {
+        Duration taskTimeout = streamWorkerConfiguration.getTaskTimeout();
+        Mono<T> execution = streamTaskExecutor.executeTask(streamTask);
+        if (taskTimeout != null) {
+            execution = execution.timeout(taskTimeout, Mono.defer(() -> {
+                metrics.recordTimeout("task");
+                TimeoutException timeoutException = new TimeoutException("Task timed out after " + taskTimeout);
+                streamTask.error("stream-task", "execute", "timeout", streamTaskId, null, timeoutException, null,
+                    "Task timed out after %s", taskTimeout);
+                return Mono.error(timeoutException);
+            }));
+        }
+        return execution
             .map(actual -> {
                 actual.setState(StreamTask.State.COMPLETED);
                 return actual;
@@ -143,18 +1171,25 @@ public abstract class UnitOfWorkExecutor<T extends StreamTask> {
             .onErrorResume(Throwable.class, throwable -> {
                 log.error("Stream Task: {} from Unit Of Work: {} failed: \n{}",
                     streamTaskId,
-                    streamTask.getId(),
+                    unitOfWork.getUnitOfOWorkId(),
                     streamTask.getHistory().stream().map(TaskHistory::toString)
                         .collect(Collectors.joining("\n")));
                 streamTask.setState(StreamTask.State.FAILED);
-                return Mono.error(throwable);
-//                return Mono.just(streamTask);
+                streamTask.setRetryable(retryPolicy.isRetryable(throwable));
+                failures.add(throwable);
+                return Mono.just(streamTask);
             });
     }
 
+    private <R> Mono<R> withTaskTimeout(Mono<R> execution) {
+        Duration taskTimeout = streamWorkerConfiguration.getTaskTimeout();
+        return taskTimeout != null ? execution.timeout(taskTimeout) : execution;
+    }
+
     private T startTask(UnitOfWork<T> unitOfWork, T streamTask) {
         log.info("Starting Task: {} from Unit Of Work: {}", streamTask.getId(), unitOfWork.getUnitOfOWorkId());
         streamTask.setState(StreamTask.State.IN_PROGRESS);
+        streamTask.setAttempts(streamTask.getAttempts() + 1);
         streamTask.setRegisteredAt(OffsetDateTime.now());
         return streamTask;
     }
@@ -162,11 +1197,59 @@ public abstract class UnitOfWorkExecutor<T extends StreamTask> {
     private T endTask(UnitOfWork<T> unitOfWork, T streamTask) {
         log.info("Ending Task: {} from Unit Of Work: {}", streamTask.getId(), unitOfWork.getUnitOfOWorkId());
         streamTask.setFinishedAt(OffsetDateTime.now());
+        metrics.recordTask(streamTask);
         streamTask.logSummary();
         return streamTask;
     }
 
+    /**
+     * Replace the retry policy, which by default backs off as configured in the stream worker configuration.
+     *
+     * @param retryPolicy retry policy
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Replace the dead letter store, which by default keeps dead letters in memory.
+     *
+     * @param deadLetterStore dead letter store
+     */
+    public void setDeadLetterStore(DeadLetterStore<T> deadLetterStore) {
+        this.deadLetterStore = deadLetterStore;
+    }
+
+    public DeadLetterStore<T> getDeadLetterStore() {
+        return deadLetterStore;
+    }
+
+    public String getNodeName() {
+        return nodeName;
+    }
+
+    public PriorityLanes getPriorityLanes() {
+        return priorityLanes;
+    }
+
+    public TokenBucketRateLimiter getTaskRateLimiter() {
+        return taskRateLimiter;
+    }
+
     public StreamWorkerConfiguration getStreamWorkerConfiguration() {
         return streamWorkerConfiguration;
     }
+
+    /**
+     * Lock of this node on a unit of work, signalled when the stale lock reaper gives up on it or the lock is lost.
+     */
+    private static final class LockedUnitOfWork {
+
+        private final long lockedAt = System.nanoTime();
+        private final Sinks.Empty<Void> reaped = Sinks.empty();
+        /**
+         * Set once the unit of work is being completed, which releases the lock as part of saving the result.
+         */
+        private volatile boolean completing;
+    }
 }
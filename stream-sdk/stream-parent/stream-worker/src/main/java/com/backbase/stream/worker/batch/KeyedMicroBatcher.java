@@ -0,0 +1,191 @@
+package com.backbase.stream.worker.batch;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import reactor.core.publisher.Flux;
+
+/**
+ * Batches a stream of items per key, so downstream calls carry full batches rather than whatever happened to arrive
+ * together. Every key has at most one open batch, which is flushed when it is full, when it is older than the maximum
+ * age, when too many items are buffered across all open batches, or when a batch for a new key is opened while the
+ * maximum number of open batches is reached. Batches of the same key are emitted in the order of their items.
+ *
+ * <p>When too many items are buffered the largest open batch is flushed, when too many batches are open the oldest
+ * open batch is flushed. All open batches are flushed when the items complete.</p>
+ *
+ * @param <K> key type
+ * @param <T> item type
+ */
+public class KeyedMicroBatcher<K, T> {
+
+    private final int maxBatchSize;
+    private final Duration maxBatchAge;
+    private final int maxOpenBatches;
+    private final int maxBufferedItems;
+
+    /**
+     * Create a micro-batcher.
+     *
+     * @param maxBatchSize     maximum number of items per batch
+     * @param maxBatchAge      maximum time a batch stays open after its first item, null to only flush on size
+     * @param maxOpenBatches   maximum number of keys with an open batch, -1 for no maximum
+     * @param maxBufferedItems maximum number of items across all open batches, -1 for no maximum
+     */
+    public KeyedMicroBatcher(int maxBatchSize, Duration maxBatchAge, int maxOpenBatches, int maxBufferedItems) {
+        this.maxBatchSize = Math.max(1, maxBatchSize);
+        this.maxBatchAge = maxBatchAge;
+        this.maxOpenBatches = maxOpenBatches;
+        this.maxBufferedItems = maxBufferedItems;
+    }
+
+    /**
+     * Batch items per key.
+     *
+     * @param items        items to batch
+     * @param keyExtractor key of an item
+     * @return batches, each holding items of a single key in the order they arrived
+     */
+    public Flux<Batch<K, T>> batch(Flux<T> items, Function<T, K> keyExtractor) {
+        return Flux.defer(() -> {
+            OpenBatches openBatches = new OpenBatches(keyExtractor);
+            // Arrivals and age checks are merged into a single sequence, so batches of a key cannot overtake each other
+            Flux<Optional<T>> arrivals = items.map(Optional::of);
+            Flux<Optional<T>> events = maxBatchAge == null
+                ? arrivals
+                : arrivals.publish(shared -> Flux.merge(shared, Flux.interval(ageCheckInterval())
+                    .onBackpressureDrop()
+                    .map(tick -> Optional.<T>empty())
+                    .takeUntilOther(shared.then())));
+            return events
+                .concatMapIterable(event -> event.isPresent()
+                    ? openBatches.add(event.get())
+                    : openBatches.flushExpired(System.nanoTime() - maxBatchAge.toNanos()))
+                .concatWith(Flux.defer(() -> Flux.fromIterable(openBatches.flushAll())));
+        });
+    }
+
+    private Duration ageCheckInterval() {
+        Duration interval = maxBatchAge.dividedBy(4);
+        return interval.compareTo(Duration.ofMillis(1)) < 0 ? Duration.ofMillis(1) : interval;
+    }
+
+    /**
+     * Open batches of a single subscription, in the order they were opened.
+     */
+    private class OpenBatches {
+
+        private final Function<T, K> keyExtractor;
+        private final Map<K, Batch<K, T>> batches = new LinkedHashMap<>();
+        private int bufferedItems;
+        private long sequence;
+
+        OpenBatches(Function<T, K> keyExtractor) {
+            this.keyExtractor = keyExtractor;
+        }
+
+        synchronized List<Batch<K, T>> add(T item) {
+            List<Batch<K, T>> flushed = new ArrayList<>();
+            K key = keyExtractor.apply(item);
+            Batch<K, T> batch = batches.get(key);
+            if (batch == null) {
+                if (maxOpenBatches > 0 && batches.size() >= maxOpenBatches) {
+                    flushed.add(flush(batches.keySet().iterator().next()));
+                }
+                batch = new Batch<>(key, sequence++, System.nanoTime());
+                batches.put(key, batch);
+            }
+            batch.items.add(item);
+            bufferedItems++;
+            if (batch.size() >= maxBatchSize) {
+                flushed.add(flush(key));
+            }
+            if (maxBufferedItems > 0 && bufferedItems > maxBufferedItems) {
+                flushed.add(flush(largestKey()));
+            }
+            return flushed;
+        }
+
+        synchronized List<Batch<K, T>> flushExpired(long openedBefore) {
+            List<Batch<K, T>> flushed = new ArrayList<>();
+            Iterator<Batch<K, T>> iterator = batches.values().iterator();
+            while (iterator.hasNext()) {
+                Batch<K, T> batch = iterator.next();
+                if (batch.openedAt - openedBefore <= 0) {
+                    iterator.remove();
+                    bufferedItems -= batch.size();
+                    flushed.add(batch);
+                }
+            }
+            return flushed;
+        }
+
+        synchronized List<Batch<K, T>> flushAll() {
+            List<Batch<K, T>> flushed = new ArrayList<>(batches.values());
+            batches.clear();
+            bufferedItems = 0;
+            return flushed;
+        }
+
+        private Batch<K, T> flush(K key) {
+            Batch<K, T> batch = batches.remove(key);
+            bufferedItems -= batch.size();
+            return batch;
+        }
+
+        private K largestKey() {
+            Batch<K, T> largest = null;
+            for (Batch<K, T> batch : batches.values()) {
+                if (largest == null || batch.size() > largest.size()) {
+                    largest = batch;
+                }
+            }
+            return largest.key;
+        }
+    }
+
+    /**
+     * Items of a single key flushed together.
+     *
+     * @param <K> key type
+     * @param <T> item type
+     */
+    public static class Batch<K, T> {
+
+        private final K key;
+        private final long sequence;
+        private final long openedAt;
+        private final List<T> items = new ArrayList<>();
+
+        Batch(K key, long sequence, long openedAt) {
+            this.key = key;
+            this.sequence = sequence;
+            this.openedAt = openedAt;
+        }
+
+        public K getKey() {
+            return key;
+        }
+
+        /**
+         * Number of batches opened before this one by the same subscription, unique per subscription.
+         */
+        public long getSequence() {
+            return sequence;
+        }
+
+        public List<T> getItems() {
+            return Collections.unmodifiableList(items);
+        }
+
+        public int size() {
+            return items.size();
+        }
+    }
+}
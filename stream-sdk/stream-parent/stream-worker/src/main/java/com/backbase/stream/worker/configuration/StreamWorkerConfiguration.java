@@ -1,6 +1,9 @@
 package com.backbase.stream.worker.configuration;
 
+import com.backbase.stream.worker.model.UnitOfWork;
 import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 
@@ -9,20 +12,244 @@ public abstract class StreamWorkerConfiguration {
 
     private int workerUnitExecutors = 1;
 
+    /**
+     * Maximum number of due units of work claimed per scheduler tick. Claimed units of work are executed concurrently,
+     * bounded by the number of worker unit executors. When a full batch is claimed the scheduler continues claiming
+     * immediately instead of waiting for the next tick.
+     */
+    private int claimBatchSize = 1;
+
+    /**
+     * Number of serial partitions claimed units of work are executed in, 0 to not partition execution. Units of work
+     * are hashed onto a partition by their partition key, or by their id when they have no partition key. Each
+     * partition executes one unit of work at a time, in parallel with the other partitions. Claim batches hold at least
+     * one unit of work per partition.
+     */
+    private int partitions = 0;
+
+    /**
+     * Relative share of claimed units of work per priority lane while units of work of multiple lanes are due. Lanes
+     * without a weight have a weight of one.
+     */
+    private Map<UnitOfWork.Priority, Integer> priorityWeights = defaultPriorityWeights();
+
+    /**
+     * Maximum number of units of work per priority lane executing at once. Lanes without a maximum are only bounded by
+     * the worker unit executors.
+     */
+    private Map<UnitOfWork.Priority, Integer> priorityConcurrency = new EnumMap<>(UnitOfWork.Priority.class);
+
     private int taskExecutors = 1 ;
 
+    /**
+     * Maximum number of stream tasks of a single unit of work executed concurrently.
+     */
+    private int taskConcurrency = 256;
+
+    /**
+     * Number of stream tasks of a single unit of work handed to the task executors ahead of execution.
+     */
+    private int taskPrefetch = 256;
+
+    /**
+     * Order in which stream tasks of a single unit of work are executed and their results are collected.
+     */
+    private TaskOrdering taskOrdering = TaskOrdering.UNORDERED;
+
+    /**
+     * Maximum time a single stream task may take, empty for no limit. A stream task taking longer is cancelled and
+     * fails with a timeout, which is retried like any other retryable failure.
+     */
+    private Duration taskTimeout;
+
+    /**
+     * Maximum time the stream tasks of a unit of work may take together in a single attempt, empty for no limit. When
+     * exceeded, executing stream tasks are cancelled and all stream tasks which did not complete fail with a timeout.
+     */
+    private Duration unitOfWorkTimeout;
+
+    /**
+     * Time after which a node gives up on a unit of work it locked, empty to never give up. Its execution is cancelled
+     * and its lock is released, so it is executed again. Without leases, locks of other nodes held longer are released
+     * as well, so this should comfortably exceed the unit of work timeout.
+     */
+    private Duration staleLockTimeout;
+
     private int maxRetries = 3;
 
+    /**
+     * Maximum number of times a single stream task is started, -1 for no maximum other than the retries of its unit of
+     * work. Retries of a unit of work only start tasks which did not complete yet and have attempts left.
+     */
+    private int maxTaskAttempts = -1;
+
     private int bufferSize = 10;
 
     private Duration bufferMaxTime = Duration.ofMillis(100);
 
+    /**
+     * Interval between polls for due units of work while work is being found. Newly registered units of work wake up
+     * the scheduler immediately, polling picks up retries and work registered by other workers.
+     */
     private Duration schedulerIntervalDuration = Duration.ofSeconds(5);
 
+    /**
+     * Upper bound for the poll interval. Every poll finding no work doubles the interval up to this maximum, the first
+     * poll finding work resets it to the scheduler interval.
+     */
+    private Duration schedulerMaxIntervalDuration = Duration.ofSeconds(30);
+
+    /**
+     * Delay before retrying a failed unit of work, the base delay when backing off.
+     */
     private Duration retryDuration = Duration.ofMinutes(1);
 
+    /**
+     * Upper bound for the delay before retrying a failed unit of work.
+     */
+    private Duration retryMaxDuration = Duration.ofMinutes(30);
+
+    /**
+     * Factor by which the retry delay grows on every retry with exponential backoff.
+     */
+    private double retryMultiplier = 2;
+
+    /**
+     * How the delay before retrying a failed unit of work develops over its retries.
+     */
+    private RetryBackoff retryBackoff = RetryBackoff.FIXED;
+
+    /**
+     * Minimum delay between starting two stream tasks of this executor.
+     */
     private Duration delayBetweenTasks = Duration.ZERO;
 
+    /**
+     * Maximum number of stream tasks started per second by this executor, -1 for no limit.
+     */
     private int rateLimit = -1;
 
+    /**
+     * Number of stream tasks which may start at once after the executor has been idle, before the rate limit or delay
+     * between tasks applies.
+     */
+    private int rateLimitBurst = 1;
+
+    /**
+     * How long finished units of work are kept after finishing, empty to keep them until evicted by count.
+     */
+    private Duration finishedRetention;
+
+    /**
+     * Maximum number of finished units of work kept, -1 for no maximum. The oldest finished units of work are evicted
+     * first.
+     */
+    private int maxFinishedUnitsOfWork = -1;
+
+    /**
+     * Drop the payloads of stream tasks once their unit of work is finished, keeping ids, state, timings and errors.
+     */
+    private boolean compactFinishedUnitsOfWork = false;
+
+    /**
+     * Interval at which finished units of work are evicted, when a finished retention or maximum is configured.
+     */
+    private Duration retentionSweepInterval = Duration.ofMinutes(1);
+
+    /**
+     * Name of this node among the workers sharing a repository, defaults to the name of the running JVM.
+     */
+    private String nodeName;
+
+    /**
+     * How long the lock of a unit of work stays valid without being renewed, empty for locks which never expire.
+     * Executors renew the locks of the units of work they execute by heartbeat, and release locks which expired
+     * because their node stopped sending heartbeats, so units of work of a crashed node are executed again elsewhere.
+     */
+    private Duration leaseDuration;
+
+    /**
+     * Interval at which leases are renewed and expired locks are released, defaults to a third of the lease duration.
+     */
+    private Duration heartbeatInterval;
+
+    /**
+     * Roll back units of work which failed without retries left, by rolling back their started stream tasks in reverse
+     * order. Rolled back units of work end up rollback completed, or rollback failed when any rollback failed.
+     */
+    private boolean rollbackExhausted = false;
+
+    /**
+     * Maximum number of units of work rolled back concurrently.
+     */
+    private int rollbackConcurrency = 4;
+
+    /**
+     * Number of times the rollback of a single stream task is retried before the rollback of its unit of work fails.
+     */
+    private int rollbackMaxRetries = 3;
+
+    /**
+     * Delay before retrying the rollback of a stream task, doubling on every retry.
+     */
+    private Duration rollbackRetryDuration = Duration.ofSeconds(1);
+
+    /**
+     * Move units of work which failed without retries left into the dead letter store of the executor, from where they
+     * are replayed on request. Units of work which are rolled back are not dead lettered.
+     */
+    private boolean deadLetterExhausted = false;
+
+    /**
+     * Default maximum number of dead letters replayed per second, so replaying does not flood the queue.
+     */
+    private int deadLetterReplayRate = 10;
+
+    /**
+     * Start the scheduler of executors when the application context starts, rather than leaving it to the application.
+     * Executors which only execute units of work directly, such as those of transactions and limits, never start it.
+     */
+    private boolean autoStartup = true;
+
+    /**
+     * How long stopping an executor waits for the units of work it is executing to finish. Units of work still
+     * executing afterwards are interrupted and their locks are released, so they are executed again.
+     */
+    private Duration shutdownTimeout = Duration.ofSeconds(30);
+
+    private static Map<UnitOfWork.Priority, Integer> defaultPriorityWeights() {
+        Map<UnitOfWork.Priority, Integer> weights = new EnumMap<>(UnitOfWork.Priority.class);
+        weights.put(UnitOfWork.Priority.INTERACTIVE, 8);
+        weights.put(UnitOfWork.Priority.NORMAL, 4);
+        weights.put(UnitOfWork.Priority.BULK, 1);
+        return weights;
+    }
+
+    public enum RetryBackoff {
+        /**
+         * Retry after the retry duration every time.
+         */
+        FIXED,
+        /**
+         * Multiply the retry delay with the retry multiplier on every retry.
+         */
+        EXPONENTIAL,
+        /**
+         * Pick a random retry delay between the retry duration and three times the previous delay, so units of work
+         * failing at the same time do not retry at the same time.
+         */
+        DECORRELATED_JITTER
+    }
+
+    public enum TaskOrdering {
+        /**
+         * Execute stream tasks concurrently, collecting results as they complete.
+         */
+        UNORDERED,
+        /**
+         * Execute stream tasks one after the other.
+         */
+        SEQUENTIAL
+    }
+
 }
@@ -0,0 +1,62 @@
+package com.backbase.stream.worker.configuration;
+
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.TaskHistoryPolicy;
+import com.backbase.stream.worker.model.TaskHistorySink;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Applies the configured task history policy to all stream tasks.
+ */
+@Slf4j
+@Configuration
+@EnableConfigurationProperties(TaskHistoryConfigurationProperties.class)
+public class TaskHistoryAutoConfiguration {
+
+    /**
+     * Default sink of streamed task history, writing entries to the log.
+     */
+    @Bean
+    @ConditionalOnMissingBean
+    public TaskHistorySink loggingTaskHistorySink() {
+        return (streamTask, taskHistory) -> log.info("Stream Task: {} {}", streamTask.getId(),
+            taskHistory.toDisplayString());
+    }
+
+    @Bean
+    public TaskHistoryPolicy taskHistoryPolicy(TaskHistoryConfigurationProperties properties,
+        ObjectProvider<TaskHistorySink> taskHistorySink) {
+        TaskHistoryPolicy taskHistoryPolicy;
+        switch (properties.getMode()) {
+            case BOUNDED:
+                taskHistoryPolicy = TaskHistoryPolicy.bounded(properties.getMaxInfo(), properties.getMaxWarn(),
+                    properties.getMaxError());
+                break;
+            case STREAMING:
+                taskHistoryPolicy = TaskHistoryPolicy.streaming(taskHistorySink.getObject(), properties.getMaxError());
+                break;
+            default:
+                taskHistoryPolicy = TaskHistoryPolicy.unbounded();
+                break;
+        }
+        log.info("Stream task history mode: {}", properties.getMode());
+        return taskHistoryPolicy;
+    }
+
+    /**
+     * Applies the task history policy once all singletons are instantiated. That is before any executor is started, so
+     * all tasks of units of work keep their history according to the policy. Tasks created while beans are still being
+     * initialized keep an unbounded history.
+     */
+    @Bean
+    public SmartInitializingSingleton taskHistoryPolicyInitializer(TaskHistoryPolicy taskHistoryPolicy) {
+        return () -> StreamTask.setHistoryPolicy(taskHistoryPolicy);
+    }
+
+}
@@ -0,0 +1,45 @@
+package com.backbase.stream.worker.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+@Data
+@ConfigurationProperties("backbase.stream.task-history")
+public class TaskHistoryConfigurationProperties {
+
+    /**
+     * How stream tasks keep their history.
+     */
+    private Mode mode = Mode.UNBOUNDED;
+
+    /**
+     * Maximum number of info entries kept per stream task in bounded mode.
+     */
+    private int maxInfo = 100;
+
+    /**
+     * Maximum number of warn entries kept per stream task in bounded mode.
+     */
+    private int maxWarn = 100;
+
+    /**
+     * Maximum number of error entries kept per stream task in bounded and streaming mode.
+     */
+    private int maxError = 100;
+
+    public enum Mode {
+        /**
+         * Keep every history entry.
+         */
+        UNBOUNDED,
+        /**
+         * Keep the most recent history entries per severity.
+         */
+        BOUNDED,
+        /**
+         * Hand every history entry to the task history sink, keeping only the most recent errors.
+         */
+        STREAMING
+    }
+
+}
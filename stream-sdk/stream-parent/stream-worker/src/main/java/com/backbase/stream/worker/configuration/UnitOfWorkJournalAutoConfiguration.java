@@ -0,0 +1,24 @@
+package com.backbase.stream.worker.configuration;
+
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournals;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Journals in-memory unit of work repositories when {@code backbase.stream.persistence} is {@code journal}.
+ */
+@Configuration
+@ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "journal")
+@EnableConfigurationProperties(UnitOfWorkJournalConfigurationProperties.class)
+public class UnitOfWorkJournalAutoConfiguration {
+
+    @Bean
+    public UnitOfWorkJournals unitOfWorkJournals(UnitOfWorkJournalConfigurationProperties properties,
+        ObjectMapper objectMapper) {
+        return new UnitOfWorkJournals(properties, objectMapper);
+    }
+
+}
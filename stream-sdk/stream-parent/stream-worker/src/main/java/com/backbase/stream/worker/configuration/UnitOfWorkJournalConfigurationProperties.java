@@ -0,0 +1,31 @@
+package com.backbase.stream.worker.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("backbase.stream.journal")
+public class UnitOfWorkJournalConfigurationProperties {
+
+    /**
+     * Directory holding the journals of in-memory unit of work repositories, one sub directory per repository.
+     */
+    private String directory = "stream-journal";
+
+    /**
+     * Size of a single journal segment.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Number of segments after which a journal is compacted.
+     */
+    private int maxSegments = 4;
+
+    /**
+     * Force every journal record to disk, so records survive a crash of the host instead of only the process.
+     */
+    private boolean force = false;
+
+}
@@ -0,0 +1,117 @@
+package com.backbase.stream.worker.deadletter;
+
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.TaskHistory;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.retry.BackoffRetryPolicy;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.stream.Collectors;
+import lombok.Data;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Unit of work which failed without retries left, moved out of the repository of its executor so the scheduler does
+ * not have to skip it on every scan. Next to the unit of work itself, which is needed to replay it, a dead letter holds
+ * a summary of why it failed.
+ *
+ * @param <T> Stream Task type
+ */
+@Data
+public class DeadLetter<T extends StreamTask> {
+
+    /**
+     * Error type of failures which were not caught while executing the unit of work.
+     */
+    public static final String UNKNOWN_ERROR_TYPE = "UNKNOWN";
+
+    private String unitOfWorkId;
+
+    /**
+     * HTTP status of the last failure when it was caused by an error response of DBS, otherwise the simple class name
+     * of its root cause.
+     */
+    private String errorType;
+
+    /**
+     * Ids of the stream tasks which failed.
+     */
+    private List<String> failedTaskIds;
+
+    /**
+     * Message of the last error in the history of the failed stream tasks.
+     */
+    private String lastError;
+
+    /**
+     * Error message of the last error in the history of the failed stream tasks, holding the response body of DBS
+     * when a call failed.
+     */
+    private String errorMessage;
+
+    private UnitOfWork.Priority priority;
+
+    private OffsetDateTime registeredAt;
+
+    private OffsetDateTime failedAt;
+
+    private int retries;
+
+    private UnitOfWork<T> unitOfWork;
+
+    /**
+     * Create the dead letter of a unit of work which failed without retries left.
+     *
+     * @param unitOfWork unit of work
+     * @param failure    last failure of a stream task, null when unknown
+     * @return dead letter
+     */
+    public static <T extends StreamTask> DeadLetter<T> from(UnitOfWork<T> unitOfWork, Throwable failure) {
+        List<T> failedTasks = unitOfWork.getStreamTasks().stream()
+            .filter(StreamTask::isFailed)
+            .collect(Collectors.toList());
+        DeadLetter<T> deadLetter = new DeadLetter<>();
+        deadLetter.setUnitOfWorkId(unitOfWork.getUnitOfOWorkId());
+        deadLetter.setErrorType(errorTypeOf(failure));
+        deadLetter.setFailedTaskIds(failedTasks.stream()
+            .map(StreamTask::getId)
+            .collect(Collectors.toList()));
+        failedTasks.stream()
+            .flatMap(streamTask -> streamTask.getHistory().stream())
+            .filter(taskHistory -> taskHistory.getSeverity() == TaskHistory.Severity.ERROR)
+            .reduce((first, second) -> second.getEpochMillis() >= first.getEpochMillis() ? second : first)
+            .ifPresent(lastError -> {
+                deadLetter.setLastError(lastError.getMessage());
+                deadLetter.setErrorMessage(lastError.getErrorMessage());
+            });
+        deadLetter.setPriority(UnitOfWork.priorityOf(unitOfWork));
+        deadLetter.setRegisteredAt(unitOfWork.getRegisteredAt());
+        deadLetter.setFailedAt(unitOfWork.getFinishedAt() != null ? unitOfWork.getFinishedAt() : OffsetDateTime.now());
+        deadLetter.setRetries(unitOfWork.getRetries());
+        deadLetter.setUnitOfWork(unitOfWork);
+        return deadLetter;
+    }
+
+    /**
+     * Classify a failure, so dead letters failing for the same reason can be replayed together.
+     *
+     * @param failure failure of a stream task, may be null
+     * @return the HTTP status code of an error response of DBS in the cause chain, otherwise the simple class name of
+     *     the root cause
+     */
+    public static String errorTypeOf(Throwable failure) {
+        if (failure == null) {
+            return UNKNOWN_ERROR_TYPE;
+        }
+        WebClientResponseException response = BackoffRetryPolicy.findResponse(failure);
+        if (response != null) {
+            return String.valueOf(response.getRawStatusCode());
+        }
+        Throwable rootCause = failure;
+        while (rootCause.getCause() != null && rootCause.getCause() != rootCause) {
+            rootCause = rootCause.getCause();
+        }
+        return rootCause.getClass().getSimpleName();
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.backbase.stream.worker.deadletter;
+
+import java.time.OffsetDateTime;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Summary of a replay of dead letters running in the background, detached from the request which started it. An
+ * executor runs a single replay at a time.
+ */
+@Getter
+@ToString
+public class DeadLetterReplay {
+
+    public enum State {
+        RUNNING,
+        COMPLETED,
+        FAILED,
+        STOPPED
+    }
+
+    /**
+     * Error type of the dead letters replayed, null for all dead letters.
+     */
+    private final String errorType;
+
+    private final int maxDeadLetters;
+
+    /**
+     * Maximum number of dead letters registered per second.
+     */
+    private final int rate;
+
+    private final OffsetDateTime startedAt = OffsetDateTime.now();
+
+    private volatile State state = State.RUNNING;
+
+    private volatile OffsetDateTime finishedAt;
+
+    /**
+     * Message of the failure which ended the replay.
+     */
+    private volatile String lastError;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger replayed = new AtomicInteger();
+
+    public DeadLetterReplay(String errorType, int maxDeadLetters, int rate) {
+        this.errorType = errorType;
+        this.maxDeadLetters = maxDeadLetters;
+        this.rate = rate;
+    }
+
+    /**
+     * @return number of dead letters registered as units of work again so far
+     */
+    public int getReplayed() {
+        return replayed.get();
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public void recordReplayed() {
+        replayed.incrementAndGet();
+    }
+
+    public void complete() {
+        finish(State.COMPLETED);
+    }
+
+    public void fail(Throwable throwable) {
+        lastError = throwable.getMessage();
+        finish(State.FAILED);
+    }
+
+    /**
+     * Mark a replay which was still running when its executor stopped.
+     */
+    public void stop() {
+        if (isRunning()) {
+            finish(State.STOPPED);
+        }
+    }
+
+    private void finish(State finalState) {
+        finishedAt = OffsetDateTime.now();
+        state = finalState;
+    }
+}
@@ -0,0 +1,44 @@
+package com.backbase.stream.worker.deadletter;
+
+import com.backbase.stream.worker.model.StreamTask;
+import java.util.Map;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Store of units of work which failed without retries left, kept apart from the units of work still being executed
+ * until they are replayed.
+ *
+ * @param <T> Stream Task type
+ */
+public interface DeadLetterStore<T extends StreamTask> {
+
+    /**
+     * Store a dead letter, replacing an earlier dead letter of the same unit of work.
+     *
+     * @param deadLetter dead letter
+     * @return the stored dead letter
+     */
+    Mono<DeadLetter<T>> save(DeadLetter<T> deadLetter);
+
+    Mono<DeadLetter<T>> findById(String unitOfWorkId);
+
+    /**
+     * Find dead letters, oldest failure first.
+     *
+     * @param errorType  error type of the dead letters, null for all dead letters
+     * @param maxResults maximum number of dead letters
+     * @return dead letters
+     */
+    Flux<DeadLetter<T>> findAll(String errorType, int maxResults);
+
+    Mono<Void> deleteById(String unitOfWorkId);
+
+    /**
+     * Count stored dead letters per error type.
+     *
+     * @return number of dead letters per error type, error types without dead letters are missing
+     */
+    Mono<Map<String, Long>> countByErrorType();
+
+}
@@ -0,0 +1,59 @@
+package com.backbase.stream.worker.deadletter;
+
+import com.backbase.stream.worker.model.StreamTask;
+import java.time.OffsetDateTime;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Dead letter store keeping dead letters in memory. Dead letters do not survive a restart, repositories which do
+ * should be paired with a store which does as well.
+ *
+ * @param <T> Stream Task type
+ */
+public class InMemoryDeadLetterStore<T extends StreamTask> implements DeadLetterStore<T> {
+
+    private static final Comparator<DeadLetter<?>> FAILURE_ORDER = Comparator
+        .comparing((DeadLetter<?> deadLetter) -> deadLetter.getFailedAt(),
+            Comparator.nullsFirst(Comparator.<OffsetDateTime>naturalOrder()))
+        .thenComparing(DeadLetter::getUnitOfWorkId);
+
+    private final Map<String, DeadLetter<T>> deadLetters = new ConcurrentHashMap<>();
+
+    @Override
+    public Mono<DeadLetter<T>> save(DeadLetter<T> deadLetter) {
+        return Mono.fromCallable(() -> {
+            deadLetters.put(deadLetter.getUnitOfWorkId(), deadLetter);
+            return deadLetter;
+        });
+    }
+
+    @Override
+    public Mono<DeadLetter<T>> findById(String unitOfWorkId) {
+        return Mono.fromCallable(() -> deadLetters.get(unitOfWorkId));
+    }
+
+    @Override
+    public Flux<DeadLetter<T>> findAll(String errorType, int maxResults) {
+        return Flux.defer(() -> Flux.fromStream(deadLetters.values().stream()
+            .filter(deadLetter -> errorType == null || errorType.equals(deadLetter.getErrorType()))
+            .sorted(FAILURE_ORDER)
+            .limit(maxResults)));
+    }
+
+    @Override
+    public Mono<Void> deleteById(String unitOfWorkId) {
+        return Mono.fromRunnable(() -> deadLetters.remove(unitOfWorkId));
+    }
+
+    @Override
+    public Mono<Map<String, Long>> countByErrorType() {
+        return Mono.fromCallable(() -> deadLetters.values().stream()
+            .collect(Collectors.groupingBy(DeadLetter::getErrorType, Collectors.counting())));
+    }
+
+}
@@ -0,0 +1,104 @@
+package com.backbase.stream.worker.dedup;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Bloom filter of strings over a fixed bit array, sized for an expected number of entries and false positive rate.
+ * Bit positions are derived from two 64 bit hashes by double hashing. Not thread safe.
+ */
+class BloomFilter {
+
+    private final long[] bits;
+    private final long numBits;
+    private final int numHashes;
+
+    BloomFilter(long expectedEntries, double falsePositiveRate) {
+        long entries = Math.max(1, expectedEntries);
+        double rate = falsePositiveRate > 0 && falsePositiveRate < 1 ? falsePositiveRate : 0.01;
+        long optimalBits = (long) Math.ceil(-entries * Math.log(rate) / (Math.log(2) * Math.log(2)));
+        this.bits = new long[(int) Math.max(1, (optimalBits + 63) / 64)];
+        this.numBits = bits.length * 64L;
+        this.numHashes = Math.max(1, (int) Math.round((double) numBits / entries * Math.log(2)));
+    }
+
+    private BloomFilter(long[] bits, int numHashes) {
+        this.bits = bits;
+        this.numBits = bits.length * 64L;
+        this.numHashes = numHashes;
+    }
+
+    void add(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, numBits);
+            bits[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash1 = hash(value);
+        long hash2 = mix(hash1 ^ 0x9E3779B97F4A7C15L) | 1;
+        for (int i = 0; i < numHashes; i++) {
+            long bit = Math.floorMod(hash1 + i * hash2, numBits);
+            if ((bits[(int) (bit >>> 6)] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Create an empty filter of the same size.
+     */
+    BloomFilter emptyCopy() {
+        return new BloomFilter(new long[bits.length], numHashes);
+    }
+
+    BloomFilter copy() {
+        return new BloomFilter(bits.clone(), numHashes);
+    }
+
+    boolean hasSameSize(BloomFilter other) {
+        return bits.length == other.bits.length && numHashes == other.numHashes;
+    }
+
+    void writeTo(DataOutput output) throws IOException {
+        output.writeInt(bits.length);
+        output.writeInt(numHashes);
+        for (long word : bits) {
+            output.writeLong(word);
+        }
+    }
+
+    static BloomFilter readFrom(DataInput input) throws IOException {
+        long[] bits = new long[input.readInt()];
+        int numHashes = input.readInt();
+        for (int i = 0; i < bits.length; i++) {
+            bits[i] = input.readLong();
+        }
+        return new BloomFilter(bits, numHashes);
+    }
+
+    private static long hash(String value) {
+        // FNV-1a over the UTF-8 bytes, finalized to spread the bits
+        long hash = 0xCBF29CE484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
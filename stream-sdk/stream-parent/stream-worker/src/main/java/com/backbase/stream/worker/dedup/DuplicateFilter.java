@@ -0,0 +1,263 @@
+package com.backbase.stream.worker.dedup;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Remembers the ids of ingested items for a time window, so items replayed by upstream feeds are dropped before they
+ * are ingested again. A time-windowed Bloom filter answers most checks of new ids without a lookup, an LRU set of the
+ * most recently ingested ids confirms ids the Bloom filter has probably seen. Only confirmed ids count as duplicates,
+ * so a false positive of the Bloom filter never drops an item; ids evicted from the LRU set pass as well.
+ *
+ * <p>The Bloom filter has two generations, the current one receiving new ids. The generations rotate every window,
+ * so ids are remembered for at least one and at most two windows. Both generations and the LRU set are written to a
+ * snapshot file to survive restarts.</p>
+ *
+ * <p>Meters, tagged with the filter name:</p>
+ * <ul>
+ *     <li>{@code stream.dedup.checked} counts checked ids</li>
+ *     <li>{@code stream.dedup.duplicates} counts ids confirmed as duplicates, its ratio to checked ids is the hit
+ *     rate</li>
+ *     <li>{@code stream.dedup.unconfirmed} counts ids the Bloom filter has probably seen but the LRU set could not
+ *     confirm, false positives or ids evicted from the LRU set</li>
+ * </ul>
+ */
+@Slf4j
+public class DuplicateFilter {
+
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final long windowMillis;
+    private final int maxConfirmedIds;
+    private final LongSupplier clock;
+
+    private BloomFilter current;
+    private BloomFilter previous;
+    private long windowStartMillis;
+    private final LinkedHashMap<String, Boolean> confirmedIds;
+
+    private final LongAdder checked = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder unconfirmed = new LongAdder();
+
+    /**
+     * Create a duplicate filter.
+     *
+     * @param expectedIds       number of ids expected per window, sizing the Bloom filter
+     * @param falsePositiveRate false positive rate of the Bloom filter at the expected number of ids
+     * @param window            time after which ids may be forgotten
+     * @param maxConfirmedIds   number of most recently ingested ids kept to confirm duplicates
+     */
+    public DuplicateFilter(long expectedIds, double falsePositiveRate, Duration window, int maxConfirmedIds) {
+        this(expectedIds, falsePositiveRate, window, maxConfirmedIds, System::currentTimeMillis);
+    }
+
+    DuplicateFilter(long expectedIds, double falsePositiveRate, Duration window, int maxConfirmedIds,
+        LongSupplier clock) {
+        this.windowMillis = Math.max(1, window.toMillis());
+        this.maxConfirmedIds = Math.max(0, maxConfirmedIds);
+        this.clock = clock;
+        this.current = new BloomFilter(expectedIds, falsePositiveRate);
+        this.previous = current.emptyCopy();
+        this.windowStartMillis = clock.getAsLong();
+        this.confirmedIds = new LinkedHashMap<String, Boolean>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > DuplicateFilter.this.maxConfirmedIds;
+            }
+        };
+    }
+
+    /**
+     * Publish the hit rate meters of this filter.
+     *
+     * @param meterRegistry meter registry
+     * @param name          name tagging the meters
+     * @return this filter
+     */
+    public DuplicateFilter bindTo(MeterRegistry meterRegistry, String name) {
+        Tags tags = Tags.of("filter", name);
+        FunctionCounter.builder("stream.dedup.checked", checked, LongAdder::sum)
+            .description("Ids checked for duplicates")
+            .tags(tags)
+            .register(meterRegistry);
+        FunctionCounter.builder("stream.dedup.duplicates", duplicates, LongAdder::sum)
+            .description("Ids confirmed as duplicates and dropped")
+            .tags(tags)
+            .register(meterRegistry);
+        FunctionCounter.builder("stream.dedup.unconfirmed", unconfirmed, LongAdder::sum)
+            .description("Ids probably seen before which could not be confirmed as duplicates")
+            .tags(tags)
+            .register(meterRegistry);
+        return this;
+    }
+
+    /**
+     * Check whether an id was ingested before within the window.
+     *
+     * @param id id of an item
+     * @return true when the id is confirmed to be ingested before
+     */
+    public synchronized boolean isDuplicate(String id) {
+        if (id == null) {
+            return false;
+        }
+        rotate();
+        checked.increment();
+        if (!current.mightContain(id) && !previous.mightContain(id)) {
+            return false;
+        }
+        if (confirmedIds.get(id) != null) {
+            duplicates.increment();
+            return true;
+        }
+        unconfirmed.increment();
+        return false;
+    }
+
+    /**
+     * Remember ingested ids.
+     *
+     * @param ids ids of ingested items
+     */
+    public synchronized void recordAll(Collection<String> ids) {
+        rotate();
+        for (String id : ids) {
+            if (id != null) {
+                current.add(id);
+                if (maxConfirmedIds > 0) {
+                    confirmedIds.put(id, Boolean.TRUE);
+                }
+            }
+        }
+    }
+
+    private void rotate() {
+        long now = clock.getAsLong();
+        long elapsedWindows = (now - windowStartMillis) / windowMillis;
+        if (elapsedWindows <= 0) {
+            return;
+        }
+        previous = elapsedWindows == 1 ? current : current.emptyCopy();
+        current = current.emptyCopy();
+        windowStartMillis += elapsedWindows * windowMillis;
+    }
+
+    /**
+     * Write a snapshot of the filter to a file. The filter is copied while locked and written afterwards, so checks are
+     * not blocked on the file system. The snapshot is written next to the file first and moved in place, so a crash
+     * while writing leaves the previous snapshot intact.
+     *
+     * @param file snapshot file
+     * @throws IOException when the snapshot could not be written
+     */
+    public void snapshot(Path file) throws IOException {
+        long snapshotWindowStart;
+        BloomFilter snapshotCurrent;
+        BloomFilter snapshotPrevious;
+        List<String> snapshotConfirmedIds;
+        synchronized (this) {
+            snapshotWindowStart = windowStartMillis;
+            snapshotCurrent = current.copy();
+            // The previous window is replaced on rotation but never added to, so it is safe to write unlocked
+            snapshotPrevious = previous;
+            snapshotConfirmedIds = new ArrayList<>(confirmedIds.keySet());
+        }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream stream = Files.newOutputStream(temporary);
+            DataOutputStream output = new DataOutputStream(new BufferedOutputStream(stream))) {
+            output.writeInt(SNAPSHOT_VERSION);
+            output.writeLong(snapshotWindowStart);
+            snapshotCurrent.writeTo(output);
+            snapshotPrevious.writeTo(output);
+            output.writeInt(snapshotConfirmedIds.size());
+            for (String id : snapshotConfirmedIds) {
+                output.writeUTF(id);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Restore the filter from a snapshot file, when there is one. A snapshot of a filter of another size is ignored.
+     *
+     * @param file snapshot file
+     * @return true when restored
+     * @throws IOException when the snapshot could not be read
+     */
+    public boolean restore(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return false;
+        }
+        long snapshotWindowStart;
+        BloomFilter snapshotCurrent;
+        BloomFilter snapshotPrevious;
+        List<String> snapshotConfirmedIds;
+        try (InputStream stream = Files.newInputStream(file);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(stream))) {
+            if (input.readInt() != SNAPSHOT_VERSION) {
+                log.warn("Ignoring duplicate filter snapshot {} of another version", file);
+                return false;
+            }
+            snapshotWindowStart = input.readLong();
+            snapshotCurrent = BloomFilter.readFrom(input);
+            snapshotPrevious = BloomFilter.readFrom(input);
+            int size = input.readInt();
+            snapshotConfirmedIds = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                snapshotConfirmedIds.add(input.readUTF());
+            }
+        }
+        synchronized (this) {
+            if (!snapshotCurrent.hasSameSize(current)) {
+                log.warn("Ignoring duplicate filter snapshot {} of another size", file);
+                return false;
+            }
+            current = snapshotCurrent;
+            previous = snapshotPrevious;
+            windowStartMillis = snapshotWindowStart;
+            confirmedIds.clear();
+            for (String id : snapshotConfirmedIds) {
+                confirmedIds.put(id, Boolean.TRUE);
+            }
+            rotate();
+        }
+        return true;
+    }
+
+    public long getChecked() {
+        return checked.sum();
+    }
+
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    public long getUnconfirmed() {
+        return unconfirmed.sum();
+    }
+}
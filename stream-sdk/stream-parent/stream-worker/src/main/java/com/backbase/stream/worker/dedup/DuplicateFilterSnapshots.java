@@ -0,0 +1,87 @@
+package com.backbase.stream.worker.dedup;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.SmartLifecycle;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Keeps a duplicate filter in a snapshot file across restarts. As a {@link SmartLifecycle}, the filter is restored
+ * when the application context starts, ahead of the web server and executors, snapshotted at an interval while
+ * running and snapshotted once more when the application context stops.
+ */
+@Slf4j
+public class DuplicateFilterSnapshots implements SmartLifecycle {
+
+    private final DuplicateFilter duplicateFilter;
+    private final Path file;
+    private final Duration interval;
+
+    private volatile Disposable snapshots = Disposables.disposed();
+
+    /**
+     * Create snapshots of a duplicate filter.
+     *
+     * @param duplicateFilter duplicate filter
+     * @param file            snapshot file
+     * @param interval        interval between snapshots, null to only snapshot on stop
+     */
+    public DuplicateFilterSnapshots(DuplicateFilter duplicateFilter, Path file, Duration interval) {
+        this.duplicateFilter = duplicateFilter;
+        this.file = file;
+        this.interval = interval;
+    }
+
+    @Override
+    public void start() {
+        try {
+            if (duplicateFilter.restore(file)) {
+                log.info("Restored duplicate filter from {}", file);
+            }
+        } catch (IOException e) {
+            log.warn("Failed to restore duplicate filter from {}: {}", file, e.getMessage());
+        }
+        if (interval != null) {
+            snapshots = Flux.interval(interval, interval, Schedulers.boundedElastic())
+                .onBackpressureDrop()
+                .concatMap(tick -> Mono.fromRunnable(this::snapshot))
+                .subscribe();
+        } else {
+            snapshots = Disposables.single();
+        }
+    }
+
+    @Override
+    public void stop() {
+        snapshots.dispose();
+        snapshot();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return !snapshots.isDisposed();
+    }
+
+    /**
+     * Start before the default phase, so the filter is restored before anything is ingested.
+     */
+    @Override
+    public int getPhase() {
+        return 0;
+    }
+
+    private void snapshot() {
+        try {
+            duplicateFilter.snapshot(file);
+            log.debug("Wrote duplicate filter snapshot to {}", file);
+        } catch (IOException e) {
+            log.warn("Failed to write duplicate filter snapshot to {}: {}", file, e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.backbase.stream.worker.exception;
+
+import java.util.Collection;
+
+/**
+ * Thrown when units of work cannot be saved because the saving node no longer holds them. They were released, claimed
+ * by another node or otherwise changed since the node read or locked them.
+ */
+public class LockLostException extends RuntimeException {
+
+    private final Collection<String> unitOfWorkIds;
+
+    public LockLostException(Collection<String> unitOfWorkIds) {
+        super("Lost the lock of Units Of Work: " + unitOfWorkIds);
+        this.unitOfWorkIds = unitOfWorkIds;
+    }
+
+    public Collection<String> getUnitOfWorkIds() {
+        return unitOfWorkIds;
+    }
+}
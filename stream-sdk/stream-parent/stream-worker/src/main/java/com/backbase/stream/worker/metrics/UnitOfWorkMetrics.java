@@ -0,0 +1,349 @@
+package com.backbase.stream.worker.metrics;
+
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.priority.PriorityLanes;
+import com.backbase.stream.worker.ratelimit.TokenBucketRateLimiter;
+import com.backbase.stream.worker.repository.UnitOfWorkRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+
+/**
+ * Micrometer instrumentation of the unit of work lifecycle of a single executor. All meters are tagged with the
+ * executor name, meters of the cluster membership with the node name as well.
+ *
+ * <ul>
+ *     <li>{@code stream.unit-of-work.queue} gauges the number of stored units of work per state</li>
+ *     <li>{@code stream.unit-of-work.wait} times units of work from being due until they are locked, per priority
+ *     lane</li>
+ *     <li>{@code stream.unit-of-work.lane.queue} gauges the number of units of work waiting for an attempt per priority
+ *     lane, {@code stream.unit-of-work.lane.in-flight} the number of units of work executing per lane</li>
+ *     <li>{@code stream.unit-of-work.execution} times units of work from being locked until they are completed</li>
+ *     <li>{@code stream.unit-of-work.rollback} times rollbacks of units of work which failed without retries left</li>
+ *     <li>{@code stream.unit-of-work.dead-lettered} counts units of work moved into the dead letter store and
+ *     {@code stream.unit-of-work.dead-letters.replayed} dead letters replayed, per error type</li>
+ *     <li>{@code stream.task.execution} times single stream tasks, per task type</li>
+ *     <li>{@code stream.unit-of-work.retries} and {@code stream.unit-of-work.retries.exhausted} count retries</li>
+ *     <li>{@code stream.task.rate-limit.*} count permits of the task rate limiter</li>
+ *     <li>{@code stream.unit-of-work.evicted} and {@code stream.unit-of-work.compacted} count finished units of work
+ *     evicted or compacted by the retention policy, {@code stream.unit-of-work.sweep} times the sweeps evicting them</li>
+ *     <li>{@code stream.unit-of-work.node.completed} counts attempts completed by this node, its rate is the throughput
+ *     of the node</li>
+ *     <li>{@code stream.unit-of-work.node.leases} gauges the locks this node renewed at its last heartbeat,
+ *     {@code stream.unit-of-work.node.leases.lost} counts locks it failed to renew and
+ *     {@code stream.unit-of-work.node.leases.reclaimed} counts expired locks of other nodes it released</li>
+ *     <li>{@code stream.unit-of-work.timeouts} counts stream tasks and units of work which timed out, per scope, and
+ *     {@code stream.unit-of-work.node.locks.reaped} counts stale locks released by the reaper of this node</li>
+ * </ul>
+ */
+@Slf4j
+public class UnitOfWorkMetrics {
+
+    public static final String EXECUTOR_TAG = "executor";
+    public static final String NODE_TAG = "node";
+
+    private static final Duration QUEUE_DEPTH_REFRESH_INTERVAL = Duration.ofSeconds(5);
+
+    private final MeterRegistry meterRegistry;
+    private final Tags tags;
+    private final UnitOfWorkRepository<?, ?> repository;
+
+    private final Map<UnitOfWork.State, AtomicLong> queueDepths = new EnumMap<>(UnitOfWork.State.class);
+    private final Map<UnitOfWork.Priority, AtomicLong> laneDepths = new EnumMap<>(UnitOfWork.Priority.class);
+    private final AtomicLong lastQueueDepthRefresh = new AtomicLong();
+
+    private final Map<UnitOfWork.Priority, Timer> waitTimers = new EnumMap<>(UnitOfWork.Priority.class);
+    private final Counter retries;
+    private final Counter retriesExhausted;
+    private final Counter evicted;
+    private final Counter compacted;
+    private final Timer sweepTimer;
+    private final Counter nodeCompleted;
+    private final AtomicLong leases = new AtomicLong();
+    private final Counter leasesLost;
+    private final Counter leasesReclaimed;
+    private final Counter locksReaped;
+
+    // Meters with tags only known when recording, registered once per tag value
+    private final Map<UnitOfWork.State, Timer> executionTimers = new ConcurrentHashMap<>();
+    private final Map<UnitOfWork.State, Timer> rollbackTimers = new ConcurrentHashMap<>();
+    private final Map<String, Timer> taskTimers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> deadLettered = new ConcurrentHashMap<>();
+    private final Map<String, Counter> replayed = new ConcurrentHashMap<>();
+    private final Map<String, Counter> timeouts = new ConcurrentHashMap<>();
+
+    public UnitOfWorkMetrics(MeterRegistry meterRegistry, String executorName, String nodeName,
+        UnitOfWorkRepository<?, ?> repository, TokenBucketRateLimiter taskRateLimiter, PriorityLanes priorityLanes) {
+        this.meterRegistry = meterRegistry;
+        this.tags = Tags.of(EXECUTOR_TAG, executorName);
+        this.repository = repository;
+        Tags nodeTags = tags.and(NODE_TAG, nodeName);
+
+        for (UnitOfWork.State state : UnitOfWork.State.values()) {
+            AtomicLong depth = new AtomicLong();
+            queueDepths.put(state, depth);
+            Gauge.builder("stream.unit-of-work.queue", depth, AtomicLong::get)
+                .description("Stored units of work per state")
+                .tags(tags.and("state", state.name()))
+                .register(meterRegistry);
+        }
+
+        for (UnitOfWork.Priority priority : UnitOfWork.Priority.values()) {
+            Tags laneTags = tags.and("priority", priority.name());
+            AtomicLong depth = new AtomicLong();
+            laneDepths.put(priority, depth);
+            Gauge.builder("stream.unit-of-work.lane.queue", depth, AtomicLong::get)
+                .description("Units of work waiting for an attempt per priority lane")
+                .tags(laneTags)
+                .register(meterRegistry);
+            Gauge.builder("stream.unit-of-work.lane.in-flight", priorityLanes, lanes -> lanes.getInFlight(priority))
+                .description("Units of work executing per priority lane")
+                .tags(laneTags)
+                .register(meterRegistry);
+            waitTimers.put(priority, Timer.builder("stream.unit-of-work.wait")
+                .description("Time units of work wait from being due until they are locked for execution")
+                .tags(laneTags)
+                .register(meterRegistry));
+        }
+        this.retries = Counter.builder("stream.unit-of-work.retries")
+            .description("Failed units of work scheduled for another attempt")
+            .tags(tags)
+            .register(meterRegistry);
+        this.retriesExhausted = Counter.builder("stream.unit-of-work.retries.exhausted")
+            .description("Failed units of work without attempts left")
+            .tags(tags)
+            .register(meterRegistry);
+
+        this.evicted = Counter.builder("stream.unit-of-work.evicted")
+            .description("Finished units of work evicted by the retention policy")
+            .tags(tags)
+            .register(meterRegistry);
+        this.compacted = Counter.builder("stream.unit-of-work.compacted")
+            .description("Finished units of work of which the stream task payloads were dropped")
+            .tags(tags)
+            .register(meterRegistry);
+        this.sweepTimer = Timer.builder("stream.unit-of-work.sweep")
+            .description("Time taken to evict finished units of work")
+            .tags(tags)
+            .register(meterRegistry);
+
+        this.nodeCompleted = Counter.builder("stream.unit-of-work.node.completed")
+            .description("Attempts of units of work completed by this node")
+            .tags(nodeTags)
+            .register(meterRegistry);
+        Gauge.builder("stream.unit-of-work.node.leases", leases, AtomicLong::get)
+            .description("Locks on units of work this node renewed at its last heartbeat")
+            .tags(nodeTags)
+            .register(meterRegistry);
+        this.leasesLost = Counter.builder("stream.unit-of-work.node.leases.lost")
+            .description("Locks this node failed to renew because they were released in the mean time")
+            .tags(nodeTags)
+            .register(meterRegistry);
+        this.leasesReclaimed = Counter.builder("stream.unit-of-work.node.leases.reclaimed")
+            .description("Expired locks of dead nodes released by this node")
+            .tags(nodeTags)
+            .register(meterRegistry);
+        this.locksReaped = Counter.builder("stream.unit-of-work.node.locks.reaped")
+            .description("Stale locks released by the reaper of this node")
+            .tags(nodeTags)
+            .register(meterRegistry);
+
+        FunctionCounter.builder("stream.task.rate-limit.permits", taskRateLimiter,
+                TokenBucketRateLimiter::getAcquiredPermits)
+            .description("Permits acquired to start stream tasks")
+            .tags(tags)
+            .register(meterRegistry);
+        FunctionCounter.builder("stream.task.rate-limit.waited", taskRateLimiter,
+                TokenBucketRateLimiter::getWaitedPermits)
+            .description("Permits for which stream tasks had to wait")
+            .tags(tags)
+            .register(meterRegistry);
+        FunctionCounter.builder("stream.task.rate-limit.wait", taskRateLimiter,
+                rateLimiter -> rateLimiter.getWaitedDuration().toNanos() / (double) TimeUnit.SECONDS.toNanos(1))
+            .description("Total time stream tasks waited for permits")
+            .baseUnit("seconds")
+            .tags(tags)
+            .register(meterRegistry);
+    }
+
+    /**
+     * Record the time a unit of work waited until it was locked. The first attempt waits since registration, retries
+     * since their next attempt was due.
+     */
+    public void recordLocked(UnitOfWork<?> unitOfWork) {
+        OffsetDateTime due = unitOfWork.getNextAttemptAt() != null
+            ? unitOfWork.getNextAttemptAt()
+            : unitOfWork.getRegisteredAt();
+        if (due != null && unitOfWork.getLockedAt() != null) {
+            record(waitTimers.get(UnitOfWork.priorityOf(unitOfWork)), due, unitOfWork.getLockedAt());
+        }
+    }
+
+    /**
+     * Record the execution of a unit of work from being locked until completion, tagged by the resulting state.
+     */
+    public void recordCompleted(UnitOfWork<?> unitOfWork, OffsetDateTime lockedAt) {
+        UnitOfWork.State state = unitOfWork.getState();
+        nodeCompleted.increment();
+        if (state == UnitOfWork.State.FAILED) {
+            retries.increment();
+        } else if (state == UnitOfWork.State.FAILED_RETRIES_EXHAUSTED) {
+            retriesExhausted.increment();
+        }
+        if (lockedAt != null && unitOfWork.getFinishedAt() != null) {
+            record(executionTimers.computeIfAbsent(state, key -> Timer.builder("stream.unit-of-work.execution")
+                .description("Time units of work take from being locked until completion")
+                .tags(tags.and("state", key.name()))
+                .register(meterRegistry)), lockedAt, unitOfWork.getFinishedAt());
+        }
+    }
+
+    /**
+     * Record the rollback of a unit of work from being locked until completion, tagged by the resulting state.
+     */
+    public void recordRolledBack(UnitOfWork<?> unitOfWork, OffsetDateTime lockedAt) {
+        if (lockedAt != null && unitOfWork.getFinishedAt() != null) {
+            Timer rollbackTimer = rollbackTimers.computeIfAbsent(unitOfWork.getState(),
+                key -> Timer.builder("stream.unit-of-work.rollback")
+                    .description("Time rollbacks of units of work take from being locked until completion")
+                    .tags(tags.and("state", key.name()))
+                    .register(meterRegistry));
+            record(rollbackTimer, lockedAt, unitOfWork.getFinishedAt());
+        }
+    }
+
+    /**
+     * Record the execution of a single stream task, tagged by the task type and resulting state. The task name is not
+     * used as tag, as most stream tasks are named after the entity they ingest.
+     */
+    public void recordTask(StreamTask streamTask) {
+        if (streamTask.getRegisteredAt() == null) {
+            return;
+        }
+        OffsetDateTime finishedAt = streamTask.getFinishedAt() != null
+            ? streamTask.getFinishedAt()
+            : OffsetDateTime.now();
+        String task = streamTask.getClass().getSimpleName();
+        String state = streamTask.getState() != null ? streamTask.getState().name() : "UNKNOWN";
+        record(taskTimers.computeIfAbsent(task + ":" + state, key -> Timer.builder("stream.task.execution")
+            .description("Time single stream tasks take to execute")
+            .tags(tags.and("task", task, "state", state))
+            .register(meterRegistry)), streamTask.getRegisteredAt(), finishedAt);
+    }
+
+    /**
+     * Record a unit of work moved into the dead letter store, tagged by its error type.
+     */
+    public void recordDeadLettered(String errorType) {
+        deadLettered.computeIfAbsent(errorType, key -> Counter.builder("stream.unit-of-work.dead-lettered")
+            .description("Units of work without retries left moved into the dead letter store")
+            .tags(tags.and("error-type", key))
+            .register(meterRegistry))
+            .increment();
+    }
+
+    /**
+     * Record a dead letter registered again as unit of work, tagged by its error type.
+     */
+    public void recordReplayed(String errorType) {
+        replayed.computeIfAbsent(errorType, key -> Counter.builder("stream.unit-of-work.dead-letters.replayed")
+            .description("Dead letters registered again as units of work")
+            .tags(tags.and("error-type", key))
+            .register(meterRegistry))
+            .increment();
+    }
+
+    /**
+     * Record a timeout, of a single stream task or of the stream tasks of a unit of work.
+     *
+     * @param scope {@code task} or {@code unit-of-work}
+     */
+    public void recordTimeout(String scope) {
+        timeouts.computeIfAbsent(scope, key -> Counter.builder("stream.unit-of-work.timeouts")
+            .description("Stream tasks and units of work cancelled because they took too long")
+            .tags(tags.and("scope", key))
+            .register(meterRegistry))
+            .increment();
+    }
+
+    /**
+     * Record stale locks released by the reaper of this node.
+     *
+     * @param reaped number of released locks
+     */
+    public void recordReaped(long reaped) {
+        locksReaped.increment(reaped);
+    }
+
+    public void recordCompacted() {
+        compacted.increment();
+    }
+
+    /**
+     * Record a sweep of the retention policy.
+     *
+     * @param evictedUnitsOfWork number of evicted units of work
+     * @param duration           time taken by the sweep
+     */
+    public void recordSweep(long evictedUnitsOfWork, Duration duration) {
+        evicted.increment(evictedUnitsOfWork);
+        sweepTimer.record(duration);
+    }
+
+    /**
+     * Record a heartbeat of this node.
+     *
+     * @param held      number of locks this node tried to renew
+     * @param renewed   number of locks renewed
+     * @param reclaimed number of expired locks of other nodes released
+     */
+    public void recordHeartbeat(long held, long renewed, long reclaimed) {
+        leases.set(renewed);
+        leasesLost.increment(Math.max(0, held - renewed));
+        leasesReclaimed.increment(reclaimed);
+    }
+
+    /**
+     * Refresh the queue depth gauges of states and priority lanes from the repository, at most once every few seconds.
+     *
+     * @return completes when refreshed or when a recent refresh is still valid
+     */
+    public Mono<Void> refreshQueueDepth() {
+        long now = System.nanoTime();
+        long last = lastQueueDepthRefresh.get();
+        if (last != 0 && now - last < QUEUE_DEPTH_REFRESH_INTERVAL.toNanos()
+            || !lastQueueDepthRefresh.compareAndSet(last, now)) {
+            return Mono.empty();
+        }
+        return repository.countByState()
+            .doOnNext(counts -> queueDepths.forEach((state, depth) -> depth.set(counts.getOrDefault(state, 0L))))
+            .then(repository.countWaitingByPriority())
+            .doOnNext(counts -> laneDepths.forEach((lane, depth) -> depth.set(counts.getOrDefault(lane, 0L))))
+            .onErrorResume(throwable -> {
+                log.warn("Failed to refresh unit of work queue depth: {}", throwable.getMessage());
+                return Mono.empty();
+            })
+            .then();
+    }
+
+    private static void record(Timer timer, OffsetDateTime from, OffsetDateTime to) {
+        Duration duration = Duration.between(from, to);
+        if (!duration.isNegative()) {
+            timer.record(duration);
+        }
+    }
+
+}
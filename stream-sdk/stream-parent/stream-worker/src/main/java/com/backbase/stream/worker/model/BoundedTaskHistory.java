@@ -0,0 +1,148 @@
+package com.backbase.stream.worker.model;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Task history keeping only the most recent entries of every severity. Every severity has its own ring buffer, so a
+ * flood of info entries never pushes out warnings and errors. Entries are listed in the order they were added.
+ *
+ * <p>Adding entries is cheap, reading is not: every read merges the ring buffers into a new list.</p>
+ */
+public class BoundedTaskHistory extends AbstractList<TaskHistory> {
+
+    private final Ring info;
+    private final Ring warn;
+    private final Ring error;
+
+    private long sequence;
+    private long dropped;
+
+    /**
+     * @param maxInfo  maximum number of info entries kept
+     * @param maxWarn  maximum number of warn entries kept
+     * @param maxError maximum number of error entries kept
+     */
+    public BoundedTaskHistory(int maxInfo, int maxWarn, int maxError) {
+        this.info = new Ring(maxInfo);
+        this.warn = new Ring(maxWarn);
+        this.error = new Ring(maxError);
+    }
+
+    @Override
+    public synchronized boolean add(TaskHistory taskHistory) {
+        if (!ring(taskHistory.getSeverity()).add(sequence++, taskHistory)) {
+            dropped++;
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized TaskHistory get(int index) {
+        return snapshot().get(index);
+    }
+
+    @Override
+    public synchronized int size() {
+        return info.entries.size() + warn.entries.size() + error.entries.size();
+    }
+
+    @Override
+    public synchronized Iterator<TaskHistory> iterator() {
+        return snapshot().iterator();
+    }
+
+    @Override
+    public synchronized void clear() {
+        info.entries.clear();
+        warn.entries.clear();
+        error.entries.clear();
+    }
+
+    /**
+     * @return number of entries dropped to stay within bounds
+     */
+    public synchronized long getDropped() {
+        return dropped;
+    }
+
+    private Ring ring(TaskHistory.Severity severity) {
+        if (severity == TaskHistory.Severity.ERROR) {
+            return error;
+        }
+        return severity == TaskHistory.Severity.WARN ? warn : info;
+    }
+
+    private List<TaskHistory> snapshot() {
+        List<TaskHistory> merged = new ArrayList<>(size());
+        Iterator<Entry> infos = info.entries.iterator();
+        Iterator<Entry> warns = warn.entries.iterator();
+        Iterator<Entry> errors = error.entries.iterator();
+        Entry nextInfo = next(infos);
+        Entry nextWarn = next(warns);
+        Entry nextError = next(errors);
+        while (nextInfo != null || nextWarn != null || nextError != null) {
+            Entry first = oldest(oldest(nextInfo, nextWarn), nextError);
+            merged.add(first.taskHistory);
+            if (first == nextInfo) {
+                nextInfo = next(infos);
+            } else if (first == nextWarn) {
+                nextWarn = next(warns);
+            } else {
+                nextError = next(errors);
+            }
+        }
+        return merged;
+    }
+
+    private static Entry next(Iterator<Entry> entries) {
+        return entries.hasNext() ? entries.next() : null;
+    }
+
+    private static Entry oldest(Entry left, Entry right) {
+        if (left == null) {
+            return right;
+        }
+        return right == null || left.sequence < right.sequence ? left : right;
+    }
+
+    private static class Ring {
+
+        private final int capacity;
+        private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+
+        private Ring(int capacity) {
+            this.capacity = Math.max(0, capacity);
+        }
+
+        /**
+         * @return false when an entry was dropped
+         */
+        private boolean add(long sequence, TaskHistory taskHistory) {
+            if (capacity == 0) {
+                return false;
+            }
+            boolean full = entries.size() >= capacity;
+            if (full) {
+                entries.removeFirst();
+            }
+            entries.addLast(new Entry(sequence, taskHistory));
+            return !full;
+        }
+    }
+
+    private static class Entry {
+
+        private final long sequence;
+        private final TaskHistory taskHistory;
+
+        private Entry(long sequence, TaskHistory taskHistory) {
+            this.sequence = sequence;
+            this.taskHistory = taskHistory;
+        }
+    }
+
+}
@@ -15,41 +15,61 @@ import org.springframework.cloud.sleuth.annotation.SpanTag;
 @Slf4j
 public abstract class StreamTask {
 
+    private static volatile TaskHistoryPolicy historyPolicy = TaskHistoryPolicy.unbounded();
+
     private String id;
 
     private OffsetDateTime registeredAt;
     private OffsetDateTime finishedAt;
     private State state;
 
-    // Temporary until
-    private List<TaskHistory> history = new ArrayList<>();
+    /**
+     * Number of times this task has been started, over all attempts of its unit of work.
+     */
+    private int attempts;
+
+    /**
+     * False once this task failed in a way another attempt can not fix.
+     */
+    private boolean retryable = true;
+
+    private List<TaskHistory> history = historyPolicy.newHistory();
 
     public StreamTask(String id) {
         this.id = id;
     }
 
+    /**
+     * Set how stream tasks created from now on keep their history.
+     *
+     * @param taskHistoryPolicy task history policy
+     */
+    public static void setHistoryPolicy(TaskHistoryPolicy taskHistoryPolicy) {
+        historyPolicy = taskHistoryPolicy;
+    }
+
     public void info(String entity, String operation, String result, String externalId, String internalId,
         String message, Object... messageArgs) {
-        addHistory(entity, operation, result, externalId, internalId, String.format(message, messageArgs),
-            TaskHistory.Severity.INFO, null, null);
+        addHistory(entity, operation, result, externalId, internalId, TaskHistory.Severity.INFO, null, null,
+            message, messageArgs);
     }
 
     public void warn(String entity, String operation, String result, String externalId, String internalId,
         String message, Object... messageArgs) {
-        addHistory(entity, operation, result, externalId, internalId, String.format(message, messageArgs),
-            TaskHistory.Severity.WARN, null, null);
+        addHistory(entity, operation, result, externalId, internalId, TaskHistory.Severity.WARN, null, null,
+            message, messageArgs);
     }
 
     public void error(String entity, String operation, String result, String externalId, String internalId,
         String message, Object... messageArgs) {
-        addHistory(entity, operation, result, externalId, internalId, String.format(message, messageArgs),
-            TaskHistory.Severity.ERROR, null, null);
+        addHistory(entity, operation, result, externalId, internalId, TaskHistory.Severity.ERROR, null, null,
+            message, messageArgs);
     }
 
     public void error(String entity, String operation, String result, String externalId, String internalId,
         Throwable throwable, String errorMessage, String message, Object... messageArgs) {
-        addHistory(entity, operation, result, externalId, internalId, String.format(message, messageArgs),
-            TaskHistory.Severity.ERROR, throwable, errorMessage);
+        addHistory(entity, operation, result, externalId, internalId, TaskHistory.Severity.ERROR, throwable,
+            errorMessage, message, messageArgs);
     }
 
     @ContinueSpan
@@ -63,20 +83,31 @@ public abstract class StreamTask {
         @SpanTag("severity") TaskHistory.Severity severity,
         @SpanTag("severity") Throwable throwable,
         @SpanTag("severity") String errorMessage) {
+        addHistory(entity, operation, result, externalId, internalId, severity, throwable, errorMessage, message,
+            (Object[]) null);
+    }
+
+    /**
+     * Add a history entry. The message is formatted only when it is read, which may be never for bounded or streamed
+     * histories.
+     */
+    private void addHistory(String entity, String operation, String result, String externalId, String internalId,
+        TaskHistory.Severity severity, Throwable throwable, String errorMessage, String message,
+        Object... messageArgs) {
         TaskHistory taskHistory = new TaskHistory();
-        taskHistory.setTimestamp(OffsetDateTime.now());
+        taskHistory.setEpochMillis(System.currentTimeMillis());
         taskHistory.setEntity(entity);
         taskHistory.setOperation(operation);
         taskHistory.setResult(result);
         taskHistory.setExternalId(externalId);
         taskHistory.setInternalId(internalId);
-        taskHistory.setMessage(message);
+        taskHistory.setMessage(message, messageArgs);
         taskHistory.setSeverity(severity);
         taskHistory.setErrorMessage(errorMessage);
         if (throwable != null && errorMessage == null) {
             taskHistory.setErrorMessage(throwable.getMessage());
         }
-        history.add(taskHistory);
+        historyPolicy.record(this, taskHistory);
     }
 
     public StreamTask addHistory(List<TaskHistory> history) {
@@ -84,6 +115,17 @@ public abstract class StreamTask {
         return this;
     }
 
+    /**
+     * Drop everything not needed once the unit of work of this task is finished, keeping id, state, timings and the
+     * errors in its history. Tasks holding payloads override this to drop them as well.
+     */
+    public void compact() {
+        List<TaskHistory> errors = history.stream()
+            .filter(taskHistory -> taskHistory.getSeverity() == TaskHistory.Severity.ERROR)
+            .collect(Collectors.toList());
+        history = new ArrayList<>(errors);
+    }
+
     public boolean isCompleted() {
         return this.state == State.COMPLETED;
     }
@@ -1,12 +1,25 @@
 package com.backbase.stream.worker.model;
 
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.temporal.TemporalAccessor;
+import java.util.IllegalFormatException;
+import java.util.UUID;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 @Data
 public class TaskHistory {
 
-    private OffsetDateTime timestamp;
+    /**
+     * Time of the entry in epoch millis, the offset date time is only created when asked for.
+     */
+    private long epochMillis;
 
     private String entity;
     private String internalId;
@@ -16,6 +29,13 @@ public class TaskHistory {
     private String result;
 
     private String message;
+    // Format and arguments of a message not formatted yet
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient String messageFormat;
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private transient Object[] messageArgs;
     private String errorMessage;
     private String resolution;
     private Severity severity;
@@ -26,12 +46,90 @@ public class TaskHistory {
         ERROR
     }
 
+    public OffsetDateTime getTimestamp() {
+        return epochMillis == 0 ? null : OffsetDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+
+    public void setTimestamp(OffsetDateTime timestamp) {
+        this.epochMillis = timestamp == null ? 0 : timestamp.toInstant().toEpochMilli();
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+        this.messageFormat = null;
+        this.messageArgs = null;
+    }
+
+    /**
+     * Set a message which is only formatted when it is read. Messages with arguments that may still change, like the
+     * entity being ingested, are formatted right away, so the entry neither retains nor misreports them.
+     *
+     * @param messageFormat format string
+     * @param messageArgs   arguments referenced by the format string, null if the message is formatted already
+     */
+    public void setMessage(String messageFormat, Object... messageArgs) {
+        if (messageArgs != null && !allImmutable(messageArgs)) {
+            setMessage(format(messageFormat, messageArgs));
+            return;
+        }
+        this.message = null;
+        this.messageFormat = messageFormat;
+        this.messageArgs = messageArgs;
+    }
+
+    public String getMessage() {
+        if (message == null && messageFormat != null) {
+            message = format(messageFormat, messageArgs);
+            messageFormat = null;
+            messageArgs = null;
+        }
+        return message;
+    }
+
+    private static boolean allImmutable(Object[] messageArgs) {
+        for (Object messageArg : messageArgs) {
+            if (messageArg != null && !isImmutable(messageArg)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isImmutable(Object messageArg) {
+        return messageArg instanceof String
+            || messageArg instanceof Integer
+            || messageArg instanceof Long
+            || messageArg instanceof Short
+            || messageArg instanceof Byte
+            || messageArg instanceof Double
+            || messageArg instanceof Float
+            || messageArg instanceof BigDecimal
+            || messageArg instanceof BigInteger
+            || messageArg instanceof Boolean
+            || messageArg instanceof Character
+            || messageArg instanceof Enum
+            || messageArg instanceof UUID
+            || messageArg instanceof TemporalAccessor && messageArg.getClass().getName().startsWith("java.time.");
+    }
+
+    private static String format(String messageFormat, Object[] messageArgs) {
+        if (messageArgs == null) {
+            return messageFormat;
+        }
+        try {
+            return String.format(messageFormat, messageArgs);
+        } catch (IllegalFormatException e) {
+            // Formatting is deferred to reading the message, which must not fail
+            return messageFormat;
+        }
+    }
+
     public String toDisplayString() {
         String entityType = entity != null ? entity.toLowerCase() : "";
         if(errorMessage == null) {
-            return String.format("%s [%s] [%s] [%s] %s - %s", timestamp, severity, String.format("%1$25s", entityType), String.format("%1$15s", operation), externalId, message);
+            return String.format("%s [%s] [%s] [%s] %s - %s", getTimestamp(), severity, String.format("%1$25s", entityType), String.format("%1$15s", operation), externalId, getMessage());
         } else {
-            return String.format("%s [%s] [%s] [%s] %s - %s: Error Message: %s", timestamp, severity, String.format("%1$25s", entityType), String.format("%1$15s", operation), externalId, message, errorMessage);
+            return String.format("%s [%s] [%s] [%s] %s - %s: Error Message: %s", getTimestamp(), severity, String.format("%1$25s", entityType), String.format("%1$15s", operation), externalId, getMessage(), errorMessage);
 
         }
 
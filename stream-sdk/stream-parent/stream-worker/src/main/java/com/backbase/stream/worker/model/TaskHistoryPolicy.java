@@ -0,0 +1,59 @@
+package com.backbase.stream.worker.model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Decides how stream tasks keep their history. By default every entry is kept, which is simple but unbounded for
+ * large tasks. A bounded policy keeps the most recent entries per severity, a streaming policy hands every entry to a
+ * sink and only keeps the most recent errors.
+ */
+public class TaskHistoryPolicy {
+
+    private static final TaskHistoryPolicy UNBOUNDED = new TaskHistoryPolicy(-1, -1, -1, null);
+
+    private final int maxInfo;
+    private final int maxWarn;
+    private final int maxError;
+    private final TaskHistorySink sink;
+
+    private TaskHistoryPolicy(int maxInfo, int maxWarn, int maxError, TaskHistorySink sink) {
+        this.maxInfo = maxInfo;
+        this.maxWarn = maxWarn;
+        this.maxError = maxError;
+        this.sink = sink;
+    }
+
+    /**
+     * Keep all history entries.
+     */
+    public static TaskHistoryPolicy unbounded() {
+        return UNBOUNDED;
+    }
+
+    /**
+     * Keep the most recent history entries per severity.
+     */
+    public static TaskHistoryPolicy bounded(int maxInfo, int maxWarn, int maxError) {
+        return new TaskHistoryPolicy(maxInfo, maxWarn, maxError, null);
+    }
+
+    /**
+     * Hand every history entry to a sink, keeping only the most recent errors with the stream task.
+     */
+    public static TaskHistoryPolicy streaming(TaskHistorySink sink, int maxError) {
+        return new TaskHistoryPolicy(0, 0, maxError, sink);
+    }
+
+    List<TaskHistory> newHistory() {
+        return maxInfo < 0 ? new ArrayList<>() : new BoundedTaskHistory(maxInfo, maxWarn, maxError);
+    }
+
+    void record(StreamTask streamTask, TaskHistory taskHistory) {
+        if (sink != null) {
+            sink.accept(streamTask, taskHistory);
+        }
+        streamTask.getHistory().add(taskHistory);
+    }
+
+}
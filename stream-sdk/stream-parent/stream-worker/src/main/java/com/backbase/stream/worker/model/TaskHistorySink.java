@@ -0,0 +1,12 @@
+package com.backbase.stream.worker.model;
+
+/**
+ * Receives task history entries as they are added, for example to ship them to a log or message broker instead of
+ * keeping them in memory with the stream task.
+ */
+@FunctionalInterface
+public interface TaskHistorySink {
+
+    void accept(StreamTask streamTask, TaskHistory taskHistory);
+
+}
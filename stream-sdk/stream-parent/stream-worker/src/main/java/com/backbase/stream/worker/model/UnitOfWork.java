@@ -2,6 +2,7 @@ package com.backbase.stream.worker.model;
 
 import java.time.OffsetDateTime;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.List;
 import java.util.stream.Stream;
 import lombok.Data;
@@ -13,6 +14,14 @@ import org.springframework.util.CollectionUtils;
 @Slf4j
 public class UnitOfWork<T extends StreamTask> {
 
+    /**
+     * Order in which units of work sharing a partition key are executed.
+     */
+    public static final Comparator<UnitOfWork<?>> REGISTRATION_ORDER = Comparator
+        .comparing((UnitOfWork<?> unitOfWork) -> unitOfWork.getRegisteredAt(),
+            Comparator.nullsFirst(Comparator.naturalOrder()))
+        .thenComparing(UnitOfWork::getUnitOfOWorkId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     public static <T extends StreamTask> UnitOfWork<T> from(String unitOfOWorkId, T task) {
         return from(unitOfOWorkId, Collections.singletonList(task));
     }
@@ -31,6 +40,62 @@ public class UnitOfWork<T extends StreamTask> {
         return unitOfWork.getLockedAt() == null;
     }
 
+    public static <T extends StreamTask> boolean isFinished(UnitOfWork<T> unitOfWork) {
+        return unitOfWork.getState() != null && unitOfWork.getState().isFinished();
+    }
+
+    /**
+     * A unit of work can be claimed when it is unchanged since it was selected, not locked, not finished and due.
+     */
+    public static <T extends StreamTask> boolean isClaimable(UnitOfWork<T> unitOfWork, long expectedVersion,
+        OffsetDateTime now) {
+        return unitOfWork.getVersion() == expectedVersion
+            && isUnLocked(unitOfWork)
+            && !isFinished(unitOfWork)
+            && unitOfWork.getNextAttemptAt() != null
+            && !unitOfWork.getNextAttemptAt().isAfter(now);
+    }
+
+    /**
+     * Release the lock of a unit of work whose execution was interrupted, so it is claimed again. Interrupted
+     * rollbacks are claimed for rollback again.
+     */
+    public static <T extends StreamTask> void release(UnitOfWork<T> unitOfWork) {
+        unitOfWork.setLockedAt(null);
+        unitOfWork.setLockedBy(null);
+        if (unitOfWork.getState() == State.ROLLBACK_IN_PROGRESS) {
+            unitOfWork.setState(State.FAILED_RETRIES_EXHAUSTED);
+            return;
+        }
+        unitOfWork.setState(State.ACCEPTED);
+        if (unitOfWork.getNextAttemptAt() == null) {
+            unitOfWork.setNextAttemptAt(OffsetDateTime.now());
+        }
+    }
+
+    /**
+     * Priority lane of a unit of work, units of work without a priority are in the normal lane.
+     */
+    public static <T extends StreamTask> Priority priorityOf(UnitOfWork<T> unitOfWork) {
+        return unitOfWork.getPriority() != null ? unitOfWork.getPriority() : Priority.NORMAL;
+    }
+
+    /**
+     * Lane in which a unit of work waits for execution. Due units of work of all lanes share the executor by the
+     * weights of their lanes, so latency sensitive work does not queue up behind bulk loads.
+     */
+    public enum Priority {
+        /**
+         * Work somebody is waiting for, such as units of work registered through HTTP.
+         */
+        INTERACTIVE,
+        NORMAL,
+        /**
+         * Large loads which may take their time, such as bootstrapping or generated data.
+         */
+        BULK
+    }
+
     public enum State {
         NEW,
         ACCEPTED,
@@ -40,7 +105,19 @@ public class UnitOfWork<T extends StreamTask> {
         COMPLETED,
         ROLLBACK_IN_PROGRESS,
         ROLLBACK_COMPLETED,
-        ROLLBACK_FAILED,
+        ROLLBACK_FAILED;
+
+        /**
+         * Finished units of work will never be picked up by the scheduler again.
+         *
+         * @return true if no further attempts are made for a unit of work in this state
+         */
+        public boolean isFinished() {
+            return this == COMPLETED
+                || this == FAILED_RETRIES_EXHAUSTED
+                || this == ROLLBACK_COMPLETED
+                || this == ROLLBACK_FAILED;
+        }
     }
 
     @Id
@@ -50,14 +127,40 @@ public class UnitOfWork<T extends StreamTask> {
 
     private State state = State.NEW;
 
+    private Priority priority = Priority.NORMAL;
+
+    /**
+     * Units of work sharing a partition key are executed one at a time, in order of registration. A unit of work
+     * waiting for a retry holds back all later units of work with the same key. Units of work without a partition key
+     * are not ordered.
+     */
+    private String partitionKey;
+
     private OffsetDateTime registeredAt;
+
+    /**
+     * Time the lock of this unit of work was taken or last renewed. When leases are configured, the node executing the
+     * unit of work renews it by heartbeat, so a lock which is not renewed within the lease belongs to a dead node.
+     */
     private OffsetDateTime lockedAt;
+
+    /**
+     * Node holding the lock of this unit of work.
+     */
+    private String lockedBy;
+
     private OffsetDateTime nextAttemptAt;
     private OffsetDateTime startedAt;
     private OffsetDateTime finishedAt;
 
     private int retries = 0;
 
+    /**
+     * Incremented on every change stored by the repository. Used to claim a unit of work only if nobody else changed
+     * it since it was read.
+     */
+    private long version = 0;
+
     public void logSummary() {
         if (log.isDebugEnabled()) {
             log.debug("UnitOfWork: {} Started at: {} Finished at: {} State: {}",
@@ -0,0 +1,126 @@
+package com.backbase.stream.worker.priority;
+
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import com.backbase.stream.worker.model.UnitOfWork.Priority;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Weighted fair sharing of an executor between priority lanes. Slots for claiming units of work are allotted to the
+ * lanes with smooth weighted round robin: every lane receives slots in proportion to its weight, interleaved rather
+ * than in bursts, so a heavy lane never starves a light one. Ties go to the lane of the highest priority.
+ *
+ * <p>Lanes with a concurrency cap get no slots while as many of their units of work are executing as the cap allows.
+ * </p>
+ */
+public class PriorityLanes {
+
+    private final Map<Priority, Integer> weights = new EnumMap<>(Priority.class);
+    private final Map<Priority, Integer> maxConcurrency = new EnumMap<>(Priority.class);
+    private final Map<Priority, AtomicInteger> inFlight = new EnumMap<>(Priority.class);
+
+    /**
+     * Current weights of the round robin, carried over between allotments so shares are fair over time.
+     */
+    private final Map<Priority, Long> credits = new EnumMap<>(Priority.class);
+
+    /**
+     * Create priority lanes.
+     *
+     * @param weights        relative share per lane, lanes without a weight have a weight of one
+     * @param maxConcurrency maximum number of executing units of work per lane, lanes without a maximum are uncapped
+     */
+    public PriorityLanes(Map<Priority, Integer> weights, Map<Priority, Integer> maxConcurrency) {
+        for (Priority lane : Priority.values()) {
+            Integer weight = weights.get(lane);
+            this.weights.put(lane, weight != null ? Math.max(1, weight) : 1);
+            Integer max = maxConcurrency.get(lane);
+            if (max != null && max >= 0) {
+                this.maxConcurrency.put(lane, max);
+            }
+            this.inFlight.put(lane, new AtomicInteger());
+            this.credits.put(lane, 0L);
+        }
+    }
+
+    /**
+     * Create the priority lanes of an executor.
+     *
+     * @param configuration stream worker configuration
+     * @return priority lanes with the configured weights and caps
+     */
+    public static PriorityLanes from(StreamWorkerConfiguration configuration) {
+        return new PriorityLanes(
+            configuration.getPriorityWeights() != null ? configuration.getPriorityWeights() : Collections.emptyMap(),
+            configuration.getPriorityConcurrency() != null ? configuration.getPriorityConcurrency()
+                : Collections.emptyMap());
+    }
+
+    /**
+     * Allot slots for claiming units of work to lanes with capacity left.
+     *
+     * @param slots number of units of work to claim
+     * @param lanes lanes taking part, lanes known to have no due work should be left out
+     * @return number of slots per lane, lanes without slots are missing; fewer slots than requested are allotted when
+     *     the lanes run out of capacity
+     */
+    public synchronized Map<Priority, Integer> allot(int slots, Set<Priority> lanes) {
+        Map<Priority, Integer> allotted = new EnumMap<>(Priority.class);
+        for (int slot = 0; slot < slots; slot++) {
+            Priority picked = null;
+            long totalWeight = 0;
+            for (Priority lane : Priority.values()) {
+                if (!lanes.contains(lane) || capacity(lane) <= allotted.getOrDefault(lane, 0)) {
+                    continue;
+                }
+                int weight = weights.get(lane);
+                credits.merge(lane, (long) weight, Long::sum);
+                totalWeight += weight;
+                if (picked == null || credits.get(lane) > credits.get(picked)) {
+                    picked = lane;
+                }
+            }
+            if (picked == null) {
+                break;
+            }
+            credits.merge(picked, -totalWeight, Long::sum);
+            allotted.merge(picked, 1, Integer::sum);
+        }
+        return allotted;
+    }
+
+    /**
+     * Record the start of the execution of a unit of work in a lane.
+     */
+    public void started(Priority lane) {
+        inFlight.get(laneOf(lane)).incrementAndGet();
+    }
+
+    /**
+     * Record the end of the execution of a unit of work in a lane.
+     */
+    public void finished(Priority lane) {
+        inFlight.get(laneOf(lane)).decrementAndGet();
+    }
+
+    public int getInFlight(Priority lane) {
+        return inFlight.get(laneOf(lane)).get();
+    }
+
+    public int getWeight(Priority lane) {
+        return weights.get(laneOf(lane));
+    }
+
+    private int capacity(Priority lane) {
+        Integer max = maxConcurrency.get(lane);
+        return max != null ? Math.max(0, max - inFlight.get(lane).get()) : Integer.MAX_VALUE;
+    }
+
+    private static Priority laneOf(Priority lane) {
+        return lane != null ? lane : Priority.NORMAL;
+    }
+
+}
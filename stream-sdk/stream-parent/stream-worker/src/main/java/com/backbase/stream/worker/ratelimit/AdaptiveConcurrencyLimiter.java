@@ -0,0 +1,237 @@
+package com.backbase.stream.worker.ratelimit;
+
+import com.backbase.stream.worker.retry.BackoffRetryPolicy;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.core.publisher.SignalType;
+
+/**
+ * Non-blocking concurrency limiter adapting its limit to the latency of the downstream with additive increase and
+ * multiplicative decrease (AIMD). Every call completing within the latency target raises the limit by one over the
+ * current limit, so the limit grows by one per round of calls. A call exceeding the latency target or failing with a
+ * timeout, a 5xx or a 429 cuts the limit by the backoff ratio. Only calls started after the last cut cut the limit
+ * again, so a single spike hitting all calls in flight cuts the limit once. Other failures leave the limit alone.
+ *
+ * <p>Calls beyond the limit wait in order of arrival, without blocking a thread.</p>
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyTargetNanos;
+    private final double backoffRatio;
+    private final LongSupplier nanoClock;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecreaseNanos;
+    private final Queue<Waiter> waiters = new ArrayDeque<>();
+
+    /**
+     * Create a concurrency limiter.
+     *
+     * @param initialLimit  number of concurrent calls allowed at first
+     * @param minLimit      lower bound of the limit
+     * @param maxLimit      upper bound of the limit
+     * @param latencyTarget latency above which the limit is cut
+     * @param backoffRatio  factor by which the limit is cut, between 0 and 1
+     */
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyTarget,
+        double backoffRatio) {
+        this(initialLimit, minLimit, maxLimit, latencyTarget, backoffRatio, System::nanoTime);
+    }
+
+    AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, Duration latencyTarget,
+        double backoffRatio, LongSupplier nanoClock) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.latencyTargetNanos = latencyTarget.toNanos();
+        this.backoffRatio = backoffRatio > 0 && backoffRatio < 1 ? backoffRatio : 0.5;
+        this.nanoClock = nanoClock;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.lastDecreaseNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Subscribe to a call once the limit allows, adapting the limit to its outcome.
+     *
+     * @param call call to limit, subscribed to lazily
+     * @param <T>  element type
+     * @return the elements of the call
+     */
+    public <T> Flux<T> execute(Flux<T> call) {
+        return acquire().flatMapMany(permit -> call
+            .doOnError(permit::failed)
+            .doFinally(signal -> release(permit, signal == SignalType.CANCEL)));
+    }
+
+    /**
+     * Subscribe to a call once the limit allows, adapting the limit to its outcome.
+     *
+     * @param call call to limit, subscribed to lazily
+     * @param <T>  element type
+     * @return the result of the call
+     */
+    public <T> Mono<T> execute(Mono<T> call) {
+        return execute(call.flux()).singleOrEmpty();
+    }
+
+    Mono<Permit> acquire() {
+        return Mono.create(sink -> {
+            Waiter waiter = new Waiter(sink);
+            sink.onCancel(() -> cancel(waiter));
+            synchronized (this) {
+                waiters.add(waiter);
+            }
+            grant();
+        });
+    }
+
+    private void cancel(Waiter waiter) {
+        if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.CANCELLED)) {
+            synchronized (this) {
+                waiters.remove(waiter);
+            }
+        } else {
+            release(waiter.permit, true);
+        }
+    }
+
+    /**
+     * Hand out permits to waiters while the limit allows. Permits are delivered outside the lock, since delivering
+     * them starts the calls.
+     */
+    private void grant() {
+        List<Waiter> granted = new ArrayList<>();
+        synchronized (this) {
+            while (inFlight < (int) limit && !waiters.isEmpty()) {
+                Waiter waiter = waiters.poll();
+                // The permit is set before granting, so a concurrent cancel finds the permit to release
+                waiter.permit = new Permit(nanoClock.getAsLong());
+                if (waiter.state.compareAndSet(Waiter.WAITING, Waiter.GRANTED)) {
+                    inFlight++;
+                    granted.add(waiter);
+                }
+            }
+        }
+        granted.forEach(waiter -> waiter.sink.success(waiter.permit));
+    }
+
+    void release(Permit permit, boolean cancelled) {
+        if (permit == null || !permit.released.compareAndSet(false, true)) {
+            return;
+        }
+        long now = nanoClock.getAsLong();
+        synchronized (this) {
+            inFlight--;
+            // A call cancelled after exceeding the latency target, such as by a timeout, still counts as slow
+            if (!cancelled || now - permit.startedAt > latencyTargetNanos) {
+                adapt(permit, now);
+            }
+        }
+        grant();
+    }
+
+    private void adapt(Permit permit, long now) {
+        boolean overloaded = permit.failure != null
+            ? isOverload(permit.failure)
+            : now - permit.startedAt > latencyTargetNanos;
+        if (overloaded) {
+            if (permit.startedAt - lastDecreaseNanos >= 0) {
+                double previous = limit;
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecreaseNanos = now;
+                log.debug("Cut concurrency limit from {} to {}", (int) previous, (int) limit);
+            }
+        } else if (permit.failure == null) {
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    /**
+     * Whether a failure signals that the downstream is overloaded: a timeout, a 5xx or a 429.
+     *
+     * @param failure failure of a call
+     * @return true when the limit should be cut
+     */
+    public static boolean isOverload(Throwable failure) {
+        WebClientResponseException response = BackoffRetryPolicy.findResponse(failure);
+        if (response != null) {
+            int status = response.getRawStatusCode();
+            return status >= 500 || status == 429;
+        }
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TimeoutException) {
+                return true;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return current number of concurrent calls allowed
+     */
+    public synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return number of calls in flight
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * @return number of calls waiting for the limit to allow them
+     */
+    public synchronized int getWaiting() {
+        return waiters.size();
+    }
+
+    static class Permit {
+
+        private final long startedAt;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Throwable failure;
+
+        Permit(long startedAt) {
+            this.startedAt = startedAt;
+        }
+
+        void failed(Throwable failure) {
+            this.failure = failure;
+        }
+    }
+
+    private static class Waiter {
+
+        private static final int WAITING = 0;
+        private static final int GRANTED = 1;
+        private static final int CANCELLED = 2;
+
+        private final MonoSink<Permit> sink;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private volatile Permit permit;
+
+        Waiter(MonoSink<Permit> sink) {
+            this.sink = sink;
+        }
+    }
+}
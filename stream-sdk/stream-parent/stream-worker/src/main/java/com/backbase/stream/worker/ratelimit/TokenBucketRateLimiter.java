@@ -0,0 +1,140 @@
+package com.backbase.stream.worker.ratelimit;
+
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Non-blocking token bucket rate limiter. Permits are handed out at a fixed interval, while permits not used during
+ * idle time are saved, so up to the burst capacity of permits is available at once. Acquiring a permit reserves the
+ * next free slot and delays the caller until then on a timer, so no thread is blocked while waiting.
+ */
+@Slf4j
+public class TokenBucketRateLimiter {
+
+    private final long intervalNanos;
+    private final int maxStoredPermits;
+    private final LongSupplier nanoClock;
+    private final Scheduler timer;
+
+    private double storedPermits;
+    private long nextFreeNanos;
+
+    private final LongAdder acquiredPermits = new LongAdder();
+    private final LongAdder waitedPermits = new LongAdder();
+    private final LongAdder waitedNanos = new LongAdder();
+
+    /**
+     * Create a rate limiter.
+     *
+     * @param interval minimum interval between permits, zero for no limit
+     * @param burst    maximum number of permits available at once after being idle
+     */
+    public TokenBucketRateLimiter(Duration interval, int burst) {
+        this(interval, burst, System::nanoTime, Schedulers.parallel());
+    }
+
+    TokenBucketRateLimiter(Duration interval, int burst, LongSupplier nanoClock, Scheduler timer) {
+        this.intervalNanos = Math.max(0, interval.toNanos());
+        // The next free permit is always available on top of the stored ones
+        this.maxStoredPermits = Math.max(1, burst) - 1;
+        this.nanoClock = nanoClock;
+        this.timer = timer;
+        this.storedPermits = this.maxStoredPermits;
+        this.nextFreeNanos = nanoClock.getAsLong();
+    }
+
+    /**
+     * Create the rate limiter for stream tasks of an executor. The interval between permits is derived from the rate
+     * limit, or from the delay between tasks when that is longer.
+     *
+     * @param configuration stream worker configuration
+     * @return rate limiter, not limiting anything when neither rate limit nor delay between tasks is configured
+     */
+    public static TokenBucketRateLimiter from(StreamWorkerConfiguration configuration) {
+        Duration interval = Duration.ZERO;
+        if (configuration.getRateLimit() > 0) {
+            interval = Duration.ofNanos(TimeUnit.SECONDS.toNanos(1) / configuration.getRateLimit());
+        }
+        Duration delayBetweenTasks = configuration.getDelayBetweenTasks();
+        if (delayBetweenTasks != null && delayBetweenTasks.compareTo(interval) > 0) {
+            interval = delayBetweenTasks;
+        }
+        if (!interval.isZero()) {
+            log.info("Limiting stream tasks to one every {} with a burst of {}", interval,
+                configuration.getRateLimitBurst());
+        }
+        return new TokenBucketRateLimiter(interval, configuration.getRateLimitBurst());
+    }
+
+    /**
+     * Acquire a single permit.
+     *
+     * @return completes as soon as the permit is available
+     */
+    public Mono<Void> acquire() {
+        if (intervalNanos == 0) {
+            return Mono.fromRunnable(acquiredPermits::increment);
+        }
+        return Mono.defer(() -> {
+            long waitNanos = reserve();
+            acquiredPermits.increment();
+            if (waitNanos <= 0) {
+                return Mono.empty();
+            }
+            waitedPermits.increment();
+            waitedNanos.add(waitNanos);
+            return Mono.delay(Duration.ofNanos(waitNanos), timer).then();
+        });
+    }
+
+    /**
+     * Reserve the next permit.
+     *
+     * @return nanoseconds to wait before the permit may be used
+     */
+    synchronized long reserve() {
+        long now = nanoClock.getAsLong();
+        if (now > nextFreeNanos) {
+            storedPermits = Math.min(maxStoredPermits, storedPermits + (now - nextFreeNanos) / (double) intervalNanos);
+            nextFreeNanos = now;
+        }
+        long waitNanos = nextFreeNanos - now;
+        double fromStored = Math.min(1, storedPermits);
+        storedPermits -= fromStored;
+        nextFreeNanos += (long) ((1 - fromStored) * intervalNanos);
+        return waitNanos;
+    }
+
+    public boolean isLimited() {
+        return intervalNanos > 0;
+    }
+
+    /**
+     * @return total number of permits acquired
+     */
+    public long getAcquiredPermits() {
+        return acquiredPermits.sum();
+    }
+
+    /**
+     * @return number of permits for which the caller had to wait
+     */
+    public long getWaitedPermits() {
+        return waitedPermits.sum();
+    }
+
+    /**
+     * @return total time callers waited for permits
+     */
+    public Duration getWaitedDuration() {
+        return Duration.ofNanos(waitedNanos.sum());
+    }
+
+}
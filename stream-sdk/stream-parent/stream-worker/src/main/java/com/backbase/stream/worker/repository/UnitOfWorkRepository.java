@@ -3,8 +3,17 @@ package com.backbase.stream.worker.repository;
 import com.backbase.stream.worker.model.StreamTask;
 import com.backbase.stream.worker.model.UnitOfWork;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 import org.springframework.data.repository.reactive.ReactiveSortingRepository;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
 
 public interface UnitOfWorkRepository<T extends StreamTask, ID> extends ReactiveSortingRepository<UnitOfWork<T>, ID> {
 
@@ -12,4 +21,230 @@ public interface UnitOfWorkRepository<T extends StreamTask, ID> extends Reactive
 
     Flux<UnitOfWork<T>> findAllByNextAttemptAtBefore(OffsetDateTime currentDateTime);
 
+    /**
+     * Claim due units of work for execution, in order of their next attempt. Claimed units of work are locked and
+     * marked in progress, so no other worker claims them as well. Of units of work sharing a partition key, only the
+     * first unfinished one in order of registration is claimed.
+     *
+     * <p>This default implementation is not atomic. Repositories shared between multiple workers must override it with
+     * an atomic compare and set.</p>
+     *
+     * @param now            current time, units of work with a next attempt before it are due
+     * @param maxUnitsOfWork maximum number of units of work to claim
+     * @return the claimed units of work
+     */
+    default Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork) {
+        return filterPartitionHeads(findAllByNextAttemptAtBefore(now)
+            .filter(UnitOfWork::isUnLocked))
+            .take(maxUnitsOfWork)
+            .concatMap(unitOfWork -> {
+                unitOfWork.setLockedAt(now);
+                unitOfWork.setState(UnitOfWork.State.IN_PROGRESS);
+                return save(unitOfWork);
+            });
+    }
+
+    /**
+     * Claim due units of work of a single priority lane, in order of their next attempt.
+     *
+     * <p>Like {@link #claimDue(OffsetDateTime, int)}, this default implementation is not atomic. Repositories shared
+     * between multiple workers must override it.</p>
+     *
+     * @param now            current time, units of work with a next attempt before it are due
+     * @param maxUnitsOfWork maximum number of units of work to claim
+     * @param priority       lane to claim units of work from
+     * @param lockedBy       node claiming the units of work
+     * @return the claimed units of work
+     */
+    default Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork, UnitOfWork.Priority priority,
+        String lockedBy) {
+        return filterPartitionHeads(findAllByNextAttemptAtBefore(now)
+            .filter(UnitOfWork::isUnLocked)
+            .filter(unitOfWork -> UnitOfWork.priorityOf(unitOfWork) == priority))
+            .take(maxUnitsOfWork)
+            .concatMap(unitOfWork -> {
+                unitOfWork.setLockedAt(now);
+                unitOfWork.setLockedBy(lockedBy);
+                unitOfWork.setState(UnitOfWork.State.IN_PROGRESS);
+                return save(unitOfWork);
+            });
+    }
+
+    /**
+     * Renew the locks a node holds on units of work it is executing, so they do not expire. Locks which were released
+     * or taken over by another node in the mean time are not renewed.
+     *
+     * @param lockedBy      node holding the locks
+     * @param unitOfWorkIds units of work executed by the node
+     * @param now           current time, the new lock time
+     * @return units of work of which the lock was not renewed, because the node does not hold it anymore
+     */
+    default Mono<Set<ID>> renewLocks(String lockedBy, Collection<ID> unitOfWorkIds, OffsetDateTime now) {
+        Set<ID> lost = new LinkedHashSet<>(unitOfWorkIds);
+        return Flux.fromIterable(unitOfWorkIds)
+            .concatMap(this::findById)
+            .filter(unitOfWork -> !UnitOfWork.isUnLocked(unitOfWork) && !UnitOfWork.isFinished(unitOfWork)
+                && lockedBy.equals(unitOfWork.getLockedBy()))
+            .concatMap(unitOfWork -> {
+                unitOfWork.setLockedAt(now);
+                return save(unitOfWork);
+            })
+            .doOnNext(renewed -> lost.remove(renewed.getUnitOfOWorkId()))
+            .then(Mono.fromSupplier(() -> lost));
+    }
+
+    /**
+     * Release the locks a node holds on units of work it stopped executing, so they are claimed again. Locks which
+     * were released or taken over by another node in the mean time are left alone.
+     *
+     * @param lockedBy      node holding the locks
+     * @param unitOfWorkIds units of work of which the execution was interrupted
+     * @return number of released locks
+     */
+    default Mono<Long> releaseLocks(String lockedBy, Collection<ID> unitOfWorkIds) {
+        return Flux.fromIterable(unitOfWorkIds)
+            .concatMap(this::findById)
+            .filter(unitOfWork -> !UnitOfWork.isUnLocked(unitOfWork) && !UnitOfWork.isFinished(unitOfWork)
+                && lockedBy.equals(unitOfWork.getLockedBy()))
+            .concatMap(unitOfWork -> {
+                UnitOfWork.release(unitOfWork);
+                return save(unitOfWork);
+            })
+            .count();
+    }
+
+    /**
+     * Release locks which have not been renewed since the given time, because the node holding them died. Released
+     * units of work are accepted again, to be claimed by any node.
+     *
+     * <p>This default implementation loads all units of work and is not atomic. Repositories shared between multiple
+     * workers must override it.</p>
+     *
+     * @param lockedBefore locks taken or renewed before are released
+     * @return number of released locks
+     */
+    default Mono<Long> releaseExpiredLocks(OffsetDateTime lockedBefore) {
+        return findAll()
+            .filter(unitOfWork -> !UnitOfWork.isUnLocked(unitOfWork) && !UnitOfWork.isFinished(unitOfWork)
+                && unitOfWork.getLockedAt().isBefore(lockedBefore))
+            .concatMap(unitOfWork -> {
+                UnitOfWork.release(unitOfWork);
+                return save(unitOfWork);
+            })
+            .count();
+    }
+
+    /**
+     * Claim units of work which failed without retries left for rollback, oldest failure first. Claimed units of work
+     * are locked and marked rollback in progress.
+     *
+     * <p>This default implementation loads all units of work and is not atomic. Repositories shared between multiple
+     * workers must override it.</p>
+     *
+     * @param now            current time, the lock time
+     * @param maxUnitsOfWork maximum number of units of work to claim
+     * @param lockedBy       node claiming the units of work
+     * @return the claimed units of work
+     */
+    default Flux<UnitOfWork<T>> claimExhausted(OffsetDateTime now, int maxUnitsOfWork, String lockedBy) {
+        return findAll()
+            .filter(unitOfWork -> unitOfWork.getState() == UnitOfWork.State.FAILED_RETRIES_EXHAUSTED
+                && UnitOfWork.isUnLocked(unitOfWork))
+            .sort(Comparator.comparing(UnitOfWork::getFinishedAt,
+                Comparator.nullsFirst(Comparator.<OffsetDateTime>naturalOrder())))
+            .take(maxUnitsOfWork)
+            .concatMap(unitOfWork -> {
+                unitOfWork.setLockedAt(now);
+                unitOfWork.setLockedBy(lockedBy);
+                unitOfWork.setState(UnitOfWork.State.ROLLBACK_IN_PROGRESS);
+                return save(unitOfWork);
+            });
+    }
+
+    /**
+     * Find the first unfinished unit of work, in order of registration, of every partition key. Only these units of
+     * work may be claimed, so units of work sharing a partition key execute in order even when an earlier one waits
+     * for a retry.
+     *
+     * <p>This default implementation loads all units of work. Repositories holding many units of work should
+     * override it.</p>
+     *
+     * @return ids of the first unfinished unit of work of every partition key
+     */
+    default Mono<Set<String>> findPartitionHeads() {
+        return findAll()
+            .filter(unitOfWork -> unitOfWork.getPartitionKey() != null && !UnitOfWork.isFinished(unitOfWork))
+            .collect(Collectors.toMap(UnitOfWork::getPartitionKey, Function.identity(),
+                BinaryOperator.minBy(UnitOfWork.REGISTRATION_ORDER)))
+            .map(heads -> heads.values().stream()
+                .map(UnitOfWork::getUnitOfOWorkId)
+                .collect(Collectors.toSet()));
+    }
+
+    /**
+     * Drop units of work held back by an earlier unfinished unit of work with the same partition key. Partition heads
+     * are only looked up when any of the units of work has a partition key.
+     *
+     * @param unitsOfWork candidate units of work
+     * @return candidate units of work which may be claimed
+     */
+    default Flux<UnitOfWork<T>> filterPartitionHeads(Flux<UnitOfWork<T>> unitsOfWork) {
+        return unitsOfWork.collectList()
+            .flatMapMany(candidates -> candidates.stream().allMatch(unitOfWork -> unitOfWork.getPartitionKey() == null)
+                ? Flux.fromIterable(candidates)
+                : findPartitionHeads().flatMapMany(heads -> Flux.fromIterable(candidates)
+                    .filter(unitOfWork -> unitOfWork.getPartitionKey() == null
+                        || heads.contains(unitOfWork.getUnitOfOWorkId()))));
+    }
+
+    /**
+     * Count stored units of work per state. Used to gauge the queue depth, so implementations should answer this
+     * without loading all units of work.
+     *
+     * @return number of units of work per state, states without units of work may be missing
+     */
+    default Mono<Map<UnitOfWork.State, Long>> countByState() {
+        return findAll()
+            .collect(Collectors.groupingBy(UnitOfWork::getState, Collectors.counting()));
+    }
+
+    /**
+     * Count units of work waiting for an attempt per priority lane, not counting units of work being executed. Used to
+     * gauge the queue depth of the lanes, so implementations should answer this without loading all units of work.
+     *
+     * @return number of waiting units of work per lane, lanes without waiting units of work may be missing
+     */
+    default Mono<Map<UnitOfWork.Priority, Long>> countWaitingByPriority() {
+        return findAll()
+            .filter(unitOfWork -> unitOfWork.getNextAttemptAt() != null
+                && UnitOfWork.isUnLocked(unitOfWork)
+                && !UnitOfWork.isFinished(unitOfWork))
+            .collect(Collectors.groupingBy(UnitOfWork::priorityOf, Collectors.counting()));
+    }
+
+    /**
+     * Evict finished units of work, either because they finished before the given time or because more finished units
+     * of work than the given maximum are stored. Units of work waiting for an attempt are never evicted.
+     *
+     * <p>This default implementation loads all units of work. Repositories holding many units of work should
+     * override it.</p>
+     *
+     * @param finishedBefore units of work finished before are evicted, null to not evict by age
+     * @param maxFinished    maximum number of finished units of work kept, the oldest are evicted first; negative for
+     *                       no maximum
+     * @return number of evicted units of work
+     */
+    default Mono<Long> deleteFinished(OffsetDateTime finishedBefore, int maxFinished) {
+        return findAll()
+            .filter(UnitOfWork::isFinished)
+            .sort(Comparator.comparing(UnitOfWork::getFinishedAt,
+                Comparator.nullsLast(Comparator.<OffsetDateTime>reverseOrder())))
+            .index()
+            .filter(finished -> maxFinished >= 0 && finished.getT1() >= maxFinished
+                || finishedBefore != null && finished.getT2().getFinishedAt() != null
+                && finished.getT2().getFinishedAt().isBefore(finishedBefore))
+            .concatMap(finished -> delete(finished.getT2()).thenReturn(1L))
+            .count();
+    }
+
 }
@@ -1,11 +1,31 @@
 package com.backbase.stream.worker.repository.impl;
 
+import com.backbase.stream.worker.exception.LockLostException;
 import com.backbase.stream.worker.model.StreamTask;
 import com.backbase.stream.worker.model.UnitOfWork;
 import com.backbase.stream.worker.repository.UnitOfWorkRepository;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
 import org.reactivestreams.Publisher;
 import org.springframework.data.domain.Sort;
 import org.springframework.lang.NonNull;
@@ -14,10 +34,74 @@ import org.springframework.util.CollectionUtils;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+/**
+ * In memory Unit Of Work Repository. Next to the storage itself, units of work waiting for an attempt are kept in an
+ * index ordered by next attempt, so selecting due work only visits the due units instead of scanning all stored units.
+ * The same entries are kept per priority lane as well, so claiming the due work of a lane does not visit due units of
+ * other lanes. Unfinished units of work with a partition key are indexed per partition key in order of registration,
+ * so claims can tell whether a unit of work is held back by an earlier one with the same key.
+ * Finished units of work are never part of that index, they are kept in an index ordered by finishing time instead, so
+ * evicting the oldest finished units of work does not scan all stored units either. Units of work which failed without
+ * retries left are indexed by finishing time on their own as well, so claiming them for rollback only visits them.
+ * Units of work are counted per state along with the index updates, so reporting the counts does not scan all stored
+ * units.
+ *
+ * <p>Optionally, every change is appended to a {@link UnitOfWorkJournal}, from which the stored units of work are
+ * replayed when the repository is created again after a restart.</p>
+ *
+ * @param <T> Stream Task type
+ */
+@Slf4j
 @SuppressWarnings("NullableProblems")
 public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implements UnitOfWorkRepository<T, String> {
 
-    private ConcurrentHashMap<String, UnitOfWork<T>> inMemStorage = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, UnitOfWork<T>> inMemStorage = new ConcurrentHashMap<>();
+
+    private final UnitOfWorkJournal<T> journal;
+
+    private final ConcurrentHashMap<String, IndexEntry> dueEntries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<IndexEntry> dueIndex = new ConcurrentSkipListSet<>(IndexEntry.ORDER);
+    private final Map<UnitOfWork.Priority, ConcurrentSkipListSet<IndexEntry>> laneIndexes = newLaneIndexes();
+
+    private final ConcurrentHashMap<String, IndexEntry> partitionEntries = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ConcurrentSkipListSet<IndexEntry>> partitions = new ConcurrentHashMap<>();
+
+    private final ConcurrentHashMap<String, IndexEntry> finishedEntries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<IndexEntry> finishedIndex = new ConcurrentSkipListSet<>(IndexEntry.ORDER);
+
+    private final ConcurrentHashMap<String, IndexEntry> exhaustedEntries = new ConcurrentHashMap<>();
+    private final ConcurrentSkipListSet<IndexEntry> exhaustedIndex = new ConcurrentSkipListSet<>(IndexEntry.ORDER);
+
+    private final ConcurrentHashMap<String, UnitOfWork.State> indexedStates = new ConcurrentHashMap<>();
+    private final Map<UnitOfWork.State, LongAdder> stateCounts = newStateCounts();
+
+    public InMemoryReactiveUnitOfWorkRepository() {
+        this.journal = null;
+    }
+
+    /**
+     * Create a repository journaling every change. Units of work are replayed from the journal first. Units of work
+     * locked when the journal was last written were interrupted, so they are released to be claimed again.
+     *
+     * @param journal journal of this repository only
+     */
+    public InMemoryReactiveUnitOfWorkRepository(UnitOfWorkJournal<T> journal) {
+        this.journal = journal;
+        try {
+            journal.replay().forEach((unitOfWorkId, unitOfWork) -> {
+                if (!UnitOfWork.isUnLocked(unitOfWork)) {
+                    log.info("Releasing interrupted Unit Of Work: {}", unitOfWorkId);
+                    UnitOfWork.release(unitOfWork);
+                }
+                inMemStorage.put(unitOfWorkId, unitOfWork);
+                index(unitOfWorkId, unitOfWork);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to replay Unit Of Work journal", e);
+        }
+        journal.attach(inMemStorage::values);
+        journal.compact();
+    }
 
     @Override
     public Flux<UnitOfWork<T>> findAllByRegisteredAtBefore(OffsetDateTime currentDateTime) {
@@ -28,9 +112,19 @@ public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implemen
 
     @Override
     public Flux<UnitOfWork<T>> findAllByNextAttemptAtBefore(OffsetDateTime currentDateTime) {
-        return Flux.fromStream(inMemStorage.values().stream()
-            .filter(legalEntityUnitOfWork -> legalEntityUnitOfWork.getNextAttemptAt() != null
-                && legalEntityUnitOfWork.getNextAttemptAt().isBefore(currentDateTime)));
+        return findDue(dueIndex, currentDateTime);
+    }
+
+    private Flux<UnitOfWork<T>> findDue(ConcurrentSkipListSet<IndexEntry> index, OffsetDateTime currentDateTime) {
+        return Flux.fromIterable(index.headSet(IndexEntry.before(currentDateTime.toInstant())))
+            .handle((indexEntry, sink) -> {
+                UnitOfWork<T> unitOfWork = inMemStorage.get(indexEntry.getUnitOfWorkId());
+                // The index only reflects the last save, skip units which have been changed or removed since.
+                if (unitOfWork != null && isDue(unitOfWork)
+                    && unitOfWork.getNextAttemptAt().isBefore(currentDateTime)) {
+                    sink.next(unitOfWork);
+                }
+            });
     }
 
     @Override
@@ -38,10 +132,194 @@ public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implemen
         if (entity.getUnitOfOWorkId() == null) {
             entity.setUnitOfOWorkId(UUID.randomUUID().toString());
         }
-        inMemStorage.put(entity.getUnitOfOWorkId(), entity);
+        try {
+            inMemStorage.compute(entity.getUnitOfOWorkId(), (unitOfWorkId, existing) -> {
+                // Another copy of a stored unit of work only replaces it when nobody changed it since the copy was made
+                if (existing != null && existing != entity && entity.getVersion() != 0
+                    && existing.getVersion() != entity.getVersion()) {
+                    throw new LockLostException(Collections.singletonList(unitOfWorkId));
+                }
+                entity.setVersion(entity.getVersion() + 1);
+                journalSave(entity);
+                index(unitOfWorkId, entity);
+                return entity;
+            });
+        } catch (UncheckedIOException | IllegalStateException | LockLostException e) {
+            return Mono.error(e);
+        }
         return Mono.just(entity);
     }
 
+    /**
+     * Atomically claims a unit of work that still has the expected version. Check and update happen while holding the
+     * storage entry of the unit of work, so concurrent claims of the same unit of work never both succeed while claims
+     * of other units do not block.
+     */
+    private Mono<UnitOfWork<T>> claim(String unitOfWorkId, long expectedVersion, String lockedBy) {
+        return Mono.fromSupplier(() -> {
+            OffsetDateTime now = OffsetDateTime.now();
+            AtomicBoolean locked = new AtomicBoolean();
+            UnitOfWork<T> unitOfWork = inMemStorage.computeIfPresent(unitOfWorkId, (id, current) -> {
+                if (UnitOfWork.isClaimable(current, expectedVersion, now)) {
+                    current.setLockedAt(now);
+                    current.setLockedBy(lockedBy);
+                    current.setState(UnitOfWork.State.IN_PROGRESS);
+                    current.setVersion(current.getVersion() + 1);
+                    journalSave(current);
+                    index(id, current);
+                    locked.set(true);
+                }
+                return current;
+            });
+            return locked.get() ? unitOfWork : null;
+        });
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork) {
+        return findAllByNextAttemptAtBefore(now)
+            .filter(UnitOfWork::isUnLocked)
+            .filter(this::isPartitionHead)
+            .concatMap(unitOfWork -> claim(unitOfWork.getUnitOfOWorkId(), unitOfWork.getVersion(), null))
+            .take(maxUnitsOfWork);
+    }
+
+    @Override
+    public Flux<UnitOfWork<T>> claimDue(OffsetDateTime now, int maxUnitsOfWork, UnitOfWork.Priority priority,
+        String lockedBy) {
+        return findDue(laneIndexes.get(priority), now)
+            .filter(UnitOfWork::isUnLocked)
+            .filter(this::isPartitionHead)
+            .concatMap(unitOfWork -> claim(unitOfWork.getUnitOfOWorkId(), unitOfWork.getVersion(), lockedBy))
+            .take(maxUnitsOfWork);
+    }
+
+    /**
+     * Only visits units of work which failed without retries left, in order of finishing.
+     */
+    @Override
+    public Flux<UnitOfWork<T>> claimExhausted(OffsetDateTime now, int maxUnitsOfWork, String lockedBy) {
+        return Flux.fromIterable(exhaustedIndex)
+            .<UnitOfWork<T>>handle((indexEntry, sink) -> {
+                AtomicBoolean locked = new AtomicBoolean();
+                UnitOfWork<T> unitOfWork = inMemStorage.computeIfPresent(indexEntry.getUnitOfWorkId(),
+                    (id, current) -> {
+                        if (current.getState() == UnitOfWork.State.FAILED_RETRIES_EXHAUSTED
+                            && UnitOfWork.isUnLocked(current)) {
+                            current.setLockedAt(now);
+                            current.setLockedBy(lockedBy);
+                            current.setState(UnitOfWork.State.ROLLBACK_IN_PROGRESS);
+                            current.setVersion(current.getVersion() + 1);
+                            journalSave(current);
+                            index(id, current);
+                            locked.set(true);
+                        }
+                        return current;
+                    });
+                if (locked.get()) {
+                    sink.next(unitOfWork);
+                }
+            })
+            .take(maxUnitsOfWork);
+    }
+
+    /**
+     * Renews locks in place. Renewals are not journaled, locks found in the journal are released on replay anyway.
+     */
+    @Override
+    public Mono<Set<String>> renewLocks(String lockedBy, Collection<String> unitOfWorkIds, OffsetDateTime now) {
+        return Mono.fromSupplier(() -> {
+            Set<String> lost = new LinkedHashSet<>(unitOfWorkIds);
+            unitOfWorkIds.forEach(unitOfWorkId -> inMemStorage.computeIfPresent(unitOfWorkId, (id, current) -> {
+                if (!UnitOfWork.isUnLocked(current) && !UnitOfWork.isFinished(current)
+                    && lockedBy.equals(current.getLockedBy())) {
+                    current.setLockedAt(now);
+                    lost.remove(id);
+                }
+                return current;
+            }));
+            return lost;
+        });
+    }
+
+    /**
+     * Only visits units of work waiting for an attempt, locked units of work are part of the due index until they
+     * finish.
+     */
+    @Override
+    public Mono<Long> releaseExpiredLocks(OffsetDateTime lockedBefore) {
+        return Mono.fromSupplier(() -> {
+            AtomicLong released = new AtomicLong();
+            dueEntries.keySet().forEach(unitOfWorkId -> inMemStorage.computeIfPresent(unitOfWorkId, (id, current) -> {
+                if (!UnitOfWork.isUnLocked(current) && !UnitOfWork.isFinished(current)
+                    && current.getLockedAt().isBefore(lockedBefore)) {
+                    log.info("Releasing expired lock of Unit Of Work: {} held by {}", id, current.getLockedBy());
+                    UnitOfWork.release(current);
+                    current.setVersion(current.getVersion() + 1);
+                    journalSave(current);
+                    index(id, current);
+                    released.incrementAndGet();
+                }
+                return current;
+            }));
+            return released.get();
+        });
+    }
+
+    @Override
+    public Mono<Map<UnitOfWork.State, Long>> countByState() {
+        return Mono.fromSupplier(() -> {
+            Map<UnitOfWork.State, Long> counts = new EnumMap<>(UnitOfWork.State.class);
+            stateCounts.forEach((state, count) -> {
+                long sum = count.sum();
+                if (sum > 0) {
+                    counts.put(state, sum);
+                }
+            });
+            return counts;
+        });
+    }
+
+    @Override
+    public Mono<Set<String>> findPartitionHeads() {
+        return Mono.fromSupplier(() -> partitions.values().stream()
+            .map(InMemoryReactiveUnitOfWorkRepository::first)
+            .filter(head -> head != null)
+            .map(IndexEntry::getUnitOfWorkId)
+            .collect(Collectors.toSet()));
+    }
+
+    @Override
+    public Mono<Map<UnitOfWork.Priority, Long>> countWaitingByPriority() {
+        return Mono.fromSupplier(() -> {
+            Map<UnitOfWork.Priority, Long> counts = new EnumMap<>(UnitOfWork.Priority.class);
+            laneIndexes.forEach((priority, index) -> counts.put(priority, index.stream()
+                .map(indexEntry -> inMemStorage.get(indexEntry.getUnitOfWorkId()))
+                .filter(unitOfWork -> unitOfWork != null && isDue(unitOfWork) && UnitOfWork.isUnLocked(unitOfWork))
+                .count()));
+            return counts;
+        });
+    }
+
+    @Override
+    public Mono<Long> deleteFinished(OffsetDateTime finishedBefore, int maxFinished) {
+        return Mono.fromSupplier(() -> {
+            long evicted = 0;
+            if (finishedBefore != null) {
+                for (IndexEntry indexEntry : finishedIndex.headSet(IndexEntry.before(finishedBefore.toInstant()))) {
+                    evicted += evict(indexEntry);
+                }
+            }
+            if (maxFinished >= 0) {
+                Iterator<IndexEntry> oldestFirst = finishedIndex.iterator();
+                while (finishedEntries.size() > maxFinished && oldestFirst.hasNext()) {
+                    evicted += evict(oldestFirst.next());
+                }
+            }
+            return evicted;
+        });
+    }
+
     @Override
     public <S extends UnitOfWork<T>> Flux<S> saveAll(Iterable <S> entities) {
         return Flux.fromIterable(entities)
@@ -98,7 +376,7 @@ public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implemen
 
     @Override
     public Mono<Void> deleteById(String s) {
-        inMemStorage.remove(s);
+        remove(s);
         return Mono.empty();
     }
 
@@ -131,7 +409,7 @@ public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implemen
 
     @Override
     public Mono<Void> deleteAll() {
-        inMemStorage = new ConcurrentHashMap<>();
+        inMemStorage.keySet().forEach(this::remove);
         return Mono.empty();
     }
 
@@ -140,4 +418,184 @@ public class InMemoryReactiveUnitOfWorkRepository<T extends StreamTask> implemen
         return findAll();
 
     }
+
+    /**
+     * Removes a unit of work together with its index entry.
+     */
+    private void remove(String unitOfWorkId) {
+        inMemStorage.computeIfPresent(unitOfWorkId, (id, existing) -> {
+            journalDelete(id);
+            unIndex(id);
+            return null;
+        });
+    }
+
+    /**
+     * Removes a finished unit of work, unless it has been saved again since the index entry was created.
+     *
+     * @return 1 when removed, 0 otherwise
+     */
+    private int evict(IndexEntry indexEntry) {
+        AtomicBoolean evicted = new AtomicBoolean();
+        inMemStorage.computeIfPresent(indexEntry.getUnitOfWorkId(), (id, existing) -> {
+            if (!indexEntry.equals(finishedEntries.get(id))) {
+                return existing;
+            }
+            journalDelete(id);
+            unIndex(id);
+            evicted.set(true);
+            return null;
+        });
+        return evicted.get() ? 1 : 0;
+    }
+
+    /**
+     * Appends a save to the journal. Like index updates, only called while holding the storage entry of the unit of
+     * work, so journal records of the same unit of work are in the order of the changes.
+     */
+    private void journalSave(UnitOfWork<T> unitOfWork) {
+        if (journal != null) {
+            journal.save(unitOfWork);
+        }
+    }
+
+    private void journalDelete(String unitOfWorkId) {
+        if (journal != null) {
+            journal.delete(unitOfWorkId);
+        }
+    }
+
+    /**
+     * Replaces the index entry of a unit of work. Only called while holding the storage entry of the unit of work so
+     * that index updates for the same unit of work never interleave.
+     */
+    private void index(String unitOfWorkId, UnitOfWork<T> unitOfWork) {
+        unIndex(unitOfWorkId);
+        if (unitOfWork.getState() != null) {
+            indexedStates.put(unitOfWorkId, unitOfWork.getState());
+            stateCounts.get(unitOfWork.getState()).increment();
+        }
+        if (isDue(unitOfWork)) {
+            IndexEntry indexEntry = new IndexEntry(unitOfWork.getNextAttemptAt().toInstant(), unitOfWorkId,
+                UnitOfWork.priorityOf(unitOfWork), null);
+            dueEntries.put(unitOfWorkId, indexEntry);
+            dueIndex.add(indexEntry);
+            laneIndexes.get(indexEntry.getPriority()).add(indexEntry);
+        } else if (UnitOfWork.isFinished(unitOfWork)) {
+            Instant finishedAt = unitOfWork.getFinishedAt() != null
+                ? unitOfWork.getFinishedAt().toInstant()
+                : Instant.EPOCH;
+            IndexEntry indexEntry = new IndexEntry(finishedAt, unitOfWorkId, null, null);
+            finishedEntries.put(unitOfWorkId, indexEntry);
+            finishedIndex.add(indexEntry);
+            if (unitOfWork.getState() == UnitOfWork.State.FAILED_RETRIES_EXHAUSTED) {
+                exhaustedEntries.put(unitOfWorkId, indexEntry);
+                exhaustedIndex.add(indexEntry);
+            }
+        }
+        if (unitOfWork.getPartitionKey() != null && !UnitOfWork.isFinished(unitOfWork)) {
+            Instant registeredAt = unitOfWork.getRegisteredAt() != null
+                ? unitOfWork.getRegisteredAt().toInstant()
+                : Instant.EPOCH;
+            IndexEntry indexEntry = new IndexEntry(registeredAt, unitOfWorkId, null, unitOfWork.getPartitionKey());
+            partitionEntries.put(unitOfWorkId, indexEntry);
+            partitions.compute(indexEntry.getPartitionKey(), (partitionKey, partition) -> {
+                ConcurrentSkipListSet<IndexEntry> entries = partition != null
+                    ? partition
+                    : new ConcurrentSkipListSet<>(IndexEntry.ORDER);
+                entries.add(indexEntry);
+                return entries;
+            });
+        }
+    }
+
+    private void unIndex(String unitOfWorkId) {
+        UnitOfWork.State previousState = indexedStates.remove(unitOfWorkId);
+        if (previousState != null) {
+            stateCounts.get(previousState).decrement();
+        }
+        IndexEntry previous = dueEntries.remove(unitOfWorkId);
+        if (previous != null) {
+            dueIndex.remove(previous);
+            laneIndexes.get(previous.getPriority()).remove(previous);
+        }
+        IndexEntry previousFinished = finishedEntries.remove(unitOfWorkId);
+        if (previousFinished != null) {
+            finishedIndex.remove(previousFinished);
+        }
+        IndexEntry previousExhausted = exhaustedEntries.remove(unitOfWorkId);
+        if (previousExhausted != null) {
+            exhaustedIndex.remove(previousExhausted);
+        }
+        IndexEntry previousPartitioned = partitionEntries.remove(unitOfWorkId);
+        if (previousPartitioned != null) {
+            partitions.computeIfPresent(previousPartitioned.getPartitionKey(), (partitionKey, partition) -> {
+                partition.remove(previousPartitioned);
+                return partition.isEmpty() ? null : partition;
+            });
+        }
+    }
+
+    /**
+     * A unit of work may be claimed unless an earlier unfinished unit of work has the same partition key.
+     */
+    private boolean isPartitionHead(UnitOfWork<T> unitOfWork) {
+        if (unitOfWork.getPartitionKey() == null) {
+            return true;
+        }
+        ConcurrentSkipListSet<IndexEntry> partition = partitions.get(unitOfWork.getPartitionKey());
+        IndexEntry head = partition != null ? first(partition) : null;
+        return head == null || head.getUnitOfWorkId().equals(unitOfWork.getUnitOfOWorkId());
+    }
+
+    private static IndexEntry first(ConcurrentSkipListSet<IndexEntry> index) {
+        Iterator<IndexEntry> iterator = index.iterator();
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private static Map<UnitOfWork.Priority, ConcurrentSkipListSet<IndexEntry>> newLaneIndexes() {
+        Map<UnitOfWork.Priority, ConcurrentSkipListSet<IndexEntry>> laneIndexes =
+            new EnumMap<>(UnitOfWork.Priority.class);
+        for (UnitOfWork.Priority priority : UnitOfWork.Priority.values()) {
+            laneIndexes.put(priority, new ConcurrentSkipListSet<>(IndexEntry.ORDER));
+        }
+        return laneIndexes;
+    }
+
+    private static Map<UnitOfWork.State, LongAdder> newStateCounts() {
+        Map<UnitOfWork.State, LongAdder> stateCounts = new EnumMap<>(UnitOfWork.State.class);
+        for (UnitOfWork.State state : UnitOfWork.State.values()) {
+            stateCounts.put(state, new LongAdder());
+        }
+        return stateCounts;
+    }
+
+    private static <T extends StreamTask> boolean isDue(UnitOfWork<T> unitOfWork) {
+        return unitOfWork.getNextAttemptAt() != null && !UnitOfWork.isFinished(unitOfWork);
+    }
+
+    /**
+     * Entry of the due, finished or partition index, ordered by next attempt, finishing time or registration time
+     * respectively. Entries of the due index carry the priority lane of their unit of work, entries of the partition
+     * index its partition key. The exhausted index shares the entries of the finished index.
+     */
+    @Data
+    private static class IndexEntry {
+
+        private static final Comparator<IndexEntry> ORDER = Comparator.comparing(IndexEntry::getAt)
+            .thenComparing(IndexEntry::getUnitOfWorkId);
+
+        private final Instant at;
+        private final String unitOfWorkId;
+        private final UnitOfWork.Priority priority;
+        private final String partitionKey;
+
+        /**
+         * Upper bound for a head set of the index. As no unit of work has an empty id, the head set only contains
+         * entries strictly before the given instant.
+         */
+        static IndexEntry before(Instant instant) {
+            return new IndexEntry(instant, "", null, null);
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package com.backbase.stream.worker.repository.journal;
+
+import com.backbase.stream.worker.model.StreamTask;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes stream tasks as JSON.
+ *
+ * @param <T> Stream Task type, must be deserializable by the object mapper
+ */
+public class JacksonStreamTaskCodec<T extends StreamTask> implements StreamTaskCodec<T> {
+
+    private final ObjectMapper objectMapper;
+    private final JavaType streamTasksType;
+
+    public JacksonStreamTaskCodec(ObjectMapper objectMapper, Class<T> taskType) {
+        this.objectMapper = objectMapper.copy()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.streamTasksType = this.objectMapper.getTypeFactory().constructCollectionType(List.class, taskType);
+    }
+
+    @Override
+    public byte[] encode(List<T> streamTasks) throws IOException {
+        return objectMapper.writeValueAsBytes(streamTasks);
+    }
+
+    @Override
+    public List<T> decode(byte[] bytes) throws IOException {
+        return objectMapper.readValue(bytes, streamTasksType);
+    }
+
+}
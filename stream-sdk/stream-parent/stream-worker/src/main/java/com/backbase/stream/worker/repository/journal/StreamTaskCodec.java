@@ -0,0 +1,18 @@
+package com.backbase.stream.worker.repository.journal;
+
+import com.backbase.stream.worker.model.StreamTask;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Encodes the stream tasks of a unit of work for the unit of work journal.
+ *
+ * @param <T> Stream Task type
+ */
+public interface StreamTaskCodec<T extends StreamTask> {
+
+    byte[] encode(List<T> streamTasks) throws IOException;
+
+    List<T> decode(byte[] bytes) throws IOException;
+
+}
@@ -0,0 +1,355 @@
+package com.backbase.stream.worker.repository.journal;
+
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-ahead journal of units of work, making an in-memory repository survive restarts. Every save and delete is
+ * appended as a compact binary record to a memory-mapped segment file. Records are in the page cache as soon as they are
+ * appended, so they survive the process crashing without any system call. Surviving a crash of the host as well
+ * requires forcing every record to disk, which is a lot more expensive.
+ *
+ * <p>Segments are rotated once full. When the number of segments exceeds the maximum, the journal is compacted by
+ * writing the live units of work to a new segment and deleting all older segments.</p>
+ *
+ * <p>A record consists of the length of its body, the CRC32 of its body and the body itself. A zero length marks the
+ * end of a segment. Replay stops reading a segment at the first torn record.</p>
+ *
+ * @param <T> Stream Task type
+ */
+@Slf4j
+public class UnitOfWorkJournal<T extends StreamTask> implements Closeable {
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final int HEADER_SIZE = 8;
+    private static final byte SAVE = 1;
+    private static final byte DELETE = 2;
+    private static final long NULL_TIMESTAMP = Long.MIN_VALUE;
+
+    private final Path directory;
+    private final StreamTaskCodec<T> codec;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final boolean force;
+
+    /**
+     * Sequence numbers of all segments, oldest first. Only the last segment is written to.
+     */
+    private final Deque<Long> segments = new ArrayDeque<>();
+    private long nextSequence;
+    private MappedByteBuffer current;
+
+    private Supplier<Collection<UnitOfWork<T>>> liveUnitsOfWork;
+    private int compactionThreshold;
+    private boolean compacting;
+    private boolean closed;
+
+    /**
+     * Open the journal in a directory, creating the directory when needed.
+     *
+     * @param directory   directory holding the segments of this journal only
+     * @param codec       codec for the stream tasks of units of work
+     * @param segmentSize size of a segment in bytes, larger records get a segment of their own
+     * @param maxSegments number of segments after which the journal is compacted
+     * @param force       force every record to disk
+     */
+    public UnitOfWorkJournal(Path directory, StreamTaskCodec<T> codec, int segmentSize, int maxSegments,
+        boolean force) throws IOException {
+        this.directory = directory;
+        this.codec = codec;
+        this.segmentSize = segmentSize;
+        this.maxSegments = Math.max(2, maxSegments);
+        this.force = force;
+        this.compactionThreshold = this.maxSegments;
+
+        Files.createDirectories(directory);
+        List<Long> existing = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                existing.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+            }
+        }
+        Collections.sort(existing);
+        segments.addAll(existing);
+        nextSequence = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+    }
+
+    /**
+     * Read the units of work from all segments, applying records in the order they were appended. New records are
+     * always appended to a new segment, so replaying never sees records appended after it.
+     *
+     * @return units of work by id, in order of their last save
+     */
+    public synchronized Map<String, UnitOfWork<T>> replay() throws IOException {
+        Map<String, UnitOfWork<T>> unitsOfWork = new LinkedHashMap<>();
+        for (long sequence : segments) {
+            replaySegment(segmentPath(sequence), unitsOfWork);
+        }
+        log.info("Replayed {} Units Of Work from {} journal segments in: {}", unitsOfWork.size(), segments.size(),
+            directory);
+        return unitsOfWork;
+    }
+
+    /**
+     * Compact the journal from the given live units of work, whenever the number of segments exceeds the maximum.
+     *
+     * @param liveUnitsOfWork all stored units of work
+     */
+    public synchronized void attach(Supplier<Collection<UnitOfWork<T>>> liveUnitsOfWork) {
+        this.liveUnitsOfWork = liveUnitsOfWork;
+    }
+
+    /**
+     * Append a save of a unit of work.
+     */
+    public void save(UnitOfWork<T> unitOfWork) {
+        append(encodeSave(unitOfWork));
+    }
+
+    /**
+     * Append a delete of a unit of work.
+     */
+    public void delete(String unitOfWorkId) {
+        append(encodeDelete(unitOfWorkId));
+    }
+
+    /**
+     * Write the live units of work to a new segment and delete all older segments.
+     */
+    public synchronized void compact() {
+        if (liveUnitsOfWork == null) {
+            throw new IllegalStateException("No live units of work attached to journal: " + directory);
+        }
+        compacting = true;
+        try {
+            rotate(segmentSize);
+            long first = segments.getLast();
+            int unitsOfWork = 0;
+            for (UnitOfWork<T> unitOfWork : liveUnitsOfWork.get()) {
+                write(encodeSave(unitOfWork));
+                unitsOfWork++;
+            }
+            while (segments.getFirst() < first) {
+                Files.deleteIfExists(segmentPath(segments.removeFirst()));
+            }
+            // Avoid compacting over and over again when the live units of work fill most segments
+            compactionThreshold = Math.max(maxSegments, segments.size() * 2);
+            log.info("Compacted journal to {} Units Of Work in {} segments in: {}", unitsOfWork, segments.size(),
+                directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to compact journal: " + directory, e);
+        } finally {
+            compacting = false;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        if (current != null) {
+            current.force();
+        }
+        closed = true;
+    }
+
+    private synchronized void append(byte[] body) {
+        if (closed) {
+            throw new IllegalStateException("Journal closed: " + directory);
+        }
+        if ((current == null || current.remaining() < HEADER_SIZE + body.length)
+            && !compacting && liveUnitsOfWork != null && segments.size() >= compactionThreshold) {
+            compact();
+        }
+        try {
+            write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to append to journal: " + directory, e);
+        }
+    }
+
+    /**
+     * Write a record to the current segment, rotating when it does not fit. The length is written last, so a record is
+     * only visible once complete.
+     */
+    private void write(byte[] body) throws IOException {
+        int recordSize = HEADER_SIZE + body.length;
+        if (current == null || current.remaining() < recordSize) {
+            rotate(recordSize);
+        }
+        int position = current.position();
+        current.position(position + HEADER_SIZE);
+        current.put(body);
+        current.putInt(position + 4, checksum(body));
+        current.putInt(position, body.length);
+        if (force) {
+            current.force();
+        }
+    }
+
+    private void rotate(int minSize) throws IOException {
+        if (current != null) {
+            current.force();
+        }
+        long sequence = nextSequence++;
+        try (FileChannel channel = FileChannel.open(segmentPath(sequence), StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            current = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        }
+        segments.addLast(sequence);
+    }
+
+    private void replaySegment(Path segment, Map<String, UnitOfWork<T>> unitsOfWork) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            while (buffer.remaining() >= HEADER_SIZE) {
+                int length = buffer.getInt();
+                int checksum = buffer.getInt();
+                if (length == 0) {
+                    return;
+                }
+                if (length < 0 || length > buffer.remaining()) {
+                    log.warn("Ignoring torn record at {} of journal segment: {}", buffer.position(), segment);
+                    return;
+                }
+                byte[] body = new byte[length];
+                buffer.get(body);
+                if (checksum(body) != checksum) {
+                    log.warn("Ignoring corrupt record at {} of journal segment: {}", buffer.position(), segment);
+                    return;
+                }
+                apply(body, unitsOfWork);
+            }
+        }
+    }
+
+    private void apply(byte[] body, Map<String, UnitOfWork<T>> unitsOfWork) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String unitOfWorkId = in.readUTF();
+        unitsOfWork.remove(unitOfWorkId);
+        if (type == DELETE) {
+            return;
+        }
+        UnitOfWork<T> unitOfWork = new UnitOfWork<>();
+        unitOfWork.setUnitOfOWorkId(unitOfWorkId);
+        unitOfWork.setState(UnitOfWork.State.valueOf(in.readUTF()));
+        unitOfWork.setRegisteredAt(readTimestamp(in));
+        unitOfWork.setLockedAt(readTimestamp(in));
+        unitOfWork.setNextAttemptAt(readTimestamp(in));
+        unitOfWork.setStartedAt(readTimestamp(in));
+        unitOfWork.setFinishedAt(readTimestamp(in));
+        unitOfWork.setRetries(in.readInt());
+        unitOfWork.setVersion(in.readLong());
+        int tasksLength = in.readInt();
+        if (tasksLength >= 0) {
+            byte[] streamTasks = new byte[tasksLength];
+            in.readFully(streamTasks);
+            unitOfWork.setStreamTasks(codec.decode(streamTasks));
+        }
+        unitOfWork.setPriority(UnitOfWork.Priority.valueOf(in.readUTF()));
+        if (in.readBoolean()) {
+            unitOfWork.setPartitionKey(in.readUTF());
+        }
+        unitsOfWork.put(unitOfWorkId, unitOfWork);
+    }
+
+    private byte[] encodeSave(UnitOfWork<T> unitOfWork) {
+        try {
+            byte[] streamTasks = unitOfWork.getStreamTasks() != null ? codec.encode(unitOfWork.getStreamTasks()) : null;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(128 + (streamTasks != null ? streamTasks.length : 0));
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(SAVE);
+            out.writeUTF(unitOfWork.getUnitOfOWorkId());
+            out.writeUTF(unitOfWork.getState().name());
+            writeTimestamp(out, unitOfWork.getRegisteredAt());
+            writeTimestamp(out, unitOfWork.getLockedAt());
+            writeTimestamp(out, unitOfWork.getNextAttemptAt());
+            writeTimestamp(out, unitOfWork.getStartedAt());
+            writeTimestamp(out, unitOfWork.getFinishedAt());
+            out.writeInt(unitOfWork.getRetries());
+            out.writeLong(unitOfWork.getVersion());
+            if (streamTasks != null) {
+                out.writeInt(streamTasks.length);
+                out.write(streamTasks);
+            } else {
+                out.writeInt(-1);
+            }
+            out.writeUTF(UnitOfWork.priorityOf(unitOfWork).name());
+            out.writeBoolean(unitOfWork.getPartitionKey() != null);
+            if (unitOfWork.getPartitionKey() != null) {
+                out.writeUTF(unitOfWork.getPartitionKey());
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode Unit Of Work: " + unitOfWork.getUnitOfOWorkId(), e);
+        }
+    }
+
+    private static byte[] encodeDelete(String unitOfWorkId) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(DELETE);
+            out.writeUTF(unitOfWorkId);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to encode delete of Unit Of Work: " + unitOfWorkId, e);
+        }
+    }
+
+    private static void writeTimestamp(DataOutputStream out, OffsetDateTime timestamp) throws IOException {
+        if (timestamp == null) {
+            out.writeLong(NULL_TIMESTAMP);
+        } else {
+            Instant instant = timestamp.toInstant();
+            out.writeLong(instant.getEpochSecond());
+            out.writeInt(instant.getNano());
+        }
+    }
+
+    private static OffsetDateTime readTimestamp(DataInputStream in) throws IOException {
+        long epochSecond = in.readLong();
+        if (epochSecond == NULL_TIMESTAMP) {
+            return null;
+        }
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(epochSecond, in.readInt()), ZoneOffset.UTC);
+    }
+
+    private static int checksum(byte[] body) {
+        CRC32 crc32 = new CRC32();
+        crc32.update(body, 0, body.length);
+        return (int) crc32.getValue();
+    }
+
+    private Path segmentPath(long sequence) {
+        return directory.resolve(String.format("%020d%s", sequence, SEGMENT_SUFFIX));
+    }
+
+}
@@ -0,0 +1,54 @@
+package com.backbase.stream.worker.repository.journal;
+
+import com.backbase.stream.worker.configuration.UnitOfWorkJournalConfigurationProperties;
+import com.backbase.stream.worker.model.StreamTask;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Opens the journals of in-memory unit of work repositories and closes them on shutdown.
+ */
+@Slf4j
+public class UnitOfWorkJournals implements Closeable {
+
+    private final UnitOfWorkJournalConfigurationProperties properties;
+    private final ObjectMapper objectMapper;
+    private final List<UnitOfWorkJournal<?>> journals = new CopyOnWriteArrayList<>();
+
+    public UnitOfWorkJournals(UnitOfWorkJournalConfigurationProperties properties, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Open the journal of a single type of units of work.
+     *
+     * @param taskType Stream Task type, must be deserializable by the object mapper
+     * @param unitType Name of the sub directory holding the journal
+     * @return the journal
+     */
+    public <T extends StreamTask> UnitOfWorkJournal<T> open(Class<T> taskType, String unitType) {
+        try {
+            UnitOfWorkJournal<T> journal = new UnitOfWorkJournal<>(Paths.get(properties.getDirectory(), unitType),
+                new JacksonStreamTaskCodec<>(objectMapper, taskType), (int) properties.getSegmentSize().toBytes(),
+                properties.getMaxSegments(), properties.isForce());
+            journals.add(journal);
+            return journal;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open Unit Of Work journal: " + unitType, e);
+        }
+    }
+
+    @Override
+    public void close() {
+        journals.forEach(UnitOfWorkJournal::close);
+        log.info("Closed {} Unit Of Work journals", journals.size());
+    }
+
+}
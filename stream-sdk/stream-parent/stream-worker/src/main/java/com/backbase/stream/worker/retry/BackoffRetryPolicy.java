@@ -0,0 +1,141 @@
+package com.backbase.stream.worker.retry;
+
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration.RetryBackoff;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.DoubleSupplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+/**
+ * Retry policy backing off between attempts, up to a maximum delay.
+ *
+ * <p>Failures are classified by the HTTP status of a {@link WebClientResponseException} anywhere in their cause chain.
+ * Client errors are not retryable, except for request timeouts and too many requests. Server errors and all other
+ * failures are retryable. A {@code Retry-After} header on such a response delays the next attempt at least as long as
+ * requested, up to the maximum delay.</p>
+ */
+@Slf4j
+public class BackoffRetryPolicy implements RetryPolicy {
+
+    private final RetryBackoff backoff;
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final double multiplier;
+    private final DoubleSupplier random;
+
+    public BackoffRetryPolicy(RetryBackoff backoff, Duration baseDelay, Duration maxDelay, double multiplier) {
+        this(backoff, baseDelay, maxDelay, multiplier, () -> ThreadLocalRandom.current().nextDouble());
+    }
+
+    BackoffRetryPolicy(RetryBackoff backoff, Duration baseDelay, Duration maxDelay, double multiplier,
+        DoubleSupplier random) {
+        this.backoff = backoff;
+        this.baseDelay = baseDelay;
+        this.maxDelay = maxDelay.compareTo(baseDelay) < 0 ? baseDelay : maxDelay;
+        this.multiplier = Math.max(1, multiplier);
+        this.random = random;
+    }
+
+    /**
+     * Create the retry policy of an executor from the retry duration, maximum retry duration, multiplier and backoff
+     * of the stream worker configuration.
+     */
+    public static BackoffRetryPolicy from(StreamWorkerConfiguration configuration) {
+        return new BackoffRetryPolicy(configuration.getRetryBackoff(), configuration.getRetryDuration(),
+            configuration.getRetryMaxDuration(), configuration.getRetryMultiplier());
+    }
+
+    @Override
+    public boolean isRetryable(Throwable failure) {
+        WebClientResponseException response = findResponse(failure);
+        if (response == null) {
+            return true;
+        }
+        int status = response.getRawStatusCode();
+        return status < 400 || status >= 500 || status == 408 || status == 429;
+    }
+
+    @Override
+    public Duration nextDelay(int retry, Duration previousDelay, Collection<Throwable> failures) {
+        Duration delay = backoff(retry, previousDelay);
+        for (Throwable failure : failures) {
+            Duration retryAfter = retryAfter(findResponse(failure));
+            if (retryAfter != null && retryAfter.compareTo(delay) > 0) {
+                delay = min(retryAfter, maxDelay);
+            }
+        }
+        return delay;
+    }
+
+    private Duration backoff(int retry, Duration previousDelay) {
+        switch (backoff) {
+            case EXPONENTIAL:
+                double exponential = baseDelay.toMillis() * Math.pow(multiplier, Math.max(0, retry - 1));
+                return min(Duration.ofMillis((long) exponential), maxDelay);
+            case DECORRELATED_JITTER:
+                // Random between the base delay and three times the previous delay, so retries spread out over time
+                long previous = previousDelay != null ? previousDelay.toMillis() : baseDelay.toMillis();
+                long upper = Math.max(baseDelay.toMillis(), Math.min(maxDelay.toMillis(), previous * 3));
+                long jittered = baseDelay.toMillis()
+                    + (long) (random.getAsDouble() * (upper - baseDelay.toMillis()));
+                return Duration.ofMillis(jittered);
+            default:
+                return baseDelay;
+        }
+    }
+
+    /**
+     * Find the response of a failed call to DBS in the cause chain of a failure.
+     *
+     * @param failure failure of a stream task
+     * @return the response exception, or null when the failure was not caused by an error response
+     */
+    public static WebClientResponseException findResponse(Throwable failure) {
+        for (Throwable cause = failure; cause != null; cause = cause.getCause()) {
+            if (cause instanceof WebClientResponseException) {
+                return (WebClientResponseException) cause;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Parse the {@code Retry-After} header, either in seconds or as HTTP date.
+     */
+    private static Duration retryAfter(WebClientResponseException response) {
+        if (response == null) {
+            return null;
+        }
+        String retryAfter = response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER);
+        if (retryAfter == null || retryAfter.trim().isEmpty()) {
+            return null;
+        }
+        try {
+            return Duration.ofSeconds(Math.max(0, Long.parseLong(retryAfter.trim())));
+        } catch (NumberFormatException e) {
+            try {
+                Duration until = Duration.between(ZonedDateTime.now(),
+                    ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME));
+                return until.isNegative() ? Duration.ZERO : until;
+            } catch (DateTimeParseException ignored) {
+                log.debug("Ignoring invalid Retry-After header: {}", retryAfter);
+                return null;
+            }
+        }
+    }
+
+    private static Duration min(Duration duration, Duration other) {
+        return duration.compareTo(other) <= 0 ? duration : other;
+    }
+
+}
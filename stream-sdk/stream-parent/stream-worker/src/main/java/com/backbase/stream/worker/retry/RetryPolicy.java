@@ -0,0 +1,29 @@
+package com.backbase.stream.worker.retry;
+
+import java.time.Duration;
+import java.util.Collection;
+
+/**
+ * Decides whether failed stream tasks are retried, and when the next attempt of their unit of work is due.
+ */
+public interface RetryPolicy {
+
+    /**
+     * Classify a failure of a stream task.
+     *
+     * @param failure failure of a stream task
+     * @return false when another attempt can not succeed, so the stream task is not retried
+     */
+    boolean isRetryable(Throwable failure);
+
+    /**
+     * Delay before the next attempt of a failed unit of work.
+     *
+     * @param retry         number of the retry to schedule, starting at 1
+     * @param previousDelay delay before the current attempt, null for the first retry
+     * @param failures      failures of the current attempt
+     * @return delay before the next attempt
+     */
+    Duration nextDelay(int retry, Duration previousDelay, Collection<Throwable> failures);
+
+}
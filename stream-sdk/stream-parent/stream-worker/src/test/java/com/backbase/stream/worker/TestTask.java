@@ -0,0 +1,33 @@
+package com.backbase.stream.worker;
+
+import com.backbase.stream.worker.model.StreamTask;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+/**
+ * Stream task used by the worker tests. Published in the test jar so repository implementations in other modules can
+ * share it.
+ */
+@Data
+@NoArgsConstructor
+@EqualsAndHashCode(callSuper = true)
+public class TestTask extends StreamTask {
+
+    private String payload = "payload";
+
+    public TestTask(String id) {
+        super(id);
+    }
+
+    @Override
+    public void compact() {
+        super.compact();
+        payload = null;
+    }
+
+    @Override
+    public String getName() {
+        return "test";
+    }
+}
@@ -0,0 +1,607 @@
+package com.backbase.stream.worker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.batch.KeyedMicroBatcher;
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import com.backbase.stream.worker.deadletter.DeadLetter;
+import com.backbase.stream.worker.deadletter.DeadLetterReplay;
+import com.backbase.stream.worker.exception.LockLostException;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.TaskHistory;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+class UnitOfWorkExecutorTest {
+
+    private final InMemoryReactiveUnitOfWorkRepository<TestTask> repository =
+        new InMemoryReactiveUnitOfWorkRepository<>();
+
+    private final TestConfiguration configuration = new TestConfiguration();
+
+    @Test
+    void drainsAllDueUnitsOfWorkInSingleTick() {
+        configuration.setSchedulerIntervalDuration(Duration.ofSeconds(1));
+        configuration.setClaimBatchSize(2);
+        configuration.setWorkerUnitExecutors(2);
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+
+        Flux.range(0, 5)
+            .map(i -> UnitOfWork.from("unit-" + i, new TestTask("task-" + i)))
+            .flatMap(executor::register)
+            .blockLast();
+
+        // Without continuing on a full batch this would take three ticks
+        List<UnitOfWork<TestTask>> executed = executor.getScheduler()
+            .take(5)
+            .collectList()
+            .block(Duration.ofMillis(2500));
+
+        assertEquals(5, executed.size());
+        assertTrue(executed.stream().allMatch(unitOfWork -> unitOfWork.getState() == UnitOfWork.State.COMPLETED));
+    }
+
+    @Test
+    void dispatchesInteractiveUnitsOfWorkAheadOfBulkLoad() {
+        configuration.setSchedulerIntervalDuration(Duration.ofSeconds(1));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+
+        Flux.range(0, 4)
+            .map(i -> {
+                UnitOfWork<TestTask> unitOfWork = UnitOfWork.from("bulk-" + i, new TestTask("task-" + i));
+                unitOfWork.setPriority(UnitOfWork.Priority.BULK);
+                return unitOfWork;
+            })
+            .concatMap(executor::register)
+            .blockLast();
+        UnitOfWork<TestTask> interactive = UnitOfWork.from("interactive", new TestTask("task"));
+        interactive.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        executor.register(interactive).block();
+
+        List<UnitOfWork<TestTask>> executed = executor.getScheduler()
+            .take(5)
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertEquals("interactive", executed.get(0).getUnitOfOWorkId());
+        assertEquals("bulk-0", executed.get(1).getUnitOfOWorkId());
+    }
+
+    @Test
+    void executesUnitsOfWorkInOrderPerPartitionKeyAndInParallelAcrossKeys() {
+        configuration.setSchedulerIntervalDuration(Duration.ofSeconds(1));
+        configuration.setPartitions(2);
+        configuration.setWorkerUnitExecutors(2);
+        ConcurrencyTrackingTaskExecutor taskExecutor = new ConcurrencyTrackingTaskExecutor();
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+
+        Flux.just("a-0", "b-0", "a-1", "a-2", "b-1")
+            .map(id -> {
+                UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id));
+                unitOfWork.setPartitionKey(id.substring(0, 1));
+                return unitOfWork;
+            })
+            .concatMap(executor::register)
+            .blockLast();
+
+        executor.getScheduler()
+            .take(5)
+            .blockLast(Duration.ofSeconds(5));
+
+        List<String> executed = taskExecutor.executed.stream().map(StreamTask::getId).collect(Collectors.toList());
+        assertEquals(Arrays.asList("a-0", "a-1", "a-2"), executed.stream()
+            .filter(id -> id.startsWith("a")).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("b-0", "b-1"), executed.stream()
+            .filter(id -> id.startsWith("b")).collect(Collectors.toList()));
+        assertEquals(2, taskExecutor.maxConcurrency.get());
+    }
+
+    @Test
+    void executesUnitsOfWorkDirectlyInOrderPerPartitionKeyAndInParallelAcrossKeys() {
+        configuration.setWorkerUnitExecutors(8);
+        ConcurrencyTrackingTaskExecutor taskExecutor = new ConcurrencyTrackingTaskExecutor();
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+
+        List<UnitOfWork<TestTask>> executed = Flux.just("a-0", "b-0", "a-1", "a-2", "b-1")
+            .map(id -> {
+                UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id));
+                unitOfWork.setPartitionKey(id.substring(0, 1));
+                return unitOfWork;
+            })
+            .flatMap(executor::executeUnitOfWork)
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(5, executed.size());
+        List<String> executedTasks = taskExecutor.executed.stream().map(StreamTask::getId)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList("a-0", "a-1", "a-2"), executedTasks.stream()
+            .filter(id -> id.startsWith("a")).collect(Collectors.toList()));
+        assertEquals(Arrays.asList("b-0", "b-1"), executedTasks.stream()
+            .filter(id -> id.startsWith("b")).collect(Collectors.toList()));
+        assertEquals(2, taskExecutor.maxConcurrency.get());
+    }
+
+    @Test
+    void executesMicroBatchesOfAKeyInOrderWhenTheFirstBatchIsSlow() {
+        configuration.setWorkerUnitExecutors(8);
+        ConcurrencyTrackingTaskExecutor taskExecutor = new ConcurrencyTrackingTaskExecutor("a1,a2");
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+        KeyedMicroBatcher<String, String> batcher = new KeyedMicroBatcher<>(2, null, -1, -1);
+
+        // As transactions are batched per arrangement and posted directly
+        List<UnitOfWork<TestTask>> executed = batcher
+            .batch(Flux.just("a1", "b1", "a2", "a3", "b2", "a4", "a5", "a6"), item -> item.substring(0, 1))
+            .map(batch -> {
+                String id = String.join(",", batch.getItems());
+                UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id + "-" + batch.getSequence(), new TestTask(id));
+                unitOfWork.setPartitionKey(batch.getKey());
+                return unitOfWork;
+            })
+            .flatMap(executor::executeUnitOfWork)
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(4, executed.size());
+        List<String> executedTasks = taskExecutor.executed.stream().map(StreamTask::getId)
+            .collect(Collectors.toList());
+        assertEquals(Arrays.asList("a1,a2", "a3,a4", "a5,a6"), executedTasks.stream()
+            .filter(id -> id.startsWith("a")).collect(Collectors.toList()));
+        // Batches of other keys do not wait for the slow batch
+        assertEquals("b1,b2", executedTasks.get(0));
+    }
+
+    @Test
+    void registrationWakesUpIdleScheduler() {
+        configuration.setSchedulerIntervalDuration(Duration.ofMinutes(1));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+
+        Mono<UnitOfWork<TestTask>> executed = executor.getScheduler().next().cache();
+        executed.subscribe();
+        executor.register(UnitOfWork.from("unit", new TestTask("task"))).block();
+
+        // Polling would only find the unit of work after a minute
+        UnitOfWork<TestTask> unitOfWork = executed.block(Duration.ofSeconds(2));
+
+        assertEquals("unit", unitOfWork.getUnitOfOWorkId());
+        assertEquals(UnitOfWork.State.COMPLETED, unitOfWork.getState());
+    }
+
+    @Test
+    void boundsConcurrentTasksOfUnitOfWork() {
+        configuration.setTaskExecutors(4);
+        configuration.setTaskConcurrency(2);
+        ConcurrencyTrackingTaskExecutor taskExecutor = new ConcurrencyTrackingTaskExecutor();
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+
+        List<TestTask> tasks = Flux.range(0, 10)
+            .map(i -> new TestTask("task-" + i))
+            .collectList()
+            .block();
+        UnitOfWork<TestTask> unitOfWork = executor.executeTasks(UnitOfWork.from("unit", tasks))
+            .block(Duration.ofSeconds(5));
+
+        assertTrue(unitOfWork.getStreamTasks().stream().allMatch(StreamTask::isCompleted));
+        assertEquals(10, taskExecutor.executed.size());
+        assertTrue(taskExecutor.maxConcurrency.get() <= 2);
+    }
+
+    @Test
+    void compactsAndEvictsFinishedUnitsOfWork() {
+        configuration.setCompactFinishedUnitsOfWork(true);
+        configuration.setMaxFinishedUnitsOfWork(1);
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+
+        List<UnitOfWork<TestTask>> executed = Flux.range(0, 3)
+            .map(i -> UnitOfWork.from("unit-" + i, new TestTask("task-" + i)))
+            .concatMap(executor::executeUnitOfWork)
+            .collectList()
+            .block(Duration.ofSeconds(5));
+
+        assertTrue(executed.stream().flatMap(unitOfWork -> unitOfWork.getStreamTasks().stream())
+            .allMatch(task -> task.isCompleted() && task.getPayload() == null));
+        assertEquals(2, executor.evictFinishedUnitsOfWork().block().longValue());
+        assertEquals(1, repository.count().block().longValue());
+    }
+
+    @Test
+    void retriesOnlyTasksWhichDidNotCompleteWithinTheirAttempts() {
+        configuration.setMaxTaskAttempts(2);
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new FailingTaskExecutor("bad"),
+            configuration);
+        TestTask good = new TestTask("good");
+        TestTask bad = new TestTask("bad");
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from("unit", Arrays.asList(good, bad));
+
+        assertThrows(IllegalStateException.class, () -> executor.executeUnitOfWork(unitOfWork).block());
+        assertEquals(UnitOfWork.State.FAILED, unitOfWork.getState());
+        assertEquals(1, unitOfWork.getRetries());
+
+        assertThrows(IllegalStateException.class, () -> executor.executeUnitOfWork(unitOfWork).block());
+        assertEquals(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED, unitOfWork.getState());
+        assertEquals(1, good.getAttempts());
+        assertEquals(StreamTask.State.COMPLETED, good.getState());
+        assertEquals(2, bad.getAttempts());
+        assertEquals(StreamTask.State.FAILED, bad.getState());
+    }
+
+    @Test
+    void stopDrainsExecutingUnitsOfWorkAndReleasesInterruptedOnes() throws InterruptedException {
+        configuration.setSchedulerIntervalDuration(Duration.ofMillis(100));
+        configuration.setClaimBatchSize(2);
+        configuration.setWorkerUnitExecutors(2);
+        configuration.setShutdownTimeout(Duration.ofMillis(500));
+        StallingTaskExecutor taskExecutor = new StallingTaskExecutor("stalling");
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+        executor.register(UnitOfWork.from("draining", new TestTask("draining"))).block();
+        executor.register(UnitOfWork.from("stalling", new TestTask("stalling"))).block();
+
+        executor.start();
+        assertTrue(executor.isRunning());
+        assertTrue(taskExecutor.started.await(5, TimeUnit.SECONDS));
+        executor.stop();
+
+        assertFalse(executor.isRunning());
+        assertEquals(UnitOfWork.State.COMPLETED, repository.findById("draining").block().getState());
+        UnitOfWork<TestTask> interrupted = repository.findById("stalling").block();
+        assertEquals(UnitOfWork.State.ACCEPTED, interrupted.getState());
+        assertNull(interrupted.getLockedAt());
+        assertNull(interrupted.getLockedBy());
+    }
+
+    @Test
+    void executesDirectlyWithoutBeingStartedUntilDestroyed() {
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+        // Nothing to dispose before the first execution
+        executor.destroy();
+
+        assertEquals(UnitOfWork.State.COMPLETED, executor.executeUnitOfWork(
+            UnitOfWork.from("first", new TestTask("first"))).block(Duration.ofSeconds(5)).getState());
+        assertFalse(executor.isRunning());
+        executor.destroy();
+
+        // Executing again after being destroyed creates new schedulers
+        assertEquals(UnitOfWork.State.COMPLETED, executor.executeUnitOfWork(
+            UnitOfWork.from("second", new TestTask("second"))).block(Duration.ofSeconds(5)).getState());
+        executor.destroy();
+    }
+
+    @Test
+    void rollsBackStartedTasksOfExhaustedUnitsOfWorkInReverseOrder() {
+        configuration.setMaxRetries(0);
+        configuration.setRollbackExhausted(true);
+        configuration.setRollbackRetryDuration(Duration.ofMillis(10));
+        configuration.setSchedulerIntervalDuration(Duration.ofMinutes(1));
+        RollbackRecordingTaskExecutor taskExecutor = new RollbackRecordingTaskExecutor("bad", "good");
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, taskExecutor, configuration);
+        executor.executeUnitOfWork(UnitOfWork.from("unit", Arrays.asList(new TestTask("good"), new TestTask("bad"))))
+            .onErrorResume(throwable -> Mono.empty())
+            .block();
+        executor.executeUnitOfWork(UnitOfWork.from("completed", new TestTask("other")))
+            .block();
+
+        assertEquals(1, executor.rollBackExhaustedUnitsOfWork().block().longValue());
+
+        UnitOfWork<TestTask> rolledBack = repository.findById("unit").block();
+        assertEquals(UnitOfWork.State.ROLLBACK_COMPLETED, rolledBack.getState());
+        assertNull(rolledBack.getLockedAt());
+        // The first rollback of the good task failed and was retried
+        assertEquals(Arrays.asList("bad", "good", "good"), taskExecutor.rolledBack);
+        assertEquals(UnitOfWork.State.COMPLETED, repository.findById("completed").block().getState());
+        assertEquals(0, executor.rollBackExhaustedUnitsOfWork().block().longValue());
+    }
+
+    @Test
+    void movesExhaustedUnitsOfWorkToDeadLettersAndReplaysThem() {
+        configuration.setMaxRetries(0);
+        configuration.setDeadLetterExhausted(true);
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new FailingTaskExecutor("bad"),
+            configuration);
+        TestTask good = new TestTask("good");
+        TestTask bad = new TestTask("bad");
+        executor.executeUnitOfWork(UnitOfWork.from("unit", Arrays.asList(good, bad)))
+            .onErrorResume(throwable -> Mono.empty())
+            .block();
+
+        assertNull(repository.findById("unit").block());
+        assertEquals(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED, executor.retrieve("unit").block().getState());
+        List<DeadLetter<TestTask>> deadLetters = executor.getDeadLetters(null, 10).collectList().block();
+        assertEquals(1, deadLetters.size());
+        assertEquals("IllegalStateException", deadLetters.get(0).getErrorType());
+        assertEquals(Collections.singletonList("bad"), deadLetters.get(0).getFailedTaskIds());
+
+        assertEquals(0, executor.replayDeadLetters("400", 10, 100).count().block().longValue());
+        assertEquals(1, executor.replayDeadLetters("IllegalStateException", 10, 100).count().block().longValue());
+
+        UnitOfWork<TestTask> replayed = repository.findById("unit").block();
+        assertEquals(UnitOfWork.State.ACCEPTED, replayed.getState());
+        assertEquals(UnitOfWork.Priority.BULK, replayed.getPriority());
+        assertEquals(0, replayed.getRetries());
+        assertEquals(StreamTask.State.COMPLETED, good.getState());
+        assertEquals(StreamTask.State.ACCEPTED, bad.getState());
+        assertEquals(0, bad.getAttempts());
+        assertEquals(0, executor.getDeadLetters(null, 10).count().block().longValue());
+    }
+
+    @Test
+    void replaysDeadLettersInTheBackgroundOneReplayAtATime() {
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository, new CompletingTaskExecutor(),
+            configuration);
+        Flux.range(0, 3)
+            .map(i -> DeadLetter.from(UnitOfWork.from("unit-" + i, new TestTask("task-" + i)),
+                new IllegalStateException("failed")))
+            .concatMap(executor.getDeadLetterStore()::save)
+            .blockLast();
+
+        // Registers the first dead letter right away, the others 200ms apart
+        DeadLetterReplay replay = executor.startDeadLetterReplay(null, 10, 5).block();
+
+        assertEquals(DeadLetterReplay.State.RUNNING, replay.getState());
+        assertNull(executor.startDeadLetterReplay(null, 10, 5).block());
+        assertEquals(replay, executor.getDeadLetterReplay().block());
+
+        DeadLetterReplay finished = Flux.interval(Duration.ofMillis(50))
+            .map(tick -> replay)
+            .filter(running -> !running.isRunning())
+            .blockFirst(Duration.ofSeconds(5));
+        assertEquals(DeadLetterReplay.State.COMPLETED, finished.getState());
+        assertEquals(3, finished.getReplayed());
+        assertEquals(3, Flux.range(0, 3)
+            .flatMap(i -> repository.findById("unit-" + i))
+            .count().block().longValue());
+        assertEquals(0, executor.getDeadLetters(null, 10).count().block().longValue());
+
+        DeadLetterReplay next = executor.startDeadLetterReplay(null, 10, 5).block();
+        assertTrue(next != null && next != replay);
+    }
+
+    @Test
+    void failsTasksAndUnitsOfWorkWhichTimeOutForRetry() {
+        configuration.setTaskTimeout(Duration.ofMillis(100));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository,
+            new StallingTaskExecutor("stalling"), configuration);
+        TestTask stalling = new TestTask("stalling");
+        executor.executeUnitOfWork(UnitOfWork.from("task-timeout", Arrays.asList(new TestTask("good"), stalling)))
+            .onErrorResume(throwable -> Mono.empty())
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(UnitOfWork.State.FAILED, repository.findById("task-timeout").block().getState());
+        assertEquals(StreamTask.State.FAILED, stalling.getState());
+        assertTrue(stalling.isRetryable());
+        assertTrue(stalling.getHistory().stream().map(TaskHistory::getResult).anyMatch("timeout"::equals));
+
+        configuration.setTaskTimeout(null);
+        configuration.setUnitOfWorkTimeout(Duration.ofMillis(100));
+        TestTask stallingUnit = new TestTask("stalling");
+        executor.executeUnitOfWork(UnitOfWork.from("unit-timeout", stallingUnit))
+            .onErrorResume(throwable -> Mono.empty())
+            .block(Duration.ofSeconds(5));
+
+        assertEquals(UnitOfWork.State.FAILED, repository.findById("unit-timeout").block().getState());
+        assertEquals(StreamTask.State.FAILED, stallingUnit.getState());
+        assertTrue(stallingUnit.getHistory().stream().map(TaskHistory::getResult).anyMatch("timeout"::equals));
+    }
+
+    @Test
+    void reapsStaleLocksOfHangingUnitsOfWork() {
+        configuration.setStaleLockTimeout(Duration.ofMillis(200));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository,
+            new StallingTaskExecutor("stalling"), configuration);
+        CompletableFuture<UnitOfWork<TestTask>> execution = executor.executeUnitOfWork(
+            UnitOfWork.from("hanging", new TestTask("stalling"))).toFuture();
+
+        ExecutionException cancelled = assertThrows(ExecutionException.class,
+            () -> execution.get(5, TimeUnit.SECONDS));
+        assertTrue(cancelled.getCause() instanceof LockLostException);
+        // The lock is released right after the execution is cancelled
+        UnitOfWork<TestTask> released = Flux.interval(Duration.ofMillis(10))
+            .concatMap(tick -> repository.findById("hanging"))
+            .filter(UnitOfWork::isUnLocked)
+            .blockFirst(Duration.ofSeconds(5));
+        assertEquals(UnitOfWork.State.ACCEPTED, released.getState());
+        assertNull(released.getLockedBy());
+        assertEquals(0, executor.reapStaleLocks().block().longValue());
+    }
+
+    @Test
+    void failsReapedDirectExecutionsAndExecutesTheNextOfTheirPartitionKey() throws Exception {
+        configuration.setStaleLockTimeout(Duration.ofMillis(200));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository,
+            new StallingTaskExecutor("stalling"), configuration);
+        UnitOfWork<TestTask> hanging = UnitOfWork.from("hanging", new TestTask("stalling"));
+        hanging.setPartitionKey("arrangement");
+        UnitOfWork<TestTask> next = UnitOfWork.from("next", new TestTask("next"));
+        next.setPartitionKey("arrangement");
+
+        CompletableFuture<UnitOfWork<TestTask>> reaped = executor.executeUnitOfWork(hanging).toFuture();
+        CompletableFuture<UnitOfWork<TestTask>> executed = executor.executeUnitOfWork(next).toFuture();
+
+        ExecutionException lockLost = assertThrows(ExecutionException.class, () -> reaped.get(5, TimeUnit.SECONDS));
+        assertTrue(lockLost.getCause() instanceof LockLostException);
+        assertEquals(UnitOfWork.State.COMPLETED, executed.get(5, TimeUnit.SECONDS).getState());
+        assertEquals(0, executor.reapStaleLocks().block().longValue());
+    }
+
+    @Test
+    void heartbeatCancelsUnitsOfWorkOfWhichTheLockWasLost() {
+        configuration.setLeaseDuration(Duration.ofMinutes(1));
+        TestUnitOfWorkExecutor executor = new TestUnitOfWorkExecutor(repository,
+            new StallingTaskExecutor("stalling"), configuration);
+        CompletableFuture<UnitOfWork<TestTask>> execution = executor.executeUnitOfWork(
+            UnitOfWork.from("taken-over", new TestTask("stalling"))).toFuture();
+        UnitOfWork<TestTask> locked = Flux.interval(Duration.ofMillis(10))
+            .concatMap(tick -> repository.findById("taken-over"))
+            .filter(unitOfWork -> !UnitOfWork.isUnLocked(unitOfWork))
+            .blockFirst(Duration.ofSeconds(5));
+
+        // Another node took over after the lock expired
+        locked.setLockedBy("other");
+        executor.heartbeat().block();
+
+        ExecutionException cancelled = assertThrows(ExecutionException.class,
+            () -> execution.get(5, TimeUnit.SECONDS));
+        assertTrue(cancelled.getCause() instanceof LockLostException);
+        assertEquals("other", repository.findById("taken-over").block().getLockedBy());
+        assertEquals(UnitOfWork.State.IN_PROGRESS, repository.findById("taken-over").block().getState());
+    }
+
+    static class TestConfiguration extends StreamWorkerConfiguration {
+
+    }
+
+    static class TestUnitOfWorkExecutor extends UnitOfWorkExecutor<TestTask> {
+
+        TestUnitOfWorkExecutor(InMemoryReactiveUnitOfWorkRepository<TestTask> repository,
+            StreamTaskExecutor<TestTask> streamTaskExecutor, StreamWorkerConfiguration streamWorkerConfiguration) {
+            super(repository, streamTaskExecutor, streamWorkerConfiguration);
+        }
+    }
+
+    static class CompletingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+    }
+
+    static class FailingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        private final String failingTaskId;
+
+        FailingTaskExecutor(String failingTaskId) {
+            this.failingTaskId = failingTaskId;
+        }
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            return failingTaskId.equals(streamTask.getId())
+                ? Mono.error(new IllegalStateException("Failed: " + streamTask.getId()))
+                : Mono.just(streamTask);
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+    }
+
+    static class StallingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        private final String stallingTaskId;
+        private final CountDownLatch started = new CountDownLatch(2);
+
+        StallingTaskExecutor(String stallingTaskId) {
+            this.stallingTaskId = stallingTaskId;
+        }
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            started.countDown();
+            return stallingTaskId.equals(streamTask.getId())
+                ? Mono.never()
+                : Mono.just(streamTask).delayElement(Duration.ofMillis(100));
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+    }
+
+    static class RollbackRecordingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        private final String failingTaskId;
+        private final String flakyRollbackTaskId;
+        private final List<String> rolledBack = new CopyOnWriteArrayList<>();
+
+        RollbackRecordingTaskExecutor(String failingTaskId, String flakyRollbackTaskId) {
+            this.failingTaskId = failingTaskId;
+            this.flakyRollbackTaskId = flakyRollbackTaskId;
+        }
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            return failingTaskId.equals(streamTask.getId())
+                ? Mono.error(new IllegalStateException("Failed: " + streamTask.getId()))
+                : Mono.just(streamTask);
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.fromCallable(() -> {
+                boolean firstAttempt = !rolledBack.contains(streamTask.getId());
+                rolledBack.add(streamTask.getId());
+                if (firstAttempt && flakyRollbackTaskId.equals(streamTask.getId())) {
+                    throw new IllegalStateException("Rollback failed: " + streamTask.getId());
+                }
+                return streamTask;
+            });
+        }
+    }
+
+    static class ConcurrencyTrackingTaskExecutor implements StreamTaskExecutor<TestTask> {
+
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxConcurrency = new AtomicInteger();
+        private final List<TestTask> executed = new CopyOnWriteArrayList<>();
+        private final String slowTaskId;
+
+        ConcurrencyTrackingTaskExecutor() {
+            this(null);
+        }
+
+        /**
+         * @param slowTaskId id of a task taking ten times as long as the others
+         */
+        ConcurrencyTrackingTaskExecutor(String slowTaskId) {
+            this.slowTaskId = slowTaskId;
+        }
+
+        @Override
+        public Mono<TestTask> executeTask(TestTask streamTask) {
+            return Mono.fromCallable(() -> {
+                maxConcurrency.accumulateAndGet(running.incrementAndGet(), Math::max);
+                return streamTask;
+            })
+                .delayElement(Duration.ofMillis(streamTask.getId().equals(slowTaskId) ? 200 : 20))
+                .doOnNext(task -> {
+                    running.decrementAndGet();
+                    executed.add(task);
+                });
+        }
+
+        @Override
+        public Mono<TestTask> rollBack(TestTask streamTask) {
+            return Mono.just(streamTask);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.backbase.stream.worker.batch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.backbase.stream.worker.batch.KeyedMicroBatcher.Batch;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+class KeyedMicroBatcherTest {
+
+    @Test
+    void flushesFullBatchesPerKeyAndTheRestOnCompletion() {
+        KeyedMicroBatcher<Character, String> batcher = new KeyedMicroBatcher<>(2, null, -1, -1);
+
+        List<String> batches = batch(batcher, Flux.just("a1", "b1", "a2", "a3", "b2", "c1", "a4", "a5"));
+
+        assertEquals(Arrays.asList("a1,a2", "b1,b2", "a3,a4", "c1", "a5"), batches);
+    }
+
+    @Test
+    void flushesOldestBatchWhenTooManyAreOpenAndLargestWhenTooManyItemsAreBuffered() {
+        KeyedMicroBatcher<Character, String> batcher = new KeyedMicroBatcher<>(10, null, 2, 4);
+
+        List<String> batches = batch(batcher, Flux.just("a1", "b1", "c1", "b2", "b3", "c2", "c3"));
+
+        assertEquals(Arrays.asList("a1", "b1,b2,b3", "c1,c2,c3"), batches);
+    }
+
+    @Test
+    void flushesBatchesOlderThanTheMaximumAge() {
+        KeyedMicroBatcher<Character, String> batcher = new KeyedMicroBatcher<>(10, Duration.ofMillis(50), -1, -1);
+        Flux<String> items = Flux.concat(Flux.just("a1", "b1"),
+            Flux.just("a2").delaySubscription(Duration.ofMillis(200)));
+
+        List<String> batches = batch(batcher, items);
+
+        assertEquals(Arrays.asList("a1", "b1", "a2"), batches);
+    }
+
+    private static List<String> batch(KeyedMicroBatcher<Character, String> batcher, Flux<String> items) {
+        return batcher.batch(items, item -> item.charAt(0))
+            .map(Batch::getItems)
+            .map(batch -> String.join(",", batch))
+            .collect(Collectors.toList())
+            .block(Duration.ofSeconds(5));
+    }
+
+}
@@ -0,0 +1,49 @@
+package com.backbase.stream.worker.deadletter;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.exception.StreamTaskException;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+class DeadLetterTest {
+
+    @Test
+    void classifiesFailuresByHttpStatusOrRootCause() {
+        WebClientResponseException badRequest = WebClientResponseException.create(400, "Bad Request",
+            new HttpHeaders(), "{\"message\":\"Invalid\"}".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8);
+
+        assertEquals("400", DeadLetter.errorTypeOf(new StreamTaskException("Failed", badRequest)));
+        assertEquals("TimeoutException",
+            DeadLetter.errorTypeOf(new StreamTaskException("Failed", new TimeoutException())));
+        assertEquals(DeadLetter.UNKNOWN_ERROR_TYPE, DeadLetter.errorTypeOf(null));
+    }
+
+    @Test
+    void summarizesLastErrorOfFailedTasks() {
+        TestTask completed = new TestTask("completed");
+        completed.setState(StreamTask.State.COMPLETED);
+        TestTask failed = new TestTask("failed");
+        failed.setState(StreamTask.State.FAILED);
+        failed.error("arrangement", "create", "failed", "external", null, new IllegalStateException(),
+            "{\"message\":\"Invalid\"}", "Failed to create arrangement");
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from("unit", Arrays.asList(completed, failed));
+        unitOfWork.setRetries(3);
+
+        DeadLetter<TestTask> deadLetter = DeadLetter.from(unitOfWork, null);
+
+        assertEquals(Collections.singletonList("failed"), deadLetter.getFailedTaskIds());
+        assertEquals("Failed to create arrangement", deadLetter.getLastError());
+        assertEquals("{\"message\":\"Invalid\"}", deadLetter.getErrorMessage());
+        assertEquals(3, deadLetter.getRetries());
+        assertEquals(UnitOfWork.Priority.NORMAL, deadLetter.getPriority());
+    }
+}
@@ -0,0 +1,90 @@
+package com.backbase.stream.worker.dedup;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class DuplicateFilterTest {
+
+    private static final Duration WINDOW = Duration.ofHours(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000L);
+
+    private final Path directory;
+
+    DuplicateFilterTest() throws IOException {
+        directory = Files.createTempDirectory("duplicate-filter");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void dropsIdsIngestedWithinTheWindowOnly() {
+        DuplicateFilter filter = filter(100);
+        filter.recordAll(Arrays.asList("a", "b"));
+
+        assertTrue(filter.isDuplicate("a"));
+        assertFalse(filter.isDuplicate("c"));
+
+        clock.addAndGet(WINDOW.toMillis());
+        assertTrue(filter.isDuplicate("b"));
+
+        clock.addAndGet(WINDOW.toMillis());
+        assertFalse(filter.isDuplicate("a"));
+        assertEquals(2, filter.getDuplicates());
+        assertEquals(4, filter.getChecked());
+    }
+
+    @Test
+    void passesIdsWhichCannotBeConfirmed() {
+        DuplicateFilter filter = filter(1);
+        filter.recordAll(Collections.singletonList("a"));
+        filter.recordAll(Collections.singletonList("b"));
+
+        // Evicted from the confirmed ids, so the probable duplicate passes
+        assertFalse(filter.isDuplicate("a"));
+        assertTrue(filter.isDuplicate("b"));
+        assertEquals(1, filter.getUnconfirmed());
+    }
+
+    @Test
+    void survivesRestartsThroughSnapshots() throws IOException {
+        Path snapshot = directory.resolve("dedup").resolve("transactions.snapshot");
+        DuplicateFilter filter = filter(100);
+        filter.recordAll(Arrays.asList("a", "b"));
+        filter.snapshot(snapshot);
+
+        DuplicateFilter restored = filter(100);
+        assertTrue(restored.restore(snapshot));
+
+        assertTrue(restored.isDuplicate("a"));
+        assertTrue(restored.isDuplicate("b"));
+        assertFalse(restored.isDuplicate("c"));
+        assertFalse(new DuplicateFilter(1_000_000, 0.001, WINDOW, 100, clock::get).restore(snapshot));
+    }
+
+    private DuplicateFilter filter(int maxConfirmedIds) {
+        return new DuplicateFilter(1000, 0.01, WINDOW, maxConfirmedIds, clock::get);
+    }
+
+}
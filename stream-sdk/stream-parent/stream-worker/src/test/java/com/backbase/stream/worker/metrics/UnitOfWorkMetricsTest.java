@@ -0,0 +1,101 @@
+package com.backbase.stream.worker.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.priority.PriorityLanes;
+import com.backbase.stream.worker.ratelimit.TokenBucketRateLimiter;
+import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class UnitOfWorkMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final InMemoryReactiveUnitOfWorkRepository<TestTask> repository =
+        new InMemoryReactiveUnitOfWorkRepository<>();
+
+    private final PriorityLanes priorityLanes = new PriorityLanes(Collections.emptyMap(), Collections.emptyMap());
+
+    private final UnitOfWorkMetrics metrics = new UnitOfWorkMetrics(meterRegistry, "test", "node", repository,
+        new TokenBucketRateLimiter(Duration.ZERO, 1), priorityLanes);
+
+    @Test
+    void recordsExecutionAndRetriesPerResultingState() {
+        OffsetDateTime lockedAt = OffsetDateTime.now().minusSeconds(2);
+
+        metrics.recordCompleted(unitOfWork("retried", UnitOfWork.State.FAILED), lockedAt);
+        metrics.recordCompleted(unitOfWork("exhausted", UnitOfWork.State.FAILED_RETRIES_EXHAUSTED), lockedAt);
+        metrics.recordCompleted(unitOfWork("completed", UnitOfWork.State.COMPLETED), lockedAt);
+
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.retries").tag("executor", "test")
+            .counter().count());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.retries.exhausted").tag("executor", "test")
+            .counter().count());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.execution").tag("state", "COMPLETED")
+            .timer().count());
+    }
+
+    @Test
+    void tagsTaskExecutionByTaskTypeAndReusesMeters() {
+        for (int i = 0; i < 3; i++) {
+            TestTask streamTask = new TestTask("entity-" + i);
+            streamTask.setRegisteredAt(OffsetDateTime.now().minusSeconds(1));
+            streamTask.setState(StreamTask.State.COMPLETED);
+            metrics.recordTask(streamTask);
+            metrics.recordDeadLettered("HTTP_409");
+        }
+
+        assertEquals(1, meterRegistry.getMeters().stream()
+            .filter(meter -> meter.getId().getName().equals("stream.task.execution"))
+            .count());
+        assertEquals(3, meterRegistry.get("stream.task.execution").tag("task", "TestTask")
+            .tag("state", "COMPLETED").timer().count());
+        assertEquals(3, meterRegistry.get("stream.unit-of-work.dead-lettered").tag("error-type", "HTTP_409")
+            .counter().count());
+    }
+
+    @Test
+    void gaugesQueueDepthPerState() {
+        repository.save(unitOfWork("accepted-1", UnitOfWork.State.ACCEPTED)).block();
+        repository.save(unitOfWork("accepted-2", UnitOfWork.State.ACCEPTED)).block();
+        repository.save(unitOfWork("completed", UnitOfWork.State.COMPLETED)).block();
+
+        metrics.refreshQueueDepth().block();
+
+        assertEquals(2, meterRegistry.get("stream.unit-of-work.queue").tag("state", "ACCEPTED").gauge().value());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.queue").tag("state", "COMPLETED").gauge().value());
+        assertEquals(0, meterRegistry.get("stream.unit-of-work.queue").tag("state", "FAILED").gauge().value());
+    }
+
+    @Test
+    void gaugesQueueDepthAndInFlightPerPriorityLane() {
+        UnitOfWork<TestTask> interactive = unitOfWork("interactive", UnitOfWork.State.ACCEPTED);
+        interactive.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        repository.save(interactive).block();
+        repository.save(unitOfWork("normal", UnitOfWork.State.ACCEPTED)).block();
+        priorityLanes.started(UnitOfWork.Priority.BULK);
+
+        metrics.refreshQueueDepth().block();
+
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.lane.queue").tag("priority", "INTERACTIVE")
+            .gauge().value());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.lane.queue").tag("priority", "NORMAL")
+            .gauge().value());
+        assertEquals(1, meterRegistry.get("stream.unit-of-work.lane.in-flight").tag("priority", "BULK")
+            .gauge().value());
+    }
+
+    private static UnitOfWork<TestTask> unitOfWork(String id, UnitOfWork.State state) {
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id));
+        unitOfWork.setState(state);
+        unitOfWork.setFinishedAt(OffsetDateTime.now());
+        return unitOfWork;
+    }
+}
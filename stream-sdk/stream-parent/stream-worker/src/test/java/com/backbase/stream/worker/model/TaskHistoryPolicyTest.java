@@ -0,0 +1,81 @@
+package com.backbase.stream.worker.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.TestTask;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class TaskHistoryPolicyTest {
+
+    @AfterEach
+    void resetHistoryPolicy() {
+        StreamTask.setHistoryPolicy(TaskHistoryPolicy.unbounded());
+    }
+
+    @Test
+    void boundedHistoryKeepsMostRecentEntriesPerSeverityInOrder() {
+        StreamTask.setHistoryPolicy(TaskHistoryPolicy.bounded(2, 1, 2));
+        TestTask task = new TestTask();
+
+        task.error("entity", "create", "failed", "error-1", null, "error %d", 1);
+        for (int i = 1; i <= 5; i++) {
+            task.info("entity", "create", "created", "info-" + i, null, "info %d", i);
+        }
+        task.warn("entity", "create", "skipped", "warn-1", null, "warn %d", 1);
+        task.warn("entity", "create", "skipped", "warn-2", null, "warn %d", 2);
+
+        assertEquals(Arrays.asList("error 1", "info 4", "info 5", "warn 2"), messages(task));
+        assertEquals(4, ((BoundedTaskHistory) task.getHistory()).getDropped());
+    }
+
+    @Test
+    void streamingHistoryHandsEntriesToSinkAndKeepsErrors() {
+        List<String> streamed = new ArrayList<>();
+        StreamTask.setHistoryPolicy(TaskHistoryPolicy.streaming(
+            (streamTask, taskHistory) -> streamed.add(taskHistory.getMessage()), 10));
+        TestTask task = new TestTask();
+
+        task.info("entity", "create", "created", "1", null, "created %s", "one");
+        task.error("entity", "create", "failed", "2", null, new IllegalStateException("boom"), null,
+            "failed %s", "two");
+
+        assertEquals(Arrays.asList("created one", "failed two"), streamed);
+        assertEquals(Arrays.asList("failed two"), messages(task));
+        assertEquals("boom", task.getHistory().get(0).getErrorMessage());
+    }
+
+    @Test
+    void unboundedHistoryFormatsMessagesWhenRead() {
+        TestTask task = new TestTask();
+
+        task.info("entity", "create", "created", "1", null, "created %s with %d products", "one", 2);
+        task.info("entity", "create", "created", "2", null, "invalid format %d", "two");
+
+        TaskHistory taskHistory = task.getHistory().get(0);
+        assertEquals("created one with 2 products", taskHistory.getMessage());
+        assertEquals("invalid format %d", task.getHistory().get(1).getMessage());
+        assertTrue(taskHistory.getEpochMillis() > 0);
+        assertEquals(taskHistory.getEpochMillis(), taskHistory.getTimestamp().toInstant().toEpochMilli());
+    }
+
+    @Test
+    void unboundedHistoryFormatsMessagesWithMutableArgumentsRightAway() {
+        TestTask task = new TestTask();
+        List<String> products = new ArrayList<>(Arrays.asList("savings"));
+
+        task.info("entity", "create", "created", "1", null, "created %s with products %s", "one", products);
+        products.add("current");
+
+        assertEquals("created one with products [savings]", task.getHistory().get(0).getMessage());
+    }
+
+    private static List<String> messages(StreamTask task) {
+        return task.getHistory().stream().map(TaskHistory::getMessage).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,64 @@
+package com.backbase.stream.worker.priority;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.model.UnitOfWork.Priority;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+
+class PriorityLanesTest {
+
+    @Test
+    void allotsSlotsInProportionToWeightsOverTime() {
+        PriorityLanes lanes = new PriorityLanes(weights(8, 4, 1), Collections.emptyMap());
+
+        Map<Priority, Integer> total = new EnumMap<>(Priority.class);
+        for (int batch = 0; batch < 13; batch++) {
+            lanes.allot(1, EnumSet.allOf(Priority.class))
+                .forEach((lane, slots) -> total.merge(lane, slots, Integer::sum));
+        }
+
+        assertEquals(8, total.get(Priority.INTERACTIVE).intValue());
+        assertEquals(4, total.get(Priority.NORMAL).intValue());
+        assertEquals(1, total.get(Priority.BULK).intValue());
+    }
+
+    @Test
+    void givesAllSlotsToTheRemainingLanes() {
+        PriorityLanes lanes = new PriorityLanes(weights(8, 4, 1), Collections.emptyMap());
+
+        Map<Priority, Integer> allotted = lanes.allot(10, EnumSet.of(Priority.BULK));
+
+        assertEquals(Collections.singletonMap(Priority.BULK, 10), allotted);
+    }
+
+    @Test
+    void allotsNothingToLanesAtTheirConcurrencyCap() {
+        Map<Priority, Integer> maxConcurrency = new EnumMap<>(Priority.class);
+        maxConcurrency.put(Priority.BULK, 2);
+        PriorityLanes lanes = new PriorityLanes(weights(8, 4, 1), maxConcurrency);
+
+        assertEquals(2, lanes.allot(10, EnumSet.of(Priority.BULK)).get(Priority.BULK).intValue());
+
+        lanes.started(Priority.BULK);
+        lanes.started(Priority.BULK);
+        assertTrue(lanes.allot(10, EnumSet.of(Priority.BULK)).isEmpty());
+
+        lanes.finished(Priority.BULK);
+        assertEquals(1, lanes.allot(10, EnumSet.of(Priority.BULK)).get(Priority.BULK).intValue());
+        assertEquals(1, lanes.getInFlight(Priority.BULK));
+    }
+
+    private static Map<Priority, Integer> weights(int interactive, int normal, int bulk) {
+        Map<Priority, Integer> weights = new EnumMap<>(Priority.class);
+        weights.put(Priority.INTERACTIVE, interactive);
+        weights.put(Priority.NORMAL, normal);
+        weights.put(Priority.BULK, bulk);
+        return weights;
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.backbase.stream.worker.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final Duration LATENCY_TARGET = Duration.ofMillis(100);
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void holdsCallsBeyondTheLimitUntilCallsFinish() {
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+        Sinks.One<String> first = Sinks.one();
+
+        Disposable firstCall = limiter.execute(first.asMono()).subscribe();
+        Disposable secondCall = limiter.execute(Mono.never()).subscribe();
+        Disposable waitingCall = limiter.execute(Mono.never()).subscribe();
+
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(1, limiter.getWaiting());
+
+        first.tryEmitValue("done");
+        assertEquals(2, limiter.getInFlight());
+        assertEquals(0, limiter.getWaiting());
+
+        waitingCall.dispose();
+        secondCall.dispose();
+        assertEquals(0, limiter.getInFlight());
+        assertTrue(firstCall.isDisposed());
+    }
+
+    @Test
+    void raisesLimitAdditivelyWhileFastAndCutsItOnceOnSlowCalls() {
+        AdaptiveConcurrencyLimiter limiter = limiter(4);
+
+        for (int i = 0; i < 5; i++) {
+            limiter.execute(Mono.just(i)).block();
+        }
+        assertEquals(5, limiter.getLimit());
+
+        Sinks.One<String> slow = Sinks.one();
+        Sinks.One<String> alsoSlow = Sinks.one();
+        limiter.execute(slow.asMono()).subscribe();
+        limiter.execute(alsoSlow.asMono()).subscribe();
+        clock.addAndGet(LATENCY_TARGET.multipliedBy(2).toNanos());
+        slow.tryEmitValue("slow");
+        alsoSlow.tryEmitValue("slow");
+
+        // Both calls saw the same spike, which cuts the limit only once
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    void cutsLimitOnOverloadButNotOnClientErrors() {
+        AdaptiveConcurrencyLimiter limiter = limiter(8);
+
+        limiter.execute(Mono.error(response(400))).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(8, limiter.getLimit());
+
+        limiter.execute(Mono.error(response(503))).onErrorResume(e -> Mono.empty()).block();
+        assertEquals(4, limiter.getLimit());
+
+        assertTrue(AdaptiveConcurrencyLimiter.isOverload(response(429)));
+        assertTrue(AdaptiveConcurrencyLimiter.isOverload(new IllegalStateException(new TimeoutException())));
+        assertFalse(AdaptiveConcurrencyLimiter.isOverload(new IllegalStateException()));
+    }
+
+    private AdaptiveConcurrencyLimiter limiter(int initialLimit) {
+        return new AdaptiveConcurrencyLimiter(initialLimit, 1, 16, LATENCY_TARGET, 0.5, clock::get);
+    }
+
+    private static WebClientResponseException response(int status) {
+        return WebClientResponseException.create(status, "Status " + status, new HttpHeaders(),
+            new byte[0], StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,72 @@
+package com.backbase.stream.worker.ratelimit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+class TokenBucketRateLimiterTest {
+
+    private static final long INTERVAL = Duration.ofMillis(100).toNanos();
+
+    private final AtomicLong clock = new AtomicLong(1_000_000_000L);
+
+    @Test
+    void burstIsAvailableImmediatelyThenPermitsAreSpaced() {
+        TokenBucketRateLimiter rateLimiter = rateLimiter(3);
+
+        assertEquals(0, rateLimiter.reserve());
+        assertEquals(0, rateLimiter.reserve());
+        assertEquals(0, rateLimiter.reserve());
+        assertEquals(INTERVAL, rateLimiter.reserve());
+        assertEquals(2 * INTERVAL, rateLimiter.reserve());
+    }
+
+    @Test
+    void idleTimeRefillsUpToBurst() {
+        TokenBucketRateLimiter rateLimiter = rateLimiter(2);
+        for (int i = 0; i < 3; i++) {
+            rateLimiter.reserve();
+        }
+
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        assertEquals(0, rateLimiter.reserve());
+        assertEquals(0, rateLimiter.reserve());
+        assertEquals(INTERVAL, rateLimiter.reserve());
+    }
+
+    @Test
+    void acquireCountsWaitedPermits() {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(Duration.ofMillis(10), 1);
+
+        Flux.range(0, 4)
+            .flatMap(i -> rateLimiter.acquire())
+            .blockLast(Duration.ofSeconds(1));
+
+        assertEquals(4, rateLimiter.getAcquiredPermits());
+        assertEquals(3, rateLimiter.getWaitedPermits());
+    }
+
+    @Test
+    void zeroIntervalDoesNotLimit() {
+        TokenBucketRateLimiter rateLimiter = new TokenBucketRateLimiter(Duration.ZERO, 1);
+
+        for (int i = 0; i < 1000; i++) {
+            rateLimiter.acquire().block(Duration.ofSeconds(1));
+        }
+
+        assertFalse(rateLimiter.isLimited());
+        assertEquals(1000, rateLimiter.getAcquiredPermits());
+        assertEquals(0, rateLimiter.getWaitedPermits());
+    }
+
+    private TokenBucketRateLimiter rateLimiter(int burst) {
+        return new TokenBucketRateLimiter(Duration.ofNanos(INTERVAL), burst, clock::get, Schedulers.parallel());
+    }
+
+}
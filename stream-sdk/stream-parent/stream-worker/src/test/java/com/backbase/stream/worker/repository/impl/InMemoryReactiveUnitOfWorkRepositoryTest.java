@@ -0,0 +1,262 @@
+package com.backbase.stream.worker.repository.impl;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.exception.LockLostException;
+import com.backbase.stream.worker.model.UnitOfWork;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+
+class InMemoryReactiveUnitOfWorkRepositoryTest {
+
+    private final InMemoryReactiveUnitOfWorkRepository<TestTask> repository =
+        new InMemoryReactiveUnitOfWorkRepository<>();
+
+    @Test
+    void findAllByNextAttemptAtBeforeReturnsDueUnitsInOrder() {
+        OffsetDateTime now = OffsetDateTime.now();
+        save("later", UnitOfWork.State.ACCEPTED, now.plusMinutes(1));
+        save("second", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+        save("first", UnitOfWork.State.FAILED, now.minusSeconds(10));
+
+        assertEquals(Arrays.asList("first", "second"), dueIds(now));
+    }
+
+    @Test
+    void findAllByNextAttemptAtBeforeSkipsFinishedUnits() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> unitOfWork = save("done", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+        assertEquals(Collections.singletonList("done"), dueIds(now));
+
+        unitOfWork.setState(UnitOfWork.State.COMPLETED);
+        repository.save(unitOfWork).block();
+        assertTrue(dueIds(now).isEmpty());
+
+        unitOfWork.setState(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED);
+        repository.save(unitOfWork).block();
+        assertTrue(dueIds(now).isEmpty());
+        assertEquals(1, repository.count().block().longValue());
+    }
+
+    @Test
+    void indexFollowsRescheduledAndDeletedUnits() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> retried = save("retried", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+        save("deleted", UnitOfWork.State.ACCEPTED, now.minusSeconds(2));
+
+        retried.setNextAttemptAt(now.plusMinutes(1));
+        repository.save(retried).block();
+        repository.deleteById("deleted").block();
+
+        assertTrue(dueIds(now).isEmpty());
+        assertEquals(Collections.singletonList("retried"), dueIds(now.plusMinutes(2)));
+
+        repository.deleteAll().block();
+        assertTrue(dueIds(now.plusMinutes(2)).isEmpty());
+    }
+
+    @Test
+    void claimDueSucceedsOnlyOnceForConcurrentClaims() {
+        UnitOfWork<TestTask> unitOfWork = save("contended", UnitOfWork.State.ACCEPTED,
+            OffsetDateTime.now().minusSeconds(1));
+        long version = unitOfWork.getVersion();
+
+        Long claims = Flux.range(0, 64)
+            .parallel(8)
+            .runOn(Schedulers.parallel())
+            .flatMap(i -> repository.claimDue(OffsetDateTime.now(), 1, UnitOfWork.Priority.NORMAL, "node-" + i))
+            .sequential()
+            .count()
+            .block();
+
+        assertEquals(1, claims.longValue());
+        assertEquals(UnitOfWork.State.IN_PROGRESS, unitOfWork.getState());
+        assertNotNull(unitOfWork.getLockedAt());
+        assertEquals(version + 1, unitOfWork.getVersion());
+    }
+
+    @Test
+    void deleteFinishedEvictsExpiredThenOldestFinishedUnits() {
+        OffsetDateTime now = OffsetDateTime.now();
+        saveFinished("expired", now.minusHours(2));
+        saveFinished("oldest", now.minusMinutes(30));
+        saveFinished("older", now.minusMinutes(20));
+        saveFinished("newest", now.minusMinutes(10));
+        save("waiting", UnitOfWork.State.FAILED, now.minusHours(3));
+
+        assertEquals(2, repository.deleteFinished(now.minusHours(1), 2).block().longValue());
+
+        assertEquals(Arrays.asList("newest", "older", "waiting"), repository.findAll()
+            .map(UnitOfWork::getUnitOfOWorkId)
+            .sort()
+            .collectList()
+            .block());
+        assertEquals(0, repository.deleteFinished(now.minusHours(1), 2).block().longValue());
+        assertEquals(Collections.singletonList("waiting"), dueIds(now));
+    }
+
+    @Test
+    void claimDueOfLaneFollowsPriorityChanges() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> promoted = save("promoted", UnitOfWork.State.ACCEPTED, now.minusSeconds(2));
+        save("normal", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+
+        promoted.setPriority(UnitOfWork.Priority.INTERACTIVE);
+        repository.save(promoted).block();
+
+        assertEquals(1, repository.countWaitingByPriority().block().get(UnitOfWork.Priority.NORMAL).longValue());
+        assertEquals(Collections.singletonList("promoted"), claimedIds(now, UnitOfWork.Priority.INTERACTIVE));
+        assertEquals(0, repository.countWaitingByPriority().block().get(UnitOfWork.Priority.INTERACTIVE).longValue());
+        assertTrue(claimedIds(now, UnitOfWork.Priority.BULK).isEmpty());
+        assertEquals(Collections.singletonList("normal"), claimedIds(now, UnitOfWork.Priority.NORMAL));
+        assertEquals(Arrays.asList("promoted", "normal"), dueIds(now));
+    }
+
+    @Test
+    void claimDueHoldsBackUnitsOfWorkBehindEarlierUnitOfTheirPartition() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> retrying = save("retrying", UnitOfWork.State.FAILED, now.plusMinutes(1));
+        retrying.setPartitionKey("arrangement");
+        retrying.setRegisteredAt(now.minusMinutes(2));
+        repository.save(retrying).block();
+        UnitOfWork<TestTask> later = save("later", UnitOfWork.State.ACCEPTED, now.minusSeconds(2));
+        later.setPartitionKey("arrangement");
+        later.setRegisteredAt(now.minusMinutes(1));
+        repository.save(later).block();
+        save("other", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+
+        assertEquals(Collections.singletonList("other"), claimedIds(now, UnitOfWork.Priority.NORMAL));
+        assertEquals(Collections.singleton("retrying"), repository.findPartitionHeads().block());
+
+        retrying.setState(UnitOfWork.State.COMPLETED);
+        retrying.setNextAttemptAt(null);
+        repository.save(retrying).block();
+
+        assertEquals(Collections.singletonList("later"), claimedIds(now, UnitOfWork.Priority.NORMAL));
+    }
+
+    @Test
+    void releasesExpiredLocksWhichWereNotRenewed() {
+        OffsetDateTime now = OffsetDateTime.now();
+        save("renewed", UnitOfWork.State.ACCEPTED, now.minusMinutes(2));
+        save("expired", UnitOfWork.State.ACCEPTED, now.minusMinutes(2));
+        repository.claimDue(now, 5, UnitOfWork.Priority.NORMAL, "dead").blockLast();
+        repository.findAll().toIterable().forEach(locked -> locked.setLockedAt(now.minusMinutes(1)));
+        repository.findById("renewed").block().setLockedBy("alive");
+
+        assertEquals(Collections.singleton("expired"),
+            repository.renewLocks("alive", Arrays.asList("renewed", "expired"), now).block());
+        assertEquals(1, repository.releaseExpiredLocks(now.minusSeconds(30)).block().longValue());
+
+        UnitOfWork<TestTask> released = repository.findById("expired").block();
+        assertNull(released.getLockedAt());
+        assertNull(released.getLockedBy());
+        assertEquals(UnitOfWork.State.ACCEPTED, released.getState());
+        assertEquals(now, repository.findById("renewed").block().getLockedAt());
+        assertEquals(Collections.singletonList("expired"), claimedIds(now, UnitOfWork.Priority.NORMAL));
+    }
+
+    @Test
+    void saveFailsForCopiesOfUnitsOfWorkChangedSinceTheyWereRead() {
+        UnitOfWork<TestTask> stored = save("unit", UnitOfWork.State.ACCEPTED, OffsetDateTime.now().minusSeconds(1));
+        UnitOfWork<TestTask> copy = UnitOfWork.from("unit", new TestTask("unit"));
+        copy.setState(UnitOfWork.State.COMPLETED);
+        copy.setVersion(stored.getVersion());
+        repository.claimDue(OffsetDateTime.now(), 1, UnitOfWork.Priority.NORMAL, "node").blockLast();
+
+        LockLostException lockLost = assertThrows(LockLostException.class, () -> repository.save(copy).block());
+
+        assertEquals(Collections.singletonList("unit"), lockLost.getUnitOfWorkIds());
+        assertEquals(UnitOfWork.State.IN_PROGRESS, repository.findById("unit").block().getState());
+    }
+
+    @Test
+    void countByStateFollowsStateChangesAndRemovals() {
+        OffsetDateTime now = OffsetDateTime.now();
+        UnitOfWork<TestTask> completed = save("completed", UnitOfWork.State.ACCEPTED, now.minusSeconds(2));
+        save("claimed", UnitOfWork.State.ACCEPTED, now.minusSeconds(1));
+        save("deleted", UnitOfWork.State.FAILED, now.plusMinutes(1));
+        saveFinished("evicted", now.minusHours(2));
+
+        completed.setState(UnitOfWork.State.COMPLETED);
+        completed.setFinishedAt(now);
+        repository.save(completed).block();
+        claimedIds(now, UnitOfWork.Priority.NORMAL);
+        repository.deleteById("deleted").block();
+        repository.deleteFinished(now.minusHours(1), -1).block();
+
+        Map<UnitOfWork.State, Long> counts = repository.countByState().block();
+        assertEquals(2, counts.size());
+        assertEquals(1, counts.get(UnitOfWork.State.COMPLETED).longValue());
+        assertEquals(1, counts.get(UnitOfWork.State.IN_PROGRESS).longValue());
+
+        repository.deleteAll().block();
+        assertTrue(repository.countByState().block().isEmpty());
+    }
+
+    @Test
+    void claimExhaustedClaimsUnitsOfWorkWithoutRetriesLeftInOrderOfFinishing() {
+        OffsetDateTime now = OffsetDateTime.now();
+        saveFinished("completed", now.minusMinutes(3));
+        UnitOfWork<TestTask> later = save("later", UnitOfWork.State.FAILED, now.minusMinutes(5));
+        UnitOfWork<TestTask> earlier = save("earlier", UnitOfWork.State.FAILED, now.minusMinutes(5));
+        later.setState(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED);
+        later.setFinishedAt(now.minusMinutes(1));
+        repository.save(later).block();
+        earlier.setState(UnitOfWork.State.FAILED_RETRIES_EXHAUSTED);
+        earlier.setFinishedAt(now.minusMinutes(2));
+        repository.save(earlier).block();
+
+        assertEquals(Collections.singletonList("earlier"), exhaustedIds(now, 1));
+        assertEquals(UnitOfWork.State.ROLLBACK_IN_PROGRESS, earlier.getState());
+        assertEquals("node", earlier.getLockedBy());
+        assertEquals(Collections.singletonList("later"), exhaustedIds(now, 5));
+        assertTrue(exhaustedIds(now, 5).isEmpty());
+    }
+
+    private List<String> claimedIds(OffsetDateTime now, UnitOfWork.Priority priority) {
+        return repository.claimDue(now, 5, priority, "node")
+            .map(UnitOfWork::getUnitOfOWorkId)
+            .collectList()
+            .block();
+    }
+
+    private List<String> exhaustedIds(OffsetDateTime now, int maxUnitsOfWork) {
+        return repository.claimExhausted(now, maxUnitsOfWork, "node")
+            .map(UnitOfWork::getUnitOfOWorkId)
+            .collectList()
+            .block();
+    }
+
+    private void saveFinished(String id, OffsetDateTime finishedAt) {
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id));
+        unitOfWork.setState(UnitOfWork.State.COMPLETED);
+        unitOfWork.setFinishedAt(finishedAt);
+        repository.save(unitOfWork).block();
+    }
+
+    private UnitOfWork<TestTask> save(String id, UnitOfWork.State state, OffsetDateTime nextAttemptAt) {
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id));
+        unitOfWork.setState(state);
+        unitOfWork.setNextAttemptAt(nextAttemptAt);
+        return repository.save(unitOfWork).block();
+    }
+
+    private List<String> dueIds(OffsetDateTime now) {
+        return repository.findAllByNextAttemptAtBefore(now)
+            .map(UnitOfWork::getUnitOfOWorkId)
+            .collectList()
+            .block();
+    }
+}
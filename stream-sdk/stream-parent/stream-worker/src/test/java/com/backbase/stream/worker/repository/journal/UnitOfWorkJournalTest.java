@@ -0,0 +1,122 @@
+package com.backbase.stream.worker.repository.journal;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.TestTask;
+import com.backbase.stream.worker.model.StreamTask;
+import com.backbase.stream.worker.model.UnitOfWork;
+import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+class UnitOfWorkJournalTest {
+
+    private final Path directory;
+
+    UnitOfWorkJournalTest() throws IOException {
+        directory = Files.createTempDirectory("unit-of-work-journal");
+    }
+
+    @AfterEach
+    void deleteDirectory() throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Test
+    void replaysUnitsOfWorkAfterRestart() throws IOException {
+        UnitOfWorkJournal<TestTask> journal = open(1024 * 1024, 4);
+        InMemoryReactiveUnitOfWorkRepository<TestTask> repository = new InMemoryReactiveUnitOfWorkRepository<>(journal);
+        OffsetDateTime registeredAt = OffsetDateTime.now().minusSeconds(1);
+        UnitOfWork<TestTask> accepted = save(repository, "accepted", registeredAt);
+        // Due first, so it is the one claimed
+        save(repository, "locked", registeredAt.minusSeconds(1));
+        save(repository, "deleted", registeredAt);
+        assertEquals("locked", repository.claimDue(OffsetDateTime.now(), 1, UnitOfWork.Priority.NORMAL, "node")
+            .blockLast().getUnitOfOWorkId());
+        repository.deleteById("deleted").block();
+        journal.close();
+
+        InMemoryReactiveUnitOfWorkRepository<TestTask> replayed =
+            new InMemoryReactiveUnitOfWorkRepository<>(open(1024 * 1024, 4));
+
+        assertEquals(2, replayed.count().block().longValue());
+        UnitOfWork<TestTask> replayedAccepted = replayed.findById("accepted").block();
+        assertEquals(accepted.getVersion(), replayedAccepted.getVersion());
+        assertEquals(registeredAt.toInstant(), replayedAccepted.getRegisteredAt().toInstant());
+        assertEquals("accepted-task", replayedAccepted.getStreamTasks().get(0).getId());
+        // Interrupted units of work are released to be claimed again
+        UnitOfWork<TestTask> replayedLocked = replayed.findById("locked").block();
+        assertNull(replayedLocked.getLockedAt());
+        assertEquals(UnitOfWork.State.ACCEPTED, replayedLocked.getState());
+        assertEquals(2, replayed.findAllByNextAttemptAtBefore(OffsetDateTime.now()).count().block().longValue());
+    }
+
+    @Test
+    void compactsWhenSegmentsExceedMaximum() throws IOException {
+        UnitOfWorkJournal<TestTask> journal = open(512, 3);
+        InMemoryReactiveUnitOfWorkRepository<TestTask> repository = new InMemoryReactiveUnitOfWorkRepository<>(journal);
+        UnitOfWork<TestTask> unitOfWork = save(repository, "unit", OffsetDateTime.now());
+        for (int i = 0; i < 100; i++) {
+            repository.save(unitOfWork).block();
+        }
+        journal.close();
+
+        assertTrue(segments() <= 3);
+        UnitOfWork<TestTask> replayed = new InMemoryReactiveUnitOfWorkRepository<>(open(512, 3))
+            .findById("unit").block();
+        assertEquals(unitOfWork.getVersion(), replayed.getVersion());
+    }
+
+    private UnitOfWorkJournal<TestTask> open(int segmentSize, int maxSegments) throws IOException {
+        return new UnitOfWorkJournal<>(directory, new TestTaskCodec(), segmentSize, maxSegments, false);
+    }
+
+    private long segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+
+    private static UnitOfWork<TestTask> save(InMemoryReactiveUnitOfWorkRepository<TestTask> repository, String id,
+        OffsetDateTime registeredAt) {
+        UnitOfWork<TestTask> unitOfWork = UnitOfWork.from(id, new TestTask(id + "-task"));
+        unitOfWork.setState(UnitOfWork.State.ACCEPTED);
+        unitOfWork.setRegisteredAt(registeredAt);
+        unitOfWork.setNextAttemptAt(registeredAt);
+        return repository.save(unitOfWork).block();
+    }
+
+    static class TestTaskCodec implements StreamTaskCodec<TestTask> {
+
+        @Override
+        public byte[] encode(List<TestTask> streamTasks) {
+            return streamTasks.stream().map(StreamTask::getId).collect(Collectors.joining("\n"))
+                .getBytes(StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public List<TestTask> decode(byte[] bytes) {
+            List<TestTask> streamTasks = new ArrayList<>();
+            for (String id : new String(bytes, StandardCharsets.UTF_8).split("\n")) {
+                streamTasks.add(new TestTask(id));
+            }
+            return streamTasks;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.backbase.stream.worker.retry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.backbase.stream.worker.configuration.StreamWorkerConfiguration.RetryBackoff;
+import com.backbase.stream.worker.exception.StreamTaskException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+
+class BackoffRetryPolicyTest {
+
+    private static final Duration BASE = Duration.ofSeconds(10);
+    private static final Duration MAX = Duration.ofMinutes(5);
+
+    private final AtomicReference<Double> random = new AtomicReference<>(0.5);
+
+    @Test
+    void classifiesClientErrorsAsNonRetryable() {
+        BackoffRetryPolicy retryPolicy = retryPolicy(RetryBackoff.FIXED);
+
+        assertFalse(retryPolicy.isRetryable(new StreamTaskException("wrapped", response(400, null))));
+        assertFalse(retryPolicy.isRetryable(response(404, null)));
+        assertTrue(retryPolicy.isRetryable(response(429, null)));
+        assertTrue(retryPolicy.isRetryable(response(503, null)));
+        assertTrue(retryPolicy.isRetryable(new IllegalStateException("connection reset")));
+    }
+
+    @Test
+    void exponentialBackoffIsCappedAtMaximum() {
+        BackoffRetryPolicy retryPolicy = retryPolicy(RetryBackoff.EXPONENTIAL);
+
+        assertEquals(BASE, retryPolicy.nextDelay(1, null, Collections.emptyList()));
+        assertEquals(Duration.ofSeconds(40), retryPolicy.nextDelay(3, null, Collections.emptyList()));
+        assertEquals(MAX, retryPolicy.nextDelay(10, null, Collections.emptyList()));
+    }
+
+    @Test
+    void decorrelatedJitterPicksBetweenBaseAndThreeTimesPreviousDelay() {
+        BackoffRetryPolicy retryPolicy = retryPolicy(RetryBackoff.DECORRELATED_JITTER);
+
+        random.set(0.0);
+        assertEquals(BASE, retryPolicy.nextDelay(2, Duration.ofSeconds(20), Collections.emptyList()));
+        random.set(1.0);
+        assertEquals(Duration.ofSeconds(60), retryPolicy.nextDelay(2, Duration.ofSeconds(20), Collections.emptyList()));
+        assertEquals(MAX, retryPolicy.nextDelay(5, Duration.ofMinutes(4), Collections.emptyList()));
+    }
+
+    @Test
+    void retryAfterDelaysUpToMaximum() {
+        BackoffRetryPolicy retryPolicy = retryPolicy(RetryBackoff.FIXED);
+
+        assertEquals(Duration.ofSeconds(120),
+            retryPolicy.nextDelay(1, null, Collections.singletonList(response(429, "120"))));
+        assertEquals(BASE, retryPolicy.nextDelay(1, null, Collections.singletonList(response(503, "1"))));
+        assertEquals(MAX, retryPolicy.nextDelay(1, null, Collections.singletonList(response(503, "3600"))));
+    }
+
+    private BackoffRetryPolicy retryPolicy(RetryBackoff backoff) {
+        return new BackoffRetryPolicy(backoff, BASE, MAX, 2, random::get);
+    }
+
+    private static WebClientResponseException response(int status, String retryAfter) {
+        HttpHeaders headers = new HttpHeaders();
+        if (retryAfter != null) {
+            headers.add(HttpHeaders.RETRY_AFTER, retryAfter);
+        }
+        return WebClientResponseException.create(status, "status " + status, headers, new byte[0],
+            StandardCharsets.UTF_8);
+    }
+
+}
@@ -10,8 +10,15 @@ import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRespons
 import com.backbase.stream.transaction.TransactionTask;
 import com.backbase.stream.transaction.TransactionUnitOfWorkExecutor;
 import com.backbase.stream.transaction.TransactionsQuery;
+import com.backbase.stream.worker.dedup.DuplicateFilter;
 import com.backbase.stream.worker.model.UnitOfWork;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -28,6 +35,11 @@ public class TransactionService {
     private final TransactionPresentationServiceApi transactionPresentationServiceApi;
     private final TransactionUnitOfWorkExecutor transactionTaskExecutor;
 
+    /**
+     * Drops transactions which were ingested before, null to ingest every transaction.
+     */
+    private volatile DuplicateFilter duplicateFilter;
+
     public TransactionService(TransactionPresentationServiceApi transactionPresentationServiceApi,
         TransactionUnitOfWorkExecutor transactionTaskExecutor) {
         this.transactionTaskExecutor = transactionTaskExecutor;
@@ -35,17 +47,85 @@ public class TransactionService {
     }
 
     /**
-     * Upsert Transactions.
+     * Upsert Transactions. When grouping per arrangement, batches of different arrangements are posted concurrently
+     * and batches of the same arrangement in order.
      *
      * @param transactions Unbounded list of Transactions
      * @return Ingestion Transactions IDs
      */
     public Flux<TransactionsPostResponseBody> processTransactions(Flux<TransactionsPostRequestBody> transactions) {
-        Flux<UnitOfWork<TransactionTask>> unitOfWorkFlux = transactionTaskExecutor.prepareUnitOfWork(transactions);
-        return unitOfWorkFlux.flatMap(transactionTaskExecutor::executeUnitOfWork)
+        DuplicateFilter filter = duplicateFilter;
+        if (filter == null) {
+            Flux<UnitOfWork<TransactionTask>> unitOfWorkFlux = transactionTaskExecutor.prepareUnitOfWork(transactions);
+            return unitOfWorkFlux.flatMap(transactionTaskExecutor::executeUnitOfWork)
+                .flatMap(this::getTransactionIdsFlux);
+        }
+        Flux<TransactionsPostRequestBody> newTransactions = transactions.filter(transaction -> {
+            boolean duplicate = filter.isDuplicate(transaction.getExternalId());
+            if (duplicate) {
+                log.debug("Dropping duplicate transaction: {}", transaction.getExternalId());
+            }
+            return !duplicate;
+        });
+        // External ids are remembered once ingested, so transactions which failed are not dropped when sent again
+        return transactionTaskExecutor.prepareUnitOfWork(newTransactions)
+            .flatMap(unitOfWork -> {
+                Map<TransactionTask, List<TransactionsPostRequestBody>> postedTransactions =
+                    getPostedTransactions(unitOfWork);
+                return transactionTaskExecutor.executeUnitOfWork(unitOfWork)
+                    .doOnNext(executed -> filter.recordAll(getIngestedExternalIds(postedTransactions)))
+                    .doOnError(throwable -> filter.recordAll(getIngestedExternalIds(postedTransactions)));
+            })
             .flatMap(this::getTransactionIdsFlux);
     }
 
+    /**
+     * Transactions of every task before execution. Tasks are compared by identity, as their data changes while
+     * executing.
+     */
+    private Map<TransactionTask, List<TransactionsPostRequestBody>> getPostedTransactions(
+        UnitOfWork<TransactionTask> unitOfWork) {
+        Map<TransactionTask, List<TransactionsPostRequestBody>> postedTransactions = new IdentityHashMap<>();
+        for (TransactionTask task : unitOfWork.getStreamTasks()) {
+            postedTransactions.put(task, new ArrayList<>(task.getData()));
+        }
+        return postedTransactions;
+    }
+
+    /**
+     * External ids of the transactions ingested by the tasks of a unit of work. Completed tasks ingested all their
+     * transactions. A failed task keeps the transactions which were not ingested, so when rejected transactions are
+     * isolated, the transactions ingested before the failure are the ones it no longer holds.
+     */
+    private List<String> getIngestedExternalIds(
+        Map<TransactionTask, List<TransactionsPostRequestBody>> postedTransactions) {
+        List<String> externalIds = new ArrayList<>();
+        postedTransactions.forEach((task, transactions) -> {
+            Set<TransactionsPostRequestBody> notIngested = Collections.newSetFromMap(new IdentityHashMap<>());
+            if (!task.isCompleted()) {
+                if (task.getData() == null) {
+                    // Compacted without knowing what was ingested, so the transactions are not dropped when sent again
+                    return;
+                }
+                notIngested.addAll(task.getData());
+            }
+            transactions.stream()
+                .filter(transaction -> !notIngested.contains(transaction))
+                .map(TransactionsPostRequestBody::getExternalId)
+                .forEach(externalIds::add);
+        });
+        return externalIds;
+    }
+
+    /**
+     * Drop transactions which were ingested before through this service.
+     *
+     * @param duplicateFilter duplicate filter remembering ingested external ids
+     */
+    public void setDuplicateFilter(DuplicateFilter duplicateFilter) {
+        this.duplicateFilter = duplicateFilter;
+    }
+
     private Flux<TransactionsPostResponseBody> getTransactionIdsFlux(UnitOfWork<TransactionTask> unitOfWork) {
         Stream<TransactionsPostResponseBody> transactionIdsStream = unitOfWork.getStreamTasks().stream()
             .map(TransactionTask::getResponse)
@@ -9,10 +9,22 @@ import com.backbase.stream.transaction.TransactionTaskExecutor;
 import com.backbase.stream.transaction.TransactionUnitOfWorkExecutor;
 import com.backbase.stream.transaction.repository.TransactionUnitOfWorkRepository;
 import com.backbase.stream.webclient.DbsWebClientConfiguration;
+import com.backbase.stream.worker.dedup.DuplicateFilter;
+import com.backbase.stream.worker.dedup.DuplicateFilterSnapshots;
 import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournal;
+import com.backbase.stream.worker.repository.journal.UnitOfWorkJournals;
+import com.backbase.stream.worker.repository.r2dbc.R2dbcUnitOfWorkRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.r2dbc.spi.ConnectionFactory;
+import java.nio.file.Paths;
 import java.text.DateFormat;
 import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.context.annotation.Bean;
@@ -31,9 +43,12 @@ public class TransactionServiceConfiguration {
 
 
     @Bean
-    public TransactionTaskExecutor transactionTaskExecutor(ApiClient transactionPresentationApiClient) {
+    public TransactionTaskExecutor transactionTaskExecutor(ApiClient transactionPresentationApiClient,
+        TransactionWorkerConfigurationProperties transactionWorkerConfigurationProperties,
+        ObjectProvider<MeterRegistry> meterRegistry) {
         TransactionPresentationServiceApi transactionsApi = new TransactionPresentationServiceApi(transactionPresentationApiClient);
-        return new TransactionTaskExecutor(transactionsApi);
+        return new TransactionTaskExecutor(transactionsApi, transactionWorkerConfigurationProperties,
+            meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), "transaction");
     }
 
     @Bean
@@ -54,14 +69,74 @@ public class TransactionServiceConfiguration {
     public static class InMemoryTransactionUnitOfWorkRepository extends
         InMemoryReactiveUnitOfWorkRepository<TransactionTask> implements TransactionUnitOfWorkRepository {
 
+        public InMemoryTransactionUnitOfWorkRepository() {
+        }
+
+        public InMemoryTransactionUnitOfWorkRepository(UnitOfWorkJournal<TransactionTask> journal) {
+            super(journal);
+        }
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "journal")
+    public TransactionUnitOfWorkRepository transactionJournaledUnitOfWorkRepository(
+        UnitOfWorkJournals unitOfWorkJournals) {
+        return new InMemoryTransactionUnitOfWorkRepository(
+            unitOfWorkJournals.open(TransactionTask.class, "transaction"));
+    }
+
+    /**
+     * Persistence in a database through R2DBC. Applications persisting in a database add the optional
+     * stream-worker-r2dbc dependency and an R2DBC driver; the beans live in a configuration of their own, so this
+     * configuration loads without R2DBC on the class path.
+     */
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(ConnectionFactory.class)
+    @ConditionalOnProperty(name = "backbase.stream.persistence", havingValue = "r2dbc")
+    static class R2dbcPersistenceConfiguration {
+
+        @Bean
+        public TransactionUnitOfWorkRepository transactionR2dbcUnitOfWorkRepository(
+            ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            return new R2dbcTransactionUnitOfWorkRepository(connectionFactory, objectMapper);
+        }
+    }
+
+    public static class R2dbcTransactionUnitOfWorkRepository extends
+        R2dbcUnitOfWorkRepository<TransactionTask> implements TransactionUnitOfWorkRepository {
+
+        public R2dbcTransactionUnitOfWorkRepository(ConnectionFactory connectionFactory, ObjectMapper objectMapper) {
+            super(connectionFactory, objectMapper, TransactionTask.class, "transaction");
+        }
     }
 
     @Bean
     public TransactionService transactionService(ApiClient transactionPresentationApiClient,
-        TransactionUnitOfWorkExecutor transactionTaskExecutor) {
+        TransactionUnitOfWorkExecutor transactionTaskExecutor,
+        ObjectProvider<DuplicateFilter> transactionDuplicateFilter) {
         TransactionPresentationServiceApi transactionsApi = new TransactionPresentationServiceApi(transactionPresentationApiClient);
 
-        return new TransactionService(transactionsApi, transactionTaskExecutor);
+        TransactionService transactionService = new TransactionService(transactionsApi, transactionTaskExecutor);
+        transactionDuplicateFilter.ifAvailable(transactionService::setDuplicateFilter);
+        return transactionService;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "backbase.stream.transaction.worker.deduplicate", havingValue = "true")
+    public DuplicateFilter transactionDuplicateFilter(TransactionWorkerConfigurationProperties properties,
+        ObjectProvider<MeterRegistry> meterRegistry) {
+        return new DuplicateFilter(properties.getDedupExpectedTransactions(), properties.getDedupFalsePositiveRate(),
+            properties.getDedupWindow(), properties.getDedupConfirmedTransactions())
+            .bindTo(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), "transaction");
+    }
+
+    @Bean
+    @ConditionalOnExpression("${backbase.stream.transaction.worker.deduplicate:false}"
+        + " and '${backbase.stream.transaction.worker.dedup-snapshot-file:}' != ''")
+    public DuplicateFilterSnapshots transactionDuplicateFilterSnapshots(DuplicateFilter transactionDuplicateFilter,
+        TransactionWorkerConfigurationProperties properties) {
+        return new DuplicateFilterSnapshots(transactionDuplicateFilter, Paths.get(properties.getDedupSnapshotFile()),
+            properties.getDedupSnapshotInterval());
     }
 
 
@@ -1,6 +1,7 @@
 package com.backbase.stream.configuration;
 
 import com.backbase.stream.worker.configuration.StreamWorkerConfiguration;
+import java.time.Duration;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
@@ -10,7 +11,106 @@ import org.springframework.boot.context.properties.ConfigurationProperties;
 @Data
 public class TransactionWorkerConfigurationProperties extends StreamWorkerConfiguration {
 
+    /**
+     * Group transactions per arrangement into units of work, ingesting the transactions of an arrangement in order and
+     * arrangements in parallel.
+     */
     private boolean groupPerArrangementId;
 
     private boolean continueOnError;
+
+    /**
+     * Maximum number of transactions of a single arrangement posted together, when grouping per arrangement.
+     */
+    private int arrangementBatchSize = 100;
+
+    /**
+     * Maximum time transactions of an arrangement wait for a full batch, when grouping per arrangement.
+     */
+    private Duration arrangementBatchMaxAge = Duration.ofSeconds(1);
+
+    /**
+     * Maximum number of arrangements with transactions waiting for a full batch, -1 for no maximum. Opening a batch for
+     * another arrangement flushes the oldest open batch.
+     */
+    private int maxOpenArrangementBatches = 1000;
+
+    /**
+     * Maximum number of transactions waiting for a full batch across all arrangements, -1 for no maximum. Exceeding it
+     * flushes the largest open batch, bounding the memory held by batching.
+     */
+    private int maxBatchedTransactions = 10000;
+
+    /**
+     * Adapt the number of concurrent posts of transactions to the latency of DBS, raising it by one per round of posts
+     * within the latency target and cutting it on slow posts, timeouts, 5xx and 429 responses.
+     */
+    private boolean adaptivePostConcurrency = false;
+
+    /**
+     * Number of concurrent posts of transactions allowed at first, when adapting post concurrency.
+     */
+    private int postConcurrencyInitialLimit = 4;
+
+    /**
+     * Lower bound of the number of concurrent posts of transactions, when adapting post concurrency.
+     */
+    private int postConcurrencyMinLimit = 1;
+
+    /**
+     * Upper bound of the number of concurrent posts of transactions, when adapting post concurrency.
+     */
+    private int postConcurrencyMaxLimit = 64;
+
+    /**
+     * Latency of a post of transactions above which post concurrency is cut.
+     */
+    private Duration postLatencyTarget = Duration.ofSeconds(2);
+
+    /**
+     * Factor by which post concurrency is cut, between 0 and 1.
+     */
+    private double postConcurrencyBackoffRatio = 0.5;
+
+    /**
+     * Isolate transactions rejected with a 400 by posting a rejected batch again in halves, bisecting until only the
+     * rejected transactions are left. Valid transactions are ingested, the task fails with the rejected ones only.
+     */
+    private boolean isolateRejectedTransactions = false;
+
+    /**
+     * Drop transactions of which the external id was ingested before within the deduplication window, before they are
+     * posted again. Only applies to transactions ingested through the transaction service.
+     */
+    private boolean deduplicate = false;
+
+    /**
+     * Number of transactions expected per deduplication window, sizing the Bloom filter of ingested external ids.
+     */
+    private long dedupExpectedTransactions = 1_000_000;
+
+    /**
+     * False positive rate of the Bloom filter of ingested external ids at the expected number of transactions.
+     */
+    private double dedupFalsePositiveRate = 0.01;
+
+    /**
+     * Time for which ingested external ids are remembered at least, and at most twice as long.
+     */
+    private Duration dedupWindow = Duration.ofDays(1);
+
+    /**
+     * Number of most recently ingested external ids kept to confirm duplicates. Only confirmed duplicates are dropped.
+     */
+    private int dedupConfirmedTransactions = 100_000;
+
+    /**
+     * File the ingested external ids are snapshotted to, so deduplication survives restarts. Empty to not snapshot.
+     */
+    private String dedupSnapshotFile;
+
+    /**
+     * Interval between snapshots of the ingested external ids, besides the snapshot on shutdown.
+     */
+    private Duration dedupSnapshotInterval = Duration.ofMinutes(5);
 }
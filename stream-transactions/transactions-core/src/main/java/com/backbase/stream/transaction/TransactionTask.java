@@ -6,9 +6,11 @@ import com.backbase.stream.worker.model.StreamTask;
 import java.util.List;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
+@NoArgsConstructor
 public class TransactionTask extends StreamTask {
 
     public TransactionTask(String unitOfWorkId, List<TransactionsPostRequestBody> data) {
@@ -19,6 +21,15 @@ public class TransactionTask extends StreamTask {
     private List<TransactionsPostRequestBody> data;
     private List<TransactionsPostResponseBody> response;
 
+    /**
+     * Drops the posted transactions, keeping the responses with the ids of the created transactions.
+     */
+    @Override
+    public void compact() {
+        super.compact();
+        this.data = null;
+    }
+
     @Override
     public String getName() {
         return "transaction";
@@ -3,12 +3,24 @@ package com.backbase.stream.transaction;
 import com.backbase.dbs.transaction.api.service.v2.TransactionPresentationServiceApi;
 import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
 import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostResponseBody;
+import com.backbase.stream.configuration.TransactionWorkerConfigurationProperties;
 import com.backbase.stream.worker.StreamTaskExecutor;
 import com.backbase.stream.worker.exception.StreamTaskException;
+import com.backbase.stream.worker.metrics.UnitOfWorkMetrics;
+import com.backbase.stream.worker.ratelimit.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Tags;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 @Slf4j
@@ -16,8 +28,66 @@ public class TransactionTaskExecutor implements StreamTaskExecutor<TransactionTa
 
     private final TransactionPresentationServiceApi transactionPresentationServiceApi;
 
+    /**
+     * Limits concurrent posts of transactions, null when post concurrency is not adapted.
+     */
+    private final AdaptiveConcurrencyLimiter postConcurrencyLimiter;
+
+    /**
+     * Bisect batches rejected with a 400 to ingest the valid transactions and isolate the rejected ones.
+     */
+    private final boolean isolateRejectedTransactions;
+
     public TransactionTaskExecutor(TransactionPresentationServiceApi transactionPresentationServiceApi) {
         this.transactionPresentationServiceApi = transactionPresentationServiceApi;
+        this.postConcurrencyLimiter = null;
+        this.isolateRejectedTransactions = false;
+    }
+
+    /**
+     * Create a task executor publishing its gauges to the global meter registry.
+     */
+    public TransactionTaskExecutor(TransactionPresentationServiceApi transactionPresentationServiceApi,
+        TransactionWorkerConfigurationProperties properties) {
+        this(transactionPresentationServiceApi, properties, Metrics.globalRegistry, "transaction");
+    }
+
+    /**
+     * Create a task executor adapting the number of concurrent posts to the latency of DBS when configured. The limit,
+     * posts in flight and posts waiting are published as {@code stream.transaction.post.concurrency.*} gauges.
+     *
+     * @param executorName name of the unit of work executor running the tasks, tagging the gauges
+     */
+    public TransactionTaskExecutor(TransactionPresentationServiceApi transactionPresentationServiceApi,
+        TransactionWorkerConfigurationProperties properties, MeterRegistry meterRegistry, String executorName) {
+        this.transactionPresentationServiceApi = transactionPresentationServiceApi;
+        this.postConcurrencyLimiter = properties.isAdaptivePostConcurrency()
+            ? new AdaptiveConcurrencyLimiter(properties.getPostConcurrencyInitialLimit(),
+                properties.getPostConcurrencyMinLimit(), properties.getPostConcurrencyMaxLimit(),
+                properties.getPostLatencyTarget(), properties.getPostConcurrencyBackoffRatio())
+            : null;
+        this.isolateRejectedTransactions = properties.isIsolateRejectedTransactions();
+        if (postConcurrencyLimiter != null) {
+            log.info("Adapting concurrent posts of transactions between {} and {} to a latency target of {}",
+                properties.getPostConcurrencyMinLimit(), properties.getPostConcurrencyMaxLimit(),
+                properties.getPostLatencyTarget());
+            Tags tags = Tags.of(UnitOfWorkMetrics.EXECUTOR_TAG, executorName);
+            Gauge.builder("stream.transaction.post.concurrency.limit", postConcurrencyLimiter,
+                    AdaptiveConcurrencyLimiter::getLimit)
+                .description("Concurrent posts of transactions currently allowed")
+                .tags(tags)
+                .register(meterRegistry);
+            Gauge.builder("stream.transaction.post.concurrency.in-flight", postConcurrencyLimiter,
+                    AdaptiveConcurrencyLimiter::getInFlight)
+                .description("Posts of transactions in flight")
+                .tags(tags)
+                .register(meterRegistry);
+            Gauge.builder("stream.transaction.post.concurrency.waiting", postConcurrencyLimiter,
+                    AdaptiveConcurrencyLimiter::getWaiting)
+                .description("Posts of transactions waiting for the concurrency limit")
+                .tags(tags)
+                .register(meterRegistry);
+        }
     }
 
     @Override
@@ -26,14 +96,18 @@ public class TransactionTaskExecutor implements StreamTaskExecutor<TransactionTa
         String externalIds = streamTask.getData().stream().map(TransactionsPostRequestBody::getExternalId)
             .collect(Collectors.joining(","));
         log.info("Post {} transactions: ", data.size());
-        return transactionPresentationServiceApi.postTransactions(data)
+        return postTransactions(data)
+            .collectList()
+            .onErrorResume(WebClientResponseException.class, throwable -> isolateRejectedTransactions
+                && throwable.getRawStatusCode() == 400 && data.size() > 1
+                ? isolateRejectedTransactions(streamTask, throwable)
+                : Mono.error(throwable))
             .onErrorResume(WebClientResponseException.class, throwable -> {
                 streamTask.error("transactions", "post", "failed", externalIds, null, throwable,
                     throwable.getResponseBodyAsString(), "Failed to ingest transactions");
                 return Mono.error(new StreamTaskException(streamTask, throwable,
                     "Failed to Ingest Transactions: " + throwable.getResponseBodyAsString()));
             })
-            .collectList()
             .map(transactionIds -> {
                 streamTask.error("transactions", "post", "success", externalIds, transactionIds.stream().map(
                     TransactionsPostResponseBody::getId).collect(Collectors.joining(",")), "Ingested Transactions");
@@ -42,9 +116,91 @@ public class TransactionTaskExecutor implements StreamTaskExecutor<TransactionTa
             });
     }
 
+    /**
+     * Post the transactions of a rejected batch again in halves, bisecting halves which are rejected as well until the
+     * rejected transactions are isolated. Valid transactions are ingested, rejected ones are recorded in the task
+     * history. The task fails when transactions were rejected, keeping only the transactions which were not ingested,
+     * so neither retries nor replays of its dead letter post ingested transactions again.
+     */
+    private Mono<List<TransactionsPostResponseBody>> isolateRejectedTransactions(TransactionTask streamTask,
+        WebClientResponseException rejection) {
+        List<TransactionsPostRequestBody> data = streamTask.getData();
+        log.info("Bisecting {} transactions rejected with: {}", data.size(), rejection.getResponseBodyAsString());
+        Isolation isolation = new Isolation();
+        return bisect(streamTask, data, isolation)
+            .doOnError(throwable -> {
+                streamTask.setData(isolation.notIngested(data));
+                streamTask.setResponse(isolation.responses);
+            })
+            .then(Mono.defer(() -> {
+                if (isolation.rejected.isEmpty()) {
+                    return Mono.just(isolation.responses);
+                }
+                streamTask.setData(isolation.rejected);
+                streamTask.setResponse(isolation.responses);
+                return Mono.error(new StreamTaskException(streamTask, isolation.lastRejection,
+                    "Rejected " + isolation.rejected.size() + " of " + data.size() + " transactions"));
+            }));
+    }
+
+    private Mono<Void> bisect(TransactionTask streamTask, List<TransactionsPostRequestBody> data,
+        Isolation isolation) {
+        int half = data.size() / 2;
+        // Halves are posted one after the other, so transactions are ingested in order
+        return postIsolated(streamTask, data.subList(0, half), isolation)
+            .then(postIsolated(streamTask, data.subList(half, data.size()), isolation));
+    }
+
+    private Mono<Void> postIsolated(TransactionTask streamTask, List<TransactionsPostRequestBody> data,
+        Isolation isolation) {
+        return Mono.defer(() -> postTransactions(data)
+            .collectList()
+            .doOnNext(responses -> {
+                isolation.ingested.addAll(data);
+                isolation.responses.addAll(responses);
+            })
+            .then()
+            .onErrorResume(WebClientResponseException.class, throwable -> {
+                if (throwable.getRawStatusCode() != 400) {
+                    return Mono.error(throwable);
+                }
+                if (data.size() > 1) {
+                    return bisect(streamTask, data, isolation);
+                }
+                TransactionsPostRequestBody transaction = data.get(0);
+                streamTask.error("transaction", "post", "rejected", transaction.getExternalId(), null, throwable,
+                    throwable.getResponseBodyAsString(), "Rejected transaction");
+                isolation.rejected.add(transaction);
+                isolation.lastRejection = throwable;
+                return Mono.empty();
+            }));
+    }
+
+    private Flux<TransactionsPostResponseBody> postTransactions(List<TransactionsPostRequestBody> data) {
+        Flux<TransactionsPostResponseBody> post = transactionPresentationServiceApi.postTransactions(data);
+        return postConcurrencyLimiter != null ? postConcurrencyLimiter.execute(post) : post;
+    }
+
     @Override
     public Mono<TransactionTask> rollBack(TransactionTask streamTask) {
         return Mono.just(streamTask);
     }
 
+    /**
+     * Progress of isolating the rejected transactions of a single batch. Halves are posted one at a time.
+     */
+    private static class Isolation {
+
+        private final Set<TransactionsPostRequestBody> ingested = Collections.newSetFromMap(new IdentityHashMap<>());
+        private final List<TransactionsPostRequestBody> rejected = new ArrayList<>();
+        private final List<TransactionsPostResponseBody> responses = new ArrayList<>();
+        private WebClientResponseException lastRejection;
+
+        List<TransactionsPostRequestBody> notIngested(List<TransactionsPostRequestBody> data) {
+            return data.stream()
+                .filter(transaction -> !ingested.contains(transaction))
+                .collect(Collectors.toList());
+        }
+    }
+
 }
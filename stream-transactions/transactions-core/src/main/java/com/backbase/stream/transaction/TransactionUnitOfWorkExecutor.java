@@ -4,6 +4,7 @@ import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequest
 import com.backbase.stream.configuration.TransactionWorkerConfigurationProperties;
 import com.backbase.stream.worker.StreamTaskExecutor;
 import com.backbase.stream.worker.UnitOfWorkExecutor;
+import com.backbase.stream.worker.batch.KeyedMicroBatcher;
 import com.backbase.stream.worker.model.UnitOfWork;
 import com.backbase.stream.worker.repository.UnitOfWorkRepository;
 import java.util.List;
@@ -17,7 +18,16 @@ public class TransactionUnitOfWorkExecutor extends UnitOfWorkExecutor<Transactio
     public TransactionUnitOfWorkExecutor(UnitOfWorkRepository<TransactionTask, String> repository,
         StreamTaskExecutor<TransactionTask> streamTaskExecutor, TransactionWorkerConfigurationProperties properties) {
 
-        super(repository, streamTaskExecutor, properties);
+        super(repository, streamTaskExecutor, properties, "transaction");
+    }
+
+    /**
+     * Transactions are only executed directly. Callers retry failed transactions by sending them again, so the
+     * scheduler must not pick up failed units of work and post their transactions a second time.
+     */
+    @Override
+    public boolean isAutoStartup() {
+        return false;
     }
 
     public Flux<UnitOfWork<TransactionTask>> prepareUnitOfWork(List<TransactionsPostRequestBody> items) {
@@ -29,9 +39,12 @@ public class TransactionUnitOfWorkExecutor extends UnitOfWorkExecutor<Transactio
             unitOfWorkStream = transactionsGroupedByArrangement.entrySet().stream()
                 .map(entry -> {
                     String unitOfOWorkId = "transactions-grouped-" + entry.getKey() + "-" + System.currentTimeMillis();
-                    return UnitOfWork
+                    UnitOfWork<TransactionTask> unitOfWork = UnitOfWork
                         .from(unitOfOWorkId,
                             new TransactionTask(unitOfOWorkId, entry.getValue()));
+                    // Transactions of an arrangement are ingested in order, arrangements in parallel
+                    unitOfWork.setPartitionKey(entry.getKey());
+                    return unitOfWork;
                 });
         } else {
             String unitOfOWorkId = "transactions-mixed-" + System.currentTimeMillis();
@@ -41,8 +54,28 @@ public class TransactionUnitOfWorkExecutor extends UnitOfWorkExecutor<Transactio
         return Flux.fromStream(unitOfWorkStream);
     }
 
+    /**
+     * Prepare units of work from a stream of transactions. When grouping per arrangement, transactions are batched per
+     * arrangement as they arrive, so every unit of work posts a full batch of a single arrangement. The arrangement is
+     * the partition key of its batches, so {@link #executeUnitOfWork} posts batches of an arrangement one after another
+     * in the order of its transactions, also when the units of work are executed concurrently.
+     */
     public Flux<UnitOfWork<TransactionTask>> prepareUnitOfWork(Flux<TransactionsPostRequestBody> items) {
-
+        TransactionWorkerConfigurationProperties properties = getTransactionWorkerConfigurationProperties();
+        if (properties.isGroupPerArrangementId()) {
+            KeyedMicroBatcher<String, TransactionsPostRequestBody> batcher = new KeyedMicroBatcher<>(
+                properties.getArrangementBatchSize(), properties.getArrangementBatchMaxAge(),
+                properties.getMaxOpenArrangementBatches(), properties.getMaxBatchedTransactions());
+            return batcher.batch(items, TransactionsPostRequestBody::getExternalArrangementId)
+                .map(batch -> {
+                    String unitOfOWorkId = "transactions-grouped-" + batch.getKey() + "-" + System.currentTimeMillis()
+                        + "-" + batch.getSequence();
+                    UnitOfWork<TransactionTask> unitOfWork = UnitOfWork
+                        .from(unitOfOWorkId, new TransactionTask(unitOfOWorkId, batch.getItems()));
+                    unitOfWork.setPartitionKey(batch.getKey());
+                    return unitOfWork;
+                });
+        }
         return items
             .bufferTimeout(streamWorkerConfiguration.getBufferSize(), streamWorkerConfiguration.getBufferMaxTime())
             .flatMap(this::prepareUnitOfWork);
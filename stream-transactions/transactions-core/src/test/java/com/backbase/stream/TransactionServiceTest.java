@@ -0,0 +1,139 @@
+package com.backbase.stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+import com.backbase.dbs.transaction.api.service.v2.TransactionPresentationServiceApi;
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostResponseBody;
+import com.backbase.stream.configuration.TransactionWorkerConfigurationProperties;
+import com.backbase.stream.transaction.TransactionTaskExecutor;
+import com.backbase.stream.transaction.TransactionUnitOfWorkExecutor;
+import com.backbase.stream.worker.dedup.DuplicateFilter;
+import com.backbase.stream.worker.exception.StreamTaskException;
+import com.backbase.stream.worker.repository.impl.InMemoryReactiveUnitOfWorkRepository;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionServiceTest {
+
+    @Mock
+    private TransactionPresentationServiceApi transactionPresentationServiceApi;
+
+    private final TransactionWorkerConfigurationProperties properties = new TransactionWorkerConfigurationProperties();
+
+    /**
+     * External ids of the transactions of every post, in order of posting.
+     */
+    private final List<List<String>> posts = new ArrayList<>();
+
+    private final Set<String> rejected = new HashSet<>();
+
+    private TransactionUnitOfWorkExecutor unitOfWorkExecutor;
+
+    private TransactionService transactionService;
+
+    @BeforeEach
+    void setUp() {
+        properties.setIsolateRejectedTransactions(true);
+        when(transactionPresentationServiceApi.postTransactions(anyList()))
+            .thenAnswer(invocation -> post(invocation.getArgument(0)));
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (unitOfWorkExecutor != null) {
+            unitOfWorkExecutor.destroy();
+        }
+    }
+
+    @Test
+    void dropsTransactionsWhichWereIngestedBefore() {
+        assertEquals(4, ingest(0, 4).size());
+
+        assertEquals(2, ingest(0, 6).size());
+
+        assertEquals(Arrays.asList(externalIds(0, 4), externalIds(4, 6)), posts);
+    }
+
+    @Test
+    void remembersTransactionsIngestedBeforeAFailure() {
+        rejected.add("tx-2");
+
+        assertThrows(StreamTaskException.class, () -> ingest(0, 4));
+        rejected.clear();
+        posts.clear();
+
+        assertEquals(1, ingest(0, 4).size());
+
+        assertEquals(Collections.singletonList(Collections.singletonList("tx-2")), posts);
+    }
+
+    @Test
+    void remembersNothingWhenABatchFailsWithoutIsolation() {
+        properties.setIsolateRejectedTransactions(false);
+        rejected.add("tx-2");
+
+        assertThrows(StreamTaskException.class, () -> ingest(0, 4));
+        rejected.clear();
+        posts.clear();
+
+        assertEquals(4, ingest(0, 4).size());
+
+        assertEquals(Collections.singletonList(externalIds(0, 4)), posts);
+    }
+
+    private List<TransactionsPostResponseBody> ingest(int from, int to) {
+        // Built on the first ingest, so tests configure the properties first
+        if (transactionService == null) {
+            unitOfWorkExecutor = new TransactionUnitOfWorkExecutor(new InMemoryReactiveUnitOfWorkRepository<>(),
+                new TransactionTaskExecutor(transactionPresentationServiceApi, properties), properties);
+            transactionService = new TransactionService(transactionPresentationServiceApi, unitOfWorkExecutor);
+            transactionService.setDuplicateFilter(new DuplicateFilter(1000, 0.01, Duration.ofDays(1), 100));
+        }
+        Flux<TransactionsPostRequestBody> transactions = Flux.range(from, to - from)
+            .map(i -> new TransactionsPostRequestBody().externalId("tx-" + i));
+        return transactionService.processTransactions(transactions)
+            .collectList()
+            .block(Duration.ofSeconds(10));
+    }
+
+    private Flux<TransactionsPostResponseBody> post(List<TransactionsPostRequestBody> transactions) {
+        List<String> externalIds = transactions.stream()
+            .map(TransactionsPostRequestBody::getExternalId)
+            .collect(Collectors.toList());
+        posts.add(externalIds);
+        if (externalIds.stream().anyMatch(rejected::contains)) {
+            return Flux.error(WebClientResponseException.create(400, "Bad Request", HttpHeaders.EMPTY,
+                "Invalid transaction".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        }
+        return Flux.fromIterable(externalIds)
+            .map(externalId -> new TransactionsPostResponseBody().id("id-" + externalId));
+    }
+
+    private static List<String> externalIds(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> "tx-" + i)
+            .collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,186 @@
+package com.backbase.stream.transaction;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.when;
+
+import com.backbase.dbs.transaction.api.service.v2.TransactionPresentationServiceApi;
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostResponseBody;
+import com.backbase.stream.configuration.TransactionWorkerConfigurationProperties;
+import com.backbase.stream.worker.exception.StreamTaskException;
+import com.backbase.stream.worker.model.TaskHistory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+@ExtendWith(MockitoExtension.class)
+class TransactionTaskExecutorTest {
+
+    @Mock
+    private TransactionPresentationServiceApi transactionPresentationServiceApi;
+
+    private final TransactionWorkerConfigurationProperties properties = new TransactionWorkerConfigurationProperties();
+
+    /**
+     * External ids of the transactions of every post, in order of posting.
+     */
+    private final List<List<String>> posts = new ArrayList<>();
+
+    private final Set<String> rejected = new HashSet<>();
+
+    /**
+     * Number of the post failing with a 503, 0 for none.
+     */
+    private int unavailablePost;
+
+    @BeforeEach
+    void setUp() {
+        properties.setIsolateRejectedTransactions(true);
+        when(transactionPresentationServiceApi.postTransactions(anyList()))
+            .thenAnswer(invocation -> post(invocation.getArgument(0)));
+    }
+
+    @Test
+    void ingestsABatchWithoutRejectedTransactionsInASinglePost() {
+        TransactionTask task = task(4);
+
+        assertSame(task, executor().executeTask(task).block());
+
+        assertEquals(Collections.singletonList(externalIds(0, 4)), posts);
+        assertEquals(ids(externalIds(0, 4)), responseIds(task));
+        assertEquals(externalIds(0, 4), externalIds(task.getData()));
+    }
+
+    @Test
+    void isolatesASingleRejectedTransaction() {
+        rejected.add("tx-5");
+        TransactionTask task = task(8);
+
+        StreamTaskException failure = assertThrows(StreamTaskException.class,
+            () -> executor().executeTask(task).block());
+
+        assertEquals("Rejected 1 of 8 transactions", failure.getMessage());
+        assertEquals(Arrays.asList(externalIds(0, 8), externalIds(0, 4), externalIds(4, 8),
+            externalIds(4, 6), externalIds(4, 5), externalIds(5, 6), externalIds(6, 8)), posts);
+        assertEquals(Collections.singletonList("tx-5"), externalIds(task.getData()));
+        assertEquals(ids(Arrays.asList("tx-0", "tx-1", "tx-2", "tx-3", "tx-4", "tx-6", "tx-7")), responseIds(task));
+        assertEquals(Collections.singletonList("tx-5"), rejectedExternalIds(task));
+    }
+
+    @Test
+    void failsWithAllTransactionsWhenAllAreRejected() {
+        rejected.addAll(externalIds(0, 4));
+        TransactionTask task = task(4);
+
+        StreamTaskException failure = assertThrows(StreamTaskException.class,
+            () -> executor().executeTask(task).block());
+
+        assertEquals("Rejected 4 of 4 transactions", failure.getMessage());
+        assertEquals(7, posts.size());
+        assertEquals(externalIds(0, 4), externalIds(task.getData()));
+        assertEquals(Collections.emptyList(), responseIds(task));
+        assertEquals(externalIds(0, 4), rejectedExternalIds(task));
+    }
+
+    @Test
+    void keepsTransactionsWhichWereNotIngestedWhenBisectionFails() {
+        rejected.add("tx-0");
+        // Posts of 8, 4, 2 and 1 transactions are rejected, tx-1 and tx-2 with tx-3 are ingested, the rest fails
+        unavailablePost = 7;
+        TransactionTask task = task(8);
+
+        StreamTaskException failure = assertThrows(StreamTaskException.class,
+            () -> executor().executeTask(task).block());
+
+        assertEquals(503, ((WebClientResponseException) failure.getCause()).getRawStatusCode());
+        assertEquals(externalIds(4, 8), posts.get(6));
+        assertEquals(Arrays.asList("tx-0", "tx-4", "tx-5", "tx-6", "tx-7"), externalIds(task.getData()));
+        assertEquals(ids(externalIds(1, 4)), responseIds(task));
+        assertEquals(Collections.singletonList("tx-0"), rejectedExternalIds(task));
+    }
+
+    @Test
+    void failsRejectedBatchesWithoutIsolatingWhenNotConfigured() {
+        properties.setIsolateRejectedTransactions(false);
+        rejected.add("tx-1");
+        TransactionTask task = task(4);
+
+        assertThrows(StreamTaskException.class, () -> executor().executeTask(task).block());
+
+        assertEquals(1, posts.size());
+        assertEquals(externalIds(0, 4), externalIds(task.getData()));
+    }
+
+    private TransactionTaskExecutor executor() {
+        return new TransactionTaskExecutor(transactionPresentationServiceApi, properties);
+    }
+
+    private Flux<TransactionsPostResponseBody> post(List<TransactionsPostRequestBody> transactions) {
+        List<String> externalIds = externalIds(transactions);
+        posts.add(externalIds);
+        if (posts.size() == unavailablePost) {
+            return Flux.error(WebClientResponseException.create(503, "Service Unavailable", HttpHeaders.EMPTY,
+                new byte[0], StandardCharsets.UTF_8));
+        }
+        if (externalIds.stream().anyMatch(rejected::contains)) {
+            return Flux.error(WebClientResponseException.create(400, "Bad Request", HttpHeaders.EMPTY,
+                "Invalid transaction".getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8));
+        }
+        return Flux.fromIterable(externalIds)
+            .map(externalId -> new TransactionsPostResponseBody().id("id-" + externalId));
+    }
+
+    private static TransactionTask task(int transactions) {
+        return new TransactionTask("unit", IntStream.range(0, transactions)
+            .mapToObj(i -> new TransactionsPostRequestBody().externalId("tx-" + i))
+            .collect(Collectors.toList()));
+    }
+
+    private static List<String> rejectedExternalIds(TransactionTask task) {
+        return task.getHistory().stream()
+            .filter(taskHistory -> "rejected".equals(taskHistory.getResult()))
+            .map(TaskHistory::getExternalId)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> responseIds(TransactionTask task) {
+        return task.getResponse().stream()
+            .map(TransactionsPostResponseBody::getId)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> externalIds(List<TransactionsPostRequestBody> transactions) {
+        return transactions.stream()
+            .map(TransactionsPostRequestBody::getExternalId)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> externalIds(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> "tx-" + i)
+            .collect(Collectors.toList());
+    }
+
+    private static List<String> ids(List<String> externalIds) {
+        return externalIds.stream()
+            .map(externalId -> "id-" + externalId)
+            .collect(Collectors.toList());
+    }
+}
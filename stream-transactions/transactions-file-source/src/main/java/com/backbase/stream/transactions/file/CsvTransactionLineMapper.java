@@ -0,0 +1,99 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Maps CSV lines to transactions by the names of the header line. Values are bound as text, leaving their conversion to
+ * the types of the transaction fields to Jackson; empty values leave fields unset. Quoted values may hold delimiters
+ * and escaped quotes, but no line breaks, as files are split into ranges at line breaks.
+ */
+class CsvTransactionLineMapper implements TransactionLineMapper {
+
+    private static final char QUOTE = '"';
+
+    private final ObjectMapper objectMapper;
+    private final ObjectReader reader;
+    private final char delimiter;
+    private final List<String[]> columns;
+
+    /**
+     * Create a mapper.
+     *
+     * @param objectMapper object mapper binding transactions
+     * @param header       header line, naming nested fields by path, for example
+     *                     {@code transactionAmountCurrency.amount}
+     * @param delimiter    delimiter between fields
+     */
+    CsvTransactionLineMapper(ObjectMapper objectMapper, String header, char delimiter) {
+        this.objectMapper = objectMapper;
+        this.reader = objectMapper.readerFor(TransactionsPostRequestBody.class);
+        this.delimiter = delimiter;
+        this.columns = new ArrayList<>();
+        // Strip a byte order mark written by spreadsheet applications
+        String names = header.startsWith("\uFEFF") ? header.substring(1) : header;
+        for (String name : split(names, delimiter)) {
+            columns.add(name.trim().split("\\."));
+        }
+    }
+
+    @Override
+    public TransactionsPostRequestBody map(byte[] line, int length) throws IOException {
+        List<String> values = split(new String(line, 0, length, StandardCharsets.UTF_8), delimiter);
+        if (values.size() != columns.size()) {
+            throw new IOException(String.format("Expected %d fields but found %d", columns.size(), values.size()));
+        }
+        ObjectNode transaction = objectMapper.createObjectNode();
+        for (int i = 0; i < values.size(); i++) {
+            String value = values.get(i);
+            if (!value.isEmpty()) {
+                set(transaction, columns.get(i), value);
+            }
+        }
+        return reader.readValue(transaction);
+    }
+
+    private static void set(ObjectNode node, String[] path, String value) {
+        ObjectNode parent = node;
+        for (int i = 0; i < path.length - 1; i++) {
+            JsonNode child = parent.get(path[i]);
+            parent = child instanceof ObjectNode ? (ObjectNode) child : parent.putObject(path[i]);
+        }
+        parent.put(path[path.length - 1], value);
+    }
+
+    static List<String> split(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != QUOTE) {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == QUOTE) {
+                    field.append(QUOTE);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == QUOTE) {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
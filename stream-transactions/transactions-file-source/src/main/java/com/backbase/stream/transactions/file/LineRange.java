@@ -0,0 +1,69 @@
+package com.backbase.stream.transactions.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import lombok.Value;
+
+/**
+ * Range of bytes of a file holding whole lines only.
+ */
+@Value
+class LineRange {
+
+    private static final int SCAN_BUFFER_SIZE = 8192;
+
+    long start;
+    long end;
+
+    long length() {
+        return end - start;
+    }
+
+    /**
+     * Split a file into ranges of about the same size, each range ending after a newline or at the end of the file.
+     *
+     * @param channel   channel of the file
+     * @param start     offset of the first range, at a line boundary
+     * @param size      size of the file
+     * @param rangeSize size of a range, ranges end at the first newline after this size
+     * @return ranges covering the file from start to size
+     * @throws IOException when the file could not be read
+     */
+    static List<LineRange> split(FileChannel channel, long start, long size, long rangeSize) throws IOException {
+        List<LineRange> ranges = new ArrayList<>();
+        long from = start;
+        while (from < size) {
+            long to = size - from > rangeSize ? nextLineStart(channel, from + rangeSize, size) : size;
+            ranges.add(new LineRange(from, to));
+            from = to;
+        }
+        return ranges;
+    }
+
+    /**
+     * Find the start of the line following a position.
+     *
+     * @return offset after the first newline at or after the position, or the size when there is none
+     */
+    static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+}
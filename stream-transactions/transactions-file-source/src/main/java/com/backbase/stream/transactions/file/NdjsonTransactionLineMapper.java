@@ -0,0 +1,23 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import java.io.IOException;
+
+/**
+ * Maps lines holding a JSON transaction post request body, reading straight from the bytes of the line.
+ */
+class NdjsonTransactionLineMapper implements TransactionLineMapper {
+
+    private final ObjectReader reader;
+
+    NdjsonTransactionLineMapper(ObjectMapper objectMapper) {
+        this.reader = objectMapper.readerFor(TransactionsPostRequestBody.class);
+    }
+
+    @Override
+    public TransactionsPostRequestBody map(byte[] line, int length) throws IOException {
+        return reader.readValue(line, 0, length);
+    }
+}
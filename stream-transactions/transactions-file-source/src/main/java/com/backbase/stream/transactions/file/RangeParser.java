@@ -0,0 +1,90 @@
+package com.backbase.stream.transactions.file;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Parses the lines of a range mapped in memory one at a time, so a range is never held as lines or transactions.
+ * Blank lines are skipped. Not thread safe, a parser is used by one subscriber.
+ */
+@Slf4j
+class RangeParser {
+
+    private static final int INITIAL_LINE_BUFFER_SIZE = 1024;
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long baseOffset;
+    private final TransactionLineMapper mapper;
+    private final boolean skipMalformedLines;
+
+    private byte[] line = new byte[INITIAL_LINE_BUFFER_SIZE];
+
+    /**
+     * Create a parser.
+     *
+     * @param file               file of the range, for log and error messages
+     * @param buffer             bytes of the range
+     * @param baseOffset         offset of the range in the file
+     * @param mapper             mapper of lines to transactions
+     * @param skipMalformedLines skip lines which cannot be mapped instead of failing
+     */
+    RangeParser(Path file, ByteBuffer buffer, long baseOffset, TransactionLineMapper mapper,
+        boolean skipMalformedLines) {
+        this.file = file;
+        this.buffer = buffer;
+        this.baseOffset = baseOffset;
+        this.mapper = mapper;
+        this.skipMalformedLines = skipMalformedLines;
+    }
+
+    /**
+     * Parse the next transaction of the range.
+     *
+     * @return next transaction, or null at the end of the range
+     * @throws IOException when a line is malformed and malformed lines are not skipped
+     */
+    TransactionRecord next() throws IOException {
+        int limit = buffer.limit();
+        while (buffer.position() < limit) {
+            int start = buffer.position();
+            int end = start;
+            while (end < limit && buffer.get(end) != '\n') {
+                end++;
+            }
+            int next = end < limit ? end + 1 : end;
+            int length = end > start && buffer.get(end - 1) == '\r' ? end - start - 1 : end - start;
+            if (isBlank(start, length)) {
+                buffer.position(next);
+                continue;
+            }
+            if (line.length < length) {
+                line = new byte[Math.max(length, line.length * 2)];
+            }
+            buffer.get(line, 0, length);
+            buffer.position(next);
+            try {
+                return new TransactionRecord(mapper.map(line, length), baseOffset + next);
+            } catch (IOException | RuntimeException e) {
+                String message = String.format("Malformed transaction in %s at byte %d", file, baseOffset + start);
+                if (!skipMalformedLines) {
+                    throw new IOException(message, e);
+                }
+                log.warn("{}: {}", message, e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private boolean isBlank(int start, int length) {
+        for (int i = start; i < start + length; i++) {
+            byte b = buffer.get(i);
+            if (b != ' ' && b != '\t') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
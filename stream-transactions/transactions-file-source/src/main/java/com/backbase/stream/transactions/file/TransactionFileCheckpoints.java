@@ -0,0 +1,90 @@
+package com.backbase.stream.transactions.file;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Checkpoints of ingested transaction files, one file per transaction file name. A checkpoint holds the offset up to
+ * which a file is ingested, together with the path, size and modification time of the file, so a checkpoint of
+ * another file with the same name, or of an earlier version of the file, is ignored.
+ */
+@Slf4j
+class TransactionFileCheckpoints {
+
+    private static final String PATH = "path";
+    private static final String SIZE = "size";
+    private static final String LAST_MODIFIED = "lastModified";
+    private static final String OFFSET = "offset";
+
+    private final Path directory;
+
+    /**
+     * Create checkpoints.
+     *
+     * @param directory directory holding the checkpoints, null to not checkpoint
+     */
+    TransactionFileCheckpoints(Path directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Read the offset up to which a file is ingested.
+     *
+     * @return offset after the last ingested line, 0 when there is no checkpoint of this version of the file
+     * @throws IOException when the checkpoint could not be read
+     */
+    long read(Path file, long size, long lastModified) throws IOException {
+        if (directory == null) {
+            return 0;
+        }
+        Path checkpoint = checkpointOf(file);
+        if (!Files.exists(checkpoint)) {
+            return 0;
+        }
+        Properties properties = new Properties();
+        try (InputStream input = Files.newInputStream(checkpoint)) {
+            properties.load(input);
+        }
+        if (!file.toAbsolutePath().toString().equals(properties.getProperty(PATH))
+            || !String.valueOf(size).equals(properties.getProperty(SIZE))
+            || !String.valueOf(lastModified).equals(properties.getProperty(LAST_MODIFIED))) {
+            log.info("Ignoring checkpoint {} of another version of {}", checkpoint, file);
+            return 0;
+        }
+        return Long.parseLong(properties.getProperty(OFFSET, "0"));
+    }
+
+    /**
+     * Write the offset up to which a file is ingested. The checkpoint is written next to its file first and moved in
+     * place, so a crash while writing leaves the previous checkpoint intact.
+     *
+     * @throws IOException when the checkpoint could not be written
+     */
+    void write(Path file, long size, long lastModified, long offset) throws IOException {
+        if (directory == null) {
+            return;
+        }
+        Files.createDirectories(directory);
+        Properties properties = new Properties();
+        properties.setProperty(PATH, file.toAbsolutePath().toString());
+        properties.setProperty(SIZE, String.valueOf(size));
+        properties.setProperty(LAST_MODIFIED, String.valueOf(lastModified));
+        properties.setProperty(OFFSET, String.valueOf(offset));
+        Path checkpoint = checkpointOf(file);
+        Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+        try (OutputStream output = Files.newOutputStream(temporary)) {
+            properties.store(output, null);
+        }
+        Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private Path checkpointOf(Path file) {
+        return directory.resolve(file.getFileName() + ".checkpoint");
+    }
+}
@@ -0,0 +1,31 @@
+package com.backbase.stream.transactions.file;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Formats of transaction files, one transaction per line.
+ */
+public enum TransactionFileFormat {
+
+    /**
+     * Newline delimited JSON, a transaction post request body per line.
+     */
+    NDJSON,
+
+    /**
+     * Comma separated values with a header line naming the fields of transaction post request bodies. Nested fields are
+     * named by path, for example {@code transactionAmountCurrency.amount}.
+     */
+    CSV;
+
+    /**
+     * Derive the format from the name of a file.
+     *
+     * @param file transaction file
+     * @return CSV for files ending in .csv, NDJSON otherwise
+     */
+    public static TransactionFileFormat of(Path file) {
+        return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : NDJSON;
+    }
+}
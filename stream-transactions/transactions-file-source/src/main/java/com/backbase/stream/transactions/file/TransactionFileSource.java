@@ -0,0 +1,194 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.backbase.stream.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+/**
+ * Ingests transaction files of NDJSON or CSV lines through the {@link TransactionService}, for backfills too large to
+ * post over HTTP or hold in memory.
+ *
+ * <p>A file is split into ranges at line boundaries. Ranges are mapped in memory and parsed in parallel, a line at a
+ * time as transactions are requested, while transactions are ingested in file order. Transactions are ingested in
+ * chunks, and after every chunk ingested along with all chunks before it, the offset after its last line is written to
+ * a checkpoint. Ingesting a file again resumes after the checkpoint, so a failed or interrupted ingestion posts at most
+ * the chunks in flight again; an ingested file is skipped unless it changes.</p>
+ */
+@Slf4j
+public class TransactionFileSource {
+
+    private static final long MAX_RANGE_SIZE = 1L << 30;
+
+    private final TransactionService transactionService;
+    private final ObjectMapper objectMapper;
+    private final TransactionFileSourceProperties properties;
+    private final TransactionFileCheckpoints checkpoints;
+
+    /**
+     * Create a file source.
+     *
+     * @param transactionService service ingesting transactions
+     * @param objectMapper       object mapper binding transactions
+     * @param properties         file source properties
+     */
+    public TransactionFileSource(TransactionService transactionService, ObjectMapper objectMapper,
+        TransactionFileSourceProperties properties) {
+        this.transactionService = transactionService;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.checkpoints = new TransactionFileCheckpoints(properties.getCheckpointDirectory() == null
+            ? null : Paths.get(properties.getCheckpointDirectory()));
+    }
+
+    /**
+     * Ingest the transactions of a file, resuming after its checkpoint.
+     *
+     * @param file NDJSON or CSV transaction file
+     * @return number of transactions read from the file and ingested, excluding duplicates dropped by the transaction
+     *     service
+     */
+    public Mono<Long> ingest(Path file) {
+        return Mono.fromCallable(() -> plan(file))
+            .subscribeOn(Schedulers.boundedElastic())
+            .flatMap(this::ingest);
+    }
+
+    private Mono<Long> ingest(FilePlan plan) {
+        if (plan.getRanges().isEmpty()) {
+            log.info("Nothing left to ingest from {}", plan.getFile());
+            return Mono.just(0L);
+        }
+        log.info("Ingesting {} in {} ranges", plan.getFile(), plan.getRanges().size());
+        long started = System.nanoTime();
+        AtomicLong ingested = new AtomicLong();
+        return Flux.fromIterable(plan.getRanges())
+            .flatMapSequential(range -> parse(plan, range), Math.max(1, properties.getParallelism()),
+                Math.max(1, properties.getPrefetch()))
+            .buffer(Math.max(1, properties.getCheckpointTransactions()))
+            .flatMapSequential(this::ingestChunk, Math.max(1, properties.getChunkConcurrency()), 1)
+            // A chunk failing must not cancel the checkpoint of the chunk ingested before it
+            .concatMapDelayError(chunk -> checkpoint(plan, chunk.get(chunk.size() - 1).getNextOffset())
+                .doOnSuccess(done -> ingested.addAndGet(chunk.size())))
+            .then(Mono.defer(() -> checkpoint(plan, plan.getSize())))
+            .then(Mono.fromCallable(ingested::get))
+            .doOnSuccess(count -> log.info("Ingested {} transactions from {} in {}", count, plan.getFile(),
+                Duration.ofNanos(System.nanoTime() - started)))
+            .doOnError(throwable -> log.error("Failed to ingest {} after {} transactions: {}", plan.getFile(),
+                ingested.get(), throwable.getMessage()));
+    }
+
+    private Mono<List<TransactionRecord>> ingestChunk(List<TransactionRecord> chunk) {
+        List<TransactionsPostRequestBody> transactions = chunk.stream()
+            .map(TransactionRecord::getTransaction)
+            .collect(Collectors.toList());
+        return transactionService.processTransactions(Flux.fromIterable(transactions))
+            .then(Mono.just(chunk));
+    }
+
+    private Mono<Void> checkpoint(FilePlan plan, long offset) {
+        return Mono.<Void>fromRunnable(() -> {
+            try {
+                checkpoints.write(plan.getFile(), plan.getSize(), plan.getLastModified(), offset);
+                log.debug("Checkpointed {} at byte {}", plan.getFile(), offset);
+            } catch (IOException e) {
+                // A lost checkpoint only means more transactions are ingested again on resume
+                log.warn("Failed to checkpoint {} at byte {}: {}", plan.getFile(), offset, e.getMessage());
+            }
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private Flux<TransactionRecord> parse(FilePlan plan, LineRange range) {
+        return Mono.fromCallable(() -> map(plan.getFile(), range))
+            .flatMapMany(buffer -> parse(new RangeParser(plan.getFile(), buffer, range.getStart(), plan.getMapper(),
+                properties.isSkipMalformedLines())))
+            // Reading mapped pages blocks on disk
+            .subscribeOn(Schedulers.boundedElastic());
+    }
+
+    private static Flux<TransactionRecord> parse(RangeParser parser) {
+        return Flux.generate(sink -> {
+            try {
+                TransactionRecord record = parser.next();
+                if (record != null) {
+                    sink.next(record);
+                } else {
+                    sink.complete();
+                }
+            } catch (IOException e) {
+                sink.error(e);
+            }
+        });
+    }
+
+    private static MappedByteBuffer map(Path file, LineRange range) throws IOException {
+        // A mapping stays valid once its channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return channel.map(MapMode.READ_ONLY, range.getStart(), range.length());
+        }
+    }
+
+    private FilePlan plan(Path file) throws IOException {
+        TransactionFileFormat format = properties.getFormat() != null
+            ? properties.getFormat() : TransactionFileFormat.of(file);
+        long lastModified = Files.getLastModifiedTime(file).toMillis();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long dataStart = 0;
+            TransactionLineMapper mapper;
+            if (format == TransactionFileFormat.CSV) {
+                dataStart = LineRange.nextLineStart(channel, 0, size);
+                mapper = new CsvTransactionLineMapper(objectMapper, readLine(channel, dataStart),
+                    properties.getCsvDelimiter());
+            } else {
+                mapper = new NdjsonTransactionLineMapper(objectMapper);
+            }
+            long start = Math.max(dataStart, checkpoints.read(file, size, lastModified));
+            if (start > dataStart) {
+                log.info("Resuming ingestion of {} at byte {} of {}", file, start, size);
+            }
+            long rangeSize = Math.max(1, Math.min(properties.getRangeSize().toBytes(), MAX_RANGE_SIZE));
+            List<LineRange> ranges = LineRange.split(channel, start, size, rangeSize);
+            return new FilePlan(file, size, lastModified, mapper, ranges);
+        }
+    }
+
+    private static String readLine(FileChannel channel, long end) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) end);
+        int read;
+        do {
+            read = channel.read(buffer, buffer.position());
+        } while (read > 0 && buffer.hasRemaining());
+        String line = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        return line.replaceAll("[\r\n]+$", "");
+    }
+
+    @Value
+    private static class FilePlan {
+
+        Path file;
+        long size;
+        long lastModified;
+        TransactionLineMapper mapper;
+        List<LineRange> ranges;
+
+    }
+}
@@ -0,0 +1,21 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.stream.TransactionService;
+import com.backbase.stream.configuration.TransactionServiceConfiguration;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Import;
+
+@Configuration
+@EnableConfigurationProperties(TransactionFileSourceProperties.class)
+@Import(TransactionServiceConfiguration.class)
+public class TransactionFileSourceConfiguration {
+
+    @Bean
+    public TransactionFileSource transactionFileSource(TransactionService transactionService,
+        ObjectMapper objectMapper, TransactionFileSourceProperties transactionFileSourceProperties) {
+        return new TransactionFileSource(transactionService, objectMapper, transactionFileSourceProperties);
+    }
+}
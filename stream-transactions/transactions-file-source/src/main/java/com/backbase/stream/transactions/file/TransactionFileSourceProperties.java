@@ -0,0 +1,62 @@
+package com.backbase.stream.transactions.file;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+@Data
+@ConfigurationProperties("backbase.stream.transaction.file")
+public class TransactionFileSourceProperties {
+
+    /**
+     * Format of transaction files, unset to derive it from the file name: files ending in .csv are CSV, other files
+     * NDJSON.
+     */
+    private TransactionFileFormat format;
+
+    /**
+     * Size of the ranges a file is split into. Ranges end at line boundaries, each range is mapped in memory and
+     * parsed on its own.
+     */
+    private DataSize rangeSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Number of ranges parsed in parallel.
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Number of parsed transactions a range buffers ahead of ingestion, letting ranges parse in parallel while
+     * transactions are ingested in file order.
+     */
+    private int prefetch = 1024;
+
+    /**
+     * Number of transactions ingested between checkpoints.
+     */
+    private int checkpointTransactions = 10000;
+
+    /**
+     * Number of checkpoint chunks of transactions ingested concurrently. Chunks ingested concurrently may post the
+     * transactions of an arrangement out of file order, so only raise this for files in which every arrangement falls
+     * within a single chunk, or when the order of transactions does not matter.
+     */
+    private int chunkConcurrency = 1;
+
+    /**
+     * Directory holding the checkpoints of ingested files, one per file name. Unset to not checkpoint, ingesting files
+     * from the start every time.
+     */
+    private String checkpointDirectory;
+
+    /**
+     * Delimiter between the fields of CSV files.
+     */
+    private char csvDelimiter = ',';
+
+    /**
+     * Skip lines which cannot be mapped to a transaction instead of failing the ingestion of the file.
+     */
+    private boolean skipMalformedLines = false;
+
+}
@@ -0,0 +1,21 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import java.io.IOException;
+
+/**
+ * Maps a line of a transaction file to a transaction. Mappers are shared by the parsers of all ranges of a file.
+ */
+interface TransactionLineMapper {
+
+    /**
+     * Map a line to a transaction.
+     *
+     * @param line   buffer holding the UTF-8 bytes of the line, without line terminator
+     * @param length number of bytes of the line
+     * @return transaction
+     * @throws IOException when the line is malformed
+     */
+    TransactionsPostRequestBody map(byte[] line, int length) throws IOException;
+
+}
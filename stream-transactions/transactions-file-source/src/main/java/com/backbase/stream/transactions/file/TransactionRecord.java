@@ -0,0 +1,15 @@
+package com.backbase.stream.transactions.file;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import lombok.Value;
+
+/**
+ * Transaction parsed from a file, with the offset of the line following it.
+ */
+@Value
+class TransactionRecord {
+
+    TransactionsPostRequestBody transaction;
+    long nextOffset;
+
+}
@@ -0,0 +1,57 @@
+package com.backbase.stream.transactions.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.junit.jupiter.api.Test;
+
+class CsvTransactionLineMapperTest {
+
+    private static final String HEADER =
+        "\uFEFFexternalId,transactionAmountCurrency.amount,transactionAmountCurrency.currencyCode,description";
+
+    private final CsvTransactionLineMapper mapper = new CsvTransactionLineMapper(new ObjectMapper(), HEADER, ',');
+
+    @Test
+    void splitsQuotedValuesHoldingDelimitersAndEscapedQuotes() {
+        assertEquals(Arrays.asList("a", "b, c", "say \"hi\"", ""),
+            CsvTransactionLineMapper.split("a,\"b, c\",\"say \"\"hi\"\"\",", ','));
+        assertEquals(Arrays.asList("a", "", "c"), CsvTransactionLineMapper.split("a;;c", ';'));
+        assertEquals(Arrays.asList(""), CsvTransactionLineMapper.split("", ','));
+    }
+
+    @Test
+    void mapsNestedColumnsOfAHeaderWithByteOrderMark() throws IOException {
+        TransactionsPostRequestBody transaction = map("tx-1,12.30,EUR,\"Coffee, \"\"large\"\"\"");
+
+        assertEquals("tx-1", transaction.getExternalId());
+        assertEquals("12.30", transaction.getTransactionAmountCurrency().getAmount());
+        assertEquals("EUR", transaction.getTransactionAmountCurrency().getCurrencyCode());
+        assertEquals("Coffee, \"large\"", transaction.getDescription());
+    }
+
+    @Test
+    void leavesFieldsOfEmptyValuesUnset() throws IOException {
+        TransactionsPostRequestBody transaction = map("tx-1,,,");
+
+        assertEquals("tx-1", transaction.getExternalId());
+        assertNull(transaction.getTransactionAmountCurrency());
+        assertNull(transaction.getDescription());
+    }
+
+    @Test
+    void rejectsLinesWithAnotherNumberOfFields() {
+        assertThrows(IOException.class, () -> map("tx-1,12.30"));
+    }
+
+    private TransactionsPostRequestBody map(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return mapper.map(bytes, bytes.length);
+    }
+}
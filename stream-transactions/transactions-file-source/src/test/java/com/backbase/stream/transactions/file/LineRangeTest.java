@@ -0,0 +1,66 @@
+package com.backbase.stream.transactions.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LineRangeTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void splitsRangesAfterTheFirstNewlineFollowingTheRangeSize() throws IOException {
+        // Lines start at 0, 6, 12 and 18
+        Path file = write("line0\nline1\nline2\nline3\n");
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(Arrays.asList(new LineRange(0, 12), new LineRange(12, 24)),
+                LineRange.split(channel, 0, channel.size(), 7));
+        }
+    }
+
+    @Test
+    void endsTheLastRangeAtTheEndOfAFileWithoutTrailingNewline() throws IOException {
+        Path file = write("line0\nline1\nline2");
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(Arrays.asList(new LineRange(0, 12), new LineRange(12, 17)),
+                LineRange.split(channel, 0, channel.size(), 7));
+            assertEquals(17, LineRange.nextLineStart(channel, 13, channel.size()));
+        }
+    }
+
+    @Test
+    void splitsFromTheStartOffset() throws IOException {
+        Path file = write("line0\nline1\nline2\n");
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(Collections.singletonList(new LineRange(6, 18)),
+                LineRange.split(channel, 6, channel.size(), 100));
+            assertEquals(Collections.emptyList(), LineRange.split(channel, 18, channel.size(), 100));
+        }
+    }
+
+    @Test
+    void findsTheNextLineStartAtANewlineOnThePosition() throws IOException {
+        Path file = write("line0\nline1\n");
+
+        try (FileChannel channel = FileChannel.open(file)) {
+            assertEquals(6, LineRange.nextLineStart(channel, 5, channel.size()));
+            assertEquals(12, LineRange.nextLineStart(channel, 6, channel.size()));
+        }
+    }
+
+    private Path write(String content) throws IOException {
+        return Files.write(directory.resolve("transactions.ndjson"), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
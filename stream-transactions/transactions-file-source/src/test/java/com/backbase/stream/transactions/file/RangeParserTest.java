@@ -0,0 +1,58 @@
+package com.backbase.stream.transactions.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import org.junit.jupiter.api.Test;
+
+class RangeParserTest {
+
+    private static final Path FILE = Paths.get("transactions.ndjson");
+
+    private final NdjsonTransactionLineMapper mapper = new NdjsonTransactionLineMapper(new ObjectMapper());
+
+    @Test
+    void parsesCrlfLinesSkippingBlankLinesWithTheOffsetOfTheNextLine() throws IOException {
+        // Lines start at 100, 120, 124 and 143
+        RangeParser parser = parser("{\"externalId\":\"a\"}\r\n \t\r\n{\"externalId\":\"b\"}\n{\"externalId\":\"c\"}",
+            false);
+
+        TransactionRecord first = parser.next();
+        assertEquals("a", first.getTransaction().getExternalId());
+        assertEquals(120, first.getNextOffset());
+        TransactionRecord second = parser.next();
+        assertEquals("b", second.getTransaction().getExternalId());
+        assertEquals(143, second.getNextOffset());
+        TransactionRecord third = parser.next();
+        assertEquals("c", third.getTransaction().getExternalId());
+        assertEquals(161, third.getNextOffset());
+        assertNull(parser.next());
+    }
+
+    @Test
+    void failsOnMalformedLinesUnlessSkippingThem() throws IOException {
+        String lines = "{\"externalId\":\"a\"}\nnot json\n{\"externalId\":\"b\"}\n";
+
+        RangeParser failing = parser(lines, false);
+        assertEquals("a", failing.next().getTransaction().getExternalId());
+        IOException failure = assertThrows(IOException.class, failing::next);
+        assertEquals("Malformed transaction in transactions.ndjson at byte 119", failure.getMessage());
+
+        RangeParser skipping = parser(lines, true);
+        assertEquals("a", skipping.next().getTransaction().getExternalId());
+        assertEquals("b", skipping.next().getTransaction().getExternalId());
+        assertNull(skipping.next());
+    }
+
+    private RangeParser parser(String lines, boolean skipMalformedLines) {
+        ByteBuffer buffer = ByteBuffer.wrap(lines.getBytes(StandardCharsets.UTF_8));
+        return new RangeParser(FILE, buffer, 100, mapper, skipMalformedLines);
+    }
+}
@@ -0,0 +1,133 @@
+package com.backbase.stream.transactions.file;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostRequestBody;
+import com.backbase.dbs.transaction.api.service.v2.model.TransactionsPostResponseBody;
+import com.backbase.stream.TransactionService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import reactor.core.publisher.Flux;
+
+class TransactionFileSourceTest {
+
+    @TempDir
+    Path directory;
+
+    private final TransactionFileSourceProperties properties = new TransactionFileSourceProperties();
+
+    @BeforeEach
+    void setUp() {
+        // Many small ranges parsed in parallel, checkpointed every three transactions
+        properties.setRangeSize(DataSize.ofBytes(64));
+        properties.setParallelism(4);
+        properties.setCheckpointTransactions(3);
+        properties.setCheckpointDirectory(directory.resolve("checkpoints").toString());
+    }
+
+    @Test
+    void ingestsTransactionsInFileOrderAndSkipsAnIngestedFile() throws IOException {
+        Path file = write("transactions.csv", csv(0, 10));
+        RecordingTransactionService transactionService = new RecordingTransactionService(-1);
+
+        assertEquals(10, ingest(transactionService, file));
+        assertEquals(externalIds(0, 10), transactionService.ingested);
+
+        assertEquals(0, ingest(transactionService, file));
+        assertEquals(10, transactionService.ingested.size());
+    }
+
+    @Test
+    void resumesAfterTheLastCheckpointedChunk() throws IOException {
+        Path file = write("transactions.ndjson", ndjson(0, 10));
+        RecordingTransactionService failing = new RecordingTransactionService(2);
+
+        assertThrows(IllegalStateException.class, () -> ingest(failing, file));
+        assertEquals(externalIds(0, 3), failing.ingested);
+
+        RecordingTransactionService resumed = new RecordingTransactionService(-1);
+        assertEquals(7, ingest(resumed, file));
+        assertEquals(externalIds(3, 10), resumed.ingested);
+    }
+
+    @Test
+    void ingestsAChangedFileFromTheStart() throws IOException {
+        Path file = write("transactions.ndjson", ndjson(0, 4));
+        RecordingTransactionService transactionService = new RecordingTransactionService(-1);
+        assertEquals(4, ingest(transactionService, file));
+
+        Files.write(file, ndjson(4, 6).getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        assertEquals(6, ingest(transactionService, file));
+        assertEquals(externalIds(0, 6), transactionService.ingested.subList(4, 10));
+    }
+
+    private long ingest(TransactionService transactionService, Path file) {
+        return new TransactionFileSource(transactionService, new ObjectMapper(), properties)
+            .ingest(file)
+            .block(Duration.ofSeconds(10));
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String csv(int from, int to) {
+        return "externalId,externalArrangementId,transactionAmountCurrency.amount\n" + IntStream.range(from, to)
+            .mapToObj(i -> "tx-" + i + ",arrangement-" + i % 2 + ",1." + i + "\n")
+            .collect(Collectors.joining());
+    }
+
+    private static String ndjson(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> "{\"externalId\":\"tx-" + i + "\",\"externalArrangementId\":\"arrangement-" + i % 2
+                + "\"}\n")
+            .collect(Collectors.joining());
+    }
+
+    private static List<String> externalIds(int from, int to) {
+        return IntStream.range(from, to)
+            .mapToObj(i -> "tx-" + i)
+            .collect(Collectors.toList());
+    }
+
+    private static class RecordingTransactionService extends TransactionService {
+
+        private final List<String> ingested = new CopyOnWriteArrayList<>();
+        private final AtomicInteger calls = new AtomicInteger();
+        private final int failingCall;
+
+        /**
+         * @param failingCall number of the call failing, -1 to not fail
+         */
+        RecordingTransactionService(int failingCall) {
+            super(null, null);
+            this.failingCall = failingCall;
+        }
+
+        @Override
+        public Flux<TransactionsPostResponseBody> processTransactions(Flux<TransactionsPostRequestBody> transactions) {
+            if (calls.incrementAndGet() == failingCall) {
+                return Flux.error(new IllegalStateException("Transactions are not available"));
+            }
+            return transactions
+                .doOnNext(transaction -> ingested.add(transaction.getExternalId()))
+                .thenMany(Flux.empty());
+        }
+    }
+}